@@ -0,0 +1,172 @@
+package org.cjoakim.cosmos;
+
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.cjoakim.cosmos.csv.BatterCsvParser;
+import org.cjoakim.cosmos.csv.BatterCsvReader;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.util.FileUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the client-side cost of preparing a bulk load: reading the CSV,
+ * parsing BaseballBatter objects, filtering them, and building the bulk operations.
+ * The serialize benchmarks also write each operation's item with Jackson as the resourceBody of
+ * a bulk request operation, as the SDK does, from the BaseballBatter POJOs or from --preserialize
+ * payloads.
+ * Inputs are synthetic Batting.csv-shaped rows; 20000 rows is People.csv-sized and
+ * 110000 rows is Batting.csv-sized.  Run with 'gradle jmh', which adds the gc profiler.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-jmh.xml")
+public class IngestBenchmark {
+
+    private static final String HEADER =
+            "playerID,yearID,stint,teamID,lgID,G,AB,R,H,2B,3B,HR,RBI,SB,CS,BB,SO,IBB,HBP,SH,SF,GIDP";
+    private static final String[] TEAMS = { "NYA", "BOS", "CHN", "LAN", "SFN", "ATL", "HOU", "SEA" };
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Param({ "20000", "110000" })
+    public int rows;
+
+    private BatterCsvParser parser;
+    private String csvLine;
+    private List<String> lines;
+    private List<BaseballBatter> batters;
+    private File csvFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+
+        Random random = new Random(42);
+        parser = new BatterCsvParser(BatterCsvParser.parseHeader(HEADER));
+        lines = new ArrayList<>(rows);
+        StringBuilder sb = new StringBuilder(HEADER).append('\n');
+        for (int i = 0; i < rows; i++) {
+            String line = syntheticLine(random, i);
+            lines.add(line);
+            sb.append(line).append('\n');
+        }
+        csvLine = lines.get(0);
+
+        batters = new ArrayList<>(rows);
+        for (int i = 0; i < lines.size(); i++) {
+            batters.add(parser.parse(lines.get(i)));
+        }
+
+        csvFile = File.createTempFile("ingest-benchmark", ".csv");
+        csvFile.deleteOnExit();
+        try (FileWriter fw = new FileWriter(csvFile)) {
+            fw.write(sb.toString());
+        }
+    }
+
+    /**
+     * Old Lahman rows leave CS, SO, IBB and similar columns blank, so about a third of
+     * the generated rows do too.
+     */
+    private static String syntheticLine(Random random, int i) {
+
+        boolean historic = random.nextInt(3) == 0;
+        int year = historic ? 1871 + random.nextInt(79) : 1950 + random.nextInt(73);
+        int games = random.nextInt(163);
+        int atBats = games * (1 + random.nextInt(4));
+        StringBuilder sb = new StringBuilder();
+        sb.append("player").append(i % 20000).append(',');
+        sb.append(year).append(',');
+        sb.append(1 + random.nextInt(2)).append(',');
+        sb.append(TEAMS[random.nextInt(TEAMS.length)]).append(',');
+        sb.append(random.nextBoolean() ? "AL" : "NL").append(',');
+        sb.append(games).append(',');
+        sb.append(atBats).append(',');
+        for (int col = 7; col < 22; col++) {
+            if (historic && col >= 14) {
+                sb.append("");
+            } else {
+                sb.append(random.nextInt(Math.max(atBats / 4, 1)));
+            }
+            if (col < 21) {
+                sb.append(',');
+            }
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public BaseballBatter parseBatter() {
+
+        return parser.parse(csvLine);
+    }
+
+    @Benchmark
+    public void parseBatters(Blackhole bh) {
+
+        for (int i = 0; i < lines.size(); i++) {
+            bh.consume(parser.parse(lines.get(i)));
+        }
+    }
+
+    @Benchmark
+    public List<String> readLines() throws IOException {
+
+        return new FileUtil().readLines(csvFile.getPath());
+    }
+
+    @Benchmark
+    public long readBatters(Blackhole bh) throws IOException {
+
+        return new BatterCsvReader().read(csvFile.getPath(), bh::consume);
+    }
+
+    @Benchmark
+    public List<BaseballBatter> filterBatters() {
+
+        return App.filterBatters(batters, "all");
+    }
+
+    @Benchmark
+    public List<CosmosItemOperation> buildBulkUpsertOperations() {
+
+        return App.buildBatterBulkUpsertOperations(batters);
+    }
+
+    @Benchmark
+    public void serializeUpsertOperations(Blackhole bh) throws JsonProcessingException {
+
+        serialize(App.buildBatterBulkUpsertOperations(batters), bh);
+    }
+
+    @Benchmark
+    public void serializePreSerializedUpsertOperations(Blackhole bh) throws JsonProcessingException {
+
+        serialize(App.buildBatterPayloadUpsertOperations(batters), bh);
+    }
+
+    private static void serialize(List<CosmosItemOperation> operations, Blackhole bh) throws JsonProcessingException {
+
+        for (int i = 0; i < operations.size(); i++) {
+            CosmosItemOperation op = operations.get(i);
+            ObjectNode body = MAPPER.createObjectNode();
+            body.put("operationType", op.getOperationType().toString());
+            body.put("id", op.getId());
+            body.putPOJO("resourceBody", op.getItem());
+            bh.consume(MAPPER.writeValueAsString(body));
+        }
+    }
+}
@@ -5,14 +5,63 @@ import com.azure.cosmos.models.*;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.bulk.AdaptiveBatchController;
+import org.cjoakim.cosmos.bulk.BulkBatchExecutor;
+import org.cjoakim.cosmos.bulk.PointOperationExecutor;
+import org.cjoakim.cosmos.bulk.LoadCheckpoint;
+import org.cjoakim.cosmos.cache.BatterColumnCache;
+import org.cjoakim.cosmos.cache.BatterColumns;
+import org.cjoakim.cosmos.csv.BatterCsvParser;
+import org.cjoakim.cosmos.csv.BatterCsvReader;
+import org.cjoakim.cosmos.delta.DeltaLoad;
+import org.cjoakim.cosmos.json.BatterJsonWriter;
+import org.cjoakim.cosmos.metrics.LiveMetricsReporter;
+import org.cjoakim.cosmos.metrics.MetricsRegistry;
+import org.cjoakim.cosmos.metrics.PrometheusEndpoint;
+import org.cjoakim.cosmos.people.PeopleDictionary;
+import org.cjoakim.cosmos.pk.ConstantKeyStrategy;
+import org.cjoakim.cosmos.pk.PartitionKeyReport;
+import org.cjoakim.cosmos.pk.PartitionKeyStrategy;
+import org.cjoakim.cosmos.throughput.FairShareScheduler;
+import org.cjoakim.cosmos.throughput.RuScheduler;
+import org.cjoakim.cosmos.throughput.ThroughputLane;
 import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.sim.SimulatedLoadTarget;
+import org.cjoakim.cosmos.sim.SimulatorConfig;
+import org.cjoakim.cosmos.shape.DocumentShape;
+import org.cjoakim.cosmos.shape.PathIndexingPolicy;
+import org.cjoakim.cosmos.shape.ShapeReport;
+import org.cjoakim.cosmos.suite.ContentionConfig;
+import org.cjoakim.cosmos.suite.ContentionExperiment;
+import org.cjoakim.cosmos.suite.GlobalCoordinationBenchmark;
+import org.cjoakim.cosmos.suite.GlobalCoordinationConfig;
+import org.cjoakim.cosmos.suite.ScenarioRun;
+import org.cjoakim.cosmos.suite.SuiteConfig;
+import org.cjoakim.cosmos.suite.SuiteRunner;
+import org.cjoakim.cosmos.suite.WorkloadConfig;
+import org.cjoakim.cosmos.suite.WorkloadRunner;
+import org.cjoakim.cosmos.synth.BatterStatsModel;
+import org.cjoakim.cosmos.synth.SyntheticBatterGenerator;
+import org.cjoakim.cosmos.target.CosmosLoadTarget;
+import org.cjoakim.cosmos.target.FanOutRoute;
+import org.cjoakim.cosmos.target.LoadTarget;
+import org.cjoakim.cosmos.trace.TraceDiff;
+import org.cjoakim.cosmos.trace.TraceReader;
+import org.cjoakim.cosmos.trace.TraceReplay;
+import org.cjoakim.cosmos.trace.TraceSummary;
+import org.cjoakim.cosmos.trace.TraceWriter;
+import org.cjoakim.cosmos.trace.TracingLoadTarget;
 import org.cjoakim.cosmos.util.FileUtil;
 import reactor.core.publisher.Flux;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.time.Duration;
 import java.util.*;
+import java.util.function.Function;
 
 public class App {
     private static final String FLAG_TYPE_LOCAL = "--local";
@@ -22,12 +71,70 @@ public class App {
     private static final String FLAG_PRIORITY_HIGH = "--priority-high";
     private static final String FLAG_REQUEST_UNITS = "--ru";
     private static final String FLAG_PERCENT = "--pct";
+    private static final String FLAG_STREAM = "--stream";
+    private static final String FLAG_CONCURRENCY = "--concurrency";
+    private static final String FLAG_PARALLEL_READ = "--parallel-read";
+    private static final String FLAG_LANES = "--lanes";
+    private static final String FLAG_TARGET_RU = "--target-ru";
+    private static final String FLAG_SIMULATE = "--simulate";
+    private static final String FLAG_SIM_RU = "--sim-ru";
+    private static final String FLAG_SIM_PARTITIONS = "--sim-partitions";
+    private static final String FLAG_SIM_LATENCY_MS = "--sim-latency-ms";
+    private static final String FLAG_SIM_SEED = "--sim-seed";
+    private static final String FLAG_CSV_FILE = "--csv";
+    private static final String FLAG_PARTITION_KEY = "--pk";
+    private static final String FLAG_PARTITION_KEY_REPORT = "--pk-report";
+    private static final String FLAG_PARTITION_KEY_RANGES = "--pk-ranges";
+    private static final String FLAG_ADAPTIVE = "--adaptive";
+    private static final String FLAG_MAX_BATCH_SIZE = "--max-batch";
+    private static final String FLAG_MAX_CONCURRENCY = "--max-concurrency";
+    private static final String FLAG_CACHE = "--cache";
+    private static final String FLAG_CACHE_DIR = "--cache-dir";
+    private static final String FLAG_PRESERIALIZE = "--preserialize";
+    private static final String FLAG_FAN_OUT = "--fan-out";
+    private static final String FLAG_CHECKPOINT = "--checkpoint";
+    private static final String FLAG_CHECKPOINT_INTERVAL = "--checkpoint-interval";
+    private static final String FLAG_RESUME = "--resume";
+    private static final String FLAG_LIVE = "--live";
+    private static final String FLAG_LIVE_INTERVAL = "--live-interval";
+    private static final String FLAG_METRICS_PORT = "--metrics-port";
+    private static final String FLAG_METRICS_ALL_INTERFACES = "--metrics-all-interfaces";
+    private static final String FLAG_RENEW_INTERVAL = "--renew-interval";
+    private static final String FLAG_EXPIRE_INTERVAL = "--expire-interval";
+    private static final String FLAG_POINT = "--point";
+    private static final String FLAG_SYNTHETIC = "--synthetic";
+    private static final String FLAG_SYNTHETIC_PLAYERS = "--synthetic-players";
+    private static final String FLAG_SYNTHETIC_SEED = "--synthetic-seed";
+    private static final String FLAG_DELTA = "--delta";
+    private static final String FLAG_DELTA_INDEX = "--delta-index";
+    private static final String FLAG_DELTA_DELETES = "--delta-deletes";
+    private static final String FLAG_TRACE = "--trace";
+    private static final String FLAG_SPEED = "--speed";
+    private static final String FLAG_DIFF_THRESHOLD = "--diff-threshold";
+    private static final String FLAG_ENRICH = "--enrich";
+    private static final String FLAG_ENRICH_FIELDS = "--enrich-fields";
+    private static final String FLAG_PEOPLE_CSV_FILE = "--people-csv";
+    private static final String FLAG_SHAPE = "--shape";
+    private static final String FLAG_SHAPE_QUERIES = "--shape-queries";
+    private static final String FLAG_SHAPES = "--shapes";
+    private static final String FLAG_SHAPE_INDEX = "--shape-index";
+    private static final String FLAG_SHAPE_SAMPLE = "--shape-sample";
 
     private static final long ONE_MINUTE = 1000 * 60;
+    private static final int FILTER_MIN_YEAR = 1950;
+    private static final int FILTER_MIN_GAMES = 10;
 
     private static final String GLOBAL_CONTAINER = "GlobalThoughputController";
     private static final String BASEBALL_BATTERS_CSV_FILE = "../../data/seanhahman-baseballdatabank-2023.1/core/Batting.csv";
+    private static final String BASEBALL_PEOPLE_CSV_FILE = "../../data/seanhahman-baseballdatabank-2023.1/core/People.csv";
     private static String[] commandLineArgs = null;
+    private static MetricsRegistry metricsRegistry = new MetricsRegistry();
+    private static PartitionKeyStrategy partitionKeyStrategy = new ConstantKeyStrategy(ConstantKeyStrategy.DEFAULT_VALUE);
+    private static boolean preSerialize = false;
+    private static DeltaLoad deltaLoad = null;
+    private static TraceWriter traceWriter = null;
+    private static PeopleDictionary peopleDictionary = null;
+    private static DocumentShape documentShape = null;
 
     private static Logger logger = LogManager.getLogger(App.class);
 
@@ -39,61 +146,776 @@ public class App {
         setCommandLineArgs(args);
         String function = args[0];
 
-        switch (function) {
-            case "throughput_test":
-                String type   = getTestType(args[1]);
-                String dbname = args[2];
-                String cname  = args[3];
-                String team   = args[4];
-                int batchSize = Integer.parseInt(args[5]);
-
-                CosmosAsyncClient client = buildAsyncClient();
-                CosmosAsyncDatabase database = client.getDatabase(dbname);
-                CosmosAsyncContainer container = database.getContainer(cname);
-                List<BaseballBatter> batters = readFilterBatters(team);
-
-                if (type.equalsIgnoreCase(FLAG_TYPE_GLOBAL)) {
-                    createGlobalThroughputContainer(client, dbname);
-                    loadCosmosGlobalThroughput(client, dbname, container, batters, batchSize);
+        LiveMetricsReporter liveReporter = startLiveMetricsReporter();
+        PrometheusEndpoint metricsEndpoint = startPrometheusEndpoint();
+        try {
+            switch (function) {
+                case "throughput_test":
+                    String type   = getTestType(args[1]);
+                    String dbname = args[2];
+                    String cname  = args[3];
+                    String team   = args[4];
+                    int batchSize = Integer.parseInt(args[5]);
+                    partitionKeyStrategy = PartitionKeyStrategy.parse(getFlagValue(FLAG_PARTITION_KEY, "hot"));
+                    preSerialize = hasFlag(FLAG_PRESERIALIZE);
+                    documentShape = parseDocumentShape();
+
+                    if (hasFlag(FLAG_FAN_OUT)) {
+                        loadFanOut(dbname, cname, type, team, batchSize);
+                        break;
+                    }
+                    LoadTarget target = buildLoadTarget(dbname, cname, type);
+
+                    if (hasFlag(FLAG_LANES)) {
+                        loadCosmosScheduledLanes(target, team, batchSize);
+                    } else if (type.equalsIgnoreCase(FLAG_TYPE_GLOBAL)) {
+                        loadCosmosGlobalThroughput(target, team, batchSize);
+                    } else {
+                        loadCosmosNonGlobalThroughput(target, team, batchSize);
+                    }
+                    target.logReport();
+                    break;
+                case "suite":
+                    partitionKeyStrategy = PartitionKeyStrategy.parse(getFlagValue(FLAG_PARTITION_KEY, "hot"));
+                    preSerialize = hasFlag(FLAG_PRESERIALIZE);
+                    runSuite(args[1]);
+                    break;
+                case "global_coordination":
+                    partitionKeyStrategy = PartitionKeyStrategy.parse(getFlagValue(FLAG_PARTITION_KEY, "hot"));
+                    preSerialize = hasFlag(FLAG_PRESERIALIZE);
+                    runGlobalCoordinationBenchmark(args[1]);
+                    break;
+                case "workload":
+                    partitionKeyStrategy = PartitionKeyStrategy.parse(getFlagValue(FLAG_PARTITION_KEY, "hot"));
+                    preSerialize = hasFlag(FLAG_PRESERIALIZE);
+                    runWorkload(args[1]);
+                    break;
+                case "contention":
+                    partitionKeyStrategy = PartitionKeyStrategy.parse(getFlagValue(FLAG_PARTITION_KEY, "hot"));
+                    preSerialize = hasFlag(FLAG_PRESERIALIZE);
+                    runContentionExperiment(args[1]);
+                    break;
+                case "replay":
+                    partitionKeyStrategy = PartitionKeyStrategy.parse(getFlagValue(FLAG_PARTITION_KEY, "hot"));
+                    replayTrace(args[1], args[2], args[3], Integer.parseInt(args[4]));
+                    break;
+                case "trace_diff":
+                    diffTraces(args[1], args[2]);
+                    break;
+                case "shape_report":
+                    partitionKeyStrategy = PartitionKeyStrategy.parse(getFlagValue(FLAG_PARTITION_KEY, "hot"));
+                    runShapeReport(args[1], args[2], args[3], Integer.parseInt(args[4]));
+                    break;
+                case "pk_report":
+                    logPartitionKeyReports(args[1], getFlagValue(FLAG_PARTITION_KEY, "hot"));
+                    break;
+                case "gmt_time_generated_kql":
+                    // This case is just for ad-hoc development and testing of method gmtTimeGeneratedKql
+                    Date now = new Date();
+                    logger.warn("kql: " + gmtTimeGeneratedKql(now, now));
+                    break;
+                default:
+                    logger.error("undefined command-line function: " + function);
+            }
+        } finally {
+            if (liveReporter != null) {
+                liveReporter.stop();
+            }
+            if (metricsEndpoint != null) {
+                metricsEndpoint.stop();
+            }
+            closeTraceWriter();
+        }
+    }
+
+    /**
+     * Start logging the throughput of each group every --live-interval milliseconds if --live
+     * is specified; return null otherwise.
+     */
+    private static LiveMetricsReporter startLiveMetricsReporter() {
+
+        if (!hasFlag(FLAG_LIVE)) {
+            return null;
+        }
+        return new LiveMetricsReporter(metricsRegistry, getIntFlagValue(FLAG_LIVE_INTERVAL, 1000)).start();
+    }
+
+    /**
+     * Serve the metrics for Prometheus at the --metrics-port port if specified; return null otherwise.
+     * The port is on the loopback address unless --metrics-all-interfaces is specified.
+     */
+    private static PrometheusEndpoint startPrometheusEndpoint() {
+
+        if (!hasFlag(FLAG_METRICS_PORT)) {
+            return null;
+        }
+        try {
+            return new PrometheusEndpoint(metricsRegistry)
+                    .start(getIntFlagValue(FLAG_METRICS_PORT, 9464), hasFlag(FLAG_METRICS_ALL_INTERFACES));
+        } catch (IOException e) {
+            logger.error("startPrometheusEndpoint - unable to serve metrics: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Return the container to be loaded; the in-process simulator if --simulate is specified,
+     * otherwise the Cosmos DB container, creating the global throughput control container if needed.
+     */
+    private static LoadTarget buildLoadTarget(String dbname, String cname, String type) {
+
+        return buildLoadTarget(hasFlag(FLAG_SIMULATE) ? null : buildAsyncClient(), dbname, cname, type);
+    }
+
+    private static LoadTarget buildLoadTarget(CosmosAsyncClient client, String dbname, String cname, String type) {
+
+        LoadTarget target;
+        if (hasFlag(FLAG_SIMULATE)) {
+            SimulatedLoadTarget simulated = new SimulatedLoadTarget(cname, buildSimulatorConfig());
+            if (documentShape != null) {
+                simulated.setIndexingPolicy(documentShape.queriedIndexingPolicy());
+            }
+            target = simulated;
+        } else {
+            if (FLAG_TYPE_GLOBAL.equalsIgnoreCase(type)) {
+                createGlobalThroughputContainer(client, dbname);
+            }
+            CosmosAsyncContainer container = client.getDatabase(dbname).getContainer(cname);
+            target = new CosmosLoadTarget(client, container);
+        }
+        TraceWriter writer = openTraceWriter(target);
+        return writer == null ? target : new TracingLoadTarget(target, writer);
+    }
+
+    /**
+     * Return the TraceWriter of --trace, opened for the first target of the run, or null if
+     * --trace is not specified or the file can't be written; the operations of every target
+     * are recorded in the one file.
+     */
+    private static synchronized TraceWriter openTraceWriter(LoadTarget target) {
+
+        if (traceWriter == null && hasFlag(FLAG_TRACE)) {
+            String file = getFlagValue(FLAG_TRACE, "tmp/" + target.getName().replace('/', '-') + ".trace");
+            try {
+                traceWriter = new TraceWriter(Paths.get(file), target.getName(), String.join(" ", commandLineArgs));
+            } catch (IOException e) {
+                logger.error("openTraceWriter - not tracing, unable to write " + file + ": " + e.getMessage());
+            }
+        }
+        return traceWriter;
+    }
+
+    private static synchronized void closeTraceWriter() {
+
+        if (traceWriter == null) {
+            return;
+        }
+        try {
+            traceWriter.close();
+        } catch (IOException e) {
+            logger.error("closeTraceWriter - the trace may be incomplete: " + e.getMessage());
+        }
+        traceWriter = null;
+    }
+
+    /**
+     * Replay the operations of the given trace file into the given container, in the local
+     * throughput control group per the command-line args, at --speed (1x, Nx or max, default 1x);
+     * with --point as point operations.  Documents are synthesized with the recorded ids,
+     * partition keys, per --pk, and sizes.  The replay may itself be recorded with --trace,
+     * to be compared with the original by trace_diff.
+     */
+    private static void replayTrace(String file, String dbname, String cname, int batchSize) {
+
+        TraceReader trace;
+        try {
+            trace = TraceReader.read(Paths.get(file));
+        } catch (IOException e) {
+            logger.fatal("unable to read trace file " + file + ": " + e.getMessage());
+            return;
+        }
+        logger.warn("replayTrace - " + file + ", target: " + trace.getTargetName()
+                + ", entries: " + trace.getEntries().size() + ", recorded with: " + trace.getCommandLine());
+        TraceReplay replay = new TraceReplay(
+                trace.getEntries(), TraceReplay.parseSpeed(getFlagValue(FLAG_SPEED, "1x")), partitionKeyStrategy.getPaths());
+
+        LoadTarget target = buildLoadTarget(dbname, cname, FLAG_TYPE_LOCAL);
+        ThroughputControlGroupConfig groupConfig = buildThroughputControlGroupConfig();
+        target.enableLocalThroughputControlGroup(groupConfig);
+        executeBulkOperations(replay.operations(), target, groupConfig.getGroupName(), batchSize);
+        logger.warn("replayTrace - replayed: " + replay.size() + ", not replayed: " + replay.getSkipped()
+                + ", max ms behind schedule: " + replay.getMaxLagMicros() / 1000);
+        target.logReport();
+    }
+
+    /**
+     * Log the summaries of the two given trace files, A and B, and the change of each metric
+     * from A to B, marking those beyond --diff-threshold percent, default 10.
+     */
+    private static void diffTraces(String fileA, String fileB) {
+
+        TraceSummary a = new TraceSummary(fileA);
+        TraceSummary b = new TraceSummary(fileB);
+        try {
+            TraceReader.forEach(Paths.get(fileA), a::add);
+            TraceReader.forEach(Paths.get(fileB), b::add);
+        } catch (IOException e) {
+            logger.fatal("unable to read trace file: " + e.getMessage());
+            return;
+        }
+        a.logReport();
+        b.logReport();
+        new TraceDiff(a, b, getDoubleFlagValue(FLAG_DIFF_THRESHOLD, 10.0)).logReport();
+    }
+
+    /**
+     * Return the DocumentShape of --shape, for the --shape-queries fields and the --pk paths,
+     * or null if --shape is not specified.  The paired indexing policy is logged, to be set on
+     * the container; the simulator applies it.
+     */
+    private static DocumentShape parseDocumentShape() {
+
+        if (!hasFlag(FLAG_SHAPE)) {
+            return null;
+        }
+        DocumentShape shape = DocumentShape.parse(getFlagValue(FLAG_SHAPE, "compact"),
+                getFlagValue(FLAG_SHAPE_QUERIES, DocumentShape.DEFAULT_QUERIES), partitionKeyStrategy.getPaths());
+        logger.warn("parseDocumentShape - " + shape.getProfile() + ", queried: " + shape.getQueriedFields()
+                + ", indexing policy: " + shape.queriedIndexingPolicy().toJson());
+        return shape;
+    }
+
+    /**
+     * Load the first --shape-sample (default 1000) filtered batters once per --shapes profile
+     * (default pojo,full,compact,short,packed) and --shape-index policy (default all,queried),
+     * each into its own container, <cname>-<profile>-<index>, created with the policy; then log
+     * the bytes, index terms and RU per document of each.  pojo is the BaseballBatter as the SDK
+     * serializes it; queried indexes only the --shape-queries fields.  With --enrich the
+     * documents embed their players.
+     */
+    private static void runShapeReport(String dbname, String cname, String team, int batchSize) {
+
+        String queries = getFlagValue(FLAG_SHAPE_QUERIES, DocumentShape.DEFAULT_QUERIES);
+        List<String> paths = partitionKeyStrategy.getPaths();
+        List<BaseballBatter> batters = readFilterBatters(team);
+        batters = batters.subList(0, Math.min(batters.size(), getIntFlagValue(FLAG_SHAPE_SAMPLE, 1000)));
+        peopleDictionary = readPeopleDictionary();
+        enrichBatters(batters);
+
+        CosmosAsyncClient client = hasFlag(FLAG_SIMULATE) ? null : buildAsyncClient();
+        ShapeReport report = new ShapeReport(queries);
+        for (String profile : getFlagValue(FLAG_SHAPES, "pojo,full,compact,short,packed").split("[,]", 0)) {
+            boolean pojo = "pojo".equals(profile);
+            DocumentShape shape = DocumentShape.parse(pojo ? "full" : profile, queries, paths);
+            for (String index : getFlagValue(FLAG_SHAPE_INDEX, "all,queried").split("[,]", 0)) {
+                PathIndexingPolicy policy;
+                if ("all".equals(index)) {
+                    policy = PathIndexingPolicy.indexAll();
+                } else if ("queried".equals(index)) {
+                    policy = shape.queriedIndexingPolicy();
                 } else {
-                    loadCosmosNonGlobalThroughput(container, batters, batchSize);
+                    throw new IllegalArgumentException("unknown --shape-index: " + index + ", expected all or queried");
                 }
-                break;
-            case "gmt_time_generated_kql":
-                // This case is just for ad-hoc development and testing of method gmtTimeGeneratedKql
-                Date now = new Date();
-                logger.warn("kql: " + gmtTimeGeneratedKql(now, now));
-                break;
-            default:
-                logger.error("undefined command-line function: " + function);
+                LoadTarget target = buildShapeTarget(client, dbname, cname + "-" + profile + "-" + index, policy);
+                ThroughputControlGroupConfig groupConfig = buildThroughputControlGroupConfig(profile + "-" + index);
+                target.enableLocalThroughputControlGroup(groupConfig);
+
+                documentShape = pojo ? null : shape;
+                List<CosmosItemOperation> operations = buildBatterBulkUpsertOperations(batters);
+                buildBulkBatchExecutor(target, groupConfig.getGroupName(), batchSize).execute(operations);
+                report.add(profile, index, policy, operations, metricsRegistry.getGroup(groupConfig.getGroupName()));
+            }
         }
+        documentShape = null;
+        report.logReport();
+        logCommandLineArgs();
     }
 
-    private static void loadCosmosNonGlobalThroughput(CosmosAsyncContainer container, List<BaseballBatter> batters, int batchSize) {
+    /**
+     * Return the target of one shape_report container; the simulator charges for the terms
+     * the given policy indexes, and a Cosmos DB container is created with it.
+     */
+    private static LoadTarget buildShapeTarget(CosmosAsyncClient client, String dbname, String cname, PathIndexingPolicy policy) {
 
-        ThroughputControlGroupConfig groupConfig = buildThroughputControlGroupConfig();
-        container.enableLocalThroughputControlGroup(groupConfig);
+        if (client == null) {
+            SimulatedLoadTarget target = new SimulatedLoadTarget(cname, buildSimulatorConfig());
+            target.setIndexingPolicy(policy);
+            return target;
+        }
+        logger.warn("buildShapeTarget - " + dbname + "/" + cname + ", indexing policy: " + policy.toJson());
+        client.createDatabaseIfNotExists(dbname).block();
+        CosmosContainerProperties properties =
+                new CosmosContainerProperties(cname, partitionKeyStrategy.buildPartitionKeyDefinition());
+        properties.setIndexingPolicy(policy.toIndexingPolicy());
+        client.getDatabase(dbname).createContainerIfNotExists(properties).block();
+        return new CosmosLoadTarget(client, client.getDatabase(dbname).getContainer(cname));
+    }
 
-        List<CosmosItemOperation> operations = buildBatterBulkUpsertOperations(batters);
-        executeBulkOperations(operations, container, groupConfig.getGroupName(), batchSize);
+    private static SimulatorConfig buildSimulatorConfig() {
+
+        SimulatorConfig config = new SimulatorConfig();
+        config.setProvisionedRu(getIntFlagValue(FLAG_SIM_RU, (int) config.getProvisionedRu()));
+        config.setPartitionRanges(getIntFlagValue(FLAG_SIM_PARTITIONS, config.getPartitionRanges()));
+        config.setLatencyMedianMs(getDoubleFlagValue(FLAG_SIM_LATENCY_MS, config.getLatencyMedianMs()));
+        config.setSeed(getIntFlagValue(FLAG_SIM_SEED, (int) config.getSeed()));
+        return config;
     }
 
-    private static void loadCosmosGlobalThroughput(
-            CosmosAsyncClient client, String dbname, CosmosAsyncContainer container, List<BaseballBatter> batters, int batchSize) {
+    private static void loadCosmosNonGlobalThroughput(LoadTarget target, String team, int batchSize) {
+
+        ThroughputControlGroupConfig groupConfig = buildThroughputControlGroupConfig();
+        target.enableLocalThroughputControlGroup(groupConfig);
+
+        loadBatters(target, groupConfig.getGroupName(), team, batchSize);
+    }
 
-        CosmosAsyncDatabase database = client.getDatabase(dbname);
+    private static void loadCosmosGlobalThroughput(LoadTarget target, String team, int batchSize) {
 
         ThroughputControlGroupConfig groupConfig = buildThroughputControlGroupConfig();
+        target.enableGlobalThroughputControlGroup(
+                groupConfig, GLOBAL_CONTAINER, globalRenewInterval(), globalExpireInterval());
+
+        loadBatters(target, groupConfig.getGroupName(), team, batchSize);
+    }
+
+    /**
+     * Return the global throughput control item renew interval; --renew-interval seconds, default 5.
+     */
+    private static Duration globalRenewInterval() {
+
+        return Duration.ofSeconds(getIntFlagValue(FLAG_RENEW_INTERVAL, 5));
+    }
+
+    /**
+     * Return the global throughput control item expire interval; --expire-interval seconds, default 20.
+     */
+    private static Duration globalExpireInterval() {
+
+        return Duration.ofSeconds(getIntFlagValue(FLAG_EXPIRE_INTERVAL, 20));
+    }
+
+    /**
+     * Load the filtered batters into several containers, or databases, at once per --fan-out,
+     * such as one container per league.  All targets share one client; each has its own
+     * throughput control group, and they share --concurrency in-flight batches (default one
+     * per target) through a FairShareScheduler, so a slow or throttled target doesn't starve
+     * the others.
+     */
+    private static void loadFanOut(String dbname, String cname, String type, String team, int batchSize) {
+
+        FanOutRoute route = FanOutRoute.parse(getFlagValue(FLAG_FAN_OUT, "league"));
+        Map<String, List<BaseballBatter>> routed = route.split(readFilterBatters(team));
+        int slots = getIntFlagValue(FLAG_CONCURRENCY, routed.size());
+        FairShareScheduler fairShare = new FairShareScheduler(slots);
+        CosmosAsyncClient client = hasFlag(FLAG_SIMULATE) ? null : buildAsyncClient();
+
+        List<LoadTarget> targets = new ArrayList<>();
+        List<BulkBatchExecutor> executors = new ArrayList<>();
+        List<List<BaseballBatter>> targetBatters = new ArrayList<>();
+        for (Map.Entry<String, List<BaseballBatter>> entry : routed.entrySet()) {
+            String key = entry.getKey();
+            String targetDbname = route.databaseName(dbname, key);
+            String targetCname = route.containerName(cname, key);
+            if (client != null) {
+                createFanOutContainer(client, targetDbname, targetCname);
+            }
+            LoadTarget target = buildLoadTarget(client, targetDbname, targetCname, type);
+            ThroughputControlGroupConfig groupConfig = buildThroughputControlGroupConfig(key);
+            if (type.equalsIgnoreCase(FLAG_TYPE_GLOBAL)) {
+                target.enableGlobalThroughputControlGroup(
+                        groupConfig, GLOBAL_CONTAINER, globalRenewInterval(), globalExpireInterval());
+            } else {
+                target.enableLocalThroughputControlGroup(groupConfig);
+            }
+            String groupName = groupConfig.getGroupName();
+            BulkBatchExecutor executor =
+                    new BulkBatchExecutor(target, groupName, batchSize, slots, metricsRegistry.getGroup(groupName));
+            executor.setFairShare(fairShare, target.getName());
+            targets.add(target);
+            executors.add(executor);
+            targetBatters.add(entry.getValue());
+            logger.warn("loadFanOut - target: " + target.getName() + ", group: " + groupName + ", batters: " + entry.getValue().size());
+        }
+
+        logger.warn("starting loadFanOut, targets: " + targets.size() + ", slots: " + slots);
+        long start = System.currentTimeMillis();
+        Date startDate = new Date();
+        Long count = Flux.range(0, targets.size())
+                .flatMap(i -> executors.get(i).executeAsync(buildBatterBulkUpsertOperations(targetBatters.get(i))))
+                .reduce(0L, Long::sum)
+                .block();
+        fairShare.logReport();
+        logBulkOperationsCompleted(start, startDate, count == null ? 0 : count);
+        for (LoadTarget target : targets) {
+            target.logReport();
+        }
+    }
 
-        GlobalThroughputControlConfig globalControlConfig =
-                client.createGlobalThroughputControlConfigBuilder(database.getId(), GLOBAL_CONTAINER)
-                        .setControlItemRenewInterval(Duration.ofSeconds(5))
-                        .setControlItemExpireInterval(Duration.ofSeconds(20))
-                        .build();
-        container.enableGlobalThroughputControlGroup(groupConfig, globalControlConfig);
+    /**
+     * Create the given fan-out database and container if necessary, with the partition key
+     * paths of the --pk strategy and, for a new container outside a shared throughput database,
+     * the default throughput.
+     */
+    private static void createFanOutContainer(CosmosAsyncClient client, String dbname, String cname) {
+
+        logger.warn("createFanOutContainer - " + dbname + "/" + cname);
+        client.createDatabaseIfNotExists(dbname).block();
+        CosmosContainerProperties properties =
+                new CosmosContainerProperties(cname, partitionKeyStrategy.buildPartitionKeyDefinition());
+        client.getDatabase(dbname).createContainerIfNotExists(properties).block();
+    }
 
+    /**
+     * Load the filtered batters through several concurrent lanes of a client-side RuScheduler,
+     * per the --lanes and --target-ru args.  The batters are dealt round-robin to the lanes.
+     */
+    private static void loadCosmosScheduledLanes(LoadTarget target, String team, int batchSize) {
+
+        List<ThroughputLane> lanes = ThroughputLane.parseLanes(getFlagValue(FLAG_LANES, ""));
+        int targetRu = getIntFlagValue(FLAG_TARGET_RU, 1000);
+        RuScheduler scheduler = new RuScheduler(targetRu, lanes);
+        for (ThroughputLane lane : lanes) {
+            target.enableLocalThroughputControlGroup(lane.buildThroughputControlGroupConfig());
+        }
+
+        List<BaseballBatter> batters = readFilterBatters(team);
+        if (hasFlag(FLAG_PARTITION_KEY_REPORT)) {
+            logPartitionKeyReport(partitionKeyStrategy, batters);
+        }
         List<CosmosItemOperation> operations = buildBatterBulkUpsertOperations(batters);
-        executeBulkOperations(operations, container, groupConfig.getGroupName(), batchSize);
+        List<List<CosmosItemOperation>> laneOperations = new ArrayList<>();
+        for (int i = 0; i < lanes.size(); i++) {
+            laneOperations.add(new ArrayList<>());
+        }
+        for (int i = 0; i < operations.size(); i++) {
+            laneOperations.get(i % lanes.size()).add(operations.get(i));
+        }
+
+        logger.warn("starting loadCosmosScheduledLanes, lanes: " + lanes.size() + ", target RU/s: " + targetRu);
+        long start = System.currentTimeMillis();
+        Date startDate = new Date();
+        scheduler.start();
+        Long count = Flux.range(0, lanes.size())
+                .flatMap(i -> {
+                    String laneName = lanes.get(i).getName();
+                    BulkBatchExecutor executor = buildBulkBatchExecutor(target, laneName, batchSize);
+                    executor.setScheduler(scheduler, laneName);
+                    return executor.executeAsync(laneOperations.get(i));
+                })
+                .reduce(0L, Long::sum)
+                .block();
+        scheduler.stop();
+        scheduler.logReport();
+        logBulkOperationsCompleted(start, startDate, count == null ? 0 : count);
+    }
+
+    /**
+     * Run the scenarios of the given SuiteConfig JSON file against one target, and so one client.
+     * The CSV file is read once; each scenario gets its own operations and throughput control group.
+     */
+    private static void runSuite(String configFile) {
+
+        SuiteConfig config;
+        try {
+            config = SuiteConfig.read(configFile);
+        } catch (Exception e) {
+            logger.fatal("unable to read suite config file " + configFile + ": " + e.getMessage());
+            return;
+        }
+        String type = config.hasGlobalScenario() ? FLAG_TYPE_GLOBAL : FLAG_TYPE_LOCAL;
+        LoadTarget target = buildLoadTarget(config.getDatabase(), config.getContainer(), type);
+        List<BaseballBatter> batters = readFilterBatters(config.getTeam());
+        if (hasFlag(FLAG_PARTITION_KEY_REPORT)) {
+            logPartitionKeyReport(partitionKeyStrategy, batters);
+        }
+
+        SuiteRunner runner = new SuiteRunner(
+                target, config, GLOBAL_CONTAINER, () -> buildBatterBulkUpsertOperations(batters), metricsRegistry);
+        List<ScenarioRun> runs = runner.run();
+        for (ScenarioRun run : runs) {
+            logger.warn("suite - scenario: " + run.getName() + ", operations: " + run.getOperationCount()
+                    + ", ms: " + run.getElapsedMs());
+            logger.warn("metrics - " + run.getMetrics().summary(run.getElapsedMs()));
+            logger.warn("kql: " + gmtTimeGeneratedKql(run.getStartDate(), run.getFinishDate()));
+        }
+        target.logReport();
+        logCommandLineArgs();
+    }
+
+    /**
+     * Run the high and low priority workload classes of the given contention experiment config
+     * file concurrently, against one container and one client, and write their time series.
+     */
+    private static void runContentionExperiment(String configFile) {
+
+        ContentionConfig config;
+        try {
+            config = ContentionConfig.read(configFile);
+        } catch (Exception e) {
+            logger.fatal("unable to read contention config file " + configFile + ": " + e.getMessage());
+            return;
+        }
+        String type = config.hasGlobalClass() ? FLAG_TYPE_GLOBAL : FLAG_TYPE_LOCAL;
+        LoadTarget target = buildLoadTarget(config.getDatabase(), config.getContainer(), type);
+        List<BaseballBatter> batters = readFilterBatters(config.getTeam());
+
+        ContentionExperiment experiment = new ContentionExperiment(
+                target, config, GLOBAL_CONTAINER, () -> buildBatterBulkUpsertOperations(batters), metricsRegistry);
+        List<ScenarioRun> runs = experiment.run();
+        for (ScenarioRun run : runs) {
+            logger.warn("metrics - " + run.getMetrics().summary(run.getElapsedMs()));
+        }
+        if (!runs.isEmpty()) {
+            logger.warn("kql: " + gmtTimeGeneratedKql(runs.get(0).getStartDate(), runs.get(0).getFinishDate()));
+        }
+        logger.warn("contention - time series written to " + config.getCsvFile());
+        target.logReport();
+        logCommandLineArgs();
+    }
+
+    /**
+     * Run the read, query and write classes of the given workload config file at the same time,
+     * against one container and one client, after upserting the batters if it preloads them.
+     */
+    private static void runWorkload(String configFile) {
+
+        WorkloadConfig config;
+        try {
+            config = WorkloadConfig.read(configFile);
+        } catch (Exception e) {
+            logger.fatal("unable to read workload config file " + configFile + ": " + e.getMessage());
+            return;
+        }
+        String type = config.hasGlobalClass() ? FLAG_TYPE_GLOBAL : FLAG_TYPE_LOCAL;
+        LoadTarget target = buildLoadTarget(config.getDatabase(), config.getContainer(), type);
+        List<BaseballBatter> batters = readFilterBatters(config.getTeam());
+
+        WorkloadRunner runner = new WorkloadRunner(target, config, GLOBAL_CONTAINER, batters, partitionKeyStrategy,
+                () -> buildBatterBulkUpsertOperations(batters), metricsRegistry);
+        List<ScenarioRun> runs = runner.run();
+        if (!runs.isEmpty()) {
+            logger.warn("kql: " + gmtTimeGeneratedKql(runs.get(0).getStartDate(), runs.get(0).getFinishDate()));
+        }
+        target.logReport();
+        logCommandLineArgs();
+    }
+
+    /**
+     * Run the client waves of the given global coordination config file; each client is a new
+     * CosmosAsyncClient or, with --simulate, a new client of one simulated container, and all
+     * of them share one global throughput control group.
+     */
+    private static void runGlobalCoordinationBenchmark(String configFile) {
+
+        GlobalCoordinationConfig config;
+        try {
+            config = GlobalCoordinationConfig.read(configFile);
+        } catch (Exception e) {
+            logger.fatal("unable to read global coordination config file " + configFile + ": " + e.getMessage());
+            return;
+        }
+        Function<String, LoadTarget> clientFactory;
+        if (hasFlag(FLAG_SIMULATE)) {
+            SimulatedLoadTarget container = new SimulatedLoadTarget(config.getContainer(), buildSimulatorConfig());
+            clientFactory = container::newClient;
+        } else {
+            clientFactory = clientName ->
+                    buildLoadTarget(buildAsyncClient(), config.getDatabase(), config.getContainer(), FLAG_TYPE_GLOBAL);
+        }
+        List<BaseballBatter> batters = readFilterBatters(config.getTeam());
+
+        GlobalCoordinationBenchmark benchmark = new GlobalCoordinationBenchmark(
+                config, clientFactory, GLOBAL_CONTAINER, () -> buildBatterBulkUpsertOperations(batters), metricsRegistry);
+        Date startDate = new Date();
+        benchmark.run();
+        metricsRegistry.logReport(config.getDurationSeconds() * 1000L);
+        logger.warn("kql: " + gmtTimeGeneratedKql(startDate, new Date()));
+        logger.warn("global_coordination - time series written to " + config.getCsvFile());
+        logCommandLineArgs();
+    }
+
+    /**
+     * Load the filtered batters into the given target, either with the default
+     * read-everything-then-batch approach or, with --stream, as one backpressured Flux pipeline.
+     * With --synthetic, the given number of synthetic batters are streamed instead.
+     * With --delta, only the batters that are new or changed since the last --delta load are
+     * upserted; see openDeltaLoad.  With --enrich, the batters' players are embedded in their
+     * documents first; see readPeopleDictionary.
+     */
+    private static void loadBatters(LoadTarget target, String groupName, String team, int batchSize) {
+
+        peopleDictionary = readPeopleDictionary();
+        deltaLoad = openDeltaLoad(target);
+        if (hasFlag(FLAG_SYNTHETIC)) {
+            if (hasFlag(FLAG_CHECKPOINT) || hasFlag(FLAG_RESUME) || hasFlag(FLAG_PARTITION_KEY_REPORT)) {
+                logger.error("loadBatters - --checkpoint, --resume and --pk-report are not supported with --synthetic, ignored");
+            }
+            Flux<CosmosItemOperation> operations =
+                    buildBatterBulkUpsertOperations(filterUnchangedBatters(enrichBatters(streamSyntheticBatters(team))));
+            executeBulkOperations(withDeleteOperations(operations), target, groupName, batchSize);
+        } else if (hasFlag(FLAG_STREAM)) {
+            if (hasFlag(FLAG_CHECKPOINT) || hasFlag(FLAG_RESUME)) {
+                logger.error("loadBatters - --checkpoint and --resume are not supported with --stream, ignored");
+            }
+            if (hasFlag(FLAG_PARTITION_KEY_REPORT)) {
+                logPartitionKeyReport(partitionKeyStrategy, readFilterBatters(team));  // an extra pass over the file
+            }
+            Flux<CosmosItemOperation> operations =
+                    buildBatterBulkUpsertOperations(filterUnchangedBatters(enrichBatters(streamFilterBatters(getBattersCsvFile(), team))));
+            executeBulkOperations(withDeleteOperations(operations), target, groupName, batchSize);
+        } else {
+            List<BaseballBatter> batters = readFilterBatters(team);
+            if (hasFlag(FLAG_PARTITION_KEY_REPORT)) {
+                logPartitionKeyReport(partitionKeyStrategy, batters);
+            }
+            List<CosmosItemOperation> operations = buildBatterBulkUpsertOperations(filterUnchangedBatters(enrichBatters(batters)));
+            if (deltaLoad != null) {
+                operations = new ArrayList<>(operations);
+                operations.addAll(deltaLoad.deleteOperations());
+            }
+            executeBulkOperations(operations, target, groupName, batchSize);
+        }
+        commitDeltaLoad();
+        if (peopleDictionary != null) {
+            logger.warn(peopleDictionary.summary());
+            peopleDictionary = null;
+        }
+    }
+
+    /**
+     * Return the dictionary of the players of --people-csv, default the People.csv of this repo,
+     * per --enrich, or null; each document embeds the --enrich-fields of its player, default
+     * nameFirst,nameLast,bats,throws,birthYear.  If the file can't be read, nothing is embedded.
+     */
+    private static PeopleDictionary readPeopleDictionary() {
+
+        if (!hasFlag(FLAG_ENRICH)) {
+            return null;
+        }
+        String file = getFlagValue(FLAG_PEOPLE_CSV_FILE, BASEBALL_PEOPLE_CSV_FILE);
+        try {
+            return PeopleDictionary.read(file, getFlagValue(FLAG_ENRICH_FIELDS, PeopleDictionary.DEFAULT_FIELDS));
+        } catch (IOException e) {
+            logger.error("readPeopleDictionary - not enriching, unable to read " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static List<BaseballBatter> enrichBatters(List<BaseballBatter> batters) {
+
+        if (peopleDictionary != null) {
+            for (int i = 0; i < batters.size(); i++) {
+                peopleDictionary.enrich(batters.get(i));
+            }
+            logger.warn("enrichBatters - " + peopleDictionary.summary());
+        }
+        return batters;
+    }
+
+    private static Flux<BaseballBatter> enrichBatters(Flux<BaseballBatter> batters) {
+
+        if (peopleDictionary == null) {
+            return batters;
+        }
+        PeopleDictionary dictionary = peopleDictionary;
+        return batters.map(dictionary::enrich);
+    }
+
+    /**
+     * Return the DeltaLoad of the given target per --delta, or null for a full load.  The digest
+     * index of the last load is --delta-index, default tmp/<db>-<container>.digest; with
+     * --delta-deletes the documents no longer in the source are deleted.  The digests are of
+     * the --shape documents, and a load in another shape than the last rewrites every document.
+     */
+    private static DeltaLoad openDeltaLoad(LoadTarget target) {
+
+        if (!hasFlag(FLAG_DELTA)) {
+            return null;
+        }
+        String defaultFile = "tmp/" + target.getName().replace('/', '-') + ".digest";
+        return DeltaLoad.open(getFlagValue(FLAG_DELTA_INDEX, defaultFile), hasFlag(FLAG_DELTA_DELETES),
+                documentShape == null ? DocumentShape.full() : documentShape);
+    }
+
+    private static List<BaseballBatter> filterUnchangedBatters(List<BaseballBatter> batters) {
+
+        if (deltaLoad == null) {
+            return batters;
+        }
+        List<BaseballBatter> changed = new ArrayList<>();
+        for (int i = 0; i < batters.size(); i++) {
+            BaseballBatter bb = batters.get(i);
+            if (deltaLoad.accept(bb, partitionKeyStrategy.partitionKey(bb))) {
+                changed.add(bb);
+            }
+        }
+        logger.warn("filterUnchangedBatters - " + deltaLoad.summary());
+        return changed;
+    }
+
+    private static Flux<BaseballBatter> filterUnchangedBatters(Flux<BaseballBatter> batters) {
+
+        if (deltaLoad == null) {
+            return batters;
+        }
+        DeltaLoad delta = deltaLoad;
+        return batters.filter(bb -> delta.accept(bb, partitionKeyStrategy.partitionKey(bb)));
+    }
+
+    /**
+     * Return the given operations followed, with --delta-deletes, by the deletes of the documents
+     * no longer in the source, which are known once the last batter has been accepted.
+     */
+    private static Flux<CosmosItemOperation> withDeleteOperations(Flux<CosmosItemOperation> operations) {
+
+        if (deltaLoad == null) {
+            return operations;
+        }
+        DeltaLoad delta = deltaLoad;
+        return operations.concatWith(Flux.defer(() -> Flux.fromIterable(delta.deleteOperations())));
+    }
+
+    private static void commitDeltaLoad() {
+
+        if (deltaLoad == null) {
+            return;
+        }
+        logger.warn(deltaLoad.summary());
+        try {
+            deltaLoad.commit();
+        } catch (IOException e) {
+            logger.error("commitDeltaLoad - index not written, the next load sends these changes again: " + e.getMessage());
+        }
+        deltaLoad = null;
+    }
+
+    /**
+     * Log a PartitionKeyReport for each of the given comma-separated --pk specs, without loading
+     * anything, so that the strategies can be compared on the same filtered batters.
+     */
+    private static void logPartitionKeyReports(String team, String specs) {
+
+        List<BaseballBatter> batters = readFilterBatters(team);
+        String[] tokens = specs.split("[,]", 0);
+        for (int i = 0; i < tokens.length; i++) {
+            PartitionKeyStrategy strategy = PartitionKeyStrategy.parse(tokens[i]);
+            for (int b = 0; b < batters.size(); b++) {
+                strategy.assign(batters.get(b));
+            }
+            logPartitionKeyReport(strategy, batters);
+        }
+    }
+
+    /**
+     * Log how the given strategy spreads the given batters, with pk already assigned, across
+     * logical partitions and --pk-ranges (or --sim-partitions) partition key ranges.
+     */
+    private static void logPartitionKeyReport(PartitionKeyStrategy strategy, List<BaseballBatter> batters) {
+
+        int rangeCount = getIntFlagValue(FLAG_PARTITION_KEY_RANGES, getIntFlagValue(FLAG_SIM_PARTITIONS, 1));
+        PartitionKeyReport report = new PartitionKeyReport(strategy, buildSimulatorConfig(), rangeCount);
+        report.addAll(batters);
+        report.logReport();
     }
 
     /**
@@ -123,49 +945,156 @@ public class App {
                 .buildAsyncClient();
     }
 
-    private static List<CosmosItemOperation> buildBatterBulkUpsertOperations(List<BaseballBatter> batters) {
+    static List<CosmosItemOperation> buildBatterBulkUpsertOperations(List<BaseballBatter> batters) {
+        if (preSerialize || documentShape != null) {
+            return buildBatterPayloadUpsertOperations(batters);
+        }
         List<CosmosItemOperation> operations = new ArrayList<>();
         for (int i = 0; i < batters.size(); i++) {
             BaseballBatter bb = batters.get(i);
-            operations.add(CosmosBulkOperations.getUpsertItemOperation(bb, new PartitionKey(bb.getPk())));
+            operations.add(CosmosBulkOperations.getUpsertItemOperation(bb, partitionKeyStrategy.partitionKey(bb)));
         }
         return operations;
     }
 
     /**
-     * Execute the given bulk operations on the given container.  Return the elapsed MS.
+     * Return upsert operations whose items are the batters pre-serialized by a BatterJsonWriter,
+     * per --preserialize or --shape, so the SDK doesn't serialize them through reflection during the load.
+     */
+    static List<CosmosItemOperation> buildBatterPayloadUpsertOperations(List<BaseballBatter> batters) {
+        BatterJsonWriter writer = buildBatterJsonWriter();
+        List<CosmosItemOperation> operations = new ArrayList<>();
+        for (int i = 0; i < batters.size(); i++) {
+            BaseballBatter bb = batters.get(i);
+            PartitionKey pk = partitionKeyStrategy.partitionKey(bb);
+            operations.add(CosmosBulkOperations.getUpsertItemOperation(writer.write(bb).asItem(), pk));
+        }
+        writer.logSummary();
+        return operations;
+    }
+
+    private static Flux<CosmosItemOperation> buildBatterBulkUpsertOperations(Flux<BaseballBatter> batters) {
+        if (preSerialize || documentShape != null) {
+            return Flux.defer(() -> {
+                BatterJsonWriter writer = buildBatterJsonWriter();
+                return batters
+                        .map(bb -> CosmosBulkOperations.getUpsertItemOperation(
+                                writer.write(bb).asItem(), partitionKeyStrategy.partitionKey(bb)))
+                        .doOnComplete(writer::logSummary);
+            });
+        }
+        return batters.map(bb -> CosmosBulkOperations.getUpsertItemOperation(bb, partitionKeyStrategy.partitionKey(bb)));
+    }
+
+    private static BatterJsonWriter buildBatterJsonWriter() {
+
+        return documentShape == null ? new BatterJsonWriter() : new BatterJsonWriter(documentShape);
+    }
+
+    /**
+     * Execute the given bulk operations on the given target.  Return the elapsed MS.
+     * With --checkpoint or --resume, progress is saved to a LoadCheckpoint file every
+     * --checkpoint-interval seconds, and with --resume only the operations not acknowledged
+     * by an earlier, interrupted load, and its failures, are executed.
      */
     private static long executeBulkOperations(
-            List<CosmosItemOperation> allOperations, CosmosAsyncContainer container, String groupName, int batchSize) {
+            List<CosmosItemOperation> allOperations, LoadTarget target, String groupName, int batchSize) {
 
         logger.warn("starting executeBulkOperations, operation count: " + allOperations.size());
+        if (hasFlag(FLAG_POINT)) {
+            if (hasFlag(FLAG_CHECKPOINT) || hasFlag(FLAG_RESUME) || hasFlag(FLAG_ADAPTIVE)) {
+                logger.error("executeBulkOperations - --checkpoint, --resume and --adaptive are not supported with --point, ignored");
+            }
+            long start = System.currentTimeMillis();
+            Date startDate = new Date();
+            long count = buildPointOperationExecutor(target, groupName).execute(allOperations);
+            return logBulkOperationsCompleted(start, startDate, count);
+        }
+        BulkBatchExecutor executor = buildBulkBatchExecutor(target, groupName, batchSize);
+        LoadCheckpoint checkpoint = null;
+        List<CosmosItemOperation> operations = allOperations;
+        if (hasFlag(FLAG_CHECKPOINT) || hasFlag(FLAG_RESUME)) {
+            String defaultFile = "tmp/" + target.getName().replace('/', '-') + ".checkpoint.json";
+            checkpoint = LoadCheckpoint.open(getFlagValue(FLAG_CHECKPOINT, defaultFile), allOperations, hasFlag(FLAG_RESUME));
+            operations = checkpoint.remaining(allOperations);
+            executor.setCheckpoint(checkpoint);
+            checkpoint.start(Duration.ofSeconds(getIntFlagValue(FLAG_CHECKPOINT_INTERVAL, 5)));
+        }
+        long start = System.currentTimeMillis();
+        Date startDate = new Date();
+        long count;
+        try {
+            count = executor.execute(operations);
+        } finally {
+            if (checkpoint != null) {
+                checkpoint.stop();
+                logger.warn(checkpoint.summary());
+            }
+        }
+        return logBulkOperationsCompleted(start, startDate, count);
+    }
+
+    /**
+     * Execute the given stream of bulk operations on the given target.  Reading, parsing and
+     * writing overlap, and the source is pulled only as fast as batches are admitted.
+     * Return the elapsed MS.
+     */
+    private static long executeBulkOperations(
+            Flux<CosmosItemOperation> operations, LoadTarget target, String groupName, int batchSize) {
+
+        logger.warn("starting executeBulkOperations, streaming");
         long start = System.currentTimeMillis();
         Date startDate = new Date();
-        boolean continueToProcess = true;
-        int batchIndex = -1;
+        long count;
+        if (hasFlag(FLAG_POINT)) {
+            count = buildPointOperationExecutor(target, groupName).execute(operations);
+        } else {
+            count = buildBulkBatchExecutor(target, groupName, batchSize).execute(operations);
+        }
+        return logBulkOperationsCompleted(start, startDate, count);
+    }
 
-        while (continueToProcess) {
-            // Execute the bulk load in smaller batches so as to take advantage of throughput control
-            batchIndex++;
-            ArrayList<CosmosItemOperation> nextBatch = getNextBatch(allOperations, batchSize, batchIndex);
+    /**
+     * Return an executor with the batchSize arg and --concurrency; with --adaptive these are only the
+     * starting values, adapted up to --max-batch and --max-concurrency per the observed 429s, latency
+     * and RU/s relative to the throughput control group's target.
+     */
+    private static BulkBatchExecutor buildBulkBatchExecutor(LoadTarget target, String groupName, int batchSize) {
+        int concurrency = getIntFlagValue(FLAG_CONCURRENCY, 1);
+        BulkBatchExecutor executor =
+                new BulkBatchExecutor(target, groupName, batchSize, concurrency, metricsRegistry.getGroup(groupName));
+        if (deltaLoad != null) {
+            executor.setResultListener(deltaLoad::recordResult);
+        }
+        if (hasFlag(FLAG_ADAPTIVE)) {
+            executor.setAdaptiveController(new AdaptiveBatchController(
+                    batchSize,
+                    concurrency,
+                    getIntFlagValue(FLAG_MAX_BATCH_SIZE, 500),
+                    getIntFlagValue(FLAG_MAX_CONCURRENCY, 16),
+                    target.getTargetThroughput(groupName)));
+        }
+        return executor;
+    }
 
-            if (nextBatch.size() < 1) {
-                continueToProcess = false;
-            } else {
-                logger.warn("executeBulkOperations - executing batchIndex: " + batchIndex + " with " + nextBatch.size() + " operations in group " + groupName);
-                CosmosBulkExecutionOptions opts = new CosmosBulkExecutionOptions();
-                opts.setThroughputControlGroupName(groupName);
-                CosmosBulkOperationResponse<Object> resp =
-                        container.executeBulkOperations(Flux.fromIterable(nextBatch), opts).blockLast();
-            }
-            if (batchIndex > 10000) {
-                continueToProcess = false; // terminate a runaway loop
-            }
+    /**
+     * Return a point operation executor, per --point, with --concurrency operations in flight, default 64.
+     */
+    private static PointOperationExecutor buildPointOperationExecutor(LoadTarget target, String groupName) {
+        PointOperationExecutor executor = new PointOperationExecutor(
+                target, groupName, getIntFlagValue(FLAG_CONCURRENCY, 64), metricsRegistry.getGroup(groupName));
+        if (deltaLoad != null) {
+            executor.setResultListener(deltaLoad::recordResult);
         }
+        return executor;
+    }
+
+    private static long logBulkOperationsCompleted(long start, Date startDate, long count) {
         long finish = System.currentTimeMillis();
         Date finishDate = new Date();
         long elapsed = finish - start;
-        logger.warn("completed executeBulkOperations in " + elapsed);
+        logger.warn("completed executeBulkOperations in " + elapsed + ", operation count: " + count);
+        metricsRegistry.logReport(elapsed);
         logger.warn("kql: " + gmtTimeGeneratedKql(startDate, finishDate));
         logCommandLineArgs();
         return elapsed;
@@ -176,6 +1105,15 @@ public class App {
      */
     private static ThroughputControlGroupConfig buildThroughputControlGroupConfig() {
 
+        return buildThroughputControlGroupConfig(null);
+    }
+
+    /**
+     * Build and return a ThroughputControlGroupConfig per command-line arguments, with the given
+     * suffix, if not null, appended to the group name so that several targets have distinct groups.
+     */
+    private static ThroughputControlGroupConfig buildThroughputControlGroupConfig(String groupNameSuffix) {
+
         // set these per the command-line args in order to create the appropriate ThroughputControlGroupConfig
         String groupName = "default";
         int requestUnits = 0;
@@ -210,6 +1148,10 @@ public class App {
             }
         }
 
+        if (groupNameSuffix != null) {
+            groupName = groupName + "-" + groupNameSuffix;
+        }
+
         // Next, create and return the appropriate ThroughputControlGroupConfig based on the command-line args
 
         if (priorityLow) {
@@ -243,26 +1185,11 @@ public class App {
 
         logger.error("buildThroughputControlGroupConfig - defaulting to low priority instance");
         return new ThroughputControlGroupConfigBuilder()
-                .groupName("low")
+                .groupName(groupNameSuffix == null ? "low" : "low-" + groupNameSuffix)
                 .priorityLevel(PriorityLevel.LOW)
                 .build();
     }
 
-    private static ArrayList<CosmosItemOperation> getNextBatch(List<CosmosItemOperation> allOperations, int batchSize, int batchIndex) {
-        ArrayList<CosmosItemOperation> thisBatch = new ArrayList<CosmosItemOperation>();
-        int minIndex = batchIndex * batchSize;
-        int maxIndex = minIndex + batchSize;
-        // TODO - check this logic for off-by-one errors
-        for (int i = 0; i < allOperations.size(); i++) {
-            if (i >= minIndex) {
-                if (i < maxIndex) {
-                    thisBatch.add(allOperations.get(i));
-                }
-            }
-        }
-        return thisBatch;
-    }
-
     // ========== Cosmos DB methods above, others below ==========
 
     private static void setCommandLineArgs(String[] args) {
@@ -276,6 +1203,57 @@ public class App {
         }
     }
 
+    private static boolean hasFlag(String flag) {
+        for (int i = 0; i < commandLineArgs.length; i++) {
+            if (commandLineArgs[i].equalsIgnoreCase(flag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String getFlagValue(String flag, String defaultValue) {
+        for (int i = 0; i < commandLineArgs.length - 1; i++) {
+            if (commandLineArgs[i].equalsIgnoreCase(flag)) {
+                return commandLineArgs[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+
+    private static int getIntFlagValue(String flag, int defaultValue) {
+        for (int i = 0; i < commandLineArgs.length - 1; i++) {
+            if (commandLineArgs[i].equalsIgnoreCase(flag)) {
+                try {
+                    return Integer.parseInt(commandLineArgs[i + 1]);
+                } catch (NumberFormatException e) {
+                    logger.error("getIntFlagValue - error processing arg: " + flag);
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * The Batting.csv file in this repo, unless another file is given with --csv.
+     */
+    private static String getBattersCsvFile() {
+        return getFlagValue(FLAG_CSV_FILE, BASEBALL_BATTERS_CSV_FILE);
+    }
+
+    private static double getDoubleFlagValue(String flag, double defaultValue) {
+        for (int i = 0; i < commandLineArgs.length - 1; i++) {
+            if (commandLineArgs[i].equalsIgnoreCase(flag)) {
+                try {
+                    return Double.parseDouble(commandLineArgs[i + 1]);
+                } catch (NumberFormatException e) {
+                    logger.error("getDoubleFlagValue - error processing arg: " + flag);
+                }
+            }
+        }
+        return defaultValue;
+    }
+
     private static String getTestType(String arg) {
         if (arg.equalsIgnoreCase(FLAG_TYPE_LOCAL)) {
             return FLAG_TYPE_LOCAL;
@@ -302,10 +1280,89 @@ public class App {
     }
 
     private static List<BaseballBatter> readFilterBatters(String team) {
+        if (hasFlag(FLAG_CACHE)) {
+            return readFilterCachedBatters(team);
+        }
         List<BaseballBatter> batters = readBaseballBatters();
         return filterBatters(batters, team);
     }
 
+    /**
+     * Return the filtered batters from the column cache of the input CSV file in --cache-dir,
+     * building the cache first if it is missing or stale.  The filter is applied to the cached
+     * columns, and only the selected batters are materialized.
+     */
+    private static List<BaseballBatter> readFilterCachedBatters(String team) {
+        try {
+            long start = System.currentTimeMillis();
+            BatterColumnCache cache = new BatterColumnCache(getFlagValue(FLAG_CACHE_DIR, "tmp"));
+            BatterColumns columns = cache.readOrBuild(getBattersCsvFile(), App::readBaseballBatters);
+            List<BaseballBatter> batters = columns.toBatters(columns.select(team, FILTER_MIN_YEAR, FILTER_MIN_GAMES));
+            for (int i = 0; i < batters.size(); i++) {
+                partitionKeyStrategy.assign(batters.get(i));
+            }
+            logger.warn("readFilterCachedBatters - rows: " + columns.size() + ", selected: " + batters.size()
+                    + ", ms: " + (System.currentTimeMillis() - start));
+            return batters;
+        } catch (IOException e) {
+            logger.error("readFilterCachedBatters - cache unavailable, reading " + getBattersCsvFile() + ": " + e.getMessage());
+            return filterBatters(readBaseballBatters(), team);
+        }
+    }
+
+    /**
+     * Lazily read, parse and filter the given Batting.csv file.  Lines are read one at a time
+     * as downstream demand arrives, so memory use does not depend on the size of the input file.
+     */
+    static Flux<BaseballBatter> streamFilterBatters(String csvFile, String team) {
+        FileUtil fu = new FileUtil();
+        return Flux.using(
+                () -> fu.openReader(csvFile),
+                reader -> {
+                    BatterCsvParser parser = new BatterCsvParser(readHeaderFields(reader));
+                    return Flux.fromStream(reader.lines())
+                            .map(line -> parser.parse(line.trim()))
+                            .filter(bb -> bb.isValid())
+                            .doOnNext(bb -> partitionKeyStrategy.assign(bb))
+                            .filter(bb -> isFilteredBatter(bb, team));
+                },
+                reader -> {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        logger.error("unable to close input file " + csvFile);
+                    }
+                });
+    }
+
+    /**
+     * Return a Flux of --synthetic N batters, sampled from a model fitted to the filtered batters
+     * of the input CSV file, over --synthetic-players playerIDs (default N / 10), seeded with
+     * --synthetic-seed, and generated on a thread per processor.
+     */
+    private static Flux<BaseballBatter> streamSyntheticBatters(String team) {
+
+        long count = Long.parseLong(getFlagValue(FLAG_SYNTHETIC, "1000000"));
+        int players = getIntFlagValue(FLAG_SYNTHETIC_PLAYERS, (int) Math.min(Integer.MAX_VALUE, Math.max(1, count / 10)));
+        int seed = getIntFlagValue(FLAG_SYNTHETIC_SEED, 42);
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        BatterStatsModel model = BatterStatsModel.fit(readFilterBatters(team));
+        return new SyntheticBatterGenerator(model, count, players, seed, parallelism).stream()
+                .doOnNext(bb -> partitionKeyStrategy.assign(bb));
+    }
+
+    private static String[] readHeaderFields(BufferedReader reader) {
+        try {
+            String header = reader.readLine();
+            if (header == null) {
+                return new String[0];
+            }
+            return BatterCsvParser.parseHeader(header);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Read the Batting.csv file in this repo and return a corresponding List of BaseballBatter objects.
      */
@@ -313,31 +1370,30 @@ public class App {
         ObjectMapper mapper = new ObjectMapper();
         List<BaseballBatter> batters = new ArrayList<BaseballBatter>();
         try {
-            FileUtil fu = new FileUtil();
-            List<String> lines = fu.readLines(BASEBALL_BATTERS_CSV_FILE);
-            logger.warn("input file read; lines: " + lines.size());
-            String[] headerFields = null;
-
-            for (int i = 0; i < lines.size(); i++) {
-                String line = lines.get(i);
-                if (i == 0) {
-                    headerFields = line.split("[,]", 0);
-                    System.out.println(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(headerFields));
-                    // [ "playerID", "yearID", "stint", "teamID", "lgID", "G", "AB", "R", "H", "2B", "3B", "HR", "RBI", "SB", "CS", "BB", "SO", "IBB", "HBP", "SH", "SF", "GIDP" ]
-                } else {
-                    BaseballBatter bb = new BaseballBatter(headerFields, line);
+            BatterCsvReader reader = new BatterCsvReader();
+            if (hasFlag(FLAG_PARALLEL_READ)) {
+                int parallelism = getIntFlagValue(FLAG_PARALLEL_READ, Runtime.getRuntime().availableProcessors());
+                List<BaseballBatter> parsed = reader.readParallel(getBattersCsvFile(), FileUtil.DEFAULT_CHUNK_SIZE, parallelism);
+                for (int i = 0; i < parsed.size(); i++) {
+                    BaseballBatter bb = parsed.get(i);
                     if (bb.isValid()) {
-                        bb.setPk("mlb");  // <-- for hot-partition test
+                        partitionKeyStrategy.assign(bb);
                         batters.add(bb);
-                        if (i < 4) {
-                            //logger.warn("csv line: " + line);
-                            //System.out.println(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(bb));
-                        }
                     }
                 }
+            } else {
+                reader.read(getBattersCsvFile(), bb -> {
+                    if (bb.isValid()) {
+                        partitionKeyStrategy.assign(bb);
+                        batters.add(bb);
+                    }
+                });
             }
+            logger.warn("input file read; lines: " + reader.getLineCount());
+            System.out.println(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(reader.getHeaderFields()));
+            // [ "playerID", "yearID", "stint", "teamID", "lgID", "G", "AB", "R", "H", "2B", "3B", "HR", "RBI", "SB", "CS", "BB", "SO", "IBB", "HBP", "SH", "SF", "GIDP" ]
         } catch (IOException e) {
-            logger.fatal("unable to read input file " + BASEBALL_BATTERS_CSV_FILE);
+            logger.fatal("unable to read input file " + getBattersCsvFile());
         }
         logger.warn("batters read: " + batters.size());
         return batters;
@@ -346,23 +1402,28 @@ public class App {
     /**
      * Filter the list of Batters.  Debut year > 1950 with a mininum number of games.
      */
-    private static List<BaseballBatter> filterBatters(List<BaseballBatter> batters, String team) {
+    static List<BaseballBatter> filterBatters(List<BaseballBatter> batters, String team) {
         logger.warn("filterBatters input size: " + batters.size());
         List<BaseballBatter> filtered = new ArrayList<BaseballBatter>();
         for (int i = 0; i < batters.size(); i++) {
             BaseballBatter bb = batters.get(i);
-            if ((team.equalsIgnoreCase("all") || (team.equalsIgnoreCase(bb.getTeamID())))) {
-                if (bb.getYear() >= 1950) {
-                    if (bb.getGames() > 10) {
-                        filtered.add(bb);
-                    }
-                }
+            if (isFilteredBatter(bb, team)) {
+                filtered.add(bb);
             }
         }
         logger.warn("filterBatters output size: " + filtered.size());
         return filtered;
     }
 
+    private static boolean isFilteredBatter(BaseballBatter bb, String team) {
+        if ((team.equalsIgnoreCase("all") || (team.equalsIgnoreCase(bb.getTeamID())))) {
+            if (bb.getYear() >= FILTER_MIN_YEAR) {
+                return bb.getGames() > FILTER_MIN_GAMES;
+            }
+        }
+        return false;
+    }
+
     private static String gmtTimeGeneratedKql(Date startDate, Date finishDate) {
         SimpleDateFormat sdf =
                 new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
@@ -0,0 +1,226 @@
+package org.cjoakim.cosmos.bulk;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * This class adapts the batch size and the number of batches in flight of a BulkBatchExecutor
+ * at runtime, AIMD-style.  Completed batches are aggregated into windows of about one second.
+ * When a window shows 429s, or per-operation latency well above the best seen (as when the
+ * SDK delays requests to stay within a throughput control group), the in-flight count is
+ * halved, or if already at the minimum, the batch size is halved.  Otherwise, while the
+ * consumed RU/s is below the group's target, the batch size grows additively up to its
+ * maximum, and then the in-flight count.
+ */
+
+public class AdaptiveBatchController {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(AdaptiveBatchController.class);
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    private static final int MIN_BATCH_SIZE = 5;
+    private static final int BATCH_SIZE_STEP = 10;
+    private static final double MAX_THROTTLE_RATE = 0.01;
+    private static final double LATENCY_FACTOR = 3.0;
+    private static final double BASELINE_DRIFT = 1.05;
+    private static final double TARGET_HEADROOM = 0.9;
+
+    // Instance variables
+    private int batchSize;
+    private int concurrency;
+    private int maxBatchSize;
+    private int maxConcurrency;
+    private double targetRuPerSecond;
+    private LongSupplier nanoClock;
+    private int inFlight = 0;
+    private Deque<MonoSink<Void>> waiting = new ArrayDeque<>();
+
+    // The current window
+    private long windowStart;
+    private long windowOperations = 0;
+    private long windowThrottles = 0;
+    private long windowLatencyMicros = 0;
+    private double windowRu = 0;
+
+    private double baselineOpMicros = Double.MAX_VALUE;
+    private int increases = 0;
+    private int decreases = 0;
+    private int minBatchSeen;
+    private int maxBatchSeen;
+    private int maxConcurrencySeen;
+
+    /**
+     * Start at the given batch size and concurrency; targetRuPerSecond is the RU/s of the
+     * throughput control group, or 0 if not known.
+     */
+    public AdaptiveBatchController(
+            int batchSize, int concurrency, int maxBatchSize, int maxConcurrency, double targetRuPerSecond) {
+        this(batchSize, concurrency, maxBatchSize, maxConcurrency, targetRuPerSecond, System::nanoTime);
+    }
+
+    AdaptiveBatchController(int batchSize, int concurrency, int maxBatchSize, int maxConcurrency,
+                            double targetRuPerSecond, LongSupplier nanoClock) {
+        super();
+        this.maxBatchSize = Math.max(MIN_BATCH_SIZE, maxBatchSize);
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.batchSize = Math.max(MIN_BATCH_SIZE, Math.min(batchSize, this.maxBatchSize));
+        this.concurrency = Math.max(1, Math.min(concurrency, this.maxConcurrency));
+        this.targetRuPerSecond = targetRuPerSecond;
+        this.nanoClock = nanoClock;
+        this.windowStart = nanoClock.getAsLong();
+        this.minBatchSeen = this.batchSize;
+        this.maxBatchSeen = this.batchSize;
+        this.maxConcurrencySeen = this.concurrency;
+    }
+
+    /**
+     * Return a Mono that completes once another batch may be in flight.  Call release()
+     * when the batch has completed, and only if the Mono completed; a cancelled acquire
+     * gives up its place in the queue, or its slot if one was granted but not delivered.
+     */
+    public Mono<Void> acquire() {
+
+        return Mono.create(sink -> {
+            boolean granted = false;
+            synchronized (this) {
+                if (inFlight < concurrency && waiting.isEmpty()) {
+                    inFlight++;
+                    granted = true;
+                } else {
+                    waiting.addLast(sink);
+                }
+            }
+            sink.onCancel(() -> withdraw(sink));
+            if (granted) {
+                sink.success();
+            }
+        });
+    }
+
+    private void withdraw(MonoSink<Void> sink) {
+
+        boolean granted;
+        synchronized (this) {
+            granted = !waiting.remove(sink);
+        }
+        if (granted) {
+            release();
+        }
+    }
+
+    public void release() {
+
+        List<MonoSink<Void>> granted = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            while (inFlight < concurrency && !waiting.isEmpty()) {
+                inFlight++;
+                granted.add(waiting.pollFirst());
+            }
+        }
+        granted.forEach(MonoSink::success);
+    }
+
+    /**
+     * Record a completed batch; throttles is the number of 429s, including those retried by the SDK.
+     */
+    public void recordBatch(int operations, long throttles, long latencyMicros, double requestCharge) {
+
+        synchronized (this) {
+            windowOperations += operations;
+            windowThrottles += throttles;
+            windowLatencyMicros += latencyMicros;
+            windowRu += requestCharge;
+            long now = nanoClock.getAsLong();
+            if (now - windowStart >= WINDOW_NANOS && windowOperations > 0) {
+                adjust(now);
+            }
+        }
+    }
+
+    private void adjust(long now) {
+
+        double seconds = (now - windowStart) / 1_000_000_000.0;
+        double throttleRate = (double) windowThrottles / windowOperations;
+        double opMicros = (double) windowLatencyMicros / windowOperations;
+        double ruPerSecond = windowRu / seconds;
+        baselineOpMicros = Math.min(opMicros, baselineOpMicros * BASELINE_DRIFT);
+
+        String reason = null;
+        if (throttleRate > MAX_THROTTLE_RATE) {
+            reason = String.format("429 rate %.3f", throttleRate);
+            decrease();
+        } else if (opMicros > baselineOpMicros * LATENCY_FACTOR) {
+            reason = String.format("op latency %.0fus vs baseline %.0fus", opMicros, baselineOpMicros);
+            decrease();
+        } else if (targetRuPerSecond > 0 && ruPerSecond >= targetRuPerSecond * TARGET_HEADROOM) {
+            reason = null;  // at the target; hold
+        } else if (increase()) {
+            reason = targetRuPerSecond > 0
+                    ? String.format("RU/s %.0f of target %.0f", ruPerSecond, targetRuPerSecond)
+                    : String.format("RU/s %.0f", ruPerSecond);
+        }
+        if (reason != null) {
+            logger.warn("adjust - batchSize: " + batchSize + ", concurrency: " + concurrency + ", " + reason);
+        }
+        windowStart = now;
+        windowOperations = 0;
+        windowThrottles = 0;
+        windowLatencyMicros = 0;
+        windowRu = 0;
+    }
+
+    private void decrease() {
+
+        if (concurrency > 1) {
+            concurrency = Math.max(1, concurrency / 2);
+        } else {
+            batchSize = Math.max(MIN_BATCH_SIZE, batchSize / 2);
+        }
+        decreases++;
+        minBatchSeen = Math.min(minBatchSeen, batchSize);
+    }
+
+    private boolean increase() {
+
+        if (batchSize < maxBatchSize) {
+            batchSize = Math.min(maxBatchSize, batchSize + BATCH_SIZE_STEP);
+        } else if (concurrency < maxConcurrency) {
+            concurrency++;
+        } else {
+            return false;
+        }
+        increases++;
+        maxBatchSeen = Math.max(maxBatchSeen, batchSize);
+        maxConcurrencySeen = Math.max(maxConcurrencySeen, concurrency);
+        return true;
+    }
+
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    public synchronized int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public synchronized String summary() {
+
+        return "batchSize: " + batchSize + " (" + minBatchSeen + ".." + maxBatchSeen + ")"
+                + ", concurrency: " + concurrency + " (max " + maxConcurrencySeen + ")"
+                + ", increases: " + increases + ", decreases: " + decreases
+                + ", target RU/s: " + targetRuPerSecond;
+    }
+}
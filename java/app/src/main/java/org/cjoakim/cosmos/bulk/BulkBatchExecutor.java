@@ -0,0 +1,282 @@
+package org.cjoakim.cosmos.bulk;
+
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.google.common.collect.Lists;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.json.JsonPayload;
+import org.cjoakim.cosmos.metrics.GroupMetrics;
+import org.cjoakim.cosmos.metrics.OperationResult;
+import org.cjoakim.cosmos.target.LoadTarget;
+import org.cjoakim.cosmos.throughput.FairShareScheduler;
+import org.cjoakim.cosmos.throughput.RuPermit;
+import org.cjoakim.cosmos.throughput.RuScheduler;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple3;
+import reactor.util.function.Tuples;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * This class executes bulk operations against a LoadTarget in batches of a given size,
+ * keeping up to 'concurrency' batches in flight at the same time.  Every batch is
+ * tagged with the throughput control group name, so the SDK still shapes the load.
+ * Every operation response is recorded in the GroupMetrics for that group.
+ * Optionally, each batch must first be admitted by a client-side RuScheduler lane, or get
+ * an in-flight slot shared with other targets from a FairShareScheduler, and the batch size
+ * and concurrency may be adapted at runtime by an AdaptiveBatchController.
+ * Completed batches may be recorded in a LoadCheckpoint, so that an interrupted load can be resumed.
+ */
+
+public class BulkBatchExecutor {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(BulkBatchExecutor.class);
+
+    // Instance variables
+    private LoadTarget target;
+    private String groupName;
+    private int batchSize;
+    private int concurrency;
+    private GroupMetrics metrics;
+    private RuScheduler scheduler = null;
+    private String laneName = null;
+    private AdaptiveBatchController adaptiveController = null;
+    private FairShareScheduler fairShare = null;
+    private String fairShareName = null;
+    private LoadCheckpoint checkpoint = null;
+    private Consumer<OperationResult> resultListener = null;
+
+    public BulkBatchExecutor(
+            LoadTarget target, String groupName, int batchSize, int concurrency, GroupMetrics metrics) {
+        super();
+        this.target = target;
+        this.metrics = metrics;
+        this.groupName = groupName;
+        this.batchSize = Math.max(1, batchSize);
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Execute the given operations; batches are sublist views, no operations are copied.
+     * Return the number of operation responses received.
+     */
+    public long execute(List<CosmosItemOperation> operations) {
+
+        Long count = executeAsync(operations).block();
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Return a Mono that executes the given operations when subscribed to, and emits the
+     * number of operation responses received.
+     */
+    public Mono<Long> executeAsync(List<CosmosItemOperation> operations) {
+
+        logger.warn("execute - operation count: " + operations.size() + ", batchSize: " + batchSize + ", concurrency: " + concurrency);
+        if (adaptiveController != null) {
+            return executeAdaptive(Flux.fromIterable(operations));
+        }
+        return executeBatches(Flux.fromIterable(Lists.partition(operations, batchSize)));
+    }
+
+    /**
+     * Execute the given stream of operations, buffering it into batches only as they are requested.
+     * Return the number of operation responses received.
+     */
+    public long execute(Flux<CosmosItemOperation> operations) {
+
+        Long count = executeAsync(operations).block();
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Return a Mono that executes the given stream of operations when subscribed to, and emits
+     * the number of operation responses received.
+     */
+    public Mono<Long> executeAsync(Flux<CosmosItemOperation> operations) {
+
+        logger.warn("execute - streaming, batchSize: " + batchSize + ", concurrency: " + concurrency);
+        return adaptiveController == null
+                ? executeBatches(operations.buffer(batchSize)) : executeAdaptive(operations);
+    }
+
+    private Mono<Long> executeBatches(Flux<List<CosmosItemOperation>> batches) {
+
+        return positioned(batches)
+                .flatMap(tuple -> executeBatch(tuple.getT1(), tuple.getT2(), tuple.getT3()), concurrency)
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * Pair each batch with its index and the position of its first operation in the executed sequence.
+     * A batch counts as queued from here until it is sent.
+     */
+    private Flux<Tuple3<Long, Long, List<CosmosItemOperation>>> positioned(Flux<List<CosmosItemOperation>> batches) {
+
+        return Flux.defer(() -> {
+            long[] next = {0, 0};
+            return batches.map(batch -> {
+                Tuple3<Long, Long, List<CosmosItemOperation>> tuple = Tuples.of(next[0]++, next[1], batch);
+                next[1] += batch.size();
+                metrics.batchQueued();
+                return tuple;
+            });
+        });
+    }
+
+    /**
+     * Cut batches of the controller's current size as they are requested, and send each one
+     * once the controller allows another batch in flight.  Up to the maximum concurrency
+     * batches are cut ahead, so a new batch size takes effect after those.
+     */
+    private Mono<Long> executeAdaptive(Flux<CosmosItemOperation> operations) {
+
+        AdaptiveBatchController controller = adaptiveController;
+        Flux<List<CosmosItemOperation>> batches = Flux.defer(() -> {
+            int[] cut = {0};
+            return operations.bufferUntil(op -> {
+                if (++cut[0] >= controller.getBatchSize()) {
+                    cut[0] = 0;
+                    return true;
+                }
+                return false;
+            });
+        });
+        return positioned(batches)
+                .flatMap(tuple -> controller.acquire()
+                        .then(executeBatch(tuple.getT1(), tuple.getT2(), tuple.getT3())
+                                .doFinally(signal -> controller.release())), controller.getMaxConcurrency())
+                .reduce(0L, Long::sum)
+                .doOnSuccess(count -> logger.warn("execute - adaptive " + controller.summary()));
+    }
+
+    private Mono<Long> executeBatch(long batchIndex, long position, List<CosmosItemOperation> batch) {
+
+        if (fairShare != null) {
+            return fairShare.acquire(fairShareName)
+                    .flatMap(name -> admitBatch(batchIndex, position, batch).doFinally(signal -> fairShare.release(name)));
+        }
+        return admitBatch(batchIndex, position, batch);
+    }
+
+    private Mono<Long> admitBatch(long batchIndex, long position, List<CosmosItemOperation> batch) {
+
+        if (scheduler == null) {
+            return sendBatch(batchIndex, position, batch, null);
+        }
+        return scheduler.admit(laneName, batch.size()).flatMap(permit -> sendBatch(batchIndex, position, batch, permit));
+    }
+
+    private Mono<Long> sendBatch(long batchIndex, long position, List<CosmosItemOperation> batch, RuPermit permit) {
+
+        return Mono.defer(() -> {
+            logger.warn("executeBatch - executing batchIndex: " + batchIndex + " with " + batch.size() + " operations in group " + groupName);
+            metrics.batchStarted();
+            long start = System.nanoTime();
+            DoubleAdder requestCharge = new DoubleAdder();
+            LongAdder throttles = new LongAdder();
+            Set<String> failedIds = ConcurrentHashMap.newKeySet();
+            for (int i = 0; i < batch.size(); i++) {
+                JsonPayload payload = JsonPayload.of(batch.get(i).getItem());
+                if (payload != null) {
+                    metrics.recordDocumentBytes(payload.size());
+                }
+            }
+            return target.executeBulkOperations(Flux.fromIterable(batch), groupName)
+                    .doOnNext(result -> {
+                        metrics.recordOperation(result);
+                        if (resultListener != null) {
+                            resultListener.accept(result);
+                        }
+                        requestCharge.add(result.getRequestCharge());
+                        throttles.add(result.getRetryCount() + (result.isThrottled() ? 1 : 0));
+                        if (checkpoint != null && !result.isSuccess()) {
+                            failedIds.add(String.valueOf(result.getId()));
+                        }
+                    })
+                    .count()
+                    .doOnSuccess(count -> {
+                        long latencyMicros = (System.nanoTime() - start) / 1000;
+                        metrics.recordBatch(latencyMicros);
+                        if (adaptiveController != null) {
+                            adaptiveController.recordBatch(batch.size(), throttles.sum(), latencyMicros, requestCharge.sum());
+                        }
+                        if (permit != null) {
+                            scheduler.complete(permit, requestCharge.sum());
+                        }
+                        if (checkpoint != null) {
+                            checkpoint.recordBatch(position, batch, failedIds);
+                        }
+                    })
+                    .doFinally(signal -> metrics.batchFinished());
+        });
+    }
+
+    /**
+     * Require each batch to be admitted by the given lane of the scheduler before it is sent.
+     */
+    public void setScheduler(RuScheduler scheduler, String laneName) {
+        this.scheduler = scheduler;
+        this.laneName = laneName;
+    }
+
+    /**
+     * Require each batch to get one of the in-flight slots that the given scheduler shares among
+     * targets, under the given name, before it is sent.  The executor's concurrency should be
+     * at least the scheduler's slots, so that the scheduler is the limit.
+     */
+    public void setFairShare(FairShareScheduler fairShare, String fairShareName) {
+        this.fairShare = fairShare;
+        this.fairShareName = fairShareName;
+    }
+
+    /**
+     * Record each completed batch, and its failed operations, in the given checkpoint.  The
+     * positions recorded are those of the list or stream executed.
+     */
+    public void setCheckpoint(LoadCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Pass each OperationResult to the given listener too, after it is recorded in the metrics.
+     */
+    public void setResultListener(Consumer<OperationResult> resultListener) {
+        this.resultListener = resultListener;
+    }
+
+    /**
+     * Adapt the batch size and concurrency with the given controller; the constructor's
+     * batchSize and concurrency are then only used for logging.
+     */
+    public void setAdaptiveController(AdaptiveBatchController adaptiveController) {
+        this.adaptiveController = adaptiveController;
+    }
+
+    public AdaptiveBatchController getAdaptiveController() {
+        return adaptiveController;
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public GroupMetrics getMetrics() {
+        return metrics;
+    }
+}
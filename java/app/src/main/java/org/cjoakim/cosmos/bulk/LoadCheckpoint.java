@@ -0,0 +1,238 @@
+package org.cjoakim.cosmos.bulk;
+
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.metrics.OperationResult;
+import org.cjoakim.cosmos.util.FileUtil;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * The progress of a bulk load of a list of operations, periodically saved to a JSON file so that
+ * an interrupted load can be resumed.  An operation is acknowledged once its batch has completed;
+ * the file records the acknowledged prefix of the list, the acknowledged ranges beyond it (batches
+ * complete out of order), and the operations that failed.  Resuming executes only the operations
+ * that were not acknowledged, and the failures.  The list must be the same as in the interrupted
+ * load, which is checked by its size and a checksum of its document ids; so the ids must be
+ * deterministic, not random.
+ */
+
+public class LoadCheckpoint {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(LoadCheckpoint.class);
+
+    // Instance variables
+    private String path;
+    private int operationCount;
+    private long fingerprint;
+    private BitSet acknowledged = new BitSet();
+    private Map<Integer, String> failed = new TreeMap<>();
+    private int[] ordinals = null;
+    private long acknowledgedThisRun = 0;
+    private long failedThisRun = 0;
+    private Disposable ticker = null;
+
+    private LoadCheckpoint(String path, int operationCount, long fingerprint) {
+        super();
+        this.path = path;
+        this.operationCount = operationCount;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Return a new checkpoint of the given operations at the given path or, if resume is true,
+     * the one saved there by an earlier load of the same operations.
+     */
+    public static LoadCheckpoint open(String path, List<CosmosItemOperation> operations, boolean resume) {
+
+        LoadCheckpoint checkpoint = new LoadCheckpoint(path, operations.size(), fingerprint(operations));
+        if (resume) {
+            if (!new FileUtil().isFile(path)) {
+                logger.warn("open - no checkpoint file " + path + ", starting from the beginning");
+            } else {
+                try {
+                    checkpoint.restore(new FileUtil().readJsonMap(path));
+                } catch (Exception e) {
+                    logger.error("open - unable to read checkpoint file " + path + ", starting from the beginning: " + e.getMessage());
+                }
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Return the CRC32C of the document ids of the given operations, in order.
+     */
+    static long fingerprint(List<CosmosItemOperation> operations) {
+
+        CRC32C crc = new CRC32C();
+        for (int i = 0; i < operations.size(); i++) {
+            String id = OperationResult.idOf(operations.get(i));
+            crc.update(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+            crc.update('\n');
+        }
+        return crc.getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void restore(Map<String, Object> state) {
+
+        long savedCount = ((Number) state.get("operations")).longValue();
+        long savedFingerprint = ((Number) state.get("fingerprint")).longValue();
+        if (savedCount != operationCount || savedFingerprint != fingerprint) {
+            logger.error("restore - checkpoint " + path + " is of different operations (count " + savedCount
+                    + ", fingerprint " + savedFingerprint + "), starting from the beginning");
+            return;
+        }
+        int prefix = ((Number) state.get("acknowledged")).intValue();
+        acknowledged.set(0, prefix);
+        for (List<Number> range : (List<List<Number>>) state.get("ranges")) {
+            acknowledged.set(range.get(0).intValue(), range.get(1).intValue());
+        }
+        for (Map.Entry<String, Object> entry : ((Map<String, Object>) state.get("failed")).entrySet()) {
+            failed.put(Integer.parseInt(entry.getKey()), String.valueOf(entry.getValue()));
+        }
+        logger.warn("restore - " + path + ", acknowledged: " + acknowledged.cardinality() + " of " + operationCount
+                + ", failed: " + failed.size() + ", updated: " + state.get("updated"));
+    }
+
+    /**
+     * Return the operations that remain to be executed; those not acknowledged, and the failures.
+     * The returned list is the one to be executed; positions reported to recordBatch are its indexes.
+     */
+    public synchronized List<CosmosItemOperation> remaining(List<CosmosItemOperation> operations) {
+
+        List<CosmosItemOperation> remaining = new ArrayList<>();
+        List<Integer> remainingOrdinals = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            if (!acknowledged.get(i) || failed.containsKey(i)) {
+                remaining.add(operations.get(i));
+                remainingOrdinals.add(i);
+            }
+        }
+        ordinals = new int[remainingOrdinals.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = remainingOrdinals.get(i);
+        }
+        logger.warn("remaining - operations: " + remaining.size() + " of " + operations.size()
+                + ", retrying failures: " + failed.size());
+        return remaining;
+    }
+
+    /**
+     * Record that the given batch, at the given position of the executed list, has completed,
+     * and that the operations with the given ids failed.
+     */
+    public synchronized void recordBatch(long position, List<CosmosItemOperation> batch, Set<String> failedIds) {
+
+        for (int i = 0; i < batch.size(); i++) {
+            int index = Math.toIntExact(position + i);
+            int ordinal = ordinals == null ? index : ordinals[index];
+            acknowledged.set(ordinal);
+            acknowledgedThisRun++;
+            String id = failedIds.isEmpty() ? null : OperationResult.idOf(batch.get(i));
+            if (id != null && failedIds.contains(id)) {
+                failed.put(ordinal, id);
+                failedThisRun++;
+            } else {
+                failed.remove(ordinal);
+            }
+        }
+    }
+
+    /**
+     * Save the checkpoint now and then every interval until stop() is called.
+     */
+    public synchronized LoadCheckpoint start(Duration interval) {
+
+        save();
+        if (ticker == null) {
+            long ms = interval.toMillis();
+            ticker = Schedulers.parallel().schedulePeriodically(this::save, ms, ms, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    public synchronized void stop() {
+
+        if (ticker != null) {
+            ticker.dispose();
+            ticker = null;
+        }
+        save();
+    }
+
+    /**
+     * Write the checkpoint file atomically, so that an interruption leaves the previous one intact.
+     */
+    public synchronized void save() {
+
+        Map<String, Object> state = new LinkedHashMap<>();
+        int prefix = acknowledged.nextClearBit(0);
+        List<int[]> ranges = new ArrayList<>();
+        for (int start = acknowledged.nextSetBit(prefix); start >= 0; start = acknowledged.nextSetBit(start)) {
+            int end = acknowledged.nextClearBit(start);
+            ranges.add(new int[] { start, end });
+            start = end;
+        }
+        state.put("operations", operationCount);
+        state.put("fingerprint", fingerprint);
+        state.put("acknowledged", prefix);
+        state.put("ranges", ranges);
+        state.put("failed", failed);
+        state.put("updated", new Date().toString());
+        try {
+            Path file = Paths.get(path);
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            new ObjectMapper().writeValue(tmp.toFile(), state);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("save - unable to write checkpoint file " + path + ": " + e.getMessage());
+        }
+    }
+
+    public synchronized boolean isComplete() {
+        return acknowledged.cardinality() == operationCount && failed.isEmpty();
+    }
+
+    public synchronized int getAcknowledged() {
+        return acknowledged.cardinality();
+    }
+
+    public synchronized int getFailed() {
+        return failed.size();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public synchronized String summary() {
+
+        return "checkpoint: " + path + ", acknowledged: " + acknowledged.cardinality() + " of " + operationCount
+                + ", this run: " + acknowledgedThisRun + ", failed this run: " + failedThisRun
+                + ", failed: " + failed.size() + ", complete: " + isComplete();
+    }
+}
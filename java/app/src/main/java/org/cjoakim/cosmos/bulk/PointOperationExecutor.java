@@ -0,0 +1,215 @@
+package org.cjoakim.cosmos.bulk;
+
+import com.azure.cosmos.models.CosmosItemOperation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.json.JsonPayload;
+import org.cjoakim.cosmos.metrics.GroupMetrics;
+import org.cjoakim.cosmos.metrics.OperationResult;
+import org.cjoakim.cosmos.target.LoadTarget;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The alternative to a BulkBatchExecutor; this class executes the operations against a LoadTarget
+ * as individual, blocking point operations, or any other blocking requests such as queries, one
+ * task per operation, keeping up to 'concurrency' of them in flight at the same time with a
+ * semaphore.  On Java 21 or later each task runs on a virtual thread, so a blocked operation
+ * costs no platform thread; on earlier JDKs, which have no virtual threads, the tasks run on a
+ * fixed pool of 'concurrency' platform threads instead.
+ * Every operation is tagged with the throughput control group name, and recorded in the
+ * GroupMetrics for that group as a batch of one, so its in-flight and batch metrics compare
+ * with those of bulk batches.
+ */
+
+public class PointOperationExecutor {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(PointOperationExecutor.class);
+
+    // Instance variables
+    private LoadTarget target;
+    private String groupName;
+    private int concurrency;
+    private GroupMetrics metrics;
+    private Consumer<OperationResult> resultListener = null;
+
+    public PointOperationExecutor(LoadTarget target, String groupName, int concurrency, GroupMetrics metrics) {
+        super();
+        this.target = target;
+        this.groupName = groupName;
+        this.concurrency = Math.max(1, concurrency);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Execute the given operations.  Return the number of operation responses received.
+     */
+    public long execute(List<CosmosItemOperation> operations) {
+
+        logger.warn("execute - operation count: " + operations.size() + ", concurrency: " + concurrency
+                + ", virtual threads: " + hasVirtualThreads());
+        return execute(operations.iterator(), this::executeItemOperation);
+    }
+
+    /**
+     * Execute the given stream of operations; it is pulled only as fast as operations complete.
+     * Return the number of operation responses received.
+     */
+    public long execute(Flux<CosmosItemOperation> operations) {
+
+        logger.warn("execute - streaming, concurrency: " + concurrency + ", virtual threads: " + hasVirtualThreads());
+        return execute(operations.toIterable(concurrency).iterator(), this::executeItemOperation);
+    }
+
+    /**
+     * Return a Mono that executes the given operations when subscribed to, on a thread that may
+     * block, and emits the number of operation responses received.
+     */
+    public Mono<Long> executeAsync(List<CosmosItemOperation> operations) {
+
+        return Mono.fromCallable(() -> execute(operations)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Return a Mono that, when subscribed to, executes each of the given stream of requests,
+     * such as queries, with the given blocking call, which returns its OperationResult, and
+     * emits the number of requests executed.
+     */
+    public <T> Mono<Long> executeAsync(Flux<T> requests, Function<T, OperationResult> call) {
+
+        return Mono.fromCallable(() -> {
+            logger.warn("execute - streaming requests, concurrency: " + concurrency + ", virtual threads: " + hasVirtualThreads());
+            return execute(requests.toIterable(concurrency).iterator(), call);
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private <T> long execute(Iterator<T> requests, Function<T, OperationResult> call) {
+
+        Semaphore inFlight = new Semaphore(concurrency);
+        LongAdder count = new LongAdder();
+        ExecutorService executor = newThreadPerTaskExecutor(concurrency);
+        try {
+            while (requests.hasNext()) {
+                T request = requests.next();
+                metrics.batchQueued();
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        executeRequest(request, call);
+                        count.increment();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            // all permits are back once the last request has completed
+            inFlight.acquire(concurrency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return count.sum();
+    }
+
+    private <T> void executeRequest(T request, Function<T, OperationResult> call) {
+
+        metrics.batchStarted();
+        long start = System.nanoTime();
+        OperationResult result;
+        try {
+            result = call.apply(request);
+        } catch (RuntimeException e) {
+            result = new OperationResult();
+            result.setError(e.getClass().getSimpleName());
+            logger.error("executeRequest - group: " + groupName + ", " + e.getMessage());
+        }
+        long latencyMicros = (System.nanoTime() - start) / 1000;
+        if (result.getLatencyMicros() <= 0) {
+            result.setLatencyMicros(latencyMicros);
+        }
+        metrics.recordOperation(result);
+        metrics.recordBatch(latencyMicros);
+        if (resultListener != null) {
+            resultListener.accept(result);
+        }
+        metrics.batchFinished();
+    }
+
+    private OperationResult executeItemOperation(CosmosItemOperation op) {
+
+        JsonPayload payload = JsonPayload.of(op.getItem());
+        if (payload != null) {
+            metrics.recordDocumentBytes(payload.size());
+        }
+        try {
+            return target.executePointOperation(op, groupName);
+        } catch (RuntimeException e) {
+            logger.error("executeItemOperation - id: " + OperationResult.idOf(op) + ", group: " + groupName + ", " + e.getMessage());
+            return OperationResult.fromException(op, e);
+        }
+    }
+
+    /**
+     * Pass each OperationResult to the given listener too, after it is recorded in the metrics.
+     */
+    public void setResultListener(Consumer<OperationResult> resultListener) {
+        this.resultListener = resultListener;
+    }
+
+    /**
+     * Return an executor that starts a virtual thread per task if the JDK has them, Java 21 or
+     * later; otherwise a fixed pool of the given number of daemon platform threads.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(int threads) {
+
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger number = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "point-op-" + number.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Return true if the executors of this class run their tasks on virtual threads.
+     */
+    public static boolean hasVirtualThreads() {
+
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public GroupMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,70 @@
+package org.cjoakim.cosmos.cache;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.util.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Caches the parsed batters of a CSV file as a BatterColumns file in the given directory,
+ * named after the CSV file.  The cache is valid while the size and CRC32C checksum of the
+ * CSV file are unchanged; otherwise it is rebuilt from the parsed batters.
+ */
+
+public class BatterColumnCache {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(BatterColumnCache.class);
+    public static final String FILE_SUFFIX = ".batc";
+
+    // Instance variables
+    private String cacheDir;
+    private FileUtil fileUtil = new FileUtil();
+
+    public BatterColumnCache(String cacheDir) {
+        super();
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Return the cached columns of the given CSV file; if the cache is missing or stale,
+     * first write it from the batters returned by the given parser.
+     */
+    public BatterColumns readOrBuild(String csvFile, Supplier<List<BaseballBatter>> parser) throws IOException {
+
+        long start = System.currentTimeMillis();
+        long size = new File(csvFile).length();
+        long checksum = fileUtil.checksum(csvFile);
+        Path path = getCacheFile(csvFile);
+        if (Files.isRegularFile(path)) {
+            try {
+                BatterColumns columns = BatterColumns.map(path);
+                if (columns.getSourceSize() == size && columns.getSourceChecksum() == checksum) {
+                    logger.warn("readOrBuild - mapped " + path + ", rows: " + columns.size()
+                            + ", ms: " + (System.currentTimeMillis() - start));
+                    return columns;
+                }
+                logger.warn("readOrBuild - stale cache " + path + ", checksum: " + Long.toHexString(checksum));
+            } catch (IOException e) {
+                logger.error("readOrBuild - unreadable cache " + path + ": " + e.getMessage());
+            }
+        }
+        List<BaseballBatter> batters = parser.get();
+        BatterColumns.write(batters, size, checksum, path);
+        logger.warn("readOrBuild - wrote " + path + ", rows: " + batters.size() + ", bytes: " + Files.size(path));
+        return BatterColumns.map(path);
+    }
+
+    public Path getCacheFile(String csvFile) {
+
+        return Paths.get(cacheDir, new File(csvFile).getName() + FILE_SUFFIX);
+    }
+}
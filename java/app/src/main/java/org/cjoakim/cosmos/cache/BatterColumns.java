@@ -0,0 +1,278 @@
+package org.cjoakim.cosmos.cache;
+
+import org.cjoakim.cosmos.model.BaseballBatter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * A read-only, column-oriented snapshot of parsed BaseballBatter records, memory-mapped from a
+ * file written by write().  The numeric fields are int columns; playerID, teamID, leagueID and
+ * stint are dictionary-encoded as int codes.  Rows are selected by scanning only the team, year
+ * and games columns, and only the selected rows are materialized as BaseballBatter objects.
+ *
+ * File layout: magic, version, source size, source checksum, row count; then each dictionary
+ * as a count and length-prefixed UTF-8 strings; then, 4-byte aligned, each int column and each
+ * code column of row count ints; then a flags byte per row.
+ */
+
+public class BatterColumns {
+
+    static final int MAGIC = 0x42415443;  // BATC
+    static final int VERSION = 1;
+    private static final byte FLAG_EXCEPTION = 1;
+
+    private enum IntColumn {
+        YEAR(BaseballBatter::getYear, BaseballBatter::setYear),
+        GAMES(BaseballBatter::getGames, BaseballBatter::setGames),
+        AT_BATS(BaseballBatter::getAtBats, BaseballBatter::setAtBats),
+        RUNS(BaseballBatter::getRuns, BaseballBatter::setRuns),
+        HITS(BaseballBatter::getHits, BaseballBatter::setHits),
+        DOUBLES(BaseballBatter::getDoubles, BaseballBatter::setDoubles),
+        TRIPLES(BaseballBatter::getTriples, BaseballBatter::setTriples),
+        HOME_RUNS(BaseballBatter::getHomeRuns, BaseballBatter::setHomeRuns),
+        RBI(BaseballBatter::getRbi, BaseballBatter::setRbi),
+        STOLEN_BASES(BaseballBatter::getStolenBases, BaseballBatter::setStolenBases),
+        CAUGHT_STEALING(BaseballBatter::getCaughtStealing, BaseballBatter::setCaughtStealing),
+        BASE_ON_BALLS(BaseballBatter::getBaseOnBalls, BaseballBatter::setBaseOnBalls),
+        STRIKEOUTS(BaseballBatter::getStrikeouts, BaseballBatter::setStrikeouts),
+        INTENTIONAL_BB(BaseballBatter::getIntentionalBB, BaseballBatter::setIntentionalBB),
+        HIT_BY_PITCH(BaseballBatter::getHitByPitch, BaseballBatter::setHitByPitch);
+
+        final ToIntFunction<BaseballBatter> getter;
+        final ObjIntConsumer<BaseballBatter> setter;
+
+        IntColumn(ToIntFunction<BaseballBatter> getter, ObjIntConsumer<BaseballBatter> setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    private enum DictionaryColumn {
+        PLAYER_ID(BaseballBatter::getPlayerID, BaseballBatter::setPlayerID),
+        TEAM_ID(BaseballBatter::getTeamID, BaseballBatter::setTeamID),
+        LEAGUE_ID(BaseballBatter::getLeagueID, BaseballBatter::setLeagueID),
+        STINT(BaseballBatter::getStint, BaseballBatter::setStint);
+
+        final Function<BaseballBatter, String> getter;
+        final BiConsumer<BaseballBatter, String> setter;
+
+        DictionaryColumn(Function<BaseballBatter, String> getter, BiConsumer<BaseballBatter, String> setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    // Instance variables
+    private long sourceSize;
+    private long sourceChecksum;
+    private int rows;
+    private String[][] dictionaries = new String[DictionaryColumn.values().length][];
+    private IntBuffer[] intColumns = new IntBuffer[IntColumn.values().length];
+    private IntBuffer[] codeColumns = new IntBuffer[DictionaryColumn.values().length];
+    private ByteBuffer flags;
+
+    private BatterColumns() {
+        super();
+    }
+
+    /**
+     * Write the given batters as a column file, replacing the given path atomically.
+     */
+    public static void write(List<BaseballBatter> batters, long sourceSize, long sourceChecksum, Path path)
+            throws IOException {
+
+        int rows = batters.size();
+        DictionaryColumn[] dictionaryColumns = DictionaryColumn.values();
+        List<Map<String, Integer>> dictionaries = new ArrayList<>();
+        int[][] codes = new int[dictionaryColumns.length][rows];
+        long size = 4 + 4 + 8 + 8 + 4;
+        for (int d = 0; d < dictionaryColumns.length; d++) {
+            Map<String, Integer> dictionary = new LinkedHashMap<>();
+            for (int row = 0; row < rows; row++) {
+                String value = dictionaryColumns[d].getter.apply(batters.get(row));
+                codes[d][row] = value == null ? -1 : dictionary.computeIfAbsent(value, k -> dictionary.size());
+            }
+            dictionaries.add(dictionary);
+            size += 4;
+            for (String value : dictionary.keySet()) {
+                size += 2 + value.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        size = align(size) + ((long) IntColumn.values().length + dictionaryColumns.length) * rows * 4 + rows;
+
+        ByteBuffer buf = ByteBuffer.allocate(Math.toIntExact(size));
+        buf.putInt(MAGIC).putInt(VERSION).putLong(sourceSize).putLong(sourceChecksum).putInt(rows);
+        for (Map<String, Integer> dictionary : dictionaries) {
+            buf.putInt(dictionary.size());
+            for (String value : dictionary.keySet()) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                buf.putShort((short) bytes.length).put(bytes);
+            }
+        }
+        buf.position((int) align(buf.position()));
+        for (IntColumn column : IntColumn.values()) {
+            for (int row = 0; row < rows; row++) {
+                buf.putInt(column.getter.applyAsInt(batters.get(row)));
+            }
+        }
+        for (int d = 0; d < dictionaryColumns.length; d++) {
+            for (int row = 0; row < rows; row++) {
+                buf.putInt(codes[d][row]);
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            buf.put(batters.get(row).isException() ? FLAG_EXCEPTION : 0);
+        }
+        buf.flip();
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Memory-map the given column file.  Only the dictionaries are decoded; the columns are
+     * views of the mapped file.
+     */
+    public static BatterColumns map(Path path) throws IOException {
+
+        ByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buf.remaining() < 28 || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            throw new IOException("not a version " + VERSION + " batter column file: " + path);
+        }
+        BatterColumns columns = new BatterColumns();
+        columns.sourceSize = buf.getLong();
+        columns.sourceChecksum = buf.getLong();
+        columns.rows = buf.getInt();
+        for (int d = 0; d < columns.dictionaries.length; d++) {
+            String[] dictionary = new String[buf.getInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                byte[] bytes = new byte[buf.getShort()];
+                buf.get(bytes);
+                dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            columns.dictionaries[d] = dictionary;
+        }
+        int position = (int) align(buf.position());
+        for (int c = 0; c < columns.intColumns.length; c++) {
+            columns.intColumns[c] = slice(buf, position, columns.rows * 4).asIntBuffer();
+            position += columns.rows * 4;
+        }
+        for (int d = 0; d < columns.codeColumns.length; d++) {
+            columns.codeColumns[d] = slice(buf, position, columns.rows * 4).asIntBuffer();
+            position += columns.rows * 4;
+        }
+        columns.flags = slice(buf, position, columns.rows);
+        return columns;
+    }
+
+    /**
+     * Return the indexes of the rows of the given team ("all" for every team, case-insensitive)
+     * with year >= minYear and games > minGames.  Only those three columns are read.
+     */
+    public int[] select(String team, int minYear, int minGames) {
+
+        boolean allTeams = team.equalsIgnoreCase("all");
+        String[] teams = dictionaries[DictionaryColumn.TEAM_ID.ordinal()];
+        boolean[] teamCodes = new boolean[teams.length];
+        for (int i = 0; i < teams.length; i++) {
+            teamCodes[i] = allTeams || team.equalsIgnoreCase(teams[i]);
+        }
+        IntBuffer teamColumn = codeColumns[DictionaryColumn.TEAM_ID.ordinal()];
+        IntBuffer yearColumn = intColumns[IntColumn.YEAR.ordinal()];
+        IntBuffer gamesColumn = intColumns[IntColumn.GAMES.ordinal()];
+
+        int[] selected = new int[rows];
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            if (yearColumn.get(row) >= minYear && gamesColumn.get(row) > minGames) {
+                int teamCode = teamColumn.get(row);
+                if (teamCode >= 0 ? teamCodes[teamCode] : allTeams) {
+                    selected[count++] = row;
+                }
+            }
+        }
+        int[] result = new int[count];
+        System.arraycopy(selected, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Return a new BaseballBatter for the given row.  As when parsed from the CSV, the id is
+     * derived from the playerID, year and stint, and the pk is the playerID.
+     */
+    public BaseballBatter toBatter(int row) {
+
+        BaseballBatter bb = new BaseballBatter();
+        for (IntColumn column : IntColumn.values()) {
+            column.setter.accept(bb, intColumns[column.ordinal()].get(row));
+        }
+        for (DictionaryColumn column : DictionaryColumn.values()) {
+            int code = codeColumns[column.ordinal()].get(row);
+            column.setter.accept(bb, code < 0 ? null : dictionaries[column.ordinal()][code]);
+        }
+        bb.setException((flags.get(row) & FLAG_EXCEPTION) != 0);
+        bb.assignDocumentId();
+        bb.setPk(bb.getPlayerID());
+        return bb;
+    }
+
+    public List<BaseballBatter> toBatters(int[] rowIndexes) {
+
+        List<BaseballBatter> batters = new ArrayList<>(rowIndexes.length);
+        for (int i = 0; i < rowIndexes.length; i++) {
+            batters.add(toBatter(rowIndexes[i]));
+        }
+        return batters;
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    public long getSourceSize() {
+        return sourceSize;
+    }
+
+    public long getSourceChecksum() {
+        return sourceChecksum;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buf, int position, int length) {
+
+        ByteBuffer view = buf.duplicate();
+        view.position(position);
+        view.limit(position + length);
+        return view.slice();
+    }
+
+    private static long align(long position) {
+
+        return (position + 3) & ~3L;
+    }
+}
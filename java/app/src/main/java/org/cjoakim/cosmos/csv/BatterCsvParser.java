@@ -0,0 +1,316 @@
+package org.cjoakim.cosmos.csv;
+
+import com.opencsv.CSVParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.model.BaseballBatter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class parses Lahman Batting.csv rows directly from bytes into BaseballBatter objects.
+ * Columns are mapped by header name rather than position.  Integers are parsed in place,
+ * without creating a String per field, and empty fields take the BaseballBatter defaults
+ * without any exception being thrown.  Rows containing quoted fields are handed to opencsv.
+ */
+
+public class BatterCsvParser {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(BatterCsvParser.class);
+
+    private static final int COL_SKIP = -1;
+    private static final int COL_PLAYER_ID = 0;
+    private static final int COL_YEAR = 1;
+    private static final int COL_STINT = 2;
+    private static final int COL_TEAM_ID = 3;
+    private static final int COL_LEAGUE_ID = 4;
+    private static final int COL_GAMES = 5;
+    private static final int COL_AT_BATS = 6;
+    private static final int COL_RUNS = 7;
+    private static final int COL_HITS = 8;
+    private static final int COL_DOUBLES = 9;
+    private static final int COL_TRIPLES = 10;
+    private static final int COL_HOME_RUNS = 11;
+    private static final int COL_RBI = 12;
+    private static final int COL_STOLEN_BASES = 13;
+    private static final int COL_CAUGHT_STEALING = 14;
+    private static final int COL_BASE_ON_BALLS = 15;
+    private static final int COL_STRIKEOUTS = 16;
+    private static final int COL_INTENTIONAL_BB = 17;
+    private static final int COL_HIT_BY_PITCH = 18;
+
+    private static final byte COMMA = ',';
+    private static final byte QUOTE = '"';
+
+    // Instance variables
+    private String[] headerFields;
+    private int[] columnMap;
+
+    public BatterCsvParser(String[] headerFields) {
+        super();
+        this.headerFields = headerFields;
+        this.columnMap = new int[headerFields.length];
+        for (int i = 0; i < headerFields.length; i++) {
+            columnMap[i] = columnFor(headerFields[i].strip());
+        }
+    }
+
+    public static String[] parseHeader(String headerLine) {
+
+        String[] fields = headerLine.strip().split("[,]", -1);
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = fields[i].strip();
+        }
+        return fields;
+    }
+
+    private static int columnFor(String name) {
+
+        switch (name) {
+            case "playerID": return COL_PLAYER_ID;
+            case "yearID":   return COL_YEAR;
+            case "stint":    return COL_STINT;
+            case "teamID":   return COL_TEAM_ID;
+            case "lgID":     return COL_LEAGUE_ID;
+            case "G":        return COL_GAMES;
+            case "AB":       return COL_AT_BATS;
+            case "R":        return COL_RUNS;
+            case "H":        return COL_HITS;
+            case "2B":       return COL_DOUBLES;
+            case "3B":       return COL_TRIPLES;
+            case "HR":       return COL_HOME_RUNS;
+            case "RBI":      return COL_RBI;
+            case "SB":       return COL_STOLEN_BASES;
+            case "CS":       return COL_CAUGHT_STEALING;
+            case "BB":       return COL_BASE_ON_BALLS;
+            case "SO":       return COL_STRIKEOUTS;
+            case "IBB":      return COL_INTENTIONAL_BB;
+            case "HBP":      return COL_HIT_BY_PITCH;
+            default:         return COL_SKIP;
+        }
+    }
+
+    public int getColumnCount() {
+        return columnMap.length;
+    }
+
+    /**
+     * Return a new batter parsed from the given line.  It is left unpopulated, and so is not
+     * valid, if the line does not have one value per header column.
+     */
+    public BaseballBatter parse(String csvLine) {
+
+        BaseballBatter bb = new BaseballBatter();
+        parse(csvLine, bb);
+        return bb;
+    }
+
+    /**
+     * Parse the given line into the given batter.  Return false if the line does not have
+     * one value per header column, in which case the batter is left unpopulated.
+     */
+    public boolean parse(String csvLine, BaseballBatter bb) {
+
+        byte[] bytes = csvLine.getBytes(StandardCharsets.UTF_8);
+        return parse(ByteBuffer.wrap(bytes), 0, bytes.length, bb);
+    }
+
+    /**
+     * Parse the bytes in [start, end) of the given buffer, which hold one line without its
+     * line terminator, into the given batter.  The buffer position is not modified.
+     */
+    public boolean parse(ByteBuffer buf, int start, int end, BaseballBatter bb) {
+
+        for (int i = start; i < end; i++) {
+            if (buf.get(i) == QUOTE) {
+                return parseQuoted(buf, start, end, bb);
+            }
+        }
+        if (countFields(buf, start, end) != columnMap.length) {
+            return false;
+        }
+        int fieldStart = start;
+        for (int col = 0; col < columnMap.length; col++) {
+            int fieldEnd = fieldStart;
+            while (fieldEnd < end && buf.get(fieldEnd) != COMMA) {
+                fieldEnd++;
+            }
+            int column = columnMap[col];
+            if (column != COL_SKIP) {
+                int s = fieldStart;
+                int e = fieldEnd;
+                while (s < e && (buf.get(s) & 0xFF) <= ' ') {
+                    s++;
+                }
+                while (e > s && (buf.get(e - 1) & 0xFF) <= ' ') {
+                    e--;
+                }
+                if (isStringColumn(column)) {
+                    setString(bb, column, decode(buf, s, e));
+                } else if (s < e) {
+                    setInt(bb, column, buf, s, e);
+                } else {
+                    setEmpty(bb, column);
+                }
+            }
+            fieldStart = fieldEnd + 1;
+        }
+        bb.assignDocumentId();
+        return true;
+    }
+
+    private boolean parseQuoted(ByteBuffer buf, int start, int end, BaseballBatter bb) {
+
+        String line = decode(buf, start, end);
+        try {
+            String[] values = new CSVParser().parseLine(line);
+            if (values == null || values.length != columnMap.length) {
+                return false;
+            }
+            for (int col = 0; col < values.length; col++) {
+                int column = columnMap[col];
+                if (column != COL_SKIP) {
+                    String value = values[col].strip();
+                    if (isStringColumn(column)) {
+                        setString(bb, column, value);
+                    } else if (value.isEmpty()) {
+                        setEmpty(bb, column);
+                    } else {
+                        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                        setInt(bb, column, ByteBuffer.wrap(bytes), 0, bytes.length);
+                    }
+                }
+            }
+            bb.assignDocumentId();
+            return true;
+        } catch (IOException e) {
+            bb.setException(true);
+            logger.error("error on quoted csv line: <" + line + ">");
+            return false;
+        }
+    }
+
+    private static int countFields(ByteBuffer buf, int start, int end) {
+
+        int count = 1;
+        for (int i = start; i < end; i++) {
+            if (buf.get(i) == COMMA) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isStringColumn(int column) {
+
+        return column == COL_PLAYER_ID || column == COL_STINT || column == COL_TEAM_ID || column == COL_LEAGUE_ID;
+    }
+
+    private static String decode(ByteBuffer buf, int start, int end) {
+
+        int length = end - start;
+        if (buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buf.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void setString(BaseballBatter bb, int column, String value) {
+
+        switch (column) {
+            case COL_PLAYER_ID:
+                bb.setPlayerID(value);
+                bb.setPk(value);
+                break;
+            case COL_STINT:
+                bb.setStint(value);
+                break;
+            case COL_TEAM_ID:
+                bb.setTeamID(value);
+                break;
+            case COL_LEAGUE_ID:
+                bb.setLeagueID(value);
+                break;
+        }
+    }
+
+    /**
+     * Parse a signed decimal integer from [start, end).  A malformed value marks the batter
+     * with the exception flag instead of throwing.
+     */
+    private static void setInt(BaseballBatter bb, int column, ByteBuffer buf, int start, int end) {
+
+        int i = start;
+        boolean negative = false;
+        byte first = buf.get(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+        if (i == end || end - i > 9) {
+            markInvalid(bb, column, buf, start, end);
+            return;
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            int digit = buf.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                markInvalid(bb, column, buf, start, end);
+                return;
+            }
+            value = (value * 10) + digit;
+        }
+        setInt(bb, column, negative ? -value : value);
+    }
+
+    private static void markInvalid(BaseballBatter bb, int column, ByteBuffer buf, int start, int end) {
+
+        bb.setException(true);
+        logger.error("error on csv column " + column + " value: <" + decode(buf, start, end) + ">");
+    }
+
+    /**
+     * Empty counting stats that were not tracked in early seasons (CS, BB, SO, IBB, HBP)
+     * default to 0; other empty columns keep the BaseballBatter default of -1.
+     */
+    private static void setEmpty(BaseballBatter bb, int column) {
+
+        if (column >= COL_CAUGHT_STEALING && column <= COL_HIT_BY_PITCH) {
+            setInt(bb, column, 0);
+        }
+    }
+
+    private static void setInt(BaseballBatter bb, int column, int value) {
+
+        switch (column) {
+            case COL_YEAR:             bb.setYear(value); break;
+            case COL_GAMES:            bb.setGames(value); break;
+            case COL_AT_BATS:          bb.setAtBats(value); break;
+            case COL_RUNS:             bb.setRuns(value); break;
+            case COL_HITS:             bb.setHits(value); break;
+            case COL_DOUBLES:          bb.setDoubles(value); break;
+            case COL_TRIPLES:          bb.setTriples(value); break;
+            case COL_HOME_RUNS:        bb.setHomeRuns(value); break;
+            case COL_RBI:              bb.setRbi(value); break;
+            case COL_STOLEN_BASES:     bb.setStolenBases(value); break;
+            case COL_CAUGHT_STEALING:  bb.setCaughtStealing(value); break;
+            case COL_BASE_ON_BALLS:    bb.setBaseOnBalls(value); break;
+            case COL_STRIKEOUTS:       bb.setStrikeouts(value); break;
+            case COL_INTENTIONAL_BB:   bb.setIntentionalBB(value); break;
+            case COL_HIT_BY_PITCH:     bb.setHitByPitch(value); break;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BatterCsvParser" + Arrays.toString(headerFields);
+    }
+}
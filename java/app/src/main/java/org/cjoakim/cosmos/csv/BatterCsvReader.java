@@ -0,0 +1,149 @@
+package org.cjoakim.cosmos.csv;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.util.FileUtil;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * This class reads a Batting.csv file as raw bytes, one buffer at a time, and passes each
+ * parsed BaseballBatter to a consumer.  No String is created per line or per numeric field.
+ */
+
+public class BatterCsvReader {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(BatterCsvReader.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Instance variables
+    private String[] headerFields = null;
+    private BatterCsvParser parser = null;
+    private long lineCount = 0;
+    private long rejectedCount = 0;
+
+    public BatterCsvReader() {
+        super();
+    }
+
+    /**
+     * Read the given file and pass every row that has one value per header column to the consumer.
+     * Return the number of batters passed to the consumer.
+     */
+    public long read(String infile, Consumer<BaseballBatter> consumer) throws IOException {
+
+        long accepted = 0;
+        try (InputStream in = new FileInputStream(infile)) {
+            byte[] bytes = new byte[BUFFER_SIZE];
+            int length = 0;
+            while (true) {
+                int n = in.read(bytes, length, bytes.length - length);
+                if (n < 0) {
+                    if (length > 0) {
+                        accepted += handleLine(ByteBuffer.wrap(bytes), 0, length, consumer);
+                    }
+                    break;
+                }
+                length += n;
+                ByteBuffer buf = ByteBuffer.wrap(bytes);
+                int lineStart = 0;
+                for (int i = 0; i < length; i++) {
+                    if (bytes[i] == '\n') {
+                        accepted += handleLine(buf, lineStart, i, consumer);
+                        lineStart = i + 1;
+                    }
+                }
+                length = length - lineStart;
+                System.arraycopy(bytes, lineStart, bytes, 0, length);
+                if (length == bytes.length) {
+                    byte[] larger = new byte[bytes.length * 2];
+                    System.arraycopy(bytes, 0, larger, 0, length);
+                    bytes = larger;
+                }
+            }
+        }
+        logger.warn("read " + infile + " lines: " + lineCount + ", accepted: " + accepted + ", rejected: " + rejectedCount);
+        return accepted;
+    }
+
+    /**
+     * Read the given file through memory-mapped, newline-aligned chunks that are parsed in
+     * parallel.  Return the batters of the rows that have one value per header column, in
+     * file order, as read() would pass them to its consumer.
+     */
+    public List<BaseballBatter> readParallel(String infile, int chunkSize, int parallelism) throws IOException {
+
+        FileUtil fu = new FileUtil();
+        long headerEnd;
+        try (FileChannel channel = FileChannel.open(Paths.get(infile), StandardOpenOption.READ)) {
+            headerEnd = fu.nextLineStart(channel, 0);
+            ByteBuffer header = ByteBuffer.allocate((int) headerEnd);
+            channel.read(header, 0);
+            headerFields = BatterCsvParser.parseHeader(new String(header.array(), StandardCharsets.UTF_8));
+            parser = new BatterCsvParser(headerFields);
+        }
+        AtomicLong lines = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        List<BaseballBatter> batters = fu.mapLinesParallel(infile, headerEnd, chunkSize, parallelism, (buf, start, end) -> {
+            lines.incrementAndGet();
+            BaseballBatter bb = new BaseballBatter();
+            if (parser.parse(buf, start, end, bb)) {
+                return bb;
+            }
+            rejected.incrementAndGet();
+            return null;
+        });
+        lineCount = lines.get() + 1;
+        rejectedCount = rejected.get();
+        logger.warn("readParallel " + infile + " lines: " + lineCount + ", accepted: " + batters.size() + ", rejected: " + rejectedCount);
+        return batters;
+    }
+
+    private int handleLine(ByteBuffer buf, int start, int end, Consumer<BaseballBatter> consumer) {
+
+        if (end > start && buf.get(end - 1) == '\r') {
+            end--;
+        }
+        if (end <= start) {
+            return 0;
+        }
+        lineCount++;
+        if (parser == null) {
+            headerFields = BatterCsvParser.parseHeader(
+                    new String(buf.array(), start, end - start, StandardCharsets.UTF_8));
+            parser = new BatterCsvParser(headerFields);
+            return 0;
+        }
+        BaseballBatter bb = new BaseballBatter();
+        if (parser.parse(buf, start, end, bb)) {
+            consumer.accept(bb);
+            return 1;
+        }
+        rejectedCount++;
+        return 0;
+    }
+
+    public String[] getHeaderFields() {
+        return headerFields;
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+}
@@ -0,0 +1,247 @@
+package org.cjoakim.cosmos.delta;
+
+import com.azure.cosmos.models.CosmosBulkOperations;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.CosmosItemOperationType;
+import com.azure.cosmos.models.PartitionKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.json.BatterJsonWriter;
+import org.cjoakim.cosmos.metrics.OperationResult;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.pk.PartitionKeyJson;
+import org.cjoakim.cosmos.shape.DocumentShape;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A delta load: only the batters that are new, or whose document has changed, since the last
+ * load into the same container are upserted, and optionally the documents whose batters have
+ * disappeared from the source are deleted.  The DigestIndex of the last load is memory-mapped,
+ * and each batter is looked up by its key, the document id and partition key, as the operations
+ * are built; the Hash64 of its JSON, as BatterJsonWriter writes it in the load's DocumentShape,
+ * is compared with the digest in the index.  The index records the shape, so a load in another
+ * shape than the last rewrites every document.  The index of this load is built as it goes, and written by commit() once the
+ * load has completed; an operation that failed keeps the digest of the last load, so that it is
+ * sent again next time.  If a load is interrupted before commit(), the last index stays, and
+ * the next load sends the same changes again.
+ * accept() is called by one thread at a time; recordResult() by any.
+ */
+
+public class DeltaLoad {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(DeltaLoad.class);
+    private static final int STATUS_NOT_FOUND = 404;
+
+    // Instance variables
+    private String path;
+    private DigestIndex previous;
+    private boolean deletes;
+    private boolean reshaped;
+    private BitSet seen = new BitSet();
+    private DigestIndex.Builder builder;
+    private BatterJsonWriter writer;
+    private Set<String> failedIds = ConcurrentHashMap.newKeySet();
+    private long unchanged = 0;
+    private long changed = 0;
+    private long added = 0;
+    private long deleted = 0;
+
+    private DeltaLoad(String path, DigestIndex previous, boolean deletes, DocumentShape shape) {
+        super();
+        this.path = path;
+        this.previous = previous;
+        this.deletes = deletes;
+        this.reshaped = previous != null && !previous.getProfile().equals(shape.getProfile());
+        this.builder = new DigestIndex.Builder(shape.getProfile());
+        this.writer = new BatterJsonWriter(shape);
+    }
+
+    /**
+     * Open the index of the last load at the given path; if there is none, or it can't be read,
+     * every batter is new, and commit() writes a new index.  With deletes, the keys of the last
+     * load that are not accepted become delete operations.  The documents are of the full shape.
+     */
+    public static DeltaLoad open(String path, boolean deletes) {
+
+        return open(path, deletes, DocumentShape.full());
+    }
+
+    /**
+     * Open the index of the last load at the given path, for documents of the given shape; if
+     * the last load was of another shape, every document it wrote is changed.
+     */
+    public static DeltaLoad open(String path, boolean deletes, DocumentShape shape) {
+
+        DigestIndex previous = null;
+        if (Files.isRegularFile(Paths.get(path))) {
+            try {
+                previous = DigestIndex.map(Paths.get(path));
+                logger.warn("open - mapped " + path + ", entries: " + previous.size());
+            } catch (IOException e) {
+                logger.error("open - unreadable index, every document is new: " + e.getMessage());
+            }
+        } else {
+            logger.warn("open - no index at " + path + ", every document is new");
+        }
+        if (previous != null && !previous.getProfile().equals(shape.getProfile())) {
+            logger.warn("open - the last load was of the " + previous.getProfile() + " shape, this one is "
+                    + shape.getProfile() + ", every document is rewritten");
+        }
+        return new DeltaLoad(path, previous, deletes, shape);
+    }
+
+    /**
+     * Return true if the given batter, with its pk assigned, must be upserted, because it is new
+     * or its document has changed; false if the document is unchanged since the last load.
+     */
+    public boolean accept(BaseballBatter bb, PartitionKey partitionKey) {
+
+        byte[] key = keyOf(bb.getId(), partitionKey);
+        long keyHash = DigestIndex.keyHash(key);
+        long digest = writer.digest(bb);
+        builder.add(keyHash, digest, key);
+        int slot = previous == null ? -1 : previous.find(keyHash);
+        if (slot < 0) {
+            added++;
+            return true;
+        }
+        seen.set(slot);
+        if (!reshaped && previous.digestAt(slot) == digest) {
+            unchanged++;
+            return false;
+        }
+        changed++;
+        return true;
+    }
+
+    /**
+     * Return the delete operations of the documents of the last load that were not accepted in
+     * this one; none without deletes.  Call once every batter has been accepted or not.
+     */
+    public List<CosmosItemOperation> deleteOperations() {
+
+        List<CosmosItemOperation> operations = new ArrayList<>();
+        if (!deletes || previous == null) {
+            return operations;
+        }
+        for (int slot = 0; slot < previous.getCapacity(); slot++) {
+            if (previous.isOccupied(slot) && !seen.get(slot)) {
+                String key = previous.keyStringAt(slot);
+                int separator = key.indexOf('\n');
+                operations.add(CosmosBulkOperations.getDeleteItemOperation(
+                        key.substring(0, separator), PartitionKeyJson.parse(key.substring(separator + 1))));
+            }
+        }
+        deleted = operations.size();
+        logger.warn("deleteOperations - " + deleted + " documents no longer in the source");
+        return operations;
+    }
+
+    /**
+     * Note the ids of the operations that failed; a delete of a document that is not found
+     * has done its job.
+     */
+    public void recordResult(OperationResult result) {
+
+        if (result.isSuccess()) {
+            return;
+        }
+        if (result.getStatusCode() == STATUS_NOT_FOUND
+                && String.valueOf(CosmosItemOperationType.DELETE).equals(result.getOperationType())) {
+            return;
+        }
+        if (result.getId() != null) {
+            failedIds.add(result.getId());
+        }
+    }
+
+    /**
+     * Write the index of this load, replacing that of the last load.  The failed upserts keep
+     * the digest of the last load, or are left out if they are new, and the failed deletes stay.
+     */
+    public void commit() throws IOException {
+
+        long start = System.currentTimeMillis();
+        if (!failedIds.isEmpty()) {
+            int accepted = builder.size();
+            for (int entry = 0; entry < accepted; entry++) {
+                byte[] key = builder.keyAt(entry);
+                if (failedIds.contains(idOf(key))) {
+                    int slot = previous == null ? -1 : previous.find(DigestIndex.keyHash(key));
+                    if (slot < 0) {
+                        builder.remove(entry);
+                    } else {
+                        builder.setDigest(entry, previous.digestAt(slot));
+                    }
+                }
+            }
+        }
+        if (deletes && previous != null) {
+            for (int slot = 0; slot < previous.getCapacity(); slot++) {
+                if (previous.isOccupied(slot) && !seen.get(slot)) {
+                    byte[] key = previous.keyAt(slot);
+                    if (failedIds.contains(idOf(key))) {
+                        builder.add(previous.keyHashAt(slot), previous.digestAt(slot), key);
+                    }
+                }
+            }
+        } else if (previous != null) {
+            // without deletes, the documents no longer in the source are still in the container
+            for (int slot = 0; slot < previous.getCapacity(); slot++) {
+                if (previous.isOccupied(slot) && !seen.get(slot)) {
+                    builder.add(previous.keyHashAt(slot), previous.digestAt(slot), previous.keyAt(slot));
+                }
+            }
+        }
+        long entries = builder.write(Paths.get(path));
+        logger.warn("commit - wrote " + path + ", entries: " + entries + ", failed: " + failedIds.size()
+                + ", ms: " + (System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Return the key of the given document, its id and partition key JSON separated by a newline,
+     * which an id can't contain.
+     */
+    static byte[] keyOf(String id, PartitionKey partitionKey) {
+
+        return (id + "\n" + partitionKey.toString()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String idOf(byte[] key) {
+
+        String text = new String(key, StandardCharsets.UTF_8);
+        return text.substring(0, text.indexOf('\n'));
+    }
+
+    public long getUnchanged() {
+        return unchanged;
+    }
+
+    public long getChanged() {
+        return changed;
+    }
+
+    public long getAdded() {
+        return added;
+    }
+
+    public long getDeleted() {
+        return deleted;
+    }
+
+    public String summary() {
+
+        return String.format("delta - added: %d, changed: %d, unchanged (skipped): %d, deleted: %d, index: %s",
+                added, changed, unchanged, deleted, path);
+    }
+}
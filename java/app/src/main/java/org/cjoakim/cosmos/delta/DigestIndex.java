@@ -0,0 +1,282 @@
+package org.cjoakim.cosmos.delta;
+
+import org.cjoakim.cosmos.util.Hash64;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A read-only, memory-mapped index from document key to the 64-bit digest of the document's
+ * content, as of the last load; written by a Builder.  The index is an open-addressing hash
+ * table, probed linearly, of the Hash64 of each key, so a lookup touches one or two slots of the
+ * mapped file and nothing is decoded on the heap.  The keys themselves are kept after the table,
+ * only so that those which disappear from the source can be deleted.
+ *
+ * File layout: magic, version, entry count, capacity (a power of two), key bytes and the
+ * DocumentShape profile of the digests, as up to 8 bytes of ASCII; then
+ * capacity slots of key hash, digest and key offset, a key hash of 0 being an empty slot; then
+ * the keys, each a length-prefixed UTF-8 string.  The table and the keys are mapped separately,
+ * and each may be up to 2GB, so an index holds up to about 30 million documents.  A version 1
+ * index has no profile, and is of the full shape.
+ */
+
+public class DigestIndex {
+
+    static final int MAGIC = 0x42444958;  // BDIX
+    static final int VERSION = 2;
+    private static final int HEADER_BYTES = 40;
+    private static final int V1_HEADER_BYTES = 32;
+    private static final int PROFILE_BYTES = 8;
+    private static final int SLOT_BYTES = 24;
+
+    // Instance variables
+    private long entries;
+    private int capacity;
+    private String profile;
+    private ByteBuffer table;
+    private ByteBuffer keys;
+
+    private DigestIndex() {
+        super();
+    }
+
+    /**
+     * Return the hash of the given key, never 0, which marks an empty slot.
+     */
+    public static long keyHash(byte[] key) {
+
+        long hash = Hash64.hash(key, 0, key.length);
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Memory-map the given index file.
+     */
+    public static DigestIndex map(Path path) throws IOException {
+
+        DigestIndex index = new DigestIndex();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(HEADER_BYTES, channel.size()));
+            int version = header.remaining() >= V1_HEADER_BYTES && header.getInt() == MAGIC ? header.getInt() : -1;
+            int headerBytes = version == 1 ? V1_HEADER_BYTES : HEADER_BYTES;
+            if ((version != 1 && version != VERSION) || header.limit() < headerBytes) {
+                throw new IOException("not a version 1 or " + VERSION + " digest index file: " + path);
+            }
+            index.entries = header.getLong();
+            long capacity = header.getLong();
+            long keyBytes = header.getLong();
+            index.profile = version == 1 ? "full" : readProfile(header);
+            if (headerBytes + capacity * SLOT_BYTES + keyBytes != channel.size() || Long.bitCount(capacity) != 1) {
+                throw new IOException("truncated or corrupt digest index file: " + path);
+            }
+            index.capacity = (int) capacity;
+            index.table = channel.map(FileChannel.MapMode.READ_ONLY, headerBytes, capacity * SLOT_BYTES);
+            index.keys = channel.map(FileChannel.MapMode.READ_ONLY, headerBytes + capacity * SLOT_BYTES, keyBytes);
+        }
+        return index;
+    }
+
+    private static String readProfile(ByteBuffer header) {
+
+        byte[] bytes = new byte[PROFILE_BYTES];
+        header.get(bytes);
+        int length = 0;
+        while (length < bytes.length && bytes[length] != 0) {
+            length++;
+        }
+        return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Return the slot of the given key hash, or -1 if it is not in the index.
+     */
+    public int find(long keyHash) {
+
+        int mask = capacity - 1;
+        for (int slot = (int) (keyHash ^ (keyHash >>> 32)) & mask; ; slot = (slot + 1) & mask) {
+            long hash = table.getLong(slot * SLOT_BYTES);
+            if (hash == keyHash) {
+                return slot;
+            }
+            if (hash == 0) {
+                return -1;
+            }
+        }
+    }
+
+    public boolean isOccupied(int slot) {
+
+        return table.getLong(slot * SLOT_BYTES) != 0;
+    }
+
+    public long keyHashAt(int slot) {
+
+        return table.getLong(slot * SLOT_BYTES);
+    }
+
+    public long digestAt(int slot) {
+
+        return table.getLong(slot * SLOT_BYTES + 8);
+    }
+
+    public byte[] keyAt(int slot) {
+
+        int offset = (int) table.getLong(slot * SLOT_BYTES + 16);
+        byte[] key = new byte[keys.getShort(offset) & 0xFFFF];
+        keys.get(offset + 2, key);
+        return key;
+    }
+
+    public String keyStringAt(int slot) {
+
+        return new String(keyAt(slot), StandardCharsets.UTF_8);
+    }
+
+    public long size() {
+        return entries;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Return the DocumentShape profile of the documents whose digests are in this index.
+     */
+    public String getProfile() {
+        return profile;
+    }
+
+    /**
+     * Accumulates the entries of a new index on the heap, in compact parallel arrays, and writes
+     * them as an index file.  A key added twice keeps its last digest.
+     */
+    public static class Builder {
+
+        // Instance variables
+        private byte[] profile;
+        private int count = 0;
+        private long[] keyHashes = new long[1024];
+        private long[] digests = new long[1024];
+        private long[] keyOffsets = new long[1024];
+        private byte[] keys = new byte[64 * 1024];
+        private int keyBytes = 0;
+
+        /**
+         * Build an index of digests of documents in the given DocumentShape profile.
+         */
+        public Builder(String profile) {
+            super();
+            this.profile = profile.getBytes(StandardCharsets.US_ASCII);
+            if (this.profile.length > PROFILE_BYTES) {
+                throw new IllegalArgumentException("digest index profiles are at most 8 characters: " + profile);
+            }
+        }
+
+        /**
+         * Add the given key, which is at most 64KB of UTF-8, and digest; return its entry number.
+         */
+        public int add(long keyHash, long digest, byte[] key) {
+
+            if (count == keyHashes.length) {
+                keyHashes = Arrays.copyOf(keyHashes, count * 2);
+                digests = Arrays.copyOf(digests, count * 2);
+                keyOffsets = Arrays.copyOf(keyOffsets, count * 2);
+            }
+            if (key.length > 0xFFFF) {
+                throw new IllegalArgumentException("digest index keys are at most 64KB: " + key.length);
+            }
+            if (keyBytes + 2 + key.length > keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(keys.length * 2, keyBytes + 2 + key.length));
+            }
+            keys[keyBytes] = (byte) (key.length >>> 8);
+            keys[keyBytes + 1] = (byte) key.length;
+            System.arraycopy(key, 0, keys, keyBytes + 2, key.length);
+            keyHashes[count] = keyHash;
+            digests[count] = digest;
+            keyOffsets[count] = keyBytes;
+            keyBytes += 2 + key.length;
+            return count++;
+        }
+
+        /**
+         * Remove the given entry, so that it is not written.
+         */
+        public void remove(int entry) {
+
+            keyHashes[entry] = 0;
+        }
+
+        public void setDigest(int entry, long digest) {
+
+            digests[entry] = digest;
+        }
+
+        public byte[] keyAt(int entry) {
+
+            int offset = (int) keyOffsets[entry];
+            int length = ((keys[offset] & 0xFF) << 8) | (keys[offset + 1] & 0xFF);
+            return Arrays.copyOfRange(keys, offset + 2, offset + 2 + length);
+        }
+
+        public int size() {
+            return count;
+        }
+
+        /**
+         * Write the entries as an index file, replacing the given path atomically; the table is
+         * filled in place through a writable mapping of the new file.  Return the entries written.
+         */
+        public long write(Path path) throws IOException {
+
+            long capacity = Long.highestOneBit(Math.max(16L, (long) count * 2 - 1)) << 1;
+            if (capacity * SLOT_BYTES > Integer.MAX_VALUE) {
+                throw new IOException("too many entries for a digest index: " + count);
+            }
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            long entries = 0;
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES, capacity * SLOT_BYTES);
+                int mask = (int) capacity - 1;
+                for (int i = 0; i < count; i++) {
+                    long keyHash = keyHashes[i];
+                    if (keyHash == 0) {
+                        continue;
+                    }
+                    int slot = (int) (keyHash ^ (keyHash >>> 32)) & mask;
+                    while (table.getLong(slot * SLOT_BYTES) != 0 && table.getLong(slot * SLOT_BYTES) != keyHash) {
+                        slot = (slot + 1) & mask;
+                    }
+                    if (table.getLong(slot * SLOT_BYTES) == 0) {
+                        entries++;
+                    }
+                    table.putLong(slot * SLOT_BYTES, keyHash);
+                    table.putLong(slot * SLOT_BYTES + 8, digests[i]);
+                    table.putLong(slot * SLOT_BYTES + 16, keyOffsets[i]);
+                }
+                table.force();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(VERSION).putLong(entries).putLong(capacity).putLong(keyBytes).put(profile);
+                header.position(HEADER_BYTES).flip();
+                channel.write(header, 0);
+                ByteBuffer keyBuffer = ByteBuffer.wrap(keys, 0, keyBytes);
+                long position = HEADER_BYTES + capacity * SLOT_BYTES;
+                while (keyBuffer.hasRemaining()) {
+                    position += channel.write(keyBuffer, position);
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return entries;
+        }
+    }
+}
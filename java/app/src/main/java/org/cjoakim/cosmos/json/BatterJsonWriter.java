@@ -0,0 +1,319 @@
+package org.cjoakim.cosmos.json;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.model.Player;
+import org.cjoakim.cosmos.shape.DocumentShape;
+import org.cjoakim.cosmos.util.Hash64;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reflection-free JSON writer for BaseballBatter documents; the equivalent of what a code
+ * generator would emit for the class.  Properties are written in declaration order with the
+ * same names Jackson uses, omitting the parse-time 'exception' flag and the derived 'valid',
+ * and the embedded 'player' only if it is set, with its null attributes left out.  With a
+ * DocumentShape other than full, the properties are named, left out or packed per the shape.
+ * Each document is written into a reusable scratch buffer and then copied into 1MB shared
+ * chunks, so a document costs no allocation beyond its JsonPayload.
+ * An instance is not thread-safe; use one per loading thread or pipeline.
+ */
+
+public class BatterJsonWriter {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(BatterJsonWriter.class);
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    // Instance variables
+    private byte[] scratch = new byte[2048];
+    private int position;
+    private byte[] chunk = new byte[CHUNK_SIZE];
+    private int chunkUsed = 0;
+    private long documents = 0;
+    private long bytes = 0;
+    private long nanos = 0;
+    private final DocumentShape shape;
+    private final String[] statNames = new String[DocumentShape.STATS.size()];
+    private final boolean[] packed = new boolean[DocumentShape.STATS.size()];
+    private final int[] stats = new int[DocumentShape.STATS.size()];
+
+    public BatterJsonWriter() {
+        this(DocumentShape.full());
+    }
+
+    public BatterJsonWriter(DocumentShape shape) {
+        super();
+        this.shape = shape;
+        for (int i = 0; i < statNames.length; i++) {
+            statNames[i] = shape.propertyOf(DocumentShape.STATS.get(i));
+            packed[i] = shape.isPacked(DocumentShape.STATS.get(i));
+        }
+    }
+
+    public JsonPayload write(BaseballBatter bb) {
+
+        long start = System.nanoTime();
+        serialize(bb);
+        if (chunkUsed + position > chunk.length) {
+            chunk = new byte[Math.max(CHUNK_SIZE, position)];
+            chunkUsed = 0;
+        }
+        System.arraycopy(scratch, 0, chunk, chunkUsed, position);
+        JsonPayload payload = new JsonPayload(chunk, chunkUsed, position, bb.getId(), bb.getPk());
+        chunkUsed += position;
+        documents++;
+        bytes += position;
+        nanos += System.nanoTime() - start;
+        return payload;
+    }
+
+    /**
+     * Return the Hash64 of the JSON of the given batter, as write() would write it, without
+     * keeping the JSON; two batters have the same digest if their documents are the same.
+     */
+    public long digest(BaseballBatter bb) {
+
+        serialize(bb);
+        return Hash64.hash(scratch, 0, position);
+    }
+
+    private void serialize(BaseballBatter bb) {
+
+        position = 0;
+        writeByte('{');
+        writeString("id", bb.getId(), false);
+        if (shape.writesPk()) {
+            writeField("pk", bb.getPk());
+        }
+        if (!shape.omitsPlayerID(bb.getPlayerID(), bb.getPk())) {
+            writeField("playerID", bb.getPlayerID());
+        }
+        writeInt(shape.propertyOf("year"), bb.getYear());
+        writeField("stint", bb.getStint());
+        writeField("teamID", bb.getTeamID());
+        writeField("leagueID", bb.getLeagueID());
+        stats[0] = bb.getGames();
+        stats[1] = bb.getAtBats();
+        stats[2] = bb.getRuns();
+        stats[3] = bb.getHits();
+        stats[4] = bb.getDoubles();
+        stats[5] = bb.getTriples();
+        stats[6] = bb.getHomeRuns();
+        stats[7] = bb.getRbi();
+        stats[8] = bb.getStolenBases();
+        stats[9] = bb.getCaughtStealing();
+        stats[10] = bb.getBaseOnBalls();
+        stats[11] = bb.getStrikeouts();
+        stats[12] = bb.getIntentionalBB();
+        stats[13] = bb.getHitByPitch();
+        boolean anyPacked = false;
+        for (int i = 0; i < stats.length; i++) {
+            anyPacked |= packed[i];
+            if (!packed[i] && !(stats[i] == -1 && shape.omitsMissing())) {
+                writeInt(statNames[i], stats[i]);
+            }
+        }
+        if (anyPacked) {
+            writeName(DocumentShape.PACKED_STATS, true);
+            writeByte('[');
+            boolean first = true;
+            for (int i = 0; i < stats.length; i++) {
+                if (packed[i]) {
+                    if (!first) {
+                        writeByte(',');
+                    }
+                    writeIntValue(stats[i]);
+                    first = false;
+                }
+            }
+            writeByte(']');
+        }
+        if (bb.getPlayer() != null) {
+            writePlayer(bb.getPlayer());
+        }
+        writeByte('}');
+    }
+
+    private void writePlayer(Player player) {
+
+        writeName(shape.propertyOf("player"), true);
+        writeByte('{');
+        int start = position;
+        writeOptionalString(shape.propertyOf("nameFirst"), player.getNameFirst(), start);
+        writeOptionalString(shape.propertyOf("nameLast"), player.getNameLast(), start);
+        writeOptionalString(shape.propertyOf("bats"), player.getBats(), start);
+        writeOptionalString(shape.propertyOf("throws"), player.getThrowsHand(), start);
+        if (player.getBirthYear() != null) {
+            writeName(shape.propertyOf("birthYear"), position != start);
+            writeIntValue(player.getBirthYear());
+        }
+        writeOptionalString(shape.propertyOf("birthCountry"), player.getBirthCountry(), start);
+        writeOptionalString(shape.propertyOf("debut"), player.getDebut(), start);
+        writeOptionalString(shape.propertyOf("finalGame"), player.getFinalGame(), start);
+        writeByte('}');
+    }
+
+    /**
+     * Write the given string field of the batter, under its property name, unless it is null and
+     * the shape leaves out missing values.
+     */
+    private void writeField(String field, String value) {
+
+        if (value != null || !shape.omitsMissing()) {
+            writeString(shape.propertyOf(field), value, true);
+        }
+    }
+
+    /**
+     * Write the given property of an object begun at 'start' unless it is null, as Jackson does
+     * with NON_NULL.
+     */
+    private void writeOptionalString(String name, String value, int start) {
+
+        if (value != null) {
+            writeString(name, value, position != start);
+        }
+    }
+
+    public long getDocuments() {
+        return documents;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public DocumentShape getShape() {
+        return shape;
+    }
+
+    public String summary() {
+
+        return String.format("documents: %d, bytes: %d, bytes/doc: %.1f, ns/doc: %.0f",
+                documents, bytes,
+                documents == 0 ? 0.0 : (double) bytes / documents,
+                documents == 0 ? 0.0 : (double) nanos / documents);
+    }
+
+    public void logSummary() {
+
+        logger.warn("BatterJsonWriter - " + summary());
+    }
+
+    private void writeName(String name, boolean comma) {
+
+        ensure(name.length() + 4);
+        if (comma) {
+            scratch[position++] = ',';
+        }
+        scratch[position++] = '"';
+        for (int i = 0; i < name.length(); i++) {
+            scratch[position++] = (byte) name.charAt(i);  // names are ASCII
+        }
+        scratch[position++] = '"';
+        scratch[position++] = ':';
+    }
+
+    private void writeString(String name, String value, boolean comma) {
+
+        writeName(name, comma);
+        if (value == null) {
+            writeAscii("null");
+            return;
+        }
+        ensure(value.length() * 6 + 2);
+        scratch[position++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                scratch[position++] = (byte) c;
+            } else if (c == '"' || c == '\\') {
+                scratch[position++] = '\\';
+                scratch[position++] = (byte) c;
+            } else if (c < 0x20) {
+                scratch[position++] = '\\';
+                scratch[position++] = 'u';
+                scratch[position++] = '0';
+                scratch[position++] = '0';
+                scratch[position++] = HEX[c >> 4];
+                scratch[position++] = HEX[c & 0xF];
+            } else {
+                int codePoint = Character.codePointAt(value, i);
+                if (Character.isSupplementaryCodePoint(codePoint)) {
+                    i++;
+                }
+                writeUtf8(codePoint);
+            }
+        }
+        scratch[position++] = '"';
+    }
+
+    private void writeUtf8(int codePoint) {
+
+        if (codePoint < 0x800) {
+            scratch[position++] = (byte) (0xC0 | (codePoint >> 6));
+        } else if (codePoint < 0x10000) {
+            scratch[position++] = (byte) (0xE0 | (codePoint >> 12));
+            scratch[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        } else {
+            scratch[position++] = (byte) (0xF0 | (codePoint >> 18));
+            scratch[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            scratch[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        }
+        scratch[position++] = (byte) (0x80 | (codePoint & 0x3F));
+    }
+
+    private void writeInt(String name, int value) {
+
+        writeName(name, true);
+        writeIntValue(value);
+    }
+
+    private void writeIntValue(int value) {
+
+        if (value == Integer.MIN_VALUE) {
+            writeAscii(Integer.toString(value));
+            return;
+        }
+        ensure(11);
+        if (value < 0) {
+            scratch[position++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            scratch[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        position += digits;
+    }
+
+    private void writeAscii(String s) {
+
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            scratch[position++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void writeByte(char c) {
+
+        ensure(1);
+        scratch[position++] = (byte) c;
+    }
+
+    private void ensure(int n) {
+
+        if (position + n > scratch.length) {
+            byte[] grown = new byte[Math.max(scratch.length * 2, position + n)];
+            System.arraycopy(scratch, 0, grown, 0, position);
+            scratch = grown;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.cjoakim.cosmos.json;
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+import com.fasterxml.jackson.databind.util.RawValue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A document that has already been serialized to UTF-8 JSON, as a slice of a shared byte array.
+ * It is written verbatim, as a raw value, wherever Jackson serializes it; so as the item of a
+ * bulk operation (see asItem) the SDK does not serialize the document through reflection.
+ * The SDK builds the request body as a String, so the String value is decoded once, on demand.
+ */
+
+public class JsonPayload implements SerializableString {
+
+    // Instance variables
+    private final byte[] buffer;
+    private final int offset;
+    private final int length;
+    private final String id;
+    private final String partitionKey;
+    private String value = null;
+
+    JsonPayload(byte[] buffer, int offset, int length, String id, String partitionKey) {
+        super();
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.id = id;
+        this.partitionKey = partitionKey;
+    }
+
+    /**
+     * Return this payload as a JsonNode, which the SDK adds to the bulk request as is.
+     */
+    public JsonNode asItem() {
+
+        return new POJONode(new RawValue(this));
+    }
+
+    /**
+     * Return the JsonPayload of the given bulk operation item, or null if it has none.
+     */
+    public static JsonPayload of(Object item) {
+
+        if (item instanceof POJONode) {
+            Object pojo = ((POJONode) item).getPojo();
+            if (pojo instanceof RawValue && ((RawValue) pojo).rawValue() instanceof JsonPayload) {
+                return (JsonPayload) ((RawValue) pojo).rawValue();
+            }
+        }
+        return null;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getPartitionKey() {
+        return partitionKey;
+    }
+
+    /**
+     * Return the size of the serialized document in bytes.
+     */
+    public int size() {
+        return length;
+    }
+
+    public byte[] toByteArray() {
+
+        byte[] bytes = new byte[length];
+        System.arraycopy(buffer, offset, bytes, 0, length);
+        return bytes;
+    }
+
+    @Override
+    public String getValue() {
+
+        if (value == null) {
+            value = new String(buffer, offset, length, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    @Override
+    public int charLength() {
+        return getValue().length();
+    }
+
+    @Override
+    public char[] asQuotedChars() {
+        return new SerializedString(getValue()).asQuotedChars();
+    }
+
+    @Override
+    public byte[] asUnquotedUTF8() {
+        return toByteArray();
+    }
+
+    @Override
+    public byte[] asQuotedUTF8() {
+        return new SerializedString(getValue()).asQuotedUTF8();
+    }
+
+    @Override
+    public int appendQuotedUTF8(byte[] buffer, int offset) {
+        return new SerializedString(getValue()).appendQuotedUTF8(buffer, offset);
+    }
+
+    @Override
+    public int appendQuoted(char[] buffer, int offset) {
+        return new SerializedString(getValue()).appendQuoted(buffer, offset);
+    }
+
+    @Override
+    public int appendUnquotedUTF8(byte[] buffer, int offset) {
+
+        if (offset + length > buffer.length) {
+            return -1;
+        }
+        System.arraycopy(this.buffer, this.offset, buffer, offset, length);
+        return length;
+    }
+
+    @Override
+    public int appendUnquoted(char[] buffer, int offset) {
+
+        String s = getValue();
+        if (offset + s.length() > buffer.length) {
+            return -1;
+        }
+        s.getChars(0, s.length(), buffer, offset);
+        return s.length();
+    }
+
+    @Override
+    public int writeQuotedUTF8(OutputStream out) throws IOException {
+        return new SerializedString(getValue()).writeQuotedUTF8(out);
+    }
+
+    @Override
+    public int writeUnquotedUTF8(OutputStream out) throws IOException {
+
+        out.write(buffer, offset, length);
+        return length;
+    }
+
+    @Override
+    public int putQuotedUTF8(ByteBuffer buffer) throws IOException {
+        return new SerializedString(getValue()).putQuotedUTF8(buffer);
+    }
+
+    @Override
+    public int putUnquotedUTF8(ByteBuffer buffer) throws IOException {
+
+        if (length > buffer.remaining()) {
+            return -1;
+        }
+        buffer.put(this.buffer, offset, length);
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return getValue();
+    }
+}
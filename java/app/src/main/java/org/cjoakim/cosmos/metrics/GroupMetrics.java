@@ -0,0 +1,205 @@
+package org.cjoakim.cosmos.metrics;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregated operation and batch metrics for one throughput control group.
+ * All methods are thread-safe; responses are recorded from Reactor threads.
+ */
+
+public class GroupMetrics {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    // Instance variables
+    private String groupName;
+    private LongAdder operations = new LongAdder();
+    private LongAdder successes = new LongAdder();
+    private LongAdder throttles = new LongAdder();
+    private LongAdder failures = new LongAdder();
+    private LongAdder retryAfterMs = new LongAdder();
+    private LongAdder retries = new LongAdder();
+    private LongAdder batches = new LongAdder();
+    private LongAdder sizedDocuments = new LongAdder();
+    private LongAdder documentBytes = new LongAdder();
+    private DoubleAdder requestCharge = new DoubleAdder();
+    private Map<String, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private Histogram operationLatency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private Histogram batchLatency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private AtomicInteger queuedBatches = new AtomicInteger();
+    private AtomicInteger inFlightBatches = new AtomicInteger();
+
+    public GroupMetrics(String groupName) {
+        super();
+        this.groupName = groupName;
+    }
+
+    public void recordOperation(OperationResult result) {
+
+        operations.increment();
+        requestCharge.add(result.getRequestCharge());
+        retries.add(result.getRetryCount());
+        if (result.isSuccess()) {
+            successes.increment();
+        } else {
+            failures.increment();
+        }
+        if (result.isThrottled()) {
+            throttles.increment();
+            retryAfterMs.add(result.getRetryAfterMs());
+        }
+        String status = result.getStatusCode() + "/" + result.getSubStatusCode();
+        statusCounts.computeIfAbsent(status, k -> new LongAdder()).increment();
+        if (result.getLatencyMicros() > 0) {
+            operationLatency.recordValue(Math.min(result.getLatencyMicros(), HIGHEST_TRACKABLE_MICROS));
+        }
+    }
+
+    public void recordBatch(long latencyMicros) {
+
+        batches.increment();
+        batchLatency.recordValue(Math.min(Math.max(latencyMicros, 0), HIGHEST_TRACKABLE_MICROS));
+    }
+
+    /**
+     * Record that a batch has been cut and is waiting to be admitted and sent.
+     */
+    public void batchQueued() {
+
+        queuedBatches.incrementAndGet();
+    }
+
+    public void batchStarted() {
+
+        queuedBatches.decrementAndGet();
+        inFlightBatches.incrementAndGet();
+    }
+
+    public void batchFinished() {
+
+        inFlightBatches.decrementAndGet();
+    }
+
+    /**
+     * Record the serialized size of a document sent; known only for pre-serialized documents.
+     */
+    public void recordDocumentBytes(long bytes) {
+
+        sizedDocuments.increment();
+        documentBytes.add(bytes);
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public long getOperations() {
+        return operations.sum();
+    }
+
+    public long getSuccesses() {
+        return successes.sum();
+    }
+
+    public long getThrottles() {
+        return throttles.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getSizedDocuments() {
+        return sizedDocuments.sum();
+    }
+
+    public long getDocumentBytes() {
+        return documentBytes.sum();
+    }
+
+    public double getRequestCharge() {
+        return requestCharge.sum();
+    }
+
+    public int getQueuedBatches() {
+        return queuedBatches.get();
+    }
+
+    public int getInFlightBatches() {
+        return inFlightBatches.get();
+    }
+
+    public Map<String, Long> getStatusCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        statusCounts.forEach((k, v) -> counts.put(k, v.sum()));
+        return counts;
+    }
+
+    public Histogram getOperationLatency() {
+        return operationLatency;
+    }
+
+    public Histogram getBatchLatency() {
+        return batchLatency;
+    }
+
+    /**
+     * Return a one-line summary of this group; latency percentiles are in milliseconds.
+     */
+    public String summary(long elapsedMs) {
+
+        long ops = getOperations();
+        double ru = getRequestCharge();
+        double seconds = Math.max(elapsedMs, 1) / 1000.0;
+        StringBuffer sb = new StringBuffer();
+        sb.append("group: ").append(groupName);
+        sb.append(", ops: ").append(ops);
+        sb.append(", ok: ").append(getSuccesses());
+        sb.append(", failed: ").append(getFailures());
+        sb.append(", 429s: ").append(getThrottles());
+        sb.append(", retries: ").append(getRetries());
+        sb.append(", retryAfterMs: ").append(getRetryAfterMs());
+        sb.append(String.format(", RU: %.2f, RU/s: %.2f, RU/op: %.2f, ops/s: %.2f",
+                ru, ru / seconds, ops == 0 ? 0.0 : ru / ops, ops / seconds));
+        long sized = getSizedDocuments();
+        if (sized > 0) {
+            double kb = getDocumentBytes() / 1024.0;
+            sb.append(String.format(", bytes/doc: %.1f, RU/KB: %.2f", (double) getDocumentBytes() / sized, ru / kb));
+        }
+        sb.append(", op ms ").append(percentiles(operationLatency));
+        sb.append(", batches: ").append(getBatches());
+        sb.append(", batch ms ").append(percentiles(batchLatency));
+        sb.append(", status: ").append(getStatusCounts());
+        return sb.toString();
+    }
+
+    private static String percentiles(Histogram h) {
+
+        return String.format("p50/p99/p999/max: %.2f/%.2f/%.2f/%.2f",
+                h.getValueAtPercentile(50.0) / 1000.0,
+                h.getValueAtPercentile(99.0) / 1000.0,
+                h.getValueAtPercentile(99.9) / 1000.0,
+                h.getMaxValue() / 1000.0);
+    }
+}
@@ -0,0 +1,116 @@
+package org.cjoakim.cosmos.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs one line per interval, usually a second, while a load is running: for each throughput
+ * control group the operations/s, RU/s and 429s/s (including those retried by the SDK) over
+ * the interval, and the batches in flight and queued; then the JVM's GC collections and
+ * collection time over the interval, and the heap in use.
+ */
+
+public class LiveMetricsReporter {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(LiveMetricsReporter.class);
+
+    // Instance variables
+    private MetricsRegistry registry;
+    private long intervalMs;
+    private Map<String, double[]> previous = new HashMap<>();
+    private long previousGcCount = 0;
+    private long previousGcMs = 0;
+    private long previousNanos = 0;
+    private long startNanos = 0;
+    private Disposable ticker = null;
+
+    public LiveMetricsReporter(MetricsRegistry registry, long intervalMs) {
+        super();
+        this.registry = registry;
+        this.intervalMs = Math.max(intervalMs, 100);
+    }
+
+    public synchronized LiveMetricsReporter start() {
+
+        if (ticker == null) {
+            startNanos = System.nanoTime();
+            previousNanos = startNanos;
+            previousGcCount = gcCount();
+            previousGcMs = gcMs();
+            ticker = Schedulers.parallel().schedulePeriodically(this::report, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    public synchronized void stop() {
+
+        if (ticker != null) {
+            ticker.dispose();
+            ticker = null;
+        }
+    }
+
+    public synchronized void report() {
+
+        logger.warn("live - " + line());
+    }
+
+    /**
+     * Return the report line for the time since the previous one, and make this one the previous.
+     */
+    synchronized String line() {
+
+        long now = System.nanoTime();
+        double seconds = Math.max(now - previousNanos, 1) / 1_000_000_000.0;
+        previousNanos = now;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%.0fs", (now - startNanos) / 1_000_000_000.0));
+        for (GroupMetrics gm : registry.getGroups()) {
+            double[] current = { gm.getOperations(), gm.getRequestCharge(), gm.getThrottles() + gm.getRetries() };
+            double[] last = previous.getOrDefault(gm.getGroupName(), new double[current.length]);
+            previous.put(gm.getGroupName(), current);
+            sb.append(String.format(" | %s ops/s: %.0f, RU/s: %.0f, 429/s: %.0f, in flight: %d, queued: %d",
+                    gm.getGroupName(),
+                    (current[0] - last[0]) / seconds,
+                    (current[1] - last[1]) / seconds,
+                    (current[2] - last[2]) / seconds,
+                    gm.getInFlightBatches(),
+                    gm.getQueuedBatches()));
+        }
+        long gcCount = gcCount();
+        long gcMs = gcMs();
+        Runtime runtime = Runtime.getRuntime();
+        sb.append(String.format(" | gc: %d, gc ms: %d, heap MB: %d",
+                gcCount - previousGcCount, gcMs - previousGcMs, (runtime.totalMemory() - runtime.freeMemory()) >> 20));
+        previousGcCount = gcCount;
+        previousGcMs = gcMs;
+        return sb.toString();
+    }
+
+    static long gcCount() {
+
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(gc.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    static long gcMs() {
+
+        long ms = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ms += Math.max(gc.getCollectionTime(), 0);
+        }
+        return ms;
+    }
+}
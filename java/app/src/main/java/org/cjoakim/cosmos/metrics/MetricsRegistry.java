@@ -0,0 +1,43 @@
+package org.cjoakim.cosmos.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the GroupMetrics for each throughput control group used in a run.
+ */
+
+public class MetricsRegistry {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(MetricsRegistry.class);
+
+    // Instance variables
+    private Map<String, GroupMetrics> groups = new ConcurrentHashMap<>();
+
+    public MetricsRegistry() {
+        super();
+    }
+
+    public GroupMetrics getGroup(String groupName) {
+
+        return groups.computeIfAbsent(groupName, GroupMetrics::new);
+    }
+
+    public List<GroupMetrics> getGroups() {
+
+        return new ArrayList<>(groups.values());
+    }
+
+    public void logReport(long elapsedMs) {
+
+        for (GroupMetrics gm : groups.values()) {
+            logger.warn("metrics - " + gm.summary(elapsedMs));
+        }
+    }
+}
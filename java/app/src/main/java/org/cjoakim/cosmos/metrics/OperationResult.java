@@ -0,0 +1,153 @@
+package org.cjoakim.cosmos.metrics;
+
+import com.azure.cosmos.CosmosDiagnostics;
+import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.CosmosBulkItemResponse;
+import com.azure.cosmos.models.CosmosBulkOperationResponse;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.CosmosItemResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.cjoakim.cosmos.json.JsonPayload;
+import org.cjoakim.cosmos.model.BaseballBatter;
+
+/**
+ * The outcome of a single Cosmos DB item operation, independent of how it was executed.
+ */
+
+@NoArgsConstructor
+@Data
+public class OperationResult {
+
+    public static final int STATUS_TOO_MANY_REQUESTS = 429;
+    public static final String OPERATION_TYPE_QUERY = "QUERY";
+
+    // Instance variables
+    String id;
+    String operationType;
+    int    statusCode;
+    int    subStatusCode;
+    double requestCharge;
+    long   retryAfterMs;
+    long   latencyMicros;
+    int    retryCount;
+    String error;
+
+    public static OperationResult fromBulkResponse(CosmosBulkOperationResponse<?> resp) {
+
+        OperationResult result = new OperationResult();
+        CosmosItemOperation op = resp.getOperation();
+        if (op != null) {
+            result.setId(idOf(op));
+            result.setOperationType(String.valueOf(op.getOperationType()));
+        }
+        CosmosBulkItemResponse itemResponse = resp.getResponse();
+        if (itemResponse != null) {
+            result.setStatusCode(itemResponse.getStatusCode());
+            result.setSubStatusCode(itemResponse.getSubStatusCode());
+            result.setRequestCharge(itemResponse.getRequestCharge());
+            if (itemResponse.getRetryAfterDuration() != null) {
+                result.setRetryAfterMs(itemResponse.getRetryAfterDuration().toMillis());
+            }
+            if (itemResponse.getDuration() != null) {
+                result.setLatencyMicros(itemResponse.getDuration().toNanos() / 1000);
+            }
+            CosmosDiagnostics diagnostics = itemResponse.getCosmosDiagnostics();
+            if (diagnostics != null && diagnostics.getDiagnosticsContext() != null) {
+                result.setRetryCount(diagnostics.getDiagnosticsContext().getRetryCount());
+            }
+        }
+        Exception e = resp.getException();
+        if (e != null) {
+            result.applyException(e);
+        }
+        return result;
+    }
+
+    /**
+     * Return the result of the given operation executed as a point operation, from its response.
+     */
+    public static OperationResult fromItemResponse(CosmosItemOperation op, CosmosItemResponse<?> resp) {
+
+        OperationResult result = fromOperation(op);
+        result.setStatusCode(resp.getStatusCode());
+        result.setRequestCharge(resp.getRequestCharge());
+        if (resp.getDuration() != null) {
+            result.setLatencyMicros(resp.getDuration().toNanos() / 1000);
+        }
+        CosmosDiagnostics diagnostics = resp.getDiagnostics();
+        if (diagnostics != null && diagnostics.getDiagnosticsContext() != null) {
+            result.setRetryCount(diagnostics.getDiagnosticsContext().getRetryCount());
+        }
+        return result;
+    }
+
+    /**
+     * Return the result of the given operation executed as a point operation, or of a query if
+     * the operation is null, from the exception it failed with.
+     */
+    public static OperationResult fromException(CosmosItemOperation op, Exception e) {
+
+        OperationResult result = fromOperation(op);
+        result.applyException(e);
+        return result;
+    }
+
+    private static OperationResult fromOperation(CosmosItemOperation op) {
+
+        OperationResult result = new OperationResult();
+        if (op != null) {
+            result.setId(idOf(op));
+            result.setOperationType(String.valueOf(op.getOperationType()));
+        }
+        return result;
+    }
+
+    private void applyException(Exception e) {
+
+        error = e.getClass().getSimpleName();
+        if (e instanceof CosmosException) {
+            CosmosException ce = (CosmosException) e;
+            statusCode = ce.getStatusCode();
+            subStatusCode = ce.getSubStatusCode();
+            requestCharge = ce.getRequestCharge();
+            if (ce.getRetryAfterDuration() != null) {
+                retryAfterMs = ce.getRetryAfterDuration().toMillis();
+            }
+        }
+    }
+
+    /**
+     * Return the id of the document the given operation refers to.  Upserts and creates carry
+     * the document rather than an id, so their id is taken from the document; null if unknown.
+     */
+    public static String idOf(CosmosItemOperation op) {
+
+        if (op.getId() != null) {
+            return op.getId();
+        }
+        Object item = op.getItem();
+        JsonPayload payload = JsonPayload.of(item);
+        if (payload != null) {
+            return payload.getId();
+        }
+        if (item instanceof BaseballBatter) {
+            return ((BaseballBatter) item).getId();
+        }
+        if (item instanceof JsonNode) {
+            return ((JsonNode) item).path("id").asText(null);
+        }
+        return null;
+    }
+
+    public boolean isSuccess() {
+
+        return error == null && statusCode >= 200 && statusCode < 300;
+    }
+
+    public boolean isThrottled() {
+
+        return statusCode == STATUS_TOO_MANY_REQUESTS;
+    }
+}
@@ -0,0 +1,176 @@
+package org.cjoakim.cosmos.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.HdrHistogram.Histogram;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Serves the metrics of a MetricsRegistry, and of the JVM, in the Prometheus text format at
+ * http://host:port/metrics while a load is running, using the JDK's built-in HTTP server.
+ * The server listens on the loopback address unless it is started for all interfaces.
+ */
+
+public class PrometheusEndpoint {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(PrometheusEndpoint.class);
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+
+    // Instance variables
+    private MetricsRegistry registry;
+    private HttpServer server = null;
+
+    public PrometheusEndpoint(MetricsRegistry registry) {
+        super();
+        this.registry = registry;
+    }
+
+    public PrometheusEndpoint start(int port) throws IOException {
+
+        return start(port, false);
+    }
+
+    /**
+     * Serve the metrics at the given port, 0 for any free port, on the loopback address or
+     * on all interfaces.
+     */
+    public synchronized PrometheusEndpoint start(int port, boolean allInterfaces) throws IOException {
+
+        if (server == null) {
+            InetSocketAddress address = allInterfaces
+                    ? new InetSocketAddress(port) : new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+            server = HttpServer.create(address, 0);
+            server.createContext("/metrics", this::handle);
+            server.start();
+            String host = allInterfaces ? "0.0.0.0" : InetAddress.getLoopbackAddress().getHostAddress();
+            logger.warn("start - serving metrics at http://" + host + ":" + server.getAddress().getPort() + "/metrics");
+        }
+        return this;
+    }
+
+    public synchronized void stop() {
+
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    public synchronized int getPort() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+
+        byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Return the current metrics in the Prometheus text exposition format.
+     */
+    public String scrape() {
+
+        List<GroupMetrics> groups = registry.getGroups();
+        StringBuilder sb = new StringBuilder();
+        counter(sb, groups, "cosmos_operations_total", "Bulk operation responses.", GroupMetrics::getOperations);
+        counter(sb, groups, "cosmos_operation_failures_total", "Bulk operations that failed.", GroupMetrics::getFailures);
+        counter(sb, groups, "cosmos_throttles_total", "Bulk operations that failed with a 429.", GroupMetrics::getThrottles);
+        counter(sb, groups, "cosmos_retries_total", "Retries by the SDK, mostly of 429s.", GroupMetrics::getRetries);
+        counter(sb, groups, "cosmos_request_units_total", "Request units charged.", GroupMetrics::getRequestCharge);
+        counter(sb, groups, "cosmos_batches_total", "Bulk batches completed.", GroupMetrics::getBatches);
+        gauge(sb, groups, "cosmos_batches_in_flight", "Bulk batches being executed.", GroupMetrics::getInFlightBatches);
+        gauge(sb, groups, "cosmos_batches_queued", "Bulk batches waiting to be admitted.", GroupMetrics::getQueuedBatches);
+        summary(sb, groups, "cosmos_operation_latency_seconds", "Bulk operation latency.", false);
+        summary(sb, groups, "cosmos_batch_latency_seconds", "Bulk batch latency.", true);
+
+        header(sb, "jvm_gc_collections_total", "counter", "JVM garbage collections.");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sample(sb, "jvm_gc_collections_total", "gc", gc.getName(), gc.getCollectionCount());
+        }
+        header(sb, "jvm_gc_collection_seconds_total", "counter", "JVM garbage collection time.");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sample(sb, "jvm_gc_collection_seconds_total", "gc", gc.getName(), gc.getCollectionTime() / 1000.0);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        header(sb, "jvm_memory_heap_used_bytes", "gauge", "JVM heap in use.");
+        sb.append("jvm_memory_heap_used_bytes ").append(runtime.totalMemory() - runtime.freeMemory()).append('\n');
+        return sb.toString();
+    }
+
+    private static void counter(
+            StringBuilder sb, List<GroupMetrics> groups, String name, String help, ToDoubleFunction<GroupMetrics> value) {
+
+        metric(sb, groups, name, "counter", help, value);
+    }
+
+    private static void gauge(
+            StringBuilder sb, List<GroupMetrics> groups, String name, String help, ToDoubleFunction<GroupMetrics> value) {
+
+        metric(sb, groups, name, "gauge", help, value);
+    }
+
+    private static void metric(StringBuilder sb, List<GroupMetrics> groups,
+                               String name, String type, String help, ToDoubleFunction<GroupMetrics> value) {
+
+        header(sb, name, type, help);
+        for (GroupMetrics gm : groups) {
+            sample(sb, name, "group", gm.getGroupName(), value.applyAsDouble(gm));
+        }
+    }
+
+    private static void summary(StringBuilder sb, List<GroupMetrics> groups, String name, String help, boolean batches) {
+
+        header(sb, name, "summary", help);
+        for (GroupMetrics gm : groups) {
+            Histogram h = batches ? gm.getBatchLatency() : gm.getOperationLatency();
+            String group = escape(gm.getGroupName());
+            for (double q : QUANTILES) {
+                sb.append(name).append("{group=\"").append(group).append("\",quantile=\"").append(q).append("\"} ")
+                        .append(h.getValueAtPercentile(q * 100.0) / 1_000_000.0).append('\n');
+            }
+            long sumMicros = Math.round(h.getMean() * h.getTotalCount());
+            sb.append(name).append("_sum{group=\"").append(group).append("\"} ").append(sumMicros / 1_000_000.0).append('\n');
+            sb.append(name).append("_count{group=\"").append(group).append("\"} ").append(h.getTotalCount()).append('\n');
+        }
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String label, String labelValue, double value) {
+
+        sb.append(name).append('{').append(label).append("=\"").append(escape(labelValue)).append("\"} ");
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+        sb.append('\n');
+    }
+
+    private static String escape(String labelValue) {
+
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
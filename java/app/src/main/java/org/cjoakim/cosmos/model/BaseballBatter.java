@@ -1,12 +1,11 @@
 package org.cjoakim.cosmos.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.UUID;
-
 @NoArgsConstructor
 @Data
 public class BaseballBatter {
@@ -35,103 +34,26 @@ public class BaseballBatter {
     int    strikeouts = -1;
     int    intentionalBB = -1;
     int    hitByPitch = -1;
+
+    // Instance variables - from the People.csv file, if enriched; see PeopleDictionary
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Player player;
+
     boolean exception;
 
-    public BaseballBatter(String[] fields, String csvLine) {
-        super();
-        String[] values = csvLine.split("[,]", 0);
-        if (fields.length == values.length) {
-            for (int i = 0; i < values.length; i++) {
-                String value = values[i].strip();
-                try {
-                    switch (i) {
-                        case 0:
-                            setId(UUID.randomUUID().toString());
-                            setPlayerID(value);
-                            setPk(value);
-                            break;
-                        case 1:
-                            setYear(Integer.parseInt(value));
-                            break;
-                        case 2:
-                            setStint(value);
-                            break;
-                        case 3:
-                            setTeamID(value);
-                            break;
-                        case 4:
-                            setLeagueID(value);
-                            break;
-                        case 5:
-                            setGames(Integer.parseInt(value));
-                            break;
-                        case 6:
-                            setAtBats(Integer.parseInt(value));
-                            break;
-                        case 7:
-                            setRuns(Integer.parseInt(value));
-                            break;
-                        case 8:
-                            setHits(Integer.parseInt(value));
-                            break;
-                        case 9:
-                            setDoubles(Integer.parseInt(value));
-                            break;
-                        case 10:
-                            setTriples(Integer.parseInt(value));
-                            break;
-                        case 11:
-                            setHomeRuns(Integer.parseInt(value));
-                            break;
-                        case 12:
-                            setRbi(Integer.parseInt(value));
-                            break;
-                        case 13:
-                            setStolenBases(Integer.parseInt(value));
-                            break;
-                        case 14:
-                            try {
-                                setCaughtStealing(Integer.parseInt(value));
-                            } catch (NumberFormatException e) {
-                                setCaughtStealing(0);
-                            }
-                            break;
-                        case 15:
-                            try {
-                                setBaseOnBalls(Integer.parseInt(value));
-                            } catch (NumberFormatException e) {
-                                setBaseOnBalls(0);
-                            }
-                            break;
-                        case 16:
-                            try {
-                                setStrikeouts(Integer.parseInt(value));
-                            } catch (NumberFormatException e) {
-                                setStrikeouts(0);
-                            }
-                            break;
-                        case 17:
-                            try {
-                                setIntentionalBB(Integer.parseInt(value));
-                            }
-                            catch (NumberFormatException e) {
-                                setIntentionalBB(0);
-                            }
-                            break;
-                        case 18:
-                            try {
-                                setHitByPitch(Integer.parseInt(value));
-                            } catch (NumberFormatException e) {
-                                setHitByPitch(0);
-                            }
-                            break;
-                    }
-                } catch (Exception e) {
-                    setException(true);
-                    logger.error("error on csv line index " + i + " value: <" + value + ">");
-                }
-            }
-        }
+    /**
+     * Return the document id of the given Batting.csv row.  The file has one row per playerID,
+     * year and stint, so the id is deterministic, and loading the same rows again upserts the
+     * same documents rather than creating duplicates.
+     */
+    public static String documentId(String playerID, int year, String stint) {
+
+        return playerID + "-" + year + "-" + stint;
+    }
+
+    public void assignDocumentId() {
+
+        id = documentId(playerID, year, stint);
     }
 
     public boolean isValid() {
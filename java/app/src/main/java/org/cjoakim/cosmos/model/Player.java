@@ -0,0 +1,28 @@
+package org.cjoakim.cosmos.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The attributes of a player from People.csv that are embedded in the player's batter
+ * documents; only the selected attributes are set, and the others are left out of the JSON.
+ */
+
+@NoArgsConstructor
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Player {
+
+    // Instance variables - from the People.csv file
+    String  nameFirst;
+    String  nameLast;
+    String  bats;
+    @JsonProperty("throws")
+    String  throwsHand;
+    Integer birthYear;
+    String  birthCountry;
+    String  debut;
+    String  finalGame;
+}
@@ -0,0 +1,254 @@
+package org.cjoakim.cosmos.people;
+
+import com.opencsv.CSVParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.model.Player;
+import org.cjoakim.cosmos.util.FileUtil;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-memory dictionary of the players of People.csv, built before a load, that embeds the
+ * selected attributes of each batter's player in the batter's document as it streams by; a
+ * reader of the documents then needs no second read of the player.  The dictionary is a hash
+ * table, probed linearly, of the PlayerKey of each playerID, a long, so a lookup allocates
+ * nothing; the Players themselves are shared by the batters of a player, and their repeated
+ * values, such as bats and birthCountry, are interned.
+ * enrich() may be called by any thread once the dictionary is read.
+ */
+
+public class PeopleDictionary {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(PeopleDictionary.class);
+    public static final List<String> FIELDS = Arrays.asList(
+            "nameFirst", "nameLast", "bats", "throws", "birthYear", "birthCountry", "debut", "finalGame");
+    public static final String DEFAULT_FIELDS = "nameFirst,nameLast,bats,throws,birthYear";
+
+    // Instance variables
+    private long[] keys;
+    private Player[] players;
+    private int size = 0;
+    private LongAdder enriched = new LongAdder();
+    private LongAdder missing = new LongAdder();
+
+    private PeopleDictionary(int expected) {
+        super();
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        players = new Player[capacity];
+        Arrays.fill(keys, PlayerKey.NONE);
+    }
+
+    /**
+     * Read the given People.csv file, line by line, keeping the given comma-separated FIELDS of
+     * each player.  Fields may be quoted, such as a name with a comma.  A row whose playerID is
+     * not a PlayerKey, or that doesn't parse, is skipped.
+     */
+    public static PeopleDictionary read(String csvFile, String fields) throws IOException {
+
+        long start = System.currentTimeMillis();
+        Set<String> selected = parseFields(fields);
+        CSVParser parser = new CSVParser();
+        // People.csv rows are about 150 bytes; the table grows if there are more
+        PeopleDictionary dictionary = new PeopleDictionary((int) Math.min(Files.size(Paths.get(csvFile)) / 100, 1 << 24));
+        Map<String, String> interned = new HashMap<>();
+        int skipped = 0;
+        try (BufferedReader reader = new FileUtil().openReader(csvFile)) {
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException("empty People.csv file: " + csvFile);
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            String[] header = parser.parseLine(line);
+            for (int i = 0; i < header.length; i++) {
+                columns.put(header[i].trim(), i);
+            }
+            if (!columns.containsKey("playerID")) {
+                throw new IOException("no playerID column in " + csvFile);
+            }
+            while ((line = reader.readLine()) != null) {
+                String[] values = parseLine(parser, line);
+                long key = values == null ? PlayerKey.NONE : PlayerKey.encode(value(values, columns, "playerID", null));
+                if (key == PlayerKey.NONE) {
+                    skipped++;
+                    continue;
+                }
+                dictionary.put(key, player(values, columns, selected, interned));
+            }
+        }
+        logger.warn("read " + csvFile + ", players: " + dictionary.size() + ", skipped: " + skipped
+                + ", fields: " + selected + ", ms: " + (System.currentTimeMillis() - start));
+        return dictionary;
+    }
+
+    /**
+     * Return the values of the given People.csv row, or null if it doesn't parse, such as a
+     * quoted field left open.
+     */
+    private static String[] parseLine(CSVParser parser, String line) {
+
+        try {
+            return parser.parseLine(line);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Player player(String[] values, Map<String, Integer> columns, Set<String> selected, Map<String, String> interned) {
+
+        Player player = new Player();
+        player.setNameFirst(value(values, columns, "nameFirst", selected));
+        player.setNameLast(value(values, columns, "nameLast", selected));
+        player.setBats(intern(interned, value(values, columns, "bats", selected)));
+        player.setThrowsHand(intern(interned, value(values, columns, "throws", selected)));
+        player.setBirthCountry(intern(interned, value(values, columns, "birthCountry", selected)));
+        player.setDebut(value(values, columns, "debut", selected));
+        player.setFinalGame(value(values, columns, "finalGame", selected));
+        String birthYear = value(values, columns, "birthYear", selected);
+        if (birthYear != null) {
+            try {
+                player.setBirthYear(Integer.valueOf(birthYear));
+            } catch (NumberFormatException e) {
+                // left out of the document
+            }
+        }
+        return player;
+    }
+
+    static Set<String> parseFields(String fields) {
+
+        Set<String> selected = new LinkedHashSet<>();
+        for (String field : fields.split("[,]", 0)) {
+            String name = field.trim();
+            if (!FIELDS.contains(name)) {
+                throw new IllegalArgumentException("unknown People.csv field: " + name + ", expected one of " + FIELDS);
+            }
+            selected.add(name);
+        }
+        return selected;
+    }
+
+    /**
+     * Return the value of the given column, or null if it is empty, missing or not selected.
+     */
+    private static String value(String[] values, Map<String, Integer> columns, String column, Set<String> selected) {
+
+        if (selected != null && !selected.contains(column)) {
+            return null;
+        }
+        Integer index = columns.get(column);
+        if (index == null || index >= values.length || values[index].isEmpty()) {
+            return null;
+        }
+        return values[index];
+    }
+
+    private static String intern(Map<String, String> interned, String value) {
+
+        return value == null ? null : interned.computeIfAbsent(value, v -> v);
+    }
+
+    private void put(long key, Player player) {
+
+        if (size * 2 >= keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != PlayerKey.NONE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == PlayerKey.NONE) {
+            size++;
+        }
+        keys[slot] = key;
+        players[slot] = player;
+    }
+
+    /**
+     * Double the table, keeping it at most half full.
+     */
+    private void grow() {
+
+        long[] oldKeys = keys;
+        Player[] oldPlayers = players;
+        keys = new long[oldKeys.length * 2];
+        players = new Player[oldKeys.length * 2];
+        Arrays.fill(keys, PlayerKey.NONE);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != PlayerKey.NONE) {
+                put(oldKeys[i], oldPlayers[i]);
+            }
+        }
+    }
+
+    /**
+     * Return the Player of the given playerID, or null if there is none.
+     */
+    public Player get(String playerID) {
+
+        long key = PlayerKey.encode(playerID);
+        if (key == PlayerKey.NONE) {
+            return null;
+        }
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); keys[slot] != PlayerKey.NONE; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return players[slot];
+            }
+        }
+        return null;
+    }
+
+    private static int slot(long key, int mask) {
+
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Set the Player of the given batter, if there is one; return the batter.
+     */
+    public BaseballBatter enrich(BaseballBatter bb) {
+
+        Player player = get(bb.getPlayerID());
+        if (player != null) {
+            bb.setPlayer(player);
+            enriched.increment();
+        } else {
+            missing.increment();
+        }
+        return bb;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getEnriched() {
+        return enriched.sum();
+    }
+
+    public long getMissing() {
+        return missing.sum();
+    }
+
+    public String summary() {
+
+        return "people - players: " + size + ", batters enriched: " + getEnriched() + ", not in People.csv: " + getMissing();
+    }
+}
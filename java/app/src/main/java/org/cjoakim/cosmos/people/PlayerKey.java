@@ -0,0 +1,55 @@
+package org.cjoakim.cosmos.people;
+
+/**
+ * Packs a playerID into a long, in base 37: each character, a lowercase letter or a digit, is a
+ * digit from 1 to 36, so distinct playerIDs of up to twelve characters, those of People.csv and
+ * the synthetic ones, have distinct keys, and a key can be decoded.  The keys of a dictionary of
+ * players are then primitive longs rather than Strings.
+ */
+
+public final class PlayerKey {
+
+    public static final int MAX_LENGTH = 12;
+    public static final long NONE = -1;
+    private static final int RADIX = 37;
+
+    private PlayerKey() {
+        super();
+    }
+
+    /**
+     * Return the key of the given playerID, or NONE if it is null, empty, longer than
+     * MAX_LENGTH or has a character other than a-z and 0-9.
+     */
+    public static long encode(String playerID) {
+
+        if (playerID == null || playerID.isEmpty() || playerID.length() > MAX_LENGTH) {
+            return NONE;
+        }
+        long key = 0;
+        for (int i = 0; i < playerID.length(); i++) {
+            char c = playerID.charAt(i);
+            int digit;
+            if (c >= 'a' && c <= 'z') {
+                digit = c - 'a' + 1;
+            } else if (c >= '0' && c <= '9') {
+                digit = c - '0' + 27;
+            } else {
+                return NONE;
+            }
+            key = key * RADIX + digit;
+        }
+        return key;
+    }
+
+    public static String decode(long key) {
+
+        char[] chars = new char[MAX_LENGTH];
+        int start = MAX_LENGTH;
+        for (long k = key; k > 0; k /= RADIX) {
+            int digit = (int) (k % RADIX);
+            chars[--start] = digit <= 26 ? (char) ('a' + digit - 1) : (char) ('0' + digit - 27);
+        }
+        return new String(chars, start, MAX_LENGTH - start);
+    }
+}
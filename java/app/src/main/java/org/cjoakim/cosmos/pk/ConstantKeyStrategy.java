@@ -0,0 +1,34 @@
+package org.cjoakim.cosmos.pk;
+
+import lombok.Getter;
+import org.cjoakim.cosmos.model.BaseballBatter;
+
+/**
+ * Every document gets the same partition key, so the whole load goes to one logical,
+ * and therefore one physical, partition.  This is the hot-partition scenario.
+ */
+@Getter
+public class ConstantKeyStrategy implements PartitionKeyStrategy {
+
+    public static final String DEFAULT_VALUE = "mlb";
+
+    // Instance variables
+    private final String value;
+
+    public ConstantKeyStrategy(String value) {
+
+        this.value = value;
+    }
+
+    @Override
+    public String getName() {
+
+        return "hot:" + value;
+    }
+
+    @Override
+    public String keyOf(BaseballBatter bb) {
+
+        return value;
+    }
+}
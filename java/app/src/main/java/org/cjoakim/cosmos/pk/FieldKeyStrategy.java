@@ -0,0 +1,67 @@
+package org.cjoakim.cosmos.pk;
+
+import org.cjoakim.cosmos.model.BaseballBatter;
+
+/**
+ * The partition key is the value of one or more BaseballBatter fields, joined with '-';
+ * for example playerID, or teamID and year.
+ */
+public class FieldKeyStrategy implements PartitionKeyStrategy {
+
+    // Instance variables
+    private final String name;
+    private final String[] fields;
+
+    public FieldKeyStrategy(String name, String... fields) {
+
+        this.name = name;
+        this.fields = fields;
+        for (String field : fields) {
+            fieldValue(new BaseballBatter(), field);  // validate the field name
+        }
+    }
+
+    @Override
+    public String getName() {
+
+        return name;
+    }
+
+    @Override
+    public String keyOf(BaseballBatter bb) {
+
+        if (fields.length == 1) {
+            return String.valueOf(fieldValue(bb, fields[0]));
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                sb.append('-');
+            }
+            sb.append(fieldValue(bb, fields[i]));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Return the value of the named key field of the given batter; a String, or an Integer for year.
+     */
+    static Object fieldValue(BaseballBatter bb, String field) {
+
+        switch (field) {
+            case "playerID":
+                return bb.getPlayerID();
+            case "teamID":
+                return bb.getTeamID();
+            case "leagueID":
+                return bb.getLeagueID();
+            case "stint":
+                return bb.getStint();
+            case "year":
+                return bb.getYear();
+            default:
+                throw new IllegalArgumentException(
+                        "invalid partition key field, expected playerID, teamID, leagueID, stint or year - " + field);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.cjoakim.cosmos.pk;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import lombok.Getter;
+import org.cjoakim.cosmos.model.BaseballBatter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A synthetic partition key; each document is hashed, on playerID, year and stint,
+ * into one of N buckets.  Writes spread evenly, at the cost of cross-partition reads.
+ */
+@Getter
+public class HashBucketKeyStrategy implements PartitionKeyStrategy {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_32();
+
+    // Instance variables
+    private final int buckets;
+    private final String format;
+
+    public HashBucketKeyStrategy(int buckets) {
+
+        if (buckets < 1) {
+            throw new IllegalArgumentException("invalid hash bucket count: " + buckets);
+        }
+        this.buckets = buckets;
+        this.format = "b%0" + String.valueOf(buckets - 1).length() + "d";
+    }
+
+    @Override
+    public String getName() {
+
+        return "hash:" + buckets;
+    }
+
+    @Override
+    public String keyOf(BaseballBatter bb) {
+
+        int hash = HASH_FUNCTION.newHasher()
+                .putString(String.valueOf(bb.getPlayerID()), StandardCharsets.UTF_8)
+                .putInt(bb.getYear())
+                .putString(String.valueOf(bb.getStint()), StandardCharsets.UTF_8)
+                .hash()
+                .asInt();
+        return String.format(format, Math.floorMod(hash, buckets));
+    }
+}
@@ -0,0 +1,94 @@
+package org.cjoakim.cosmos.pk;
+
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.PartitionKeyBuilder;
+import com.azure.cosmos.models.PartitionKeyDefinition;
+import com.azure.cosmos.models.PartitionKeyDefinitionVersion;
+import com.azure.cosmos.models.PartitionKind;
+import org.cjoakim.cosmos.model.BaseballBatter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hierarchical (sub-partitioned, MultiHash) partition key of up to three BaseballBatter
+ * fields, such as leagueID/teamID/playerID.  The pk attribute holds the levels joined with '/'
+ * for reporting; the PartitionKey itself is built from the field values.
+ * The year field can't be a level; the 4.48 SDK PartitionKeyBuilder supports only String values.
+ * Every level must have a value, since the builder's null and none values are deprecated.
+ */
+public class HierarchicalKeyStrategy implements PartitionKeyStrategy {
+
+    public static final String DEFAULT_FIELDS = "leagueID/teamID/playerID";
+    private static final int MAX_LEVELS = 3;
+
+    // Instance variables
+    private final String[] fields;
+
+    public HierarchicalKeyStrategy(String... fields) {
+
+        if (fields.length < 1 || fields.length > MAX_LEVELS) {
+            throw new IllegalArgumentException("hierarchical partition keys have 1 to 3 levels: " + fields.length);
+        }
+        this.fields = fields;
+        for (String field : fields) {
+            if (field.equals("year")) {
+                throw new IllegalArgumentException("year can't be a hierarchical partition key level");
+            }
+            FieldKeyStrategy.fieldValue(new BaseballBatter(), field);  // validate the field name
+        }
+    }
+
+    @Override
+    public String getName() {
+
+        return "hierarchical:" + String.join("/", fields);
+    }
+
+    @Override
+    public List<String> getPaths() {
+
+        List<String> paths = new ArrayList<>();
+        for (String field : fields) {
+            paths.add("/" + field);
+        }
+        return paths;
+    }
+
+    @Override
+    public String keyOf(BaseballBatter bb) {
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                sb.append('/');
+            }
+            sb.append(FieldKeyStrategy.fieldValue(bb, fields[i]));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public PartitionKey partitionKey(BaseballBatter bb) {
+
+        PartitionKeyBuilder builder = new PartitionKeyBuilder();
+        for (String field : fields) {
+            Object value = FieldKeyStrategy.fieldValue(bb, field);
+            if (value == null) {
+                throw new IllegalArgumentException("no " + field + " for the hierarchical partition key of " + bb.getId());
+            }
+            builder.add(value.toString());
+        }
+        return builder.build();
+    }
+
+    @Override
+    public PartitionKeyDefinition buildPartitionKeyDefinition() {
+
+        PartitionKeyDefinition definition = new PartitionKeyDefinition();
+        definition.setPaths(getPaths());
+        definition.setKind(PartitionKind.MULTI_HASH);
+        definition.setVersion(PartitionKeyDefinitionVersion.V2);
+        return definition;
+    }
+}
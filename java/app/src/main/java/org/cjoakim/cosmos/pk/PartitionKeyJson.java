@@ -0,0 +1,64 @@
+package org.cjoakim.cosmos.pk;
+
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.PartitionKeyBuilder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+/**
+ * Parses the JSON of a PartitionKey, as its toString() returns it, such as ["aaronha01"] or the
+ * values of the levels of a hierarchical partition key, so that a partition key kept in a file
+ * can be used again.  A null level is rejected, as HierarchicalKeyStrategy never writes one.
+ */
+public final class PartitionKeyJson {
+
+    // Class variables
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private PartitionKeyJson() {
+        super();
+    }
+
+    /**
+     * Return the values of the given PartitionKey JSON, one per level.
+     */
+    public static JsonNode values(String json) {
+
+        try {
+            JsonNode values = MAPPER.readTree(json);
+            if (values == null || !values.isArray()) {
+                throw new IllegalArgumentException("invalid partition key JSON: " + json);
+            }
+            return values;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("invalid partition key JSON: " + json, e);
+        }
+    }
+
+    public static PartitionKey parse(String json) {
+
+        JsonNode values = values(json);
+        if (values.size() == 1) {
+            JsonNode value = values.get(0);
+            if (value.isTextual()) {
+                return new PartitionKey(value.asText());
+            }
+            if (value.isNumber()) {
+                return new PartitionKey(value.asDouble());
+            }
+            if (value.isBoolean()) {
+                return new PartitionKey(value.asBoolean());
+            }
+        }
+        PartitionKeyBuilder builder = new PartitionKeyBuilder();
+        for (JsonNode value : values) {
+            if (value.isNull()) {
+                throw new IllegalArgumentException("null partition key level: " + json);
+            }
+            builder.add(value.asText());
+        }
+        return builder.build();
+    }
+}
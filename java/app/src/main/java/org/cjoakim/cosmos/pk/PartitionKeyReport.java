@@ -0,0 +1,186 @@
+package org.cjoakim.cosmos.pk;
+
+import com.azure.cosmos.models.CosmosItemOperationType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.sim.SimulatedLoadTarget;
+import org.cjoakim.cosmos.sim.SimulatorConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shows how a PartitionKeyStrategy spreads a set of batter documents, their bytes and their
+ * estimated upsert RU across logical partitions and, with rangeCount > 1, across physical
+ * partition key ranges as assigned by the SimulatedLoadTarget.  Intended to be logged before
+ * a load starts, to size a partition layout without running it.
+ */
+public class PartitionKeyReport {
+
+    public static final double MAX_PHYSICAL_PARTITION_RU = 10000.0;
+    public static final long MAX_LOGICAL_PARTITION_BYTES = 20L * 1024 * 1024 * 1024;
+    private static final int TOP_KEYS = 5;
+
+    private static Logger logger = LogManager.getLogger(PartitionKeyReport.class);
+
+    // Instance variables
+    private PartitionKeyStrategy strategy;
+    private SimulatorConfig ruModel;
+    private int rangeCount;
+    private ObjectMapper mapper = new ObjectMapper();
+    private Map<String, KeyStats> keys = new HashMap<>();
+    private double[] rangeRu;
+    private long documents;
+    private long bytes;
+    private double ru;
+
+    public PartitionKeyReport(PartitionKeyStrategy strategy, SimulatorConfig ruModel, int rangeCount) {
+        super();
+        this.strategy = strategy;
+        this.ruModel = ruModel;
+        this.rangeCount = Math.max(rangeCount, 1);
+        this.rangeRu = new double[this.rangeCount];
+    }
+
+    /**
+     * Add the given batter, whose pk has been assigned by the strategy, to this report.
+     */
+    public void add(BaseballBatter bb) {
+
+        int size = sizeOf(bb);
+        double charge = ruModel.requestCharge(CosmosItemOperationType.UPSERT, size);
+        KeyStats stats = keys.computeIfAbsent(bb.getPk(), KeyStats::new);
+        stats.documents++;
+        stats.bytes += size;
+        stats.ru += charge;
+        rangeRu[SimulatedLoadTarget.rangeFor(strategy.partitionKey(bb).toString(), rangeCount)] += charge;
+        documents++;
+        bytes += size;
+        ru += charge;
+    }
+
+    public void addAll(List<BaseballBatter> batters) {
+
+        for (int i = 0; i < batters.size(); i++) {
+            add(batters.get(i));
+        }
+    }
+
+    public int getKeyCount() {
+
+        return keys.size();
+    }
+
+    public long getDocuments() {
+
+        return documents;
+    }
+
+    public double getRequestCharge() {
+
+        return ru;
+    }
+
+    /**
+     * Return the fraction of the total estimated RU that goes to the busiest logical partition.
+     */
+    public double getMaxKeyShare() {
+
+        double max = 0;
+        for (KeyStats stats : keys.values()) {
+            max = Math.max(max, stats.ru);
+        }
+        return ru == 0 ? 0.0 : max / ru;
+    }
+
+    /**
+     * Return the fraction of the total estimated RU that goes to the busiest partition key range.
+     */
+    public double getMaxRangeShare() {
+
+        double max = 0;
+        for (double rangeCharge : rangeRu) {
+            max = Math.max(max, rangeCharge);
+        }
+        return ru == 0 ? 0.0 : max / ru;
+    }
+
+    public void logReport() {
+
+        logger.warn("PartitionKeyReport - strategy: " + strategy.getName()
+                + ", paths: " + strategy.getPaths()
+                + ", kind: " + strategy.buildPartitionKeyDefinition().getKind());
+        if (documents == 0) {
+            logger.warn("PartitionKeyReport - no documents");
+            return;
+        }
+        List<KeyStats> sorted = new ArrayList<>(keys.values());
+        sorted.sort((a, b) -> Double.compare(b.ru, a.ru));
+        long[] docCounts = new long[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            docCounts[i] = sorted.get(i).documents;
+        }
+        Arrays.sort(docCounts);
+        KeyStats largest = sorted.get(0);
+
+        logger.warn(String.format(
+                "PartitionKeyReport - documents: %d, logical partitions: %d, MB: %.2f, estimated RU: %.0f, RU/doc: %.2f",
+                documents, keys.size(), bytes / 1048576.0, ru, ru / documents));
+        logger.warn(String.format(
+                "PartitionKeyReport - docs per key min/p50/p99/max: %d/%d/%d/%d, busiest key: %s, RU share: %.2f%%",
+                docCounts[0], percentile(docCounts, 50.0), percentile(docCounts, 99.0),
+                docCounts[docCounts.length - 1], largest.key, getMaxKeyShare() * 100.0));
+        // A logical partition lives in one physical partition, so the busiest key caps the container RU/s
+        logger.warn(String.format(
+                "PartitionKeyReport - max container RU/s before the busiest key exceeds one physical partition (%.0f RU/s): %.0f",
+                MAX_PHYSICAL_PARTITION_RU, MAX_PHYSICAL_PARTITION_RU / getMaxKeyShare()));
+        if (largest.bytes > MAX_LOGICAL_PARTITION_BYTES / 10) {
+            logger.warn("PartitionKeyReport - busiest key holds more than 10% of the 20GB logical partition limit");
+        }
+        for (int i = 0; i < Math.min(TOP_KEYS, sorted.size()); i++) {
+            KeyStats stats = sorted.get(i);
+            logger.warn(String.format("PartitionKeyReport - key: %s, docs: %d, KB: %.1f, RU: %.0f, share: %.2f%%",
+                    stats.key, stats.documents, stats.bytes / 1024.0, stats.ru, stats.ru * 100.0 / ru));
+        }
+        if (rangeCount > 1) {
+            StringBuffer sb = new StringBuffer();
+            for (int i = 0; i < rangeCount; i++) {
+                sb.append(i == 0 ? "" : ", ").append(String.format("%.1f%%", rangeRu[i] * 100.0 / ru));
+            }
+            logger.warn(String.format("PartitionKeyReport - %d ranges, RU share: [%s], busiest/even: %.2f",
+                    rangeCount, sb, getMaxRangeShare() * rangeCount));
+        }
+    }
+
+    private int sizeOf(BaseballBatter bb) {
+
+        try {
+            return mapper.writeValueAsBytes(bb).length;
+        } catch (JsonProcessingException e) {
+            return 1024;
+        }
+    }
+
+    private static long percentile(long[] sorted, double pct) {
+
+        int index = (int) Math.ceil(pct / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static class KeyStats {
+        String key;
+        long documents;
+        long bytes;
+        double ru;
+
+        KeyStats(String key) {
+            this.key = key;
+        }
+    }
+}
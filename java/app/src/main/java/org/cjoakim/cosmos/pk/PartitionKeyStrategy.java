@@ -0,0 +1,85 @@
+package org.cjoakim.cosmos.pk;
+
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.PartitionKeyDefinition;
+import com.azure.cosmos.models.PartitionKind;
+import org.cjoakim.cosmos.model.BaseballBatter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Determines the partition key of each BaseballBatter document, and the partition key
+ * definition of the container it is loaded into.  Selected per run with --pk; see parse.
+ */
+public interface PartitionKeyStrategy {
+
+    String getName();
+
+    /**
+     * Return the logical partition key of the given batter, as a String.
+     */
+    String keyOf(BaseballBatter bb);
+
+    /**
+     * Return the container partition key paths, in order.
+     */
+    default List<String> getPaths() {
+
+        return Arrays.asList("/pk");
+    }
+
+    /**
+     * Set the pk attribute of the given batter per this strategy.
+     */
+    default void assign(BaseballBatter bb) {
+
+        bb.setPk(keyOf(bb));
+    }
+
+    /**
+     * Return the PartitionKey of the given batter, which has been assigned by this strategy.
+     */
+    default PartitionKey partitionKey(BaseballBatter bb) {
+
+        return new PartitionKey(bb.getPk());
+    }
+
+    default PartitionKeyDefinition buildPartitionKeyDefinition() {
+
+        PartitionKeyDefinition definition = new PartitionKeyDefinition();
+        definition.setPaths(new ArrayList<>(getPaths()));
+        definition.setKind(PartitionKind.HASH);
+        return definition;
+    }
+
+    /**
+     * Return the strategy for the given --pk spec:
+     * hot[:value], player, team-year, hash:N, or hierarchical[:field/field/field].
+     */
+    static PartitionKeyStrategy parse(String spec) {
+
+        String[] tokens = spec.strip().split("[:]", 2);
+        String arg = tokens.length > 1 ? tokens[1] : null;
+        switch (tokens[0].toLowerCase()) {
+            case "hot":
+                return new ConstantKeyStrategy(arg == null ? ConstantKeyStrategy.DEFAULT_VALUE : arg);
+            case "player":
+                return new FieldKeyStrategy("player", "playerID");
+            case "team-year":
+                return new FieldKeyStrategy("team-year", "teamID", "year");
+            case "hash":
+                if (arg == null) {
+                    throw new IllegalArgumentException("invalid pk spec, expected hash:N - " + spec);
+                }
+                return new HashBucketKeyStrategy(Integer.parseInt(arg));
+            case "hierarchical":
+                String fields = arg == null ? HierarchicalKeyStrategy.DEFAULT_FIELDS : arg;
+                return new HierarchicalKeyStrategy(fields.split("[/]", 0));
+            default:
+                throw new IllegalArgumentException(
+                        "invalid pk spec, expected hot, player, team-year, hash:N or hierarchical - " + spec);
+        }
+    }
+}
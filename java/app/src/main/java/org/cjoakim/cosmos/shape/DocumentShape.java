@@ -0,0 +1,179 @@
+package org.cjoakim.cosmos.shape;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * How a batter document is shaped by a BatterJsonWriter, to write fewer bytes and index fewer
+ * terms per document; the profiles are:
+ *
+ *   full     every property, with the -1 of a missing stat and null of a missing string
+ *   compact  the missing values left out; the pk property only if it is a partition key path,
+ *            and the playerID not if it is the pk
+ *   short    compact, with short property names, such as t for teamID
+ *   packed   short, with the stats that are not queried packed into one array, s, in STATS
+ *            order, with -1 for a missing stat
+ *
+ * The id and the partition key paths keep their names and values in every profile.  A shape
+ * pairs with the indexing policy that indexes only the properties of the given queried fields;
+ * see queriedIndexingPolicy.  Readers of the documents must use the property names of the shape.
+ */
+
+public class DocumentShape {
+
+    public static final List<String> PROFILES = Arrays.asList("full", "compact", "short", "packed");
+    public static final String DEFAULT_QUERIES = "playerID,year,teamID";
+    public static final String PACKED_STATS = "s";
+    public static final List<String> STATS = Arrays.asList(
+            "games", "atBats", "runs", "hits", "doubles", "triples", "homeRuns", "rbi", "stolenBases",
+            "caughtStealing", "baseOnBalls", "strikeouts", "intentionalBB", "hitByPitch");
+    public static final List<String> PLAYER_FIELDS = Arrays.asList(
+            "nameFirst", "nameLast", "bats", "throws", "birthYear", "birthCountry", "debut", "finalGame");
+
+    // Class variables
+    private static final Map<String, String> SHORT_NAMES = new HashMap<>();
+
+    static {
+        String[] names = {
+                "playerID", "p", "year", "y", "stint", "st", "teamID", "t", "leagueID", "l",
+                "games", "g", "atBats", "ab", "runs", "r", "hits", "h", "doubles", "d", "triples", "tr",
+                "homeRuns", "hr", "rbi", "rbi", "stolenBases", "sb", "caughtStealing", "cs",
+                "baseOnBalls", "bb", "strikeouts", "so", "intentionalBB", "ibb", "hitByPitch", "hbp",
+                "player", "pl", "nameFirst", "fn", "nameLast", "ln", "bats", "b", "throws", "th",
+                "birthYear", "by", "birthCountry", "bc", "debut", "db", "finalGame", "fg" };
+        for (int i = 0; i < names.length; i += 2) {
+            SHORT_NAMES.put(names[i], names[i + 1]);
+        }
+    }
+
+    // Instance variables
+    private final String profile;
+    private final boolean omitMissing;
+    private final boolean shortNames;
+    private final Set<String> queriedFields;
+    private final Set<String> partitionKeyFields = new LinkedHashSet<>();
+    private final List<String> packedStats = new ArrayList<>();
+
+    private DocumentShape(String profile, Set<String> queriedFields, List<String> partitionKeyPaths) {
+        super();
+        this.profile = profile;
+        this.omitMissing = !"full".equals(profile);
+        this.shortNames = "short".equals(profile) || "packed".equals(profile);
+        this.queriedFields = queriedFields;
+        for (String path : partitionKeyPaths) {
+            partitionKeyFields.add(path.substring(1));
+        }
+        if ("packed".equals(profile)) {
+            for (String stat : STATS) {
+                if (!queriedFields.contains(stat) && !partitionKeyFields.contains(stat)) {
+                    packedStats.add(stat);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the full shape, that of a BatterJsonWriter by default.
+     */
+    public static DocumentShape full() {
+
+        return new DocumentShape("full", Collections.emptySet(), Collections.singletonList("/pk"));
+    }
+
+    /**
+     * Return the shape of the given profile, for documents queried by the given comma-separated
+     * fields, the BaseballBatter and Player field names, and with the given partition key paths.
+     */
+    public static DocumentShape parse(String profile, String queries, List<String> partitionKeyPaths) {
+
+        if (!PROFILES.contains(profile)) {
+            throw new IllegalArgumentException("unknown document shape: " + profile + ", expected one of " + PROFILES);
+        }
+        Set<String> queried = new LinkedHashSet<>();
+        for (String token : queries.split("[,]", 0)) {
+            String field = token.trim();
+            if (field.isEmpty()) {
+                continue;
+            }
+            if (!SHORT_NAMES.containsKey(field) || "player".equals(field)) {
+                throw new IllegalArgumentException("unknown queried field: " + field);
+            }
+            queried.add(field);
+        }
+        return new DocumentShape(profile, queried, partitionKeyPaths);
+    }
+
+    /**
+     * Return the name of the property of the given BaseballBatter or Player field.
+     */
+    public String propertyOf(String field) {
+
+        if (!shortNames || partitionKeyFields.contains(field)) {
+            return field;
+        }
+        return SHORT_NAMES.getOrDefault(field, field);
+    }
+
+    /**
+     * Return true if the pk property is written; it is redundant unless it is a partition key path.
+     */
+    public boolean writesPk() {
+
+        return !omitMissing || partitionKeyFields.contains("pk");
+    }
+
+    /**
+     * Return true if the playerID of a document whose pk is the given value is left out.
+     */
+    public boolean omitsPlayerID(String playerID, String pk) {
+
+        return omitMissing && writesPk() && playerID != null && playerID.equals(pk)
+                && !partitionKeyFields.contains("playerID");
+    }
+
+    public boolean omitsMissing() {
+        return omitMissing;
+    }
+
+    public boolean isPacked(String stat) {
+        return packedStats.contains(stat);
+    }
+
+    public List<String> getPackedStats() {
+        return packedStats;
+    }
+
+    /**
+     * Return the policy that indexes the properties of the queried fields and no others.  A
+     * queried playerID is also indexed as the pk, which may stand for it.
+     */
+    public PathIndexingPolicy queriedIndexingPolicy() {
+
+        List<String> paths = new ArrayList<>();
+        for (String field : queriedFields) {
+            if (PLAYER_FIELDS.contains(field)) {
+                paths.add("/" + propertyOf("player") + "/" + propertyOf(field));
+            } else {
+                paths.add("/" + propertyOf(field));
+            }
+            if ("playerID".equals(field) && omitMissing && writesPk()) {
+                paths.add("/pk");
+            }
+        }
+        return PathIndexingPolicy.indexOnly(paths);
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public Set<String> getQueriedFields() {
+        return queriedFields;
+    }
+}
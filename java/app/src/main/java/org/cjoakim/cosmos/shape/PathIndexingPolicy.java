@@ -0,0 +1,162 @@
+package org.cjoakim.cosmos.shape;
+
+import com.azure.cosmos.models.ExcludedPath;
+import com.azure.cosmos.models.IncludedPath;
+import com.azure.cosmos.models.IndexingMode;
+import com.azure.cosmos.models.IndexingPolicy;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A consistent indexing policy of included and excluded paths, such as /t/? or /*, that can
+ * also count the terms a document adds to the index: of each scalar value of the document,
+ * whether the most precise path that matches it, as in Cosmos DB, is included.  Every scalar
+ * but the id, which is always indexed, is a term; the elements of an array are one path, /s/[].
+ */
+
+public class PathIndexingPolicy {
+
+    // Class variables
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Instance variables
+    private final List<String> includedPaths;
+    private final List<String> excludedPaths;
+
+    public PathIndexingPolicy(List<String> includedPaths, List<String> excludedPaths) {
+        super();
+        this.includedPaths = new ArrayList<>(includedPaths);
+        this.excludedPaths = new ArrayList<>(excludedPaths);
+    }
+
+    /**
+     * Return the default policy, which indexes every path.
+     */
+    public static PathIndexingPolicy indexAll() {
+
+        return new PathIndexingPolicy(Collections.singletonList("/*"), Collections.emptyList());
+    }
+
+    /**
+     * Return the policy that indexes only the given property paths, such as /t or /pl/ln.
+     */
+    public static PathIndexingPolicy indexOnly(List<String> propertyPaths) {
+
+        List<String> included = new ArrayList<>();
+        for (String path : propertyPaths) {
+            included.add(path + "/?");
+        }
+        return new PathIndexingPolicy(included, Collections.singletonList("/*"));
+    }
+
+    public IndexingPolicy toIndexingPolicy() {
+
+        IndexingPolicy policy = new IndexingPolicy();
+        policy.setIndexingMode(IndexingMode.CONSISTENT);
+        policy.setAutomatic(true);
+        List<IncludedPath> included = new ArrayList<>();
+        for (String path : includedPaths) {
+            included.add(new IncludedPath(path));
+        }
+        List<ExcludedPath> excluded = new ArrayList<>();
+        for (String path : excludedPaths) {
+            excluded.add(new ExcludedPath(path));
+        }
+        policy.setIncludedPaths(included);
+        policy.setExcludedPaths(excluded);
+        return policy;
+    }
+
+    /**
+     * Return the policy as the JSON of the indexingPolicy of a container.
+     */
+    public String toJson() {
+
+        ObjectNode json = MAPPER.createObjectNode();
+        json.put("indexingMode", "consistent");
+        json.put("automatic", true);
+        ArrayNode included = json.putArray("includedPaths");
+        for (String path : includedPaths) {
+            included.addObject().put("path", path);
+        }
+        ArrayNode excluded = json.putArray("excludedPaths");
+        for (String path : excludedPaths) {
+            excluded.addObject().put("path", path);
+        }
+        return json.toString();
+    }
+
+    /**
+     * Return the terms of the given document, and how many of them this policy indexes.
+     */
+    public int[] countTerms(JsonNode document) {
+
+        int[] counts = new int[2];
+        countTerms(document, "", counts);
+        return counts;
+    }
+
+    private void countTerms(JsonNode node, String path, int[] counts) {
+
+        if (node.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (!path.isEmpty() || !"id".equals(field.getKey())) {
+                    countTerms(field.getValue(), path + "/" + field.getKey(), counts);
+                }
+            }
+        } else if (node.isArray()) {
+            for (JsonNode element : node) {
+                countTerms(element, path + "/[]", counts);
+            }
+        } else {
+            counts[0]++;
+            if (isIndexed(path)) {
+                counts[1]++;
+            }
+        }
+    }
+
+    /**
+     * Return true if the most precise path matching the given scalar path is included.
+     */
+    boolean isIndexed(String path) {
+
+        return precision(includedPaths, path) > precision(excludedPaths, path);
+    }
+
+    private static int precision(List<String> paths, String path) {
+
+        int best = -1;
+        for (String candidate : paths) {
+            int precision = -1;
+            if (candidate.endsWith("/?") && candidate.substring(0, candidate.length() - 2).equals(path)) {
+                precision = candidate.length();
+            } else if (candidate.endsWith("/*")) {
+                String prefix = candidate.substring(0, candidate.length() - 1);
+                if (path.startsWith(prefix)) {
+                    precision = prefix.length();
+                }
+            }
+            best = Math.max(best, precision);
+        }
+        return best;
+    }
+
+    public List<String> getIncludedPaths() {
+        return includedPaths;
+    }
+
+    public List<String> getExcludedPaths() {
+        return excludedPaths;
+    }
+}
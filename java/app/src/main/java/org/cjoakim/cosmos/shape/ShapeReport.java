@@ -0,0 +1,163 @@
+package org.cjoakim.cosmos.shape;
+
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.json.JsonPayload;
+import org.cjoakim.cosmos.metrics.GroupMetrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The bytes, index terms and measured RU per document of the same batters loaded in each
+ * DocumentShape profile, with each indexing policy, so that the cheapest shape for a query set
+ * can be picked.  The pojo profile is the BaseballBatter as the SDK serializes it.
+ */
+
+public class ShapeReport {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(ShapeReport.class);
+
+    // Instance variables
+    private final String queries;
+    private final List<Row> rows = new ArrayList<>();
+    private final Map<String, String> policies = new LinkedHashMap<>();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public ShapeReport(String queries) {
+        super();
+        this.queries = queries;
+    }
+
+    /**
+     * Add the row of the given profile and indexing policy, measuring the documents of the given
+     * operations; the RU comes from the metrics of their load.
+     */
+    public Row add(String profile, String index, PathIndexingPolicy policy,
+                   List<CosmosItemOperation> operations, GroupMetrics metrics) {
+
+        Row row = new Row();
+        row.profile = profile;
+        row.index = index;
+        for (CosmosItemOperation op : operations) {
+            JsonNode document = document(op.getItem());
+            if (document == null) {
+                continue;
+            }
+            int[] terms = policy.countTerms(document);
+            row.documents++;
+            row.bytes += bytes(op.getItem());
+            row.terms += terms[0];
+            row.indexedTerms += terms[1];
+        }
+        row.operations = metrics.getOperations();
+        row.requestCharge = metrics.getRequestCharge();
+        row.throttles = metrics.getThrottles();
+        rows.add(row);
+        policies.put(index.equals("all") ? index : profile + "-" + index, policy.toJson());
+        return row;
+    }
+
+    private JsonNode document(Object item) {
+
+        try {
+            JsonPayload payload = JsonPayload.of(item);
+            return payload != null ? mapper.readTree(payload.toByteArray()) : mapper.valueToTree(item);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private int bytes(Object item) {
+
+        JsonPayload payload = JsonPayload.of(item);
+        if (payload != null) {
+            return payload.size();
+        }
+        try {
+            return mapper.writeValueAsBytes(item).length;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Return the row with the lowest RU per document, or null if there is none.
+     */
+    public Row cheapest() {
+
+        Row cheapest = null;
+        for (Row row : rows) {
+            if (row.operations > 0 && (cheapest == null || row.ruPerDocument() < cheapest.ruPerDocument())) {
+                cheapest = row;
+            }
+        }
+        return cheapest;
+    }
+
+    public void logReport() {
+
+        logger.warn("shape report - queried fields: " + queries);
+        Row cheapest = cheapest();
+        for (Row row : rows) {
+            logger.warn(String.format("  profile: %-8s index: %-8s docs: %6d, bytes/doc: %7.1f, terms/doc: %5.1f, indexed/doc: %5.1f, RU/doc: %6.3f, 429s: %d%s",
+                    row.profile, row.index, row.documents, row.bytesPerDocument(), row.termsPerDocument(),
+                    row.indexedTermsPerDocument(), row.ruPerDocument(), row.throttles, row == cheapest ? "  <- cheapest" : ""));
+        }
+        for (Map.Entry<String, String> policy : policies.entrySet()) {
+            logger.warn("  indexing policy " + policy.getKey() + ": " + policy.getValue());
+        }
+    }
+
+    public List<Row> getRows() {
+        return rows;
+    }
+
+    /**
+     * The measurements of one profile and indexing policy.
+     */
+    public static class Row {
+
+        // Instance variables
+        String profile;
+        String index;
+        long documents = 0;
+        long bytes = 0;
+        long terms = 0;
+        long indexedTerms = 0;
+        long operations = 0;
+        long throttles = 0;
+        double requestCharge = 0;
+
+        public String getProfile() {
+            return profile;
+        }
+
+        public String getIndex() {
+            return index;
+        }
+
+        public double bytesPerDocument() {
+            return documents == 0 ? 0 : (double) bytes / documents;
+        }
+
+        public double termsPerDocument() {
+            return documents == 0 ? 0 : (double) terms / documents;
+        }
+
+        public double indexedTermsPerDocument() {
+            return documents == 0 ? 0 : (double) indexedTerms / documents;
+        }
+
+        public double ruPerDocument() {
+            return operations == 0 ? 0 : requestCharge / operations;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.cjoakim.cosmos.sim;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The simulator's stand-in for the global throughput control container, shared by the clients
+ * of one SimulatedLoadTarget.  As with the SDK, each client of a global group keeps an item,
+ * a lease, with its load factor, which it renews every renew interval and which expires if it
+ * is not renewed within the expire interval.  At each renewal a client is allocated the share
+ * of the group's RU/s in proportion to its load factor, of those of the unexpired clients; the
+ * other clients keep their allocations until their own renewals, so after a client joins the
+ * allocations add up to more than the group's RU/s, and after one leaves, to less.
+ */
+
+public class SimulatedGlobalController {
+
+    // Instance variables
+    private Map<String, Map<String, Lease>> groups = new HashMap<>();
+
+    public SimulatedGlobalController() {
+        super();
+    }
+
+    /**
+     * Create or renew the lease of the given client in the given group, with the given load
+     * factor, and return the client's allocation of the group's RU/s.
+     */
+    public synchronized double renew(
+            String groupName, String clientName, double groupRu, double loadFactor, long expireNanos, long nowNanos) {
+
+        Map<String, Lease> leases = groups.computeIfAbsent(groupName, k -> new HashMap<>());
+        leases.put(clientName, new Lease(loadFactor, nowNanos + expireNanos));
+        leases.values().removeIf(lease -> lease.expiresNanos <= nowNanos);
+        double total = 0;
+        for (Lease lease : leases.values()) {
+            total += lease.loadFactor;
+        }
+        return groupRu * loadFactor / total;
+    }
+
+    private static class Lease {
+
+        double loadFactor;
+        long expiresNanos;
+
+        Lease(double loadFactor, long expiresNanos) {
+            this.loadFactor = loadFactor;
+            this.expiresNanos = expiresNanos;
+        }
+    }
+}
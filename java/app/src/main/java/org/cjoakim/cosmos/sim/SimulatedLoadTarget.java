@@ -0,0 +1,506 @@
+package org.cjoakim.cosmos.sim;
+
+import com.azure.cosmos.ThroughputControlGroupConfig;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.CosmosItemOperationType;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.PriorityLevel;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.json.JsonPayload;
+import org.cjoakim.cosmos.metrics.OperationResult;
+import org.cjoakim.cosmos.shape.PathIndexingPolicy;
+import org.cjoakim.cosmos.target.LoadTarget;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * This class is an in-process stand-in for a Cosmos DB container, for measuring throughput
+ * behavior without an account.  It models provisioned RU/s split evenly over partition key
+ * ranges, with the range chosen by hashing the partition key, so a single hot key is limited
+ * to one range's share.  Request charges scale with document size.  Throughput control groups
+ * with a target delay requests to that rate, as the SDK does client-side.  Requests over a
+ * range's budget get 429 with a retry-after and are retried up to maxRetries times.  LOW
+ * priority requests cannot use the last part of a range's budget.  Latencies and retry-after
+ * jitter are drawn from a seeded Random.  Other clients of the same container may be created
+ * with newClient(); they share a SimulatedGlobalController, which splits the RU/s of each global
+ * throughput control group among them.
+ */
+
+public class SimulatedLoadTarget implements LoadTarget {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(SimulatedLoadTarget.class);
+
+    public static final int SUBSTATUS_RU_BUDGET_EXCEEDED = 3200;
+    private static final long NANOS_PER_MS = 1_000_000L;
+
+    // Instance variables
+    private String name;
+    private SimulatorConfig config;
+    private TokenBucket[] ranges;
+    private DoubleAdder[] rangeCharges;
+    private LongAdder[] rangeThrottles;
+    private DoubleAdder[] rangeBacklogs;
+    private Map<String, TokenBucket> groupBuckets = new ConcurrentHashMap<>();
+    private Map<String, Double> groupTargets = new ConcurrentHashMap<>();
+    private Map<String, PriorityLevel> groupPriorities = new ConcurrentHashMap<>();
+    private Map<String, DoubleAdder> groupUsage = new ConcurrentHashMap<>();
+    private Map<String, Disposable> globalRenewals = new ConcurrentHashMap<>();
+    private Map<String, Integer> documentSizes = new ConcurrentHashMap<>();
+    private SimulatedGlobalController globalController;
+    private String clientName = "client-1";
+    private Random random;
+    private ObjectMapper mapper = new ObjectMapper();
+    private PathIndexingPolicy indexingPolicy = null;
+
+    public SimulatedLoadTarget(String name, SimulatorConfig config) {
+        super();
+        this.name = name;
+        this.config = config;
+        this.random = new Random(config.getSeed());
+        int rangeCount = Math.max(config.getPartitionRanges(), 1);
+        this.ranges = new TokenBucket[rangeCount];
+        this.rangeCharges = new DoubleAdder[rangeCount];
+        this.rangeThrottles = new LongAdder[rangeCount];
+        this.rangeBacklogs = new DoubleAdder[rangeCount];
+        long now = System.nanoTime();
+        for (int i = 0; i < rangeCount; i++) {
+            ranges[i] = new TokenBucket(config.getProvisionedRu() / rangeCount, now);
+            rangeCharges[i] = new DoubleAdder();
+            rangeThrottles[i] = new LongAdder();
+            rangeBacklogs[i] = new DoubleAdder();
+        }
+        this.globalController = new SimulatedGlobalController();
+        logger.warn("SimulatedLoadTarget " + name + " - " + config);
+    }
+
+    private SimulatedLoadTarget(SimulatedLoadTarget container, String clientName) {
+        super();
+        this.name = container.name;
+        this.config = container.config;
+        this.random = container.random;
+        this.ranges = container.ranges;
+        this.rangeCharges = container.rangeCharges;
+        this.rangeThrottles = container.rangeThrottles;
+        this.rangeBacklogs = container.rangeBacklogs;
+        this.documentSizes = container.documentSizes;
+        this.globalController = container.globalController;
+        this.indexingPolicy = container.indexingPolicy;
+        this.clientName = clientName;
+    }
+
+    /**
+     * Return another client of this simulated container, as a separate CosmosAsyncClient would
+     * be; it shares the partition key ranges, documents and global throughput controller, but
+     * has its own throughput control groups.
+     */
+    public SimulatedLoadTarget newClient(String clientName) {
+
+        return new SimulatedLoadTarget(this, clientName);
+    }
+
+    @Override
+    public String getName() {
+        return "simulated/" + name;
+    }
+
+    @Override
+    public void enableLocalThroughputControlGroup(ThroughputControlGroupConfig groupConfig) {
+
+        String groupName = groupConfig.getGroupName();
+        if (groupConfig.getPriorityLevel() != null) {
+            groupPriorities.put(groupName, groupConfig.getPriorityLevel());
+        }
+        double groupRu = 0;
+        // a priority-only group has the builder's default target throughput, Integer.MAX_VALUE
+        if (groupConfig.getTargetThroughput() != null && groupConfig.getTargetThroughput() < Integer.MAX_VALUE) {
+            groupRu = groupConfig.getTargetThroughput();
+        } else if (groupConfig.getTargetThroughputThreshold() != null) {
+            groupRu = config.getProvisionedRu() * groupConfig.getTargetThroughputThreshold();
+        }
+        if (groupRu > 0) {
+            groupBuckets.put(groupName, new TokenBucket(groupRu, System.nanoTime()));
+            groupTargets.put(groupName, groupRu);
+        }
+        logger.warn("enableLocalThroughputControlGroup - group: " + groupName + ", RU/s: " + groupRu + ", priority: " + groupConfig.getPriorityLevel());
+    }
+
+    /**
+     * The client gets a lease in the SimulatedGlobalController, renewed every renewInterval with
+     * its load factor, the fraction of its allocation it used; it starts at 1, a busy client.
+     * Its group is then shaped to its allocation.  A single client is allocated the whole group.
+     */
+    @Override
+    public void enableGlobalThroughputControlGroup(
+            ThroughputControlGroupConfig groupConfig, String controlContainerName, Duration renewInterval, Duration expireInterval) {
+
+        enableLocalThroughputControlGroup(groupConfig);
+        String groupName = groupConfig.getGroupName();
+        TokenBucket group = groupBuckets.get(groupName);
+        if (group == null) {
+            return;
+        }
+        double groupRu = groupTargets.get(groupName);
+        long expireNanos = expireInterval.toNanos();
+        DoubleAdder usage = groupUsage.computeIfAbsent(groupName, k -> new DoubleAdder());
+        long now = System.nanoTime();
+        group.setRatePerSecond(globalController.renew(groupName, clientName, groupRu, 1.0, expireNanos, now), now);
+        double renewSeconds = renewInterval.toNanos() / 1_000_000_000.0;
+        Disposable renewal = Schedulers.parallel().schedulePeriodically(() -> {
+            double allocated = group.getRatePerSecond() * renewSeconds;
+            double loadFactor = Math.min(1.0, Math.max(0.01, usage.sumThenReset() / allocated));
+            long renewNanos = System.nanoTime();
+            group.setRatePerSecond(
+                    globalController.renew(groupName, clientName, groupRu, loadFactor, expireNanos, renewNanos), renewNanos);
+        }, renewInterval.toNanos(), renewInterval.toNanos(), TimeUnit.NANOSECONDS);
+        Disposable previous = globalRenewals.put(groupName, renewal);
+        if (previous != null) {
+            previous.dispose();
+        }
+        logger.warn("enableGlobalThroughputControlGroup - client: " + clientName + ", group: " + groupName
+                + ", allocated RU/s: " + group.getRatePerSecond() + " of " + groupRu);
+    }
+
+    @Override
+    public double getTargetThroughput(String groupName) {
+
+        return groupTargets.getOrDefault(groupName, 0.0);
+    }
+
+    @Override
+    public double getAllocatedThroughput(String groupName) {
+
+        TokenBucket group = groupBuckets.get(groupName);
+        return group == null ? 0 : group.getRatePerSecond();
+    }
+
+    /**
+     * Stop renewing the client's global leases; like a client that exits, they remain until they expire.
+     */
+    @Override
+    public void close() {
+
+        for (Disposable renewal : globalRenewals.values()) {
+            renewal.dispose();
+        }
+        globalRenewals.clear();
+    }
+
+    @Override
+    public Flux<OperationResult> executeBulkOperations(Flux<CosmosItemOperation> operations, String groupName) {
+
+        return operations.flatMap(op -> execute(op, groupName), Math.max(config.getBulkConcurrency(), 1));
+    }
+
+    @Override
+    public OperationResult executePointOperation(CosmosItemOperation op, String groupName) {
+
+        return execute(op, groupName).block();
+    }
+
+    /**
+     * Simulate one operation, including throughput control group shaping and 429 retries.
+     */
+    public Mono<OperationResult> execute(CosmosItemOperation op, String groupName) {
+
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            SimulatedDocument doc = toDocument(op);
+            double charge = config.requestCharge(op.getOperationType(), doc.size, doc.unindexedTerms);
+            long groupWaitNanos = reserveGroup(groupName, charge, start);
+            String type = String.valueOf(op.getOperationType());
+            int range = rangeFor(doc.partitionKey);
+            Mono<OperationResult> attempt = Mono.defer(() -> attempt(type, doc.id, range, groupName, charge, start, 0,
+                    () -> applyOperation(op.getOperationType(), doc)));
+            return groupWaitNanos == 0 ? attempt : Mono.delay(Duration.ofNanos(groupWaitNanos)).then(attempt);
+        });
+    }
+
+    /**
+     * Simulate a query, with the given partition key or, if null, across all partition key
+     * ranges.  The simulator does not evaluate the SQL; each range queried is charged
+     * queryBaseRu, plus readRuPerKb for its share of queryResultDocuments of the average stored
+     * document size, and each is throttled and retried independently, as a cross-partition
+     * query's requests are.
+     */
+    public Mono<OperationResult> executeQuery(PartitionKey partitionKey, String groupName) {
+
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            int[] queried;
+            if (partitionKey == null) {
+                queried = new int[ranges.length];
+                for (int i = 0; i < ranges.length; i++) {
+                    queried[i] = i;
+                }
+            } else {
+                queried = new int[] {rangeFor(String.valueOf(partitionKey))};
+            }
+            double charge = config.queryCharge(averageDocumentSize(), queried.length);
+            long groupWaitNanos = reserveGroup(groupName, charge * queried.length, start);
+            Flux<Integer> indexes = Flux.range(0, queried.length);
+            if (groupWaitNanos > 0) {
+                indexes = Mono.delay(Duration.ofNanos(groupWaitNanos)).thenMany(indexes);
+            }
+            return indexes
+                    .flatMap(i -> attempt(OperationResult.OPERATION_TYPE_QUERY, null, queried[i], groupName, charge, start, 0, () -> 200))
+                    .reduce((a, b) -> {
+                        a.setRequestCharge(a.getRequestCharge() + b.getRequestCharge());
+                        a.setRetryCount(a.getRetryCount() + b.getRetryCount());
+                        if (a.isSuccess() && !b.isSuccess()) {
+                            a.setStatusCode(b.getStatusCode());
+                            a.setSubStatusCode(b.getSubStatusCode());
+                            a.setRetryAfterMs(b.getRetryAfterMs());
+                        }
+                        a.setLatencyMicros(Math.max(a.getLatencyMicros(), b.getLatencyMicros()));
+                        return a;
+                    });
+        });
+    }
+
+    @Override
+    public OperationResult executeQuery(SqlQuerySpec query, PartitionKey partitionKey, String groupName) {
+
+        return executeQuery(partitionKey, groupName).block();
+    }
+
+    /**
+     * Reserve the given charge in the group's token bucket, if it has a target, and return how
+     * long the request must wait for it, as the SDK delays requests client-side.
+     */
+    private long reserveGroup(String groupName, double charge, long now) {
+
+        TokenBucket group = groupBuckets.get(groupName);
+        long groupWaitNanos = group == null ? 0 : group.reserve(charge, now);
+        DoubleAdder usage = groupUsage.get(groupName);
+        if (usage != null) {
+            usage.add(charge);
+        }
+        return groupWaitNanos;
+    }
+
+    private Mono<OperationResult> attempt(
+            String type, String id, int range, String groupName, double charge, long start, int retries, IntSupplier apply) {
+
+        double reserve = 0;
+        if (groupPriorities.get(groupName) == PriorityLevel.LOW) {
+            reserve = ranges[range].getCapacity() * config.getLowPriorityReserve();
+        }
+        long waitNanos = ranges[range].tryConsume(charge, reserve, System.nanoTime());
+        if (waitNanos == 0) {
+            if (retries > 0) {
+                rangeBacklogs[range].add(-charge);
+            }
+            rangeCharges[range].add(charge);
+            OperationResult result = newResult(type, id, retries);
+            result.setStatusCode(apply.getAsInt());
+            result.setRequestCharge(charge);
+            long latencyNanos = sampleLatencyNanos();
+            return Mono.delay(Duration.ofNanos(latencyNanos)).map(tick -> {
+                result.setLatencyMicros((System.nanoTime() - start) / 1000);
+                return result;
+            });
+        }
+        rangeThrottles[range].increment();
+        if (retries == 0) {
+            rangeBacklogs[range].add(charge);
+        }
+        if (retries >= config.getMaxRetries()) {
+            rangeBacklogs[range].add(-charge);
+            OperationResult result = newResult(type, id, retries);
+            result.setStatusCode(OperationResult.STATUS_TOO_MANY_REQUESTS);
+            result.setSubStatusCode(SUBSTATUS_RU_BUDGET_EXCEEDED);
+            result.setRetryAfterMs(Math.max(1, waitNanos / NANOS_PER_MS));
+            result.setLatencyMicros((System.nanoTime() - start) / 1000);
+            return Mono.just(result);
+        }
+        // like the service, size the retry-after to drain the throttled backlog of the range,
+        // with jitter so that the retries do not all arrive together
+        double backlogNanos = (rangeBacklogs[range].sum() / ranges[range].getRatePerSecond()) * 1_000_000_000L;
+        long retryAfterNanos = (long) (Math.max(waitNanos, backlogNanos) * (0.5 + nextDouble()));
+        return Mono.delay(Duration.ofNanos(retryAfterNanos))
+                .then(Mono.defer(() -> attempt(type, id, range, groupName, charge, start, retries + 1, apply)));
+    }
+
+    private OperationResult newResult(String type, String id, int retries) {
+
+        OperationResult result = new OperationResult();
+        result.setId(id);
+        result.setOperationType(type);
+        result.setRetryCount(retries);
+        return result;
+    }
+
+    /**
+     * Return the average size of the stored documents; 1KB if there are none.
+     */
+    private int averageDocumentSize() {
+
+        long bytes = 0;
+        int count = 0;
+        for (Integer size : documentSizes.values()) {
+            bytes += size;
+            if (++count >= 1000) {
+                break;
+            }
+        }
+        return count == 0 ? 1024 : (int) (bytes / count);
+    }
+
+    private int applyOperation(CosmosItemOperationType type, SimulatedDocument doc) {
+
+        switch (type) {
+            case CREATE:
+                return documentSizes.putIfAbsent(doc.key, doc.size) == null ? 201 : 409;
+            case UPSERT:
+                return documentSizes.put(doc.key, doc.size) == null ? 201 : 200;
+            case REPLACE:
+            case PATCH:
+                return documentSizes.replace(doc.key, doc.size) == null ? 404 : 200;
+            case DELETE:
+                return documentSizes.remove(doc.key) == null ? 404 : 204;
+            default:
+                return documentSizes.containsKey(doc.key) ? 200 : 404;
+        }
+    }
+
+    /**
+     * Resolve the id, partition key and serialized size of the document an operation refers to.
+     * Upserts and creates carry the document, and their id comes from it; other operations
+     * refer to a stored document by id.
+     */
+    private SimulatedDocument toDocument(CosmosItemOperation op) {
+
+        SimulatedDocument doc = new SimulatedDocument();
+        doc.partitionKey = String.valueOf(op.getPartitionKeyValue());
+        doc.id = op.getId();
+        Object item = op.getItem();
+        JsonPayload payload = JsonPayload.of(item);
+        if (payload != null) {
+            doc.size = payload.size();
+            if (doc.id == null) {
+                doc.id = payload.getId();
+            }
+            if (indexingPolicy != null) {
+                try {
+                    doc.unindexedTerms = unindexedTerms(mapper.readTree(payload.toByteArray()));
+                } catch (IOException e) {
+                    doc.unindexedTerms = 0;
+                }
+            }
+        } else if (item != null && op.getOperationType() != CosmosItemOperationType.PATCH) {
+            try {
+                JsonNode node = mapper.valueToTree(item);
+                doc.size = mapper.writeValueAsBytes(node).length;
+                if (doc.id == null) {
+                    doc.id = node.path("id").asText();
+                }
+                if (indexingPolicy != null) {
+                    doc.unindexedTerms = unindexedTerms(node);
+                }
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                doc.size = 1024;
+            }
+        }
+        doc.key = doc.partitionKey + "|" + doc.id;
+        if (doc.size == 0) {
+            Integer stored = documentSizes.get(doc.key);
+            doc.size = stored == null ? 0 : stored;
+        }
+        return doc;
+    }
+
+    private int unindexedTerms(JsonNode document) {
+
+        int[] terms = indexingPolicy.countTerms(document);
+        return terms[0] - terms[1];
+    }
+
+    /**
+     * Set the indexing policy of this container, which otherwise indexes every path; a write is
+     * charged less for each term of its document that the policy doesn't index.  Call before
+     * loading, as the policy of a new container.
+     */
+    public void setIndexingPolicy(PathIndexingPolicy indexingPolicy) {
+
+        this.indexingPolicy = indexingPolicy;
+    }
+
+    int rangeFor(String partitionKey) {
+
+        return rangeFor(partitionKey, ranges.length);
+    }
+
+    /**
+     * Return the partition key range, of the given number of ranges, that the given
+     * partition key value (PartitionKey.toString()) is assigned to by the simulator.
+     */
+    public static int rangeFor(String partitionKey, int rangeCount) {
+
+        return Math.floorMod(partitionKey.hashCode() * 0x9E3779B9, rangeCount);
+    }
+
+    private double nextDouble() {
+
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+
+    private long sampleLatencyNanos() {
+
+        double gaussian;
+        synchronized (random) {
+            gaussian = random.nextGaussian();
+        }
+        double ms = config.getLatencyMedianMs() * Math.exp(config.getLatencySigma() * gaussian);
+        return (long) (ms * NANOS_PER_MS);
+    }
+
+    public int getDocumentCount() {
+        return documentSizes.size();
+    }
+
+    public SimulatorConfig getConfig() {
+        return config;
+    }
+
+    @Override
+    public void logReport() {
+
+        logger.warn("SimulatedLoadTarget " + name + " - documents: " + documentSizes.size());
+        for (String groupName : groupTargets.keySet()) {
+            logger.warn(String.format("SimulatedLoadTarget %s - client: %s, group: %s, RU/s target: %.0f, allocated: %.0f",
+                    name, clientName, groupName, getTargetThroughput(groupName), getAllocatedThroughput(groupName)));
+        }
+        for (int i = 0; i < ranges.length; i++) {
+            logger.warn(String.format("SimulatedLoadTarget %s - range: %d, RU/s provisioned: %.0f, RU consumed: %.2f, 429s: %d",
+                    name, i, ranges[i].getRatePerSecond(), rangeCharges[i].sum(), rangeThrottles[i].sum()));
+        }
+    }
+
+    private static class SimulatedDocument {
+        String id;
+        String partitionKey;
+        String key;
+        int size;
+        int unindexedTerms;
+    }
+}
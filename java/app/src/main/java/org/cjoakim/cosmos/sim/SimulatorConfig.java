@@ -0,0 +1,68 @@
+package org.cjoakim.cosmos.sim;
+
+import com.azure.cosmos.models.CosmosItemOperationType;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The parameters of a SimulatedLoadTarget.  The defaults approximate a single-partition
+ * 4000 RU/s container with upserts of about 1KB costing about 7 RU.
+ */
+
+@NoArgsConstructor
+@Data
+public class SimulatorConfig {
+
+    // Instance variables
+    double provisionedRu = 4000;        // RU/s for the whole container
+    int    partitionRanges = 1;         // physical partitions; each gets provisionedRu / partitionRanges
+    double writeBaseRu = 5.5;           // upsert, create, replace, patch
+    double writeRuPerKb = 1.5;
+    double writeRuPerIndexedTerm = 0.04; // saved for each term not indexed, relative to indexing every path
+    double readBaseRu = 1.0;
+    double readRuPerKb = 0.25;
+    double deleteRu = 5.0;
+    double queryBaseRu = 2.3;           // per partition key range queried
+    int    queryResultDocuments = 10;   // documents returned by a query, over all ranges queried
+    double latencyMedianMs = 5.0;       // lognormal per-operation latency
+    double latencySigma = 0.5;
+    int    maxRetries = 9;              // 429 retries before the operation fails, as in the SDK
+    double lowPriorityReserve = 0.1;    // fraction of a range's RU that LOW priority requests cannot use
+    int    bulkConcurrency = 100;       // operations of one bulk execution in flight at once
+    long   seed = 42;
+
+    /**
+     * Return the RU charge of an operation of the given type on a document of the given size.
+     */
+    public double requestCharge(CosmosItemOperationType type, int sizeBytes) {
+
+        return requestCharge(type, sizeBytes, 0);
+    }
+
+    /**
+     * Return the RU charge of an operation of the given type on a document of the given size,
+     * of whose terms the given number are not indexed.
+     */
+    public double requestCharge(CosmosItemOperationType type, int sizeBytes, int unindexedTerms) {
+
+        double kb = sizeBytes / 1024.0;
+        switch (type) {
+            case READ:
+                return readBaseRu + (readRuPerKb * kb);
+            case DELETE:
+                return deleteRu;
+            default:
+                return Math.max(1.0, writeBaseRu + (writeRuPerKb * kb) - (writeRuPerIndexedTerm * unindexedTerms));
+        }
+    }
+
+    /**
+     * Return the RU charge of one partition key range's part of a query over the given number
+     * of ranges, of documents of the given average size.
+     */
+    public double queryCharge(int averageSizeBytes, int rangesQueried) {
+
+        double kb = averageSizeBytes / 1024.0;
+        return queryBaseRu + (readRuPerKb * kb * queryResultDocuments / Math.max(rangesQueried, 1));
+    }
+}
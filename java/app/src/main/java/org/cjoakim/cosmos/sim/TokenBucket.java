@@ -0,0 +1,81 @@
+package org.cjoakim.cosmos.sim;
+
+/**
+ * A token bucket of request units, refilled continuously at a fixed RU/s up to one second's worth.
+ */
+
+public class TokenBucket {
+
+    // Instance variables
+    private double ratePerSecond;
+    private double capacity;
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double ratePerSecond, long nowNanos) {
+        super();
+        this.ratePerSecond = Math.max(ratePerSecond, 0.001);
+        this.capacity = this.ratePerSecond;
+        this.tokens = this.capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * Take cost tokens if, after doing so, at least reserve tokens would remain.  Return 0 when
+     * the tokens were taken, otherwise the nanoseconds until enough tokens will be available.
+     * A cost above capacity is allowed once the bucket is full.
+     */
+    public synchronized long tryConsume(double cost, double reserve, long nowNanos) {
+
+        refill(nowNanos);
+        double needed = Math.min(cost + reserve, capacity);
+        if (tokens >= needed) {
+            tokens -= cost;
+            return 0;
+        }
+        double missing = needed - tokens;
+        return Math.max(1, (long) ((missing / ratePerSecond) * 1_000_000_000L));
+    }
+
+    /**
+     * Take cost tokens unconditionally, going into debt if necessary.  Return the nanoseconds
+     * the caller must wait until the debt is repaid, which shapes callers to exactly the rate.
+     */
+    public synchronized long reserve(double cost, long nowNanos) {
+
+        refill(nowNanos);
+        tokens -= cost;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) ((-tokens / ratePerSecond) * 1_000_000_000L);
+    }
+
+    /**
+     * Change the rate, and the capacity with it, from now on; tokens above the new capacity are lost.
+     */
+    public synchronized void setRatePerSecond(double ratePerSecond, long nowNanos) {
+
+        refill(nowNanos);
+        this.ratePerSecond = Math.max(ratePerSecond, 0.001);
+        this.capacity = this.ratePerSecond;
+        this.tokens = Math.min(tokens, capacity);
+    }
+
+    private void refill(long nowNanos) {
+
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + (ratePerSecond * elapsed / 1_000_000_000.0));
+            lastRefillNanos = nowNanos;
+        }
+    }
+
+    public synchronized double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public synchronized double getCapacity() {
+        return capacity;
+    }
+}
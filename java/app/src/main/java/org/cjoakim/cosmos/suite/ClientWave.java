@@ -0,0 +1,28 @@
+package org.cjoakim.cosmos.suite;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A number of clients that join a GlobalCoordinationConfig's global throughput control group
+ * at the same time, and may leave it at the same time; such as loader pods of a scale-out.
+ */
+
+@NoArgsConstructor
+@Data
+public class ClientWave {
+
+    // Instance variables
+    String name;
+    int    count = 1;
+    int    joinSeconds;                 // after the start of the benchmark
+    int    leaveSeconds;                // after the start of the benchmark; 0 to stay to the end
+
+    /**
+     * Return the name of the given client of the wave, numbered from 1.
+     */
+    public String clientName(int index) {
+
+        return count == 1 ? name : name + "-" + (index + 1);
+    }
+}
@@ -0,0 +1,111 @@
+package org.cjoakim.cosmos.suite;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.cjoakim.cosmos.util.FileUtil;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A priority contention experiment; workload classes, such as a high and a low priority one,
+ * run at the same time against one container through a ramp schedule of steps, each of which
+ * keeps a total number of batches in flight shared among the classes per their ratios.
+ * It is read from a JSON file such as suites/priority_contention.json.  Each class is a
+ * ScenarioConfig, with its own throughput control group; its concurrency is not used.
+ */
+
+@NoArgsConstructor
+@Data
+public class ContentionConfig {
+
+    // Instance variables
+    String  database = "dev";
+    String  container = "test";
+    String  team = "all";
+    int     intervalSeconds = 1;        // of the time series
+    String  csvFile = "tmp/contention.csv";
+    Map<String, Double> ratios = new LinkedHashMap<>();    // class name to weight, default 1
+    List<ScenarioConfig> classes = new ArrayList<>();
+    List<ContentionStep> steps = new ArrayList<>();
+
+    public static ContentionConfig read(String infile) throws Exception {
+
+        ContentionConfig config = new ObjectMapper().convertValue(new FileUtil().readJsonMap(infile), ContentionConfig.class);
+        config.validate();
+        return config;
+    }
+
+    public boolean hasGlobalClass() {
+
+        for (ScenarioConfig workload : classes) {
+            if (workload.isGlobal()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getDurationSeconds() {
+
+        int seconds = 0;
+        for (ContentionStep step : steps) {
+            seconds += step.getSeconds();
+        }
+        return seconds;
+    }
+
+    /**
+     * Return the batches in flight of the given class in the given step; its share of the
+     * step's load per the ratios, rounded, but at least one if its ratio and the load are > 0.
+     */
+    public int concurrencyOf(int stepIndex, String className) {
+
+        ContentionStep step = steps.get(stepIndex);
+        Map<String, Double> weights = step.getRatios() != null ? step.getRatios() : ratios;
+        double total = 0;
+        for (ScenarioConfig workload : classes) {
+            total += weights.getOrDefault(workload.getName(), 1.0);
+        }
+        double weight = weights.getOrDefault(className, 1.0);
+        if (step.getLoad() <= 0 || weight <= 0 || total <= 0) {
+            return 0;
+        }
+        return Math.max(1, (int) Math.round(step.getLoad() * weight / total));
+    }
+
+    /**
+     * Class names are throughput control group names, which must be unique per container.
+     */
+    public void validate() {
+
+        if (classes.isEmpty()) {
+            throw new IllegalArgumentException("contention experiment has no classes");
+        }
+        if (steps.isEmpty()) {
+            throw new IllegalArgumentException("contention experiment has no steps");
+        }
+        Set<String> names = new HashSet<>();
+        for (ScenarioConfig workload : classes) {
+            if (workload.getName() == null || workload.getName().isBlank()) {
+                throw new IllegalArgumentException("contention experiment class has no name");
+            }
+            if (!names.add(workload.getName())) {
+                throw new IllegalArgumentException("duplicate contention experiment class name: " + workload.getName());
+            }
+        }
+        for (ContentionStep step : steps) {
+            if (step.getSeconds() <= 0) {
+                throw new IllegalArgumentException("contention experiment step of " + step.getSeconds() + " seconds");
+            }
+        }
+        if (intervalSeconds <= 0) {
+            throw new IllegalArgumentException("contention experiment interval of " + intervalSeconds + " seconds");
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package org.cjoakim.cosmos.suite;
+
+import com.azure.cosmos.models.CosmosItemOperation;
+import org.HdrHistogram.Histogram;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.bulk.BulkBatchExecutor;
+import org.cjoakim.cosmos.metrics.GroupMetrics;
+import org.cjoakim.cosmos.metrics.MetricsRegistry;
+import org.cjoakim.cosmos.target.LoadTarget;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * This class runs the workload classes of a ContentionConfig at the same time against one
+ * LoadTarget, from one process, through the config's ramp schedule.  In each step each class
+ * keeps its share of the step's load in flight, upserting its operations over and over, until
+ * the step ends.  Every interval a ContentionSample of each class, its throughput, latency
+ * percentiles and throttle rate over the interval, is appended to the config's CSV file.
+ */
+
+public class ContentionExperiment {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(ContentionExperiment.class);
+
+    // Instance variables
+    private LoadTarget target;
+    private ContentionConfig config;
+    private Supplier<List<CosmosItemOperation>> operationsSupplier;
+    private ScenarioGroups groups;
+    private List<ScenarioRun> runs = new ArrayList<>();
+    private List<ContentionSample> samples = new ArrayList<>();
+    private Map<String, Previous> previous = new HashMap<>();
+    private CsvTimeSeries timeSeries;
+
+    public ContentionExperiment(
+            LoadTarget target,
+            ContentionConfig config,
+            String globalControlContainer,
+            Supplier<List<CosmosItemOperation>> operationsSupplier,
+            MetricsRegistry metricsRegistry) {
+        super();
+        this.target = target;
+        this.config = config;
+        this.operationsSupplier = operationsSupplier;
+        this.groups = new ScenarioGroups(target, globalControlContainer, metricsRegistry);
+        this.timeSeries = new CsvTimeSeries(config.getCsvFile(), ContentionSample.CSV_HEADER, this::sample);
+    }
+
+    /**
+     * Run the experiment and return the run of each class, in the order of the config.
+     */
+    public List<ScenarioRun> run() {
+
+        target.openConnections();
+        for (ScenarioConfig workload : config.getClasses()) {
+            runs.add(prepare(workload));
+        }
+        Flux.fromIterable(runs).flatMap(this::warmUp, runs.size()).then().block();
+
+        for (ScenarioRun run : runs) {
+            previous.put(run.getName(), new Previous(run.getMetrics()));
+        }
+        logger.warn("run - classes: " + runs.size() + ", steps: " + config.getSteps().size()
+                + ", seconds: " + config.getDurationSeconds() + ", csv: " + config.getCsvFile());
+        timeSeries.start(config.getIntervalSeconds());
+        try {
+            Flux.fromIterable(runs).flatMap(this::runClass, runs.size()).then().block();
+        } finally {
+            timeSeries.stop();
+        }
+        logReport();
+        return runs;
+    }
+
+    private ScenarioRun prepare(ScenarioConfig workload) {
+
+        return groups.prepare(workload, operationsSupplier.get());
+    }
+
+    /**
+     * Execute the first warmupOperations of the class, in its group but with separate metrics.
+     */
+    private Mono<Long> warmUp(ScenarioRun run) {
+
+        ScenarioConfig workload = run.getConfig();
+        int concurrency = Math.max(1, config.concurrencyOf(0, workload.getName()));
+        return groups.warmUp(run, run::getOperations, (operations, metrics) ->
+                new BulkBatchExecutor(target, workload.getName(), workload.getBatchSize(), concurrency, metrics)
+                        .executeAsync(operations));
+    }
+
+    private Mono<Long> runClass(ScenarioRun run) {
+
+        return Mono.defer(() -> {
+            run.started();
+            AtomicLong cursor = new AtomicLong();
+            return Flux.range(0, config.getSteps().size())
+                    .concatMap(stepIndex -> runStep(run, stepIndex, cursor))
+                    .reduce(0L, Long::sum)
+                    .doOnSuccess(run::finished);
+        });
+    }
+
+    /**
+     * Keep the class's share of the step's load in flight until the end of the step, cycling
+     * through its operations from where the previous step left off.  The batches in flight at
+     * the end of the step complete before the next step starts.
+     */
+    private Mono<Long> runStep(ScenarioRun run, int stepIndex, AtomicLong cursor) {
+
+        return Mono.defer(() -> {
+            long deadline = timeSeries.getStartNanos() + TimeUnit.SECONDS.toNanos(stepEndSeconds(stepIndex));
+            long remaining = deadline - System.nanoTime();
+            int concurrency = config.concurrencyOf(stepIndex, run.getName());
+            List<CosmosItemOperation> operations = run.getOperations();
+            logger.warn("runStep - step: " + (stepIndex + 1) + ", class: " + run.getName() + ", concurrency: " + concurrency);
+            if (remaining <= 0) {
+                return Mono.just(0L);
+            }
+            if (concurrency <= 0 || operations.isEmpty()) {
+                return Mono.delay(Duration.ofNanos(remaining)).thenReturn(0L);
+            }
+            Flux<CosmosItemOperation> cycle = Flux.<CosmosItemOperation>generate(
+                            sink -> sink.next(operations.get((int) (cursor.getAndIncrement() % operations.size()))))
+                    .takeWhile(op -> System.nanoTime() < deadline);
+            ScenarioConfig workload = run.getConfig();
+            return new BulkBatchExecutor(target, workload.getName(), workload.getBatchSize(), concurrency, run.getMetrics())
+                    .executeAsync(cycle);
+        });
+    }
+
+    private int stepEndSeconds(int stepIndex) {
+
+        int seconds = 0;
+        for (int i = 0; i <= stepIndex; i++) {
+            seconds += config.getSteps().get(i).getSeconds();
+        }
+        return seconds;
+    }
+
+    private int stepAt(double seconds) {
+
+        for (int i = 0; i < config.getSteps().size(); i++) {
+            if (seconds < stepEndSeconds(i)) {
+                return i;
+            }
+        }
+        return config.getSteps().size() - 1;
+    }
+
+    /**
+     * Record a sample of each class over the time since the previous one.
+     */
+    private synchronized void sample(double seconds, double intervalSeconds) {
+
+        int stepIndex = stepAt(seconds - intervalSeconds / 2);
+        int load = config.getSteps().get(stepIndex).getLoad();
+        for (ScenarioRun run : runs) {
+            GroupMetrics gm = run.getMetrics();
+            Previous last = previous.get(run.getName());
+            Previous current = new Previous(gm);
+            Histogram latency = current.latency.copy();
+            latency.subtract(last.latency);
+            String priority = run.getConfig().getPriority() == null ? "none" : run.getConfig().getPriority().toLowerCase();
+            ContentionSample sample = new ContentionSample(
+                    seconds, stepIndex + 1, load, run.getName(), priority, config.concurrencyOf(stepIndex, run.getName()),
+                    current.operations - last.operations,
+                    intervalSeconds,
+                    current.requestCharge - last.requestCharge,
+                    current.throttles - last.throttles,
+                    current.retries - last.retries,
+                    latency.getValueAtPercentile(50.0) / 1000.0,
+                    latency.getValueAtPercentile(95.0) / 1000.0,
+                    latency.getValueAtPercentile(99.0) / 1000.0,
+                    gm.getInFlightBatches(),
+                    gm.getQueuedBatches());
+            previous.put(run.getName(), current);
+            samples.add(sample);
+            timeSeries.write(sample.toCsv());
+        }
+    }
+
+    /**
+     * Log the throughput and throttling of each class in each step, from the samples.
+     */
+    public synchronized void logReport() {
+
+        for (int stepIndex = 0; stepIndex < config.getSteps().size(); stepIndex++) {
+            for (ScenarioRun run : runs) {
+                double seconds = 0;
+                double requestCharge = 0;
+                long operations = 0;
+                long throttles = 0;
+                long retries = 0;
+                double maxP99Ms = 0;
+                for (ContentionSample sample : samples) {
+                    if (sample.getStep() == stepIndex + 1 && sample.getClassName().equals(run.getName())) {
+                        seconds += sample.getIntervalSeconds();
+                        requestCharge += sample.getRequestCharge();
+                        operations += sample.getOperations();
+                        throttles += sample.getThrottles();
+                        retries += sample.getRetries();
+                        maxP99Ms = Math.max(maxP99Ms, sample.getP99Ms());
+                    }
+                }
+                if (seconds > 0) {
+                    logger.warn(String.format("report - step: %d, load: %d, class: %s, concurrency: %d, ops/s: %.1f, RU/s: %.1f, 429/s: %.1f, throttled: %.2f%%, max p99 ms: %.2f",
+                            stepIndex + 1, config.getSteps().get(stepIndex).getLoad(), run.getName(),
+                            config.concurrencyOf(stepIndex, run.getName()),
+                            operations / seconds, requestCharge / seconds, (throttles + retries) / seconds,
+                            operations + retries == 0 ? 0.0 : (throttles + retries) * 100.0 / (operations + retries),
+                            maxP99Ms));
+                }
+            }
+        }
+    }
+
+    public synchronized List<ContentionSample> getSamples() {
+        return new ArrayList<>(samples);
+    }
+
+    /**
+     * The cumulative metrics of a class at the previous sample.
+     */
+    private static class Previous {
+
+        long operations;
+        long throttles;
+        long retries;
+        double requestCharge;
+        Histogram latency;
+
+        Previous(GroupMetrics gm) {
+            operations = gm.getOperations();
+            throttles = gm.getThrottles();
+            retries = gm.getRetries();
+            requestCharge = gm.getRequestCharge();
+            latency = gm.getOperationLatency().copy();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.cjoakim.cosmos.suite;
+
+import java.util.Locale;
+
+/**
+ * The metrics of one workload class of a contention experiment over one interval of its
+ * time series; one row of its CSV file.
+ */
+
+public class ContentionSample {
+
+    public static final String CSV_HEADER =
+            "seconds,step,load,class,priority,concurrency,operations,ops_per_s,ru_per_s,throttles_per_s,throttle_pct,p50_ms,p95_ms,p99_ms,in_flight,queued";
+
+    // Instance variables
+    private double seconds;
+    private int step;
+    private int load;
+    private String className;
+    private String priority;
+    private int concurrency;
+    private long operations;
+    private double intervalSeconds;
+    private double requestCharge;
+    private long throttles;
+    private long retries;
+    private double p50Ms;
+    private double p95Ms;
+    private double p99Ms;
+    private int inFlight;
+    private int queued;
+
+    public ContentionSample(
+            double seconds, int step, int load, String className, String priority, int concurrency,
+            long operations, double intervalSeconds, double requestCharge, long throttles, long retries,
+            double p50Ms, double p95Ms, double p99Ms, int inFlight, int queued) {
+        super();
+        this.seconds = seconds;
+        this.step = step;
+        this.load = load;
+        this.className = className;
+        this.priority = priority;
+        this.concurrency = concurrency;
+        this.operations = operations;
+        this.intervalSeconds = intervalSeconds;
+        this.requestCharge = requestCharge;
+        this.throttles = throttles;
+        this.retries = retries;
+        this.p50Ms = p50Ms;
+        this.p95Ms = p95Ms;
+        this.p99Ms = p99Ms;
+        this.inFlight = inFlight;
+        this.queued = queued;
+    }
+
+    public double getOpsPerSecond() {
+        return operations / intervalSeconds;
+    }
+
+    public double getRuPerSecond() {
+        return requestCharge / intervalSeconds;
+    }
+
+    /**
+     * Return the 429s per second; the throttled responses and the 429s retried by the SDK.
+     */
+    public double getThrottlesPerSecond() {
+        return (throttles + retries) / intervalSeconds;
+    }
+
+    /**
+     * Return the percentage of the attempts that were throttled; an attempt is a response or
+     * a 429 retried by the SDK, which is not a response.
+     */
+    public double getThrottlePct() {
+
+        long attempts = operations + retries;
+        return attempts == 0 ? 0.0 : (throttles + retries) * 100.0 / attempts;
+    }
+
+    public String toCsv() {
+
+        return String.format(Locale.ROOT, "%.1f,%d,%d,%s,%s,%d,%d,%.1f,%.1f,%.1f,%.2f,%.2f,%.2f,%.2f,%d,%d",
+                seconds, step, load, className, priority, concurrency, operations,
+                getOpsPerSecond(), getRuPerSecond(), getThrottlesPerSecond(), getThrottlePct(),
+                p50Ms, p95Ms, p99Ms, inFlight, queued);
+    }
+
+    public double getSeconds() {
+        return seconds;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public int getLoad() {
+        return load;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getPriority() {
+        return priority;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public long getOperations() {
+        return operations;
+    }
+
+    public double getIntervalSeconds() {
+        return intervalSeconds;
+    }
+
+    public double getRequestCharge() {
+        return requestCharge;
+    }
+
+    public long getThrottles() {
+        return throttles;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    public double getP99Ms() {
+        return p99Ms;
+    }
+}
@@ -0,0 +1,22 @@
+package org.cjoakim.cosmos.suite;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * One step of the ramp schedule of a ContentionConfig; for the given number of seconds, the
+ * given total number of batches are kept in flight, shared among the workload classes per
+ * their ratios.
+ */
+
+@NoArgsConstructor
+@Data
+public class ContentionStep {
+
+    // Instance variables
+    int seconds;
+    int load;                           // batches in flight, across all the classes
+    Map<String, Double> ratios;         // class name to weight, replacing the config's ratios, if specified
+}
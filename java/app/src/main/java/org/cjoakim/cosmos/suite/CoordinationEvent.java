@@ -0,0 +1,78 @@
+package org.cjoakim.cosmos.suite;
+
+/**
+ * A change in the clients of a global coordination benchmark, clients joining or leaving the
+ * group at the same time, and how the group's RU/s behaved until the next change: how long it
+ * took to converge on the target, evenly shared, and how far it overshot the target.
+ */
+
+public class CoordinationEvent {
+
+    // Instance variables
+    private int seconds;
+    private String description;
+    private int activeClients;
+    private double convergedSeconds = -1;   // after the event; -1 if it did not converge
+    private double peakRuPerSecond;
+    private double peakAllocatedRuPerSecond;
+    private double minFairness = 1.0;
+
+    public CoordinationEvent(int seconds, String description, int activeClients) {
+        super();
+        this.seconds = seconds;
+        this.description = description;
+        this.activeClients = activeClients;
+    }
+
+    void setConvergedSeconds(double convergedSeconds) {
+        this.convergedSeconds = convergedSeconds;
+    }
+
+    void observe(double ruPerSecond, double allocatedRuPerSecond, double fairness) {
+
+        peakRuPerSecond = Math.max(peakRuPerSecond, ruPerSecond);
+        peakAllocatedRuPerSecond = Math.max(peakAllocatedRuPerSecond, allocatedRuPerSecond);
+        minFairness = Math.min(minFairness, fairness);
+    }
+
+    public boolean isConverged() {
+        return convergedSeconds >= 0;
+    }
+
+    public String summary(double targetRu) {
+
+        return String.format("at %ds %s, active clients: %d, %s, peak RU/s: %.0f (%+.1f%% of target %.0f), peak allocated RU/s: %.0f, min fairness: %.3f",
+                seconds, description, activeClients,
+                isConverged() ? String.format("converged in %.1fs", convergedSeconds) : "did not converge",
+                peakRuPerSecond, (peakRuPerSecond - targetRu) * 100.0 / targetRu, targetRu,
+                peakAllocatedRuPerSecond, minFairness);
+    }
+
+    public int getSeconds() {
+        return seconds;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getActiveClients() {
+        return activeClients;
+    }
+
+    public double getConvergedSeconds() {
+        return convergedSeconds;
+    }
+
+    public double getPeakRuPerSecond() {
+        return peakRuPerSecond;
+    }
+
+    public double getPeakAllocatedRuPerSecond() {
+        return peakAllocatedRuPerSecond;
+    }
+
+    public double getMinFairness() {
+        return minFairness;
+    }
+}
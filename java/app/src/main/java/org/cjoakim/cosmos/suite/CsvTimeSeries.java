@@ -0,0 +1,144 @@
+package org.cjoakim.cosmos.suite;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A CSV file of samples taken every interval while a ContentionExperiment or
+ * GlobalCoordinationBenchmark runs.  Each tick calls the sampler with the seconds since the
+ * start and since the previous sample, and flushes the rows it wrote; a final sample is taken
+ * when the series stops.  If the file can't be written, the error is logged and the samples
+ * are still taken.
+ */
+
+class CsvTimeSeries {
+
+    /**
+     * Takes one sample, writing its rows with write().
+     */
+    @FunctionalInterface
+    interface Sampler {
+        void sample(double seconds, double intervalSeconds);
+    }
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(CsvTimeSeries.class);
+    private static final double MIN_INTERVAL_SECONDS = 0.05;
+
+    // Instance variables
+    private String file;
+    private String header;
+    private Sampler sampler;
+    private BufferedWriter csv = null;
+    private Disposable ticker = null;
+    private volatile long startNanos = 0;
+    private long previousNanos = 0;
+
+    CsvTimeSeries(String file, String header, Sampler sampler) {
+        super();
+        this.file = file;
+        this.header = header;
+        this.sampler = sampler;
+    }
+
+    /**
+     * Open the file, write the header, and sample every intervalSeconds from now.
+     */
+    synchronized void start(long intervalSeconds) {
+
+        open();
+        startNanos = System.nanoTime();
+        previousNanos = startNanos;
+        ticker = Schedulers.parallel().schedulePeriodically(this::sample, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop sampling, take a final sample, and close the file.
+     */
+    synchronized void stop() {
+
+        if (ticker != null) {
+            ticker.dispose();
+            ticker = null;
+        }
+        sample();
+        close();
+    }
+
+    /**
+     * Call the sampler with the time since the previous sample, unless it is too short to measure.
+     */
+    synchronized void sample() {
+
+        long now = System.nanoTime();
+        double intervalSeconds = (now - previousNanos) / 1_000_000_000.0;
+        if (intervalSeconds < MIN_INTERVAL_SECONDS) {
+            return;
+        }
+        previousNanos = now;
+        sampler.sample((now - startNanos) / 1_000_000_000.0, intervalSeconds);
+        flush();
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    synchronized void write(String line) {
+
+        if (csv != null) {
+            try {
+                csv.write(line);
+                csv.newLine();
+            } catch (IOException e) {
+                logger.error("write - unable to write " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void open() {
+
+        try {
+            Path path = Paths.get(file);
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            csv = Files.newBufferedWriter(path);
+            csv.write(header);
+            csv.newLine();
+        } catch (IOException e) {
+            logger.error("open - unable to write " + file + ": " + e.getMessage());
+            csv = null;
+        }
+    }
+
+    private void flush() {
+
+        if (csv != null) {
+            try {
+                csv.flush();
+            } catch (IOException e) {
+                logger.error("flush - unable to write " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void close() {
+
+        if (csv != null) {
+            try {
+                csv.close();
+            } catch (IOException e) {
+                logger.error("close - unable to write " + file + ": " + e.getMessage());
+            }
+            csv = null;
+        }
+    }
+}
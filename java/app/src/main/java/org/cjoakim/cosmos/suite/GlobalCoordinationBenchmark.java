@@ -0,0 +1,292 @@
+package org.cjoakim.cosmos.suite;
+
+import com.azure.cosmos.ThroughputControlGroupConfig;
+import com.azure.cosmos.models.CosmosItemOperation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.bulk.BulkBatchExecutor;
+import org.cjoakim.cosmos.metrics.GroupMetrics;
+import org.cjoakim.cosmos.metrics.MetricsRegistry;
+import org.cjoakim.cosmos.target.LoadTarget;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * This class runs the client waves of a GlobalCoordinationConfig; each client is an independent
+ * LoadTarget, with its own client, that enables the same global throughput control group when
+ * it joins and loads the container, cycling through the operations, until it leaves.  Every
+ * interval a row per client, with its allocated and consumed RU/s, and a total row, with the
+ * group's RU/s and the fairness of its split among the active clients, are appended to the
+ * config's CSV file.  Then each join or leave is reported as a CoordinationEvent: how long the
+ * group took to converge on its target, evenly split, and how far it overshot.
+ */
+
+public class GlobalCoordinationBenchmark {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(GlobalCoordinationBenchmark.class);
+    public static final String CSV_HEADER =
+            "seconds,client,active_clients,allocated_ru_per_s,ru_per_s,ops_per_s,throttles_per_s,share_pct,fairness";
+
+    // Instance variables
+    private GlobalCoordinationConfig config;
+    private Function<String, LoadTarget> clientFactory;
+    private String globalControlContainer;
+    private Supplier<List<CosmosItemOperation>> operationsSupplier;
+    private MetricsRegistry metricsRegistry;
+    private List<Client> clients = new ArrayList<>();
+    private List<Total> totals = new ArrayList<>();
+    private List<CoordinationEvent> events = new ArrayList<>();
+    private Map<String, double[]> previous = new HashMap<>();
+    private double targetRu = 0;
+    private CsvTimeSeries timeSeries;
+
+    public GlobalCoordinationBenchmark(
+            GlobalCoordinationConfig config,
+            Function<String, LoadTarget> clientFactory,
+            String globalControlContainer,
+            Supplier<List<CosmosItemOperation>> operationsSupplier,
+            MetricsRegistry metricsRegistry) {
+        super();
+        this.config = config;
+        this.clientFactory = clientFactory;
+        this.globalControlContainer = globalControlContainer;
+        this.operationsSupplier = operationsSupplier;
+        this.metricsRegistry = metricsRegistry;
+        this.timeSeries = new CsvTimeSeries(config.getCsvFile(), CSV_HEADER, this::sample);
+    }
+
+    /**
+     * Run the benchmark and return its events, in time order.
+     */
+    public List<CoordinationEvent> run() {
+
+        ScenarioConfig group = config.getGroup();
+        group.setControl(ScenarioConfig.CONTROL_GLOBAL);
+        ThroughputControlGroupConfig groupConfig = group.buildThroughputControlGroupConfig();
+        List<CosmosItemOperation> operations = operationsSupplier.get();
+        for (ClientWave wave : config.getWaves()) {
+            int leaveSeconds = wave.getLeaveSeconds() > 0
+                    ? Math.min(wave.getLeaveSeconds(), config.getDurationSeconds()) : config.getDurationSeconds();
+            for (int i = 0; i < wave.getCount(); i++) {
+                clients.add(new Client(wave.clientName(i), wave.getJoinSeconds(), leaveSeconds));
+            }
+        }
+        targetRu = group.getRu();
+
+        logger.warn("run - group: " + group.getName() + ", clients: " + clients.size() + ", renew seconds: " + config.getRenewSeconds()
+                + ", expire seconds: " + config.getExpireSeconds() + ", seconds: " + config.getDurationSeconds() + ", csv: " + config.getCsvFile());
+        timeSeries.start(config.getIntervalSeconds());
+        try {
+            Flux.range(0, clients.size())
+                    .flatMap(i -> runClient(clients.get(i), groupConfig, operations, (long) i * operations.size() / clients.size()), clients.size())
+                    .then()
+                    .block();
+        } finally {
+            timeSeries.stop();
+        }
+        analyze();
+        for (CoordinationEvent event : events) {
+            logger.warn("event - " + event.summary(targetRu));
+        }
+        return events;
+    }
+
+    /**
+     * At its join time, build the client's target and enable the group; then load until its leave time.
+     */
+    private Mono<Long> runClient(
+            Client client, ThroughputControlGroupConfig groupConfig, List<CosmosItemOperation> operations, long offset) {
+
+        return Mono.delay(Duration.ofSeconds(client.joinSeconds))
+                .publishOn(Schedulers.boundedElastic())
+                .then(Mono.defer(() -> {
+                    LoadTarget target = clientFactory.apply(client.name);
+                    target.openConnections();
+                    target.enableGlobalThroughputControlGroup(groupConfig, globalControlContainer,
+                            Duration.ofSeconds(config.getRenewSeconds()), Duration.ofSeconds(config.getExpireSeconds()));
+                    synchronized (this) {
+                        if (targetRu <= 0) {
+                            targetRu = target.getTargetThroughput(groupConfig.getGroupName());
+                        }
+                        client.target = target;
+                    }
+                    logger.warn("runClient - joined: " + client.name + ", target: " + target.getName());
+                    if (operations.isEmpty()) {
+                        return Mono.just(0L).doOnTerminate(() -> leave(client));
+                    }
+                    long deadline = timeSeries.getStartNanos() + TimeUnit.SECONDS.toNanos(client.leaveSeconds);
+                    AtomicLong cursor = new AtomicLong(offset);
+                    Flux<CosmosItemOperation> cycle = Flux.<CosmosItemOperation>generate(
+                                    sink -> sink.next(operations.get((int) (cursor.getAndIncrement() % operations.size()))))
+                            .takeWhile(op -> System.nanoTime() < deadline);
+                    ScenarioConfig group = config.getGroup();
+                    return new BulkBatchExecutor(target, groupConfig.getGroupName(), group.getBatchSize(), group.getConcurrency(),
+                            metricsRegistry.getGroup(client.name))
+                            .executeAsync(cycle)
+                            .doOnTerminate(() -> leave(client));
+                }));
+    }
+
+    private void leave(Client client) {
+
+        synchronized (this) {
+            client.left = true;
+        }
+        logger.warn("runClient - left: " + client.name);
+        client.target.close();
+    }
+
+    /**
+     * Record a row of each client that has joined, and a total row, over the time since the previous sample.
+     */
+    private synchronized void sample(double seconds, double intervalSeconds) {
+
+        String groupName = config.getGroup().getName();
+        List<double[]> rows = new ArrayList<>();
+        List<Client> rowClients = new ArrayList<>();
+        double totalRu = 0;
+        double totalAllocated = 0;
+        double totalOps = 0;
+        double totalThrottles = 0;
+        double sum = 0;
+        double sumOfSquares = 0;
+        int active = 0;
+        for (Client client : clients) {
+            if (client.target == null) {
+                continue;
+            }
+            GroupMetrics gm = metricsRegistry.getGroup(client.name);
+            double[] current = { gm.getOperations(), gm.getRequestCharge(), gm.getThrottles() + gm.getRetries() };
+            double[] last = previous.getOrDefault(client.name, new double[current.length]);
+            previous.put(client.name, current);
+            double ops = (current[0] - last[0]) / intervalSeconds;
+            double ru = (current[1] - last[1]) / intervalSeconds;
+            double throttles = (current[2] - last[2]) / intervalSeconds;
+            double allocated = client.left ? 0 : client.target.getAllocatedThroughput(groupName);
+            totalRu += ru;
+            totalAllocated += allocated;
+            totalOps += ops;
+            totalThrottles += throttles;
+            if (!client.left) {
+                active++;
+                sum += ru;
+                sumOfSquares += ru * ru;
+            }
+            if (!client.left || ops > 0) {
+                rows.add(new double[] { allocated, ru, ops, throttles });
+                rowClients.add(client);
+            }
+        }
+        // Jain's fairness index of the RU/s of the active clients; 1 when evenly split
+        double fairness = sumOfSquares > 0 ? (sum * sum) / (active * sumOfSquares) : 1.0;
+        for (int i = 0; i < rows.size(); i++) {
+            double[] row = rows.get(i);
+            timeSeries.write(String.format(Locale.ROOT, "%.1f,%s,%d,%.1f,%.1f,%.1f,%.1f,%.2f,",
+                    seconds, rowClients.get(i).name, active, row[0], row[1], row[2], row[3],
+                    totalRu > 0 ? row[1] * 100.0 / totalRu : 0.0));
+        }
+        timeSeries.write(String.format(Locale.ROOT, "%.1f,total,%d,%.1f,%.1f,%.1f,%.1f,100.00,%.3f",
+                seconds, active, totalAllocated, totalRu, totalOps, totalThrottles, fairness));
+        totals.add(new Total(seconds, totalRu, totalAllocated, fairness));
+    }
+
+    /**
+     * Build an event for each time clients join or leave, and evaluate the samples up to the next one.
+     */
+    private synchronized void analyze() {
+
+        Map<Integer, List<String>> changes = new TreeMap<>();
+        for (ClientWave wave : config.getWaves()) {
+            changes.computeIfAbsent(wave.getJoinSeconds(), k -> new ArrayList<>())
+                    .add("join " + wave.getName() + " (" + wave.getCount() + ")");
+            if (wave.getLeaveSeconds() > 0 && wave.getLeaveSeconds() < config.getDurationSeconds()) {
+                changes.computeIfAbsent(wave.getLeaveSeconds(), k -> new ArrayList<>())
+                        .add("leave " + wave.getName() + " (" + wave.getCount() + ")");
+            }
+        }
+        List<Integer> times = new ArrayList<>(changes.keySet());
+        for (int e = 0; e < times.size(); e++) {
+            int time = times.get(e);
+            int end = e + 1 < times.size() ? times.get(e + 1) : Integer.MAX_VALUE;
+            int active = 0;
+            for (Client client : clients) {
+                if (client.joinSeconds <= time && client.leaveSeconds > time) {
+                    active++;
+                }
+            }
+            CoordinationEvent event = new CoordinationEvent(time, String.join(", ", changes.get(time)), active);
+            int stable = 0;
+            double candidate = -1;
+            for (Total total : totals) {
+                if (total.seconds <= time || total.seconds > end) {
+                    continue;
+                }
+                event.observe(total.ruPerSecond, total.allocatedRuPerSecond, total.fairness);
+                if (Math.abs(total.ruPerSecond - targetRu) <= config.getTolerance() * targetRu
+                        && total.fairness >= 1.0 - config.getTolerance()) {
+                    if (stable++ == 0) {
+                        candidate = total.seconds - time;
+                    }
+                    if (stable == config.getStableSamples() && !event.isConverged()) {
+                        event.setConvergedSeconds(candidate);
+                    }
+                } else {
+                    stable = 0;
+                }
+            }
+            events.add(event);
+        }
+    }
+
+    public synchronized double getTargetRu() {
+        return targetRu;
+    }
+
+    public synchronized List<CoordinationEvent> getEvents() {
+        return new ArrayList<>(events);
+    }
+
+    private static class Client {
+
+        String name;
+        int joinSeconds;
+        int leaveSeconds;
+        LoadTarget target = null;
+        boolean left = false;
+
+        Client(String name, int joinSeconds, int leaveSeconds) {
+            this.name = name;
+            this.joinSeconds = joinSeconds;
+            this.leaveSeconds = leaveSeconds;
+        }
+    }
+
+    private static class Total {
+
+        double seconds;
+        double ruPerSecond;
+        double allocatedRuPerSecond;
+        double fairness;
+
+        Total(double seconds, double ruPerSecond, double allocatedRuPerSecond, double fairness) {
+            this.seconds = seconds;
+            this.ruPerSecond = ruPerSecond;
+            this.allocatedRuPerSecond = allocatedRuPerSecond;
+            this.fairness = fairness;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.cjoakim.cosmos.suite;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.cjoakim.cosmos.util.FileUtil;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A global throughput control coordination benchmark; waves of independent clients join and
+ * leave one global throughput control group over time, each loading the same container.
+ * It is read from a JSON file such as suites/global_coordination.json.  The group is a
+ * ScenarioConfig, whose batchSize and concurrency apply to each client.
+ */
+
+@NoArgsConstructor
+@Data
+public class GlobalCoordinationConfig {
+
+    // Instance variables
+    String  database = "dev";
+    String  container = "test";
+    String  team = "all";
+    ScenarioConfig group;
+    int     renewSeconds = 5;           // control item renew interval
+    int     expireSeconds = 20;         // control item expire interval
+    int     durationSeconds = 120;
+    int     intervalSeconds = 1;        // of the time series
+    double  tolerance = 0.1;            // of the total RU/s to the target, and of the fairness to 1
+    int     stableSamples = 3;          // consecutive samples within tolerance to be converged
+    String  csvFile = "tmp/global_coordination.csv";
+    List<ClientWave> waves = new ArrayList<>();
+
+    public static GlobalCoordinationConfig read(String infile) throws Exception {
+
+        GlobalCoordinationConfig config =
+                new ObjectMapper().convertValue(new FileUtil().readJsonMap(infile), GlobalCoordinationConfig.class);
+        config.validate();
+        return config;
+    }
+
+    public int getClientCount() {
+
+        int count = 0;
+        for (ClientWave wave : waves) {
+            count += wave.getCount();
+        }
+        return count;
+    }
+
+    public void validate() {
+
+        if (group == null || group.getName() == null || group.getName().isBlank()) {
+            throw new IllegalArgumentException("global coordination benchmark has no group name");
+        }
+        if (group.getRu() <= 0 && group.getPct() <= 0) {
+            throw new IllegalArgumentException("global coordination benchmark group has no ru or pct target");
+        }
+        if (waves.isEmpty()) {
+            throw new IllegalArgumentException("global coordination benchmark has no client waves");
+        }
+        if (renewSeconds <= 0 || expireSeconds <= renewSeconds) {
+            throw new IllegalArgumentException("global coordination benchmark renew interval of " + renewSeconds
+                    + " seconds must be > 0 and less than the expire interval of " + expireSeconds);
+        }
+        if (intervalSeconds <= 0 || durationSeconds <= 0) {
+            throw new IllegalArgumentException("global coordination benchmark interval and duration must be > 0");
+        }
+        Set<String> names = new HashSet<>();
+        for (ClientWave wave : waves) {
+            if (wave.getName() == null || wave.getName().isBlank()) {
+                throw new IllegalArgumentException("global coordination benchmark wave has no name");
+            }
+            if (!names.add(wave.getName())) {
+                throw new IllegalArgumentException("duplicate global coordination benchmark wave name: " + wave.getName());
+            }
+            if (wave.getCount() <= 0 || wave.getJoinSeconds() < 0 || wave.getJoinSeconds() >= durationSeconds
+                    || (wave.getLeaveSeconds() > 0 && wave.getLeaveSeconds() <= wave.getJoinSeconds())) {
+                throw new IllegalArgumentException("invalid global coordination benchmark wave: " + wave.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.cjoakim.cosmos.suite;
+
+import com.azure.cosmos.ThroughputControlGroupConfig;
+import com.azure.cosmos.ThroughputControlGroupConfigBuilder;
+import com.azure.cosmos.models.PriorityLevel;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One scenario of a SuiteConfig; the equivalent of one throughput_test task in build.gradle.
+ * The scenario name is also the name of its throughput control group, so every scenario
+ * has its own group and its own metrics.
+ */
+
+@NoArgsConstructor
+@Data
+public class ScenarioConfig {
+
+    public static final String CONTROL_LOCAL = "local";
+    public static final String CONTROL_GLOBAL = "global";
+    public static final String ENGINE_BULK = "bulk";
+    public static final String ENGINE_POINT = "point";
+
+    // Instance variables
+    String name;
+    String control = CONTROL_LOCAL;     // local or global throughput control
+    String priority;                    // low, high, or none
+    int    ru;                          // target RU/s of the group, if > 0
+    double pct;                         // target fraction of the provisioned RU/s, if > 0 and no ru
+    int    batchSize = 50;
+    int    concurrency = 1;             // batches, or point operations, in flight
+    String engine = ENGINE_BULK;        // bulk batches, or point operations on virtual threads
+    int    warmupOperations;            // executed before, and excluded from, the measured load
+
+    public boolean isGlobal() {
+
+        return CONTROL_GLOBAL.equalsIgnoreCase(control);
+    }
+
+    public boolean isPointEngine() {
+
+        return ENGINE_POINT.equalsIgnoreCase(engine);
+    }
+
+    /**
+     * Build and return the ThroughputControlGroupConfig of this scenario; like the throughput_test
+     * function, it is a low priority group if neither a priority nor a target is specified.
+     */
+    public ThroughputControlGroupConfig buildThroughputControlGroupConfig() {
+
+        ThroughputControlGroupConfigBuilder builder = new ThroughputControlGroupConfigBuilder().groupName(name);
+        if (ru > 0) {
+            builder.targetThroughput(ru);
+        } else if (pct > 0) {
+            builder.targetThroughputThreshold(pct);
+        }
+        if ("high".equalsIgnoreCase(priority)) {
+            builder.priorityLevel(PriorityLevel.HIGH);
+        } else if ("low".equalsIgnoreCase(priority) || (ru <= 0 && pct <= 0)) {
+            builder.priorityLevel(PriorityLevel.LOW);
+        }
+        return builder.build();
+    }
+}
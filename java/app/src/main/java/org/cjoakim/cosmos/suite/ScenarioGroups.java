@@ -0,0 +1,93 @@
+package org.cjoakim.cosmos.suite;
+
+import com.azure.cosmos.ThroughputControlGroupConfig;
+import com.azure.cosmos.models.CosmosItemOperation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.metrics.GroupMetrics;
+import org.cjoakim.cosmos.metrics.MetricsRegistry;
+import org.cjoakim.cosmos.target.LoadTarget;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * The throughput control groups of the scenarios that a SuiteRunner, ContentionExperiment or
+ * WorkloadRunner runs against one LoadTarget.  Each scenario's group is enabled, local or
+ * global, before its run is built, and a warm-up executes in the scenario's group but records
+ * into metrics of its own, kept apart from the measured load.
+ */
+
+class ScenarioGroups {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(ScenarioGroups.class);
+    static final Duration GLOBAL_RENEW_INTERVAL = Duration.ofSeconds(5);
+    static final Duration GLOBAL_EXPIRE_INTERVAL = Duration.ofSeconds(20);
+
+    // Instance variables
+    private LoadTarget target;
+    private String globalControlContainer;
+    private MetricsRegistry metricsRegistry;
+    private MetricsRegistry warmupRegistry = new MetricsRegistry();
+
+    ScenarioGroups(LoadTarget target, String globalControlContainer, MetricsRegistry metricsRegistry) {
+        super();
+        this.target = target;
+        this.globalControlContainer = globalControlContainer;
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * Enable the throughput control group of the given scenario on the target.
+     */
+    void enable(ScenarioConfig scenario) {
+
+        ThroughputControlGroupConfig groupConfig = scenario.buildThroughputControlGroupConfig();
+        if (scenario.isGlobal()) {
+            target.enableGlobalThroughputControlGroup(
+                    groupConfig, globalControlContainer, GLOBAL_RENEW_INTERVAL, GLOBAL_EXPIRE_INTERVAL);
+        } else {
+            target.enableLocalThroughputControlGroup(groupConfig);
+        }
+    }
+
+    /**
+     * Enable the group of the given scenario and return its run of the given operations,
+     * recorded in the scenario's group of the metrics registry.
+     */
+    ScenarioRun prepare(ScenarioConfig scenario, List<CosmosItemOperation> operations) {
+
+        enable(scenario);
+        return new ScenarioRun(scenario, operations, metricsRegistry.getGroup(scenario.getName()));
+    }
+
+    /**
+     * Return a Mono that executes the first warmupOperations of the source's operations with
+     * the given function, which is passed them and the separate warm-up metrics of the run's
+     * group.  The source is called only when the Mono is subscribed.
+     */
+    Mono<Long> warmUp(ScenarioRun run, Supplier<List<CosmosItemOperation>> source,
+                      BiFunction<List<CosmosItemOperation>, GroupMetrics, Mono<Long>> execute) {
+
+        ScenarioConfig scenario = run.getConfig();
+        if (scenario.getWarmupOperations() <= 0) {
+            return Mono.just(0L);
+        }
+        return Mono.defer(() -> {
+            List<CosmosItemOperation> operations = source.get();
+            int count = Math.min(scenario.getWarmupOperations(), operations.size());
+            if (count <= 0) {
+                return Mono.just(0L);
+            }
+            logger.warn("warmUp - group: " + scenario.getName() + ", operations: " + count);
+            GroupMetrics metrics = warmupRegistry.getGroup(scenario.getName());
+            long start = System.currentTimeMillis();
+            return execute.apply(operations.subList(0, count), metrics)
+                    .doOnSuccess(n -> logger.warn("warmUp - excluded " + metrics.summary(System.currentTimeMillis() - start)));
+        });
+    }
+}
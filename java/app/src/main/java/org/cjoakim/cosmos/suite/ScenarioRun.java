@@ -0,0 +1,76 @@
+package org.cjoakim.cosmos.suite;
+
+import com.azure.cosmos.models.CosmosItemOperation;
+import org.cjoakim.cosmos.metrics.GroupMetrics;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The operations, timing and metrics of one scenario of a suite run.  Only the measured
+ * load is timed and recorded here; the warm-up operations have metrics of their own.
+ */
+
+public class ScenarioRun {
+
+    // Instance variables
+    private ScenarioConfig config;
+    private List<CosmosItemOperation> operations;
+    private GroupMetrics metrics;
+    private long operationCount;
+    private long startMs;
+    private long finishMs;
+    private Date startDate;
+    private Date finishDate;
+
+    public ScenarioRun(ScenarioConfig config, List<CosmosItemOperation> operations, GroupMetrics metrics) {
+        super();
+        this.config = config;
+        this.operations = operations;
+        this.metrics = metrics;
+    }
+
+    void started() {
+        startMs = System.currentTimeMillis();
+        startDate = new Date();
+    }
+
+    void finished(long count) {
+        finishMs = System.currentTimeMillis();
+        finishDate = new Date();
+        operationCount = count;
+        operations = null;
+    }
+
+    public String getName() {
+        return config.getName();
+    }
+
+    public ScenarioConfig getConfig() {
+        return config;
+    }
+
+    List<CosmosItemOperation> getOperations() {
+        return operations;
+    }
+
+    public GroupMetrics getMetrics() {
+        return metrics;
+    }
+
+    public long getOperationCount() {
+        return operationCount;
+    }
+
+    public long getElapsedMs() {
+        return finishMs - startMs;
+    }
+
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    public Date getFinishDate() {
+        return finishDate;
+    }
+}
@@ -0,0 +1,65 @@
+package org.cjoakim.cosmos.suite;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.cjoakim.cosmos.util.FileUtil;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A list of scenarios to be run, sequentially or concurrently, against one container
+ * by a SuiteRunner.  It is read from a JSON file such as suites/throughput_tests.json.
+ */
+
+@NoArgsConstructor
+@Data
+public class SuiteConfig {
+
+    // Instance variables
+    String  database = "dev";
+    String  container = "test";
+    String  team = "all";
+    boolean concurrent;                 // run the scenarios at the same time, rather than one after another
+    int     pauseSeconds;               // between sequential scenarios
+    List<ScenarioConfig> scenarios = new ArrayList<>();
+
+    public static SuiteConfig read(String infile) throws Exception {
+
+        SuiteConfig config = new ObjectMapper().convertValue(new FileUtil().readJsonMap(infile), SuiteConfig.class);
+        config.validate();
+        return config;
+    }
+
+    public boolean hasGlobalScenario() {
+
+        for (ScenarioConfig scenario : scenarios) {
+            if (scenario.isGlobal()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Throughput control group names must be unique per container, and each scenario is a group.
+     */
+    public void validate() {
+
+        if (scenarios.isEmpty()) {
+            throw new IllegalArgumentException("suite has no scenarios");
+        }
+        Set<String> names = new HashSet<>();
+        for (ScenarioConfig scenario : scenarios) {
+            if (scenario.getName() == null || scenario.getName().isBlank()) {
+                throw new IllegalArgumentException("suite scenario has no name");
+            }
+            if (!names.add(scenario.getName())) {
+                throw new IllegalArgumentException("duplicate suite scenario name: " + scenario.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.cjoakim.cosmos.suite;
+
+import com.azure.cosmos.models.CosmosItemOperation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.bulk.BulkBatchExecutor;
+import org.cjoakim.cosmos.bulk.PointOperationExecutor;
+import org.cjoakim.cosmos.metrics.GroupMetrics;
+import org.cjoakim.cosmos.metrics.MetricsRegistry;
+import org.cjoakim.cosmos.target.LoadTarget;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * This class runs the scenarios of a SuiteConfig against one LoadTarget, and so one client,
+ * its connections and its caches, which are opened and warmed once before the first scenario.
+ * Each scenario enables its own throughput control group and gets freshly built operations,
+ * and may first execute some of them as a warm-up whose metrics are kept apart from the
+ * measured load.  Concurrent scenarios all finish their warm-ups before any measured load starts.
+ */
+
+public class SuiteRunner {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(SuiteRunner.class);
+
+    // Instance variables
+    private LoadTarget target;
+    private SuiteConfig config;
+    private Supplier<List<CosmosItemOperation>> operationsSupplier;
+    private ScenarioGroups groups;
+
+    public SuiteRunner(
+            LoadTarget target,
+            SuiteConfig config,
+            String globalControlContainer,
+            Supplier<List<CosmosItemOperation>> operationsSupplier,
+            MetricsRegistry metricsRegistry) {
+        super();
+        this.target = target;
+        this.config = config;
+        this.operationsSupplier = operationsSupplier;
+        this.groups = new ScenarioGroups(target, globalControlContainer, metricsRegistry);
+    }
+
+    /**
+     * Run the scenarios and return their runs, in the order of the SuiteConfig.
+     */
+    public List<ScenarioRun> run() {
+
+        long start = System.currentTimeMillis();
+        target.openConnections();
+        logger.warn("run - target " + target.getName() + " opened in " + (System.currentTimeMillis() - start)
+                + " ms, scenarios: " + config.getScenarios().size() + ", concurrent: " + config.isConcurrent());
+
+        List<ScenarioRun> runs = new ArrayList<>();
+        if (config.isConcurrent()) {
+            for (ScenarioConfig scenario : config.getScenarios()) {
+                runs.add(prepare(scenario));
+            }
+            Flux.fromIterable(runs)
+                    .flatMap(this::warmUp, runs.size())
+                    .then(Flux.fromIterable(runs).flatMap(this::measure, runs.size()).then())
+                    .block();
+        } else {
+            for (ScenarioConfig scenario : config.getScenarios()) {
+                if (!runs.isEmpty() && config.getPauseSeconds() > 0) {
+                    pause(config.getPauseSeconds());
+                }
+                ScenarioRun run = prepare(scenario);
+                warmUp(run).then(measure(run)).block();
+                runs.add(run);
+            }
+        }
+        return runs;
+    }
+
+    private ScenarioRun prepare(ScenarioConfig scenario) {
+
+        return groups.prepare(scenario, operationsSupplier.get());
+    }
+
+    /**
+     * Execute the first warmupOperations of the scenario, freshly built so that the measured
+     * operations are untouched, in the scenario's group but with separate metrics.
+     */
+    private Mono<Long> warmUp(ScenarioRun run) {
+
+        return groups.warmUp(run, operationsSupplier,
+                (operations, metrics) -> execute(run.getConfig(), metrics, operations));
+    }
+
+    private Mono<Long> measure(ScenarioRun run) {
+
+        return Mono.defer(() -> {
+            logger.warn("measure - scenario: " + run.getName() + ", operations: " + run.getOperations().size());
+            run.started();
+            return execute(run.getConfig(), run.getMetrics(), run.getOperations())
+                    .doOnSuccess(run::finished);
+        });
+    }
+
+    /**
+     * Return a Mono that executes the given operations per the scenario's engine; bulk batches,
+     * or point operations.
+     */
+    private Mono<Long> execute(ScenarioConfig scenario, GroupMetrics metrics, List<CosmosItemOperation> operations) {
+
+        if (scenario.isPointEngine()) {
+            return new PointOperationExecutor(target, scenario.getName(), scenario.getConcurrency(), metrics)
+                    .executeAsync(operations);
+        }
+        return new BulkBatchExecutor(target, scenario.getName(), scenario.getBatchSize(), scenario.getConcurrency(), metrics)
+                .executeAsync(operations);
+    }
+
+    private static void pause(int seconds) {
+
+        logger.warn("pause - " + seconds + " seconds");
+        try {
+            Thread.sleep(seconds * 1000L);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.cjoakim.cosmos.suite;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.cjoakim.cosmos.workload.WorkloadOperation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One class of a WorkloadConfig, such as the interactive readers or a bulk writer; its group is
+ * a ScenarioConfig, with its own throughput control group, and the class generates operations
+ * in the proportions of its mix on keys chosen per its keys spec; see WorkloadGenerator.
+ */
+
+@NoArgsConstructor
+@Data
+public class WorkloadClass {
+
+    // Instance variables
+    ScenarioConfig group;
+    Map<String, Double> mix = new LinkedHashMap<>();    // operation type to weight
+    String keys = "uniform";                            // uniform, zipf[:exponent], hotset[:fraction[:probability]]
+
+    public String getName() {
+
+        return group == null ? null : group.getName();
+    }
+
+    public boolean hasQueries() {
+
+        for (Map.Entry<String, Double> entry : mix.entrySet()) {
+            if (entry.getValue() != null && entry.getValue() > 0 && WorkloadOperation.Type.parse(entry.getKey()).isQuery()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,91 @@
+package org.cjoakim.cosmos.suite;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.cjoakim.cosmos.util.FileUtil;
+import org.cjoakim.cosmos.workload.KeyDistribution;
+import org.cjoakim.cosmos.workload.WorkloadOperation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A mixed read, query and write workload; its classes run at the same time against one
+ * container for durationSeconds, each generating operations on the loaded batters.  It is
+ * read from a JSON file such as suites/read_write_mix.json.  With preload, the batters are
+ * first upserted, so that the reads, queries and patches find them.
+ */
+
+@NoArgsConstructor
+@Data
+public class WorkloadConfig {
+
+    // Instance variables
+    String  database = "dev";
+    String  container = "test";
+    String  team = "all";
+    int     durationSeconds = 60;
+    long    seed = 42;                  // of the operation mix and keys; each class adds its index
+    boolean preload = true;
+    List<WorkloadClass> classes = new ArrayList<>();
+
+    public static WorkloadConfig read(String infile) throws Exception {
+
+        WorkloadConfig config = new ObjectMapper().convertValue(new FileUtil().readJsonMap(infile), WorkloadConfig.class);
+        config.validate();
+        return config;
+    }
+
+    public boolean hasGlobalClass() {
+
+        for (WorkloadClass workload : classes) {
+            if (workload.getGroup().isGlobal()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Class names are throughput control group names, which must be unique per container.
+     * Queries are not bulk operations, so a class with queries must use the point engine.
+     */
+    public void validate() {
+
+        if (classes.isEmpty()) {
+            throw new IllegalArgumentException("workload has no classes");
+        }
+        if (durationSeconds <= 0) {
+            throw new IllegalArgumentException("workload duration of " + durationSeconds + " seconds");
+        }
+        Set<String> names = new HashSet<>();
+        for (WorkloadClass workload : classes) {
+            if (workload.getName() == null || workload.getName().isBlank()) {
+                throw new IllegalArgumentException("workload class has no group name");
+            }
+            if (!names.add(workload.getName())) {
+                throw new IllegalArgumentException("duplicate workload class name: " + workload.getName());
+            }
+            double total = 0;
+            for (String type : workload.getMix().keySet()) {
+                WorkloadOperation.Type.parse(type);
+                Double weight = workload.getMix().get(type);
+                if (weight == null || weight < 0) {
+                    throw new IllegalArgumentException("workload class " + workload.getName() + " has a negative weight: " + type);
+                }
+                total += weight;
+            }
+            if (total <= 0) {
+                throw new IllegalArgumentException("workload class " + workload.getName() + " has no operation mix");
+            }
+            KeyDistribution.parse(workload.getKeys(), 1);
+            if (workload.hasQueries() && !workload.getGroup().isPointEngine()) {
+                throw new IllegalArgumentException(
+                        "workload class " + workload.getName() + " has queries, which need \"engine\": \"point\"");
+            }
+        }
+    }
+}
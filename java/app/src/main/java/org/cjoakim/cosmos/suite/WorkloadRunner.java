@@ -0,0 +1,161 @@
+package org.cjoakim.cosmos.suite;
+
+import com.azure.cosmos.models.CosmosItemOperation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.bulk.BulkBatchExecutor;
+import org.cjoakim.cosmos.bulk.PointOperationExecutor;
+import org.cjoakim.cosmos.metrics.GroupMetrics;
+import org.cjoakim.cosmos.metrics.MetricsRegistry;
+import org.cjoakim.cosmos.metrics.OperationResult;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.pk.PartitionKeyStrategy;
+import org.cjoakim.cosmos.target.LoadTarget;
+import org.cjoakim.cosmos.workload.WorkloadGenerator;
+import org.cjoakim.cosmos.workload.WorkloadOperation;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * This class runs the classes of a WorkloadConfig at the same time against one LoadTarget,
+ * each in its own throughput control group, until the config's duration has elapsed.  A class
+ * on the point engine keeps its concurrency of operations, including queries, in flight; a
+ * class on the bulk engine keeps its concurrency of batches of item operations in flight.
+ * Besides the metrics of each class, the metrics of each operation type of each class, such as
+ * readers/read, are kept apart, so that the latency of reads under a write load can be seen.
+ */
+
+public class WorkloadRunner {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(WorkloadRunner.class);
+    private static final String PRELOAD_GROUP = "preload";
+
+    // Instance variables
+    private LoadTarget target;
+    private WorkloadConfig config;
+    private List<BaseballBatter> batters;
+    private PartitionKeyStrategy strategy;
+    private Supplier<List<CosmosItemOperation>> preloadSupplier;
+    private ScenarioGroups groups;
+    private MetricsRegistry typeRegistry = new MetricsRegistry();
+    private MetricsRegistry preloadRegistry = new MetricsRegistry();
+
+    public WorkloadRunner(
+            LoadTarget target,
+            WorkloadConfig config,
+            String globalControlContainer,
+            List<BaseballBatter> batters,
+            PartitionKeyStrategy strategy,
+            Supplier<List<CosmosItemOperation>> preloadSupplier,
+            MetricsRegistry metricsRegistry) {
+        super();
+        this.target = target;
+        this.config = config;
+        this.batters = batters;
+        this.strategy = strategy;
+        this.preloadSupplier = preloadSupplier;
+        this.groups = new ScenarioGroups(target, globalControlContainer, metricsRegistry);
+    }
+
+    /**
+     * Run the workload and return the run of each class, in the order of the config.
+     */
+    public List<ScenarioRun> run() {
+
+        target.openConnections();
+        if (config.isPreload()) {
+            preload();
+        }
+        List<ScenarioRun> runs = new ArrayList<>();
+        for (WorkloadClass workload : config.getClasses()) {
+            runs.add(prepare(workload));
+        }
+        logger.warn("run - classes: " + runs.size() + ", batters: " + batters.size() + ", seconds: " + config.getDurationSeconds());
+        long deadlineNanos = System.nanoTime() + Duration.ofSeconds(config.getDurationSeconds()).toNanos();
+        Flux.range(0, runs.size())
+                .flatMap(i -> runClass(config.getClasses().get(i), runs.get(i), config.getSeed() + i, deadlineNanos), runs.size())
+                .then()
+                .block();
+        logReport(runs);
+        return runs;
+    }
+
+    /**
+     * Upsert the batters in a low priority group of their own, with separate metrics, so that
+     * the reads, queries and patches of the workload find them.
+     */
+    private void preload() {
+
+        ScenarioConfig preload = new ScenarioConfig();
+        preload.setName(PRELOAD_GROUP);
+        groups.enable(preload);
+        long start = System.currentTimeMillis();
+        GroupMetrics metrics = preloadRegistry.getGroup(PRELOAD_GROUP);
+        new BulkBatchExecutor(target, PRELOAD_GROUP, 100, 4, metrics).execute(preloadSupplier.get());
+        logger.warn("preload - excluded " + metrics.summary(System.currentTimeMillis() - start));
+    }
+
+    private ScenarioRun prepare(WorkloadClass workload) {
+
+        return groups.prepare(workload.getGroup(), null);
+    }
+
+    private Mono<Long> runClass(WorkloadClass workload, ScenarioRun run, long seed, long deadlineNanos) {
+
+        return Mono.defer(() -> {
+            ScenarioConfig group = workload.getGroup();
+            String groupName = group.getName();
+            WorkloadGenerator generator = new WorkloadGenerator(batters, strategy, workload.getMix(), workload.getKeys(), seed);
+            logger.warn("runClass - class: " + groupName + ", engine: " + group.getEngine() + ", concurrency: "
+                    + group.getConcurrency() + ", mix: " + workload.getMix() + ", keys: " + generator.getKeys().getName());
+            Flux<WorkloadOperation> operations = Flux.<WorkloadOperation>generate(sink -> sink.next(generator.next()))
+                    .takeWhile(op -> System.nanoTime() < deadlineNanos);
+            run.started();
+            Mono<Long> execution;
+            if (group.isPointEngine()) {
+                PointOperationExecutor executor =
+                        new PointOperationExecutor(target, groupName, group.getConcurrency(), run.getMetrics());
+                executor.setResultListener(result -> recordType(groupName, result));
+                execution = executor.executeAsync(operations, op -> op.execute(target, groupName));
+            } else {
+                BulkBatchExecutor executor = new BulkBatchExecutor(
+                        target, groupName, group.getBatchSize(), group.getConcurrency(), run.getMetrics());
+                executor.setResultListener(result -> recordType(groupName, result));
+                execution = executor.executeAsync(operations.map(WorkloadOperation::getItemOperation));
+            }
+            return execution.doOnSuccess(run::finished);
+        });
+    }
+
+    private void recordType(String groupName, OperationResult result) {
+
+        String type = result.getOperationType() == null ? "unknown" : result.getOperationType().toLowerCase();
+        typeRegistry.getGroup(groupName + "/" + type).recordOperation(result);
+    }
+
+    private void logReport(List<ScenarioRun> runs) {
+
+        for (ScenarioRun run : runs) {
+            logger.warn("workload - class: " + run.getName() + ", operations: " + run.getOperationCount() + ", ms: " + run.getElapsedMs());
+            logger.warn("metrics - " + run.getMetrics().summary(run.getElapsedMs()));
+        }
+        long elapsedMs = config.getDurationSeconds() * 1000L;
+        for (GroupMetrics metrics : typeRegistry.getGroups()) {
+            logger.warn("workload - by type - " + metrics.summary(elapsedMs));
+        }
+    }
+
+    /**
+     * Return the metrics of the given operation type, such as read, of the given class.
+     */
+    public GroupMetrics getTypeMetrics(String className, String type) {
+
+        return typeRegistry.getGroup(className + "/" + type.toLowerCase());
+    }
+}
@@ -0,0 +1,232 @@
+package org.cjoakim.cosmos.synth;
+
+import org.cjoakim.cosmos.model.BaseballBatter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * The empirical distribution of the stats of real BaseballBatters, such as the filtered rows of
+ * Batting.csv, from which synthetic batters are sampled.  Playing time, the games and at bats of
+ * a season, is sampled from one real row, and the rates of the other stats, per at bat or per
+ * hit, from another of about the same at bats, so that the stats keep their real correlations,
+ * such as home runs with strikeouts, and regulars outhitting bench players, without copying any
+ * real season.  Each count is then drawn around its rate with binomial noise.  A stat missing
+ * from a real row, such as caughtStealing in early seasons, is missing, -1, from the synthetic
+ * batters sampled from that row too.
+ */
+
+public class BatterStatsModel {
+
+    // The rates of a profile; doubles, triples and home runs are per hit, the others per at bat
+    private static final int DOUBLES = 0;
+    private static final int TRIPLES = 1;
+    private static final int HOME_RUNS = 2;
+    private static final int HITS = 3;
+    private static final int RUNS = 4;
+    private static final int RBI = 5;
+    private static final int STOLEN_BASES = 6;
+    private static final int CAUGHT_STEALING = 7;
+    private static final int BASE_ON_BALLS = 8;
+    private static final int STRIKEOUTS = 9;
+    private static final int INTENTIONAL_BB = 10;
+    private static final int HIT_BY_PITCH = 11;
+    private static final int RATE_COUNT = 12;
+    private static final int NEIGHBOURHOOD_DIVISOR = 100;  // profiles within a percentile of at bats
+
+    // Instance variables
+    private final int[][] playingTimes;     // games, atBats
+    private final float[][] profiles;       // rates; NaN where the stat is missing
+    private final int[] profileAtBats;      // sorted, and the profiles in the same order
+    private final String[][] teams;         // teamID, leagueID; one per row, so by frequency
+    private final int[] years;              // sorted
+    private final double meanBattingAverage;
+
+    private BatterStatsModel(
+            int[][] playingTimes, float[][] profiles, int[] profileAtBats, String[][] teams, int[] years, double meanBattingAverage) {
+        super();
+        this.playingTimes = playingTimes;
+        this.profiles = profiles;
+        this.profileAtBats = profileAtBats;
+        this.teams = teams;
+        this.years = years;
+        this.meanBattingAverage = meanBattingAverage;
+    }
+
+    /**
+     * Fit a model to the given valid batters; those with no at bats contribute playing time and
+     * teams, but no rates.
+     */
+    public static BatterStatsModel fit(List<BaseballBatter> batters) {
+
+        List<int[]> playingTimes = new ArrayList<>();
+        List<BaseballBatter> profiled = new ArrayList<>();
+        List<String[]> teams = new ArrayList<>();
+        int[] years = new int[batters.size()];
+        long hits = 0;
+        long atBats = 0;
+        int count = 0;
+        for (int i = 0; i < batters.size(); i++) {
+            BaseballBatter bb = batters.get(i);
+            if (!bb.isValid() || bb.getAtBats() < 0) {
+                continue;
+            }
+            playingTimes.add(new int[] { bb.getGames(), bb.getAtBats() });
+            teams.add(new String[] { bb.getTeamID(), bb.getLeagueID() });
+            years[count++] = bb.getYear();
+            if (bb.getAtBats() > 0 && bb.getHits() >= 0) {
+                profiled.add(bb);
+                hits += bb.getHits();
+                atBats += bb.getAtBats();
+            }
+        }
+        if (profiled.isEmpty()) {
+            throw new IllegalArgumentException("no batters with at bats to fit a model to, of " + batters.size());
+        }
+        years = Arrays.copyOf(years, count);
+        Arrays.sort(years);
+        profiled.sort(Comparator.comparingInt(BaseballBatter::getAtBats));
+        float[][] profiles = new float[profiled.size()][];
+        int[] profileAtBats = new int[profiled.size()];
+        for (int i = 0; i < profiles.length; i++) {
+            profiles[i] = profileOf(profiled.get(i));
+            profileAtBats[i] = profiled.get(i).getAtBats();
+        }
+        return new BatterStatsModel(
+                playingTimes.toArray(new int[0][]),
+                profiles,
+                profileAtBats,
+                teams.toArray(new String[0][]),
+                years,
+                (double) hits / atBats);
+    }
+
+    private static float[] profileOf(BaseballBatter bb) {
+
+        float[] rates = new float[RATE_COUNT];
+        int hits = bb.getHits();
+        rates[DOUBLES] = rate(bb.getDoubles(), hits);
+        rates[TRIPLES] = rate(bb.getTriples(), hits);
+        rates[HOME_RUNS] = rate(bb.getHomeRuns(), hits);
+        int atBats = bb.getAtBats();
+        rates[HITS] = rate(hits, atBats);
+        rates[RUNS] = rate(bb.getRuns(), atBats);
+        rates[RBI] = rate(bb.getRbi(), atBats);
+        rates[STOLEN_BASES] = rate(bb.getStolenBases(), atBats);
+        rates[CAUGHT_STEALING] = rate(bb.getCaughtStealing(), atBats);
+        rates[BASE_ON_BALLS] = rate(bb.getBaseOnBalls(), atBats);
+        rates[STRIKEOUTS] = rate(bb.getStrikeouts(), atBats);
+        rates[INTENTIONAL_BB] = rate(bb.getIntentionalBB(), atBats);
+        rates[HIT_BY_PITCH] = rate(bb.getHitByPitch(), atBats);
+        return rates;
+    }
+
+    private static float rate(int value, int per) {
+
+        if (value < 0) {
+            return Float.NaN;
+        }
+        return per == 0 ? 0.0f : (float) value / per;
+    }
+
+    /**
+     * Set the team, league, playing time and stats of the given batter from the given random;
+     * its identity, playerID, year and stint, is left to the caller.
+     */
+    public void sample(SplittableRandom random, BaseballBatter bb) {
+
+        String[] team = teams[random.nextInt(teams.length)];
+        bb.setTeamID(team[0]);
+        bb.setLeagueID(team[1]);
+        int[] playingTime = playingTimes[random.nextInt(playingTimes.length)];
+        int atBats = playingTime[1];
+        bb.setGames(playingTime[0]);
+        bb.setAtBats(atBats);
+
+        float[] rates = profiles[nearbyProfile(random, atBats)];
+        int hits = count(random, atBats, rates[HITS]);
+        bb.setHits(hits);
+        int doubles = Math.min(count(random, hits, rates[DOUBLES]), hits);
+        int triples = Math.min(count(random, hits, rates[TRIPLES]), hits - Math.max(doubles, 0));
+        int homeRuns = Math.min(count(random, hits, rates[HOME_RUNS]), hits - Math.max(doubles, 0) - Math.max(triples, 0));
+        bb.setDoubles(doubles);
+        bb.setTriples(triples);
+        bb.setHomeRuns(homeRuns);
+        bb.setRuns(count(random, atBats, rates[RUNS]));
+        bb.setRbi(count(random, atBats, rates[RBI]));
+        bb.setStolenBases(count(random, atBats, rates[STOLEN_BASES]));
+        bb.setCaughtStealing(count(random, atBats, rates[CAUGHT_STEALING]));
+        int baseOnBalls = count(random, atBats, rates[BASE_ON_BALLS]);
+        bb.setBaseOnBalls(baseOnBalls);
+        bb.setStrikeouts(count(random, atBats, rates[STRIKEOUTS]));
+        int intentionalBB = count(random, atBats, rates[INTENTIONAL_BB]);
+        bb.setIntentionalBB(baseOnBalls < 0 ? intentionalBB : Math.min(intentionalBB, baseOnBalls));
+        bb.setHitByPitch(count(random, atBats, rates[HIT_BY_PITCH]));
+    }
+
+    /**
+     * Return the index of a random profile among those within a percentile of the given at bats.
+     */
+    private int nearbyProfile(SplittableRandom random, int atBats) {
+
+        int index = Arrays.binarySearch(profileAtBats, atBats);
+        index = Math.min(index >= 0 ? index : -index - 1, profiles.length - 1);
+        int width = Math.max(1, profiles.length / NEIGHBOURHOOD_DIVISOR);
+        int from = Math.max(0, index - width);
+        int to = Math.min(profiles.length, index + width + 1);
+        return from + random.nextInt(to - from);
+    }
+
+    /**
+     * Return a count of successes in the given number of trials at the given rate, with the
+     * normal approximation of binomial noise, so that the cost does not depend on the trials;
+     * -1 if the rate is missing.
+     */
+    private static int count(SplittableRandom random, int trials, float rate) {
+
+        if (Float.isNaN(rate)) {
+            return -1;
+        }
+        if (trials <= 0 || rate <= 0) {
+            return 0;
+        }
+        double p = Math.min(rate, 1.0);
+        double mean = trials * p;
+        double sd = Math.sqrt(mean * (1.0 - p));
+        long value = Math.round(mean + sd * random.nextGaussian());
+        return (int) Math.max(0, Math.min(trials, value));
+    }
+
+    /**
+     * Return a year from the distribution of the real years, no later than the given year.
+     */
+    public int sampleYear(SplittableRandom random, int latest) {
+
+        return Math.min(years[random.nextInt(years.length)], Math.max(latest, years[0]));
+    }
+
+    public int getFirstYear() {
+        return years[0];
+    }
+
+    public int getLastYear() {
+        return years[years.length - 1];
+    }
+
+    public int getProfileCount() {
+        return profiles.length;
+    }
+
+    public double getMeanBattingAverage() {
+        return meanBattingAverage;
+    }
+
+    public String summary() {
+
+        return String.format("rows: %d, profiles: %d, years: %d-%d, mean batting average: %.3f",
+                playingTimes.length, profiles.length, getFirstYear(), getLastYear(), meanBattingAverage);
+    }
+}
@@ -0,0 +1,182 @@
+package org.cjoakim.cosmos.synth;
+
+import com.github.javafaker.Faker;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+/**
+ * This class generates any number of synthetic BaseballBatter documents, sampled from a
+ * BatterStatsModel, so that a load is not limited by the size of Batting.csv.  Batter n is a
+ * function of the seed and n alone, so the same seed produces the same documents, with the same
+ * ids, whatever the parallelism, and a load can be repeated or upserted again.  The batters are
+ * spread over a given number of players, the cardinality of playerID; batter n is a season of
+ * player n % players, so a player has count / players seasons, in consecutive years from a start
+ * year sampled from the real years, twenty years to a stint.  The playerIDs look like those of
+ * Batting.csv, from the names of a seeded Faker, with the player number for uniqueness.
+ */
+
+public class SyntheticBatterGenerator {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(SyntheticBatterGenerator.class);
+    public static final int CHUNK_SIZE = 10000;
+    private static final int SEASONS_PER_STINT = 20;
+    private static final int MAX_PLAYER_ID_LENGTH = 12;
+    private static final int LAST_NAMES = 2000;
+    private static final int FIRST_NAMES = 200;
+    private static final long PLAYER_SALT = 0x5851F42D4C957F2DL;
+
+    // Instance variables
+    private final BatterStatsModel model;
+    private final long count;
+    private final int players;
+    private final long seed;
+    private final int parallelism;
+    private final String[] lastNames;
+    private final String[] firstNames;
+
+    public SyntheticBatterGenerator(BatterStatsModel model, long count, int players, long seed, int parallelism) {
+
+        if (count < 0 || players < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("invalid synthetic count " + count + ", players " + players + " or parallelism " + parallelism);
+        }
+        if ((count + CHUNK_SIZE - 1) / CHUNK_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("synthetic count too large: " + count);
+        }
+        this.model = model;
+        this.count = count;
+        this.players = players;
+        this.seed = seed;
+        this.parallelism = parallelism;
+        Faker faker = new Faker(Locale.US, new Random(seed));
+        this.lastNames = namePool(() -> faker.name().lastName(), LAST_NAMES, 5);
+        this.firstNames = namePool(() -> faker.name().firstName(), FIRST_NAMES, 2);
+    }
+
+    private static String[] namePool(Supplier<String> names, int size, int length) {
+
+        Set<String> pool = new LinkedHashSet<>();
+        for (int i = 0; i < size * 4 && pool.size() < size; i++) {
+            String name = names.get().toLowerCase(Locale.US).replaceAll("[^a-z]", "");
+            if (!name.isEmpty()) {
+                pool.add(name.substring(0, Math.min(length, name.length())));
+            }
+        }
+        if (pool.isEmpty()) {
+            pool.add("synth");
+        }
+        return pool.toArray(new String[0]);
+    }
+
+    /**
+     * Return the given batter, 0 to count - 1, with its id assigned but not its pk.
+     */
+    public BaseballBatter generate(long n) {
+
+        int player = (int) (n % players);
+        long season = n / players;
+        SplittableRandom playerRandom = new SplittableRandom(mix(seed ^ PLAYER_SALT, player));
+        BaseballBatter bb = new BaseballBatter();
+        bb.setPlayerID(playerID(player, playerRandom));
+        int startYear = model.sampleYear(playerRandom, model.getLastYear() - SEASONS_PER_STINT + 1);
+        bb.setYear(startYear + (int) (season % SEASONS_PER_STINT));
+        bb.setStint(String.valueOf(1 + season / SEASONS_PER_STINT));
+        model.sample(new SplittableRandom(mix(seed, n)), bb);
+        bb.assignDocumentId();
+        return bb;
+    }
+
+    /**
+     * Return the playerID of the given player: up to five letters of a last name and one of a
+     * first name, then the player number, at least two digits, which makes it unique.  The
+     * letters are cut short as the number grows, so that a playerID is at most twelve characters.
+     */
+    public String playerID(int player) {
+
+        return playerID(player, new SplittableRandom(mix(seed ^ PLAYER_SALT, player)));
+    }
+
+    private String playerID(int player, SplittableRandom playerRandom) {
+
+        String last = lastNames[playerRandom.nextInt(lastNames.length)];
+        String first = firstNames[playerRandom.nextInt(firstNames.length)];
+        String number = player < 10 ? "0" + player : String.valueOf(player);
+        String letters = last + first.charAt(0);
+        return letters.substring(0, Math.min(letters.length(), MAX_PLAYER_ID_LENGTH - number.length())) + number;
+    }
+
+    /**
+     * Return the batters from..to - 1.
+     */
+    public List<BaseballBatter> generate(long from, long to) {
+
+        List<BaseballBatter> batters = new ArrayList<>((int) Math.max(0, to - from));
+        for (long n = from; n < to; n++) {
+            batters.add(generate(n));
+        }
+        return batters;
+    }
+
+    /**
+     * Return a Flux of all the batters, in order.  Chunks of CHUNK_SIZE batters are generated
+     * on up to 'parallelism' threads of the parallel Scheduler at a time, only as fast as
+     * downstream demand, so at most about parallelism * CHUNK_SIZE batters are in memory.
+     */
+    public Flux<BaseballBatter> stream() {
+
+        int chunks = (int) ((count + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        logger.warn("stream - count: " + count + ", players: " + players + ", seed: " + seed
+                + ", parallelism: " + parallelism + ", model: " + model.summary());
+        return Flux.range(0, chunks)
+                .flatMapSequential(chunk -> Mono.fromCallable(() -> {
+                    long from = (long) chunk * CHUNK_SIZE;
+                    return generate(from, Math.min(count, from + CHUNK_SIZE));
+                }).subscribeOn(Schedulers.parallel()), parallelism, 1)
+                .flatMapIterable(batters -> batters);
+    }
+
+    /**
+     * Return a well-mixed 64-bit seed for the given stream and index, the SplitMix64 finalizer,
+     * so that nearby indexes get unrelated randoms.
+     */
+    static long mix(long seed, long index) {
+
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public BatterStatsModel getModel() {
+        return model;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public int getPlayers() {
+        return players;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+}
@@ -0,0 +1,223 @@
+package org.cjoakim.cosmos.target;
+
+import com.azure.cosmos.CosmosAsyncClient;
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.CosmosDiagnostics;
+import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.GlobalThroughputControlConfig;
+import com.azure.cosmos.ThroughputControlGroupConfig;
+import com.azure.cosmos.models.CosmosBulkExecutionOptions;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.CosmosItemOperationType;
+import com.azure.cosmos.models.CosmosItemRequestOptions;
+import com.azure.cosmos.models.CosmosItemResponse;
+import com.azure.cosmos.models.CosmosPatchItemRequestOptions;
+import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.azure.cosmos.models.ThroughputProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.metrics.OperationResult;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A LoadTarget backed by a Cosmos DB container.
+ */
+
+public class CosmosLoadTarget implements LoadTarget {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(CosmosLoadTarget.class);
+
+    // Instance variables
+    private CosmosAsyncClient client;
+    private CosmosAsyncContainer container;
+    private Map<String, ThroughputControlGroupConfig> groupConfigs = new ConcurrentHashMap<>();
+    private Double provisionedThroughput = null;
+
+    public CosmosLoadTarget(CosmosAsyncClient client, CosmosAsyncContainer container) {
+        super();
+        this.client = client;
+        this.container = container;
+    }
+
+    @Override
+    public String getName() {
+        return container.getDatabase().getId() + "/" + container.getId();
+    }
+
+    @Override
+    public void enableLocalThroughputControlGroup(ThroughputControlGroupConfig groupConfig) {
+
+        container.enableLocalThroughputControlGroup(groupConfig);
+        groupConfigs.put(groupConfig.getGroupName(), groupConfig);
+    }
+
+    @Override
+    public void enableGlobalThroughputControlGroup(
+            ThroughputControlGroupConfig groupConfig, String controlContainerName, Duration renewInterval, Duration expireInterval) {
+
+        GlobalThroughputControlConfig globalControlConfig =
+                client.createGlobalThroughputControlConfigBuilder(container.getDatabase().getId(), controlContainerName)
+                        .setControlItemRenewInterval(renewInterval)
+                        .setControlItemExpireInterval(expireInterval)
+                        .build();
+        container.enableGlobalThroughputControlGroup(groupConfig, globalControlConfig);
+        groupConfigs.put(groupConfig.getGroupName(), groupConfig);
+    }
+
+    @Override
+    public double getTargetThroughput(String groupName) {
+
+        ThroughputControlGroupConfig groupConfig = groupConfigs.get(groupName);
+        if (groupConfig == null) {
+            return 0;
+        }
+        // a priority-only group has the builder's default target throughput, Integer.MAX_VALUE
+        if (groupConfig.getTargetThroughput() != null && groupConfig.getTargetThroughput() < Integer.MAX_VALUE) {
+            return groupConfig.getTargetThroughput();
+        }
+        if (groupConfig.getTargetThroughputThreshold() != null) {
+            return groupConfig.getTargetThroughputThreshold() * getProvisionedThroughput();
+        }
+        return 0;
+    }
+
+    /**
+     * Return the manual, or autoscale max, RU/s of the container; 0 if it has none of its own
+     * (shared database throughput, or serverless).
+     */
+    public synchronized double getProvisionedThroughput() {
+
+        if (provisionedThroughput == null) {
+            try {
+                ThroughputProperties properties = container.readThroughput().block().getProperties();
+                Integer manual = properties.getManualThroughput();
+                provisionedThroughput = (double) (manual != null && manual > 0 ? manual : properties.getAutoscaleMaxThroughput());
+            } catch (CosmosException e) {
+                logger.error("getProvisionedThroughput - unable to read the throughput of " + getName() + ": " + e.getStatusCode());
+                provisionedThroughput = 0.0;
+            }
+        }
+        return provisionedThroughput;
+    }
+
+    /**
+     * Open the direct connections to the container's replicas and fill the address caches.
+     */
+    @Override
+    @SuppressWarnings("deprecation")  // the builder's proactive init needs the container before the client exists
+    public void openConnections() {
+
+        container.openConnectionsAndInitCaches().block();
+    }
+
+    @Override
+    public Flux<OperationResult> executeBulkOperations(Flux<CosmosItemOperation> operations, String groupName) {
+
+        CosmosBulkExecutionOptions opts = new CosmosBulkExecutionOptions();
+        opts.setThroughputControlGroupName(groupName);
+        return container.executeBulkOperations(operations, opts).map(OperationResult::fromBulkResponse);
+    }
+
+    /**
+     * Execute the operation with the container's item API, as the sync client does: the calling
+     * thread blocks on the async client's response.
+     */
+    @Override
+    public OperationResult executePointOperation(CosmosItemOperation op, String groupName) {
+
+        String id = OperationResult.idOf(op);
+        PartitionKey pk = op.getPartitionKeyValue();
+        CosmosItemOperationType type = op.getOperationType();
+        CosmosItemRequestOptions opts =
+                type == CosmosItemOperationType.PATCH ? new CosmosPatchItemRequestOptions() : new CosmosItemRequestOptions();
+        opts.setThroughputControlGroupName(groupName);
+        try {
+            CosmosItemResponse<?> resp;
+            switch (type) {
+                case CREATE:
+                    resp = container.createItem(op.getItem(), pk, opts).block();
+                    break;
+                case UPSERT:
+                    resp = container.upsertItem(op.getItem(), pk, opts).block();
+                    break;
+                case REPLACE:
+                    resp = container.replaceItem(op.getItem(), id, pk, opts).block();
+                    break;
+                case DELETE:
+                    resp = container.deleteItem(id, pk, opts).block();
+                    break;
+                case READ:
+                    resp = container.readItem(id, pk, opts, JsonNode.class).block();
+                    break;
+                case PATCH:
+                    resp = container.patchItem(
+                            id, pk, op.getItem(), (CosmosPatchItemRequestOptions) opts, JsonNode.class).block();
+                    break;
+                default:
+                    throw new IllegalArgumentException("unsupported operation type: " + type);
+            }
+            return OperationResult.fromItemResponse(op, resp);
+        } catch (CosmosException e) {
+            return OperationResult.fromException(op, e);
+        }
+    }
+
+    @Override
+    public OperationResult executeQuery(SqlQuerySpec query, PartitionKey partitionKey, String groupName) {
+
+        CosmosQueryRequestOptions opts = new CosmosQueryRequestOptions();
+        opts.setThroughputControlGroupName(groupName);
+        if (partitionKey != null) {
+            opts.setPartitionKey(partitionKey);
+        }
+        long start = System.nanoTime();
+        double[] requestCharge = {0};
+        int[] retries = {0};
+        try {
+            container.queryItems(query, opts, JsonNode.class).byPage().doOnNext(page -> {
+                requestCharge[0] += page.getRequestCharge();
+                CosmosDiagnostics diagnostics = page.getCosmosDiagnostics();
+                if (diagnostics != null && diagnostics.getDiagnosticsContext() != null) {
+                    retries[0] += diagnostics.getDiagnosticsContext().getRetryCount();
+                }
+            }).blockLast();
+        } catch (CosmosException e) {
+            OperationResult result = OperationResult.fromException(null, e);
+            result.setOperationType(OperationResult.OPERATION_TYPE_QUERY);
+            result.setLatencyMicros((System.nanoTime() - start) / 1000);
+            return result;
+        }
+        OperationResult result = new OperationResult();
+        result.setOperationType(OperationResult.OPERATION_TYPE_QUERY);
+        result.setStatusCode(200);
+        result.setRequestCharge(requestCharge[0]);
+        result.setRetryCount(retries[0]);
+        result.setLatencyMicros((System.nanoTime() - start) / 1000);
+        return result;
+    }
+
+    /**
+     * Close the target's client; only for a client of its own, not one shared with other targets.
+     */
+    @Override
+    public void close() {
+
+        client.close();
+    }
+
+    public CosmosAsyncClient getClient() {
+        return client;
+    }
+
+    public CosmosAsyncContainer getContainer() {
+        return container;
+    }
+}
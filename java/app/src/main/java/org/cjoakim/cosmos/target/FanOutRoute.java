@@ -0,0 +1,100 @@
+package org.cjoakim.cosmos.target;
+
+import org.cjoakim.cosmos.model.BaseballBatter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Routes each batter to one of several load targets per a field of the batter; its league,
+ * team, or the decade of its year.  The route key is appended to the container name, such as
+ * test-AL and test-NL, or with the database level to the database name, such as dev-1990s.
+ */
+
+public class FanOutRoute {
+
+    public static final String LEVEL_CONTAINER = "container";
+    public static final String LEVEL_DATABASE = "database";
+
+    // Instance variables
+    private String field;
+    private String level;
+
+    public FanOutRoute(String field, String level) {
+        super();
+        this.field = field;
+        this.level = level;
+    }
+
+    /**
+     * Parse a --fan-out specification, field[:level], where field is league, team or decade
+     * and level is container (the default) or database.
+     */
+    public static FanOutRoute parse(String spec) {
+
+        String[] tokens = spec.strip().toLowerCase().split("[:]", 0);
+        String field = tokens[0];
+        String level = tokens.length > 1 ? tokens[1] : LEVEL_CONTAINER;
+        switch (field) {
+            case "league":
+            case "team":
+            case "decade":
+                break;
+            default:
+                throw new IllegalArgumentException("invalid fan-out field, expected league, team or decade - " + spec);
+        }
+        if (!LEVEL_CONTAINER.equals(level) && !LEVEL_DATABASE.equals(level)) {
+            throw new IllegalArgumentException("invalid fan-out level, expected container or database - " + spec);
+        }
+        return new FanOutRoute(field, level);
+    }
+
+    public String keyOf(BaseballBatter bb) {
+
+        String key;
+        switch (field) {
+            case "league":
+                key = bb.getLeagueID();
+                break;
+            case "team":
+                key = bb.getTeamID();
+                break;
+            default:
+                key = ((bb.getYear() / 10) * 10) + "s";
+        }
+        return key == null || key.isBlank() ? "none" : key;
+    }
+
+    /**
+     * Return the given batters grouped by route key, in key order.
+     */
+    public Map<String, List<BaseballBatter>> split(List<BaseballBatter> batters) {
+
+        Map<String, List<BaseballBatter>> routed = new TreeMap<>();
+        for (int i = 0; i < batters.size(); i++) {
+            BaseballBatter bb = batters.get(i);
+            routed.computeIfAbsent(keyOf(bb), k -> new ArrayList<>()).add(bb);
+        }
+        return routed;
+    }
+
+    public String databaseName(String dbname, String key) {
+
+        return LEVEL_DATABASE.equals(level) ? dbname + "-" + key : dbname;
+    }
+
+    public String containerName(String cname, String key) {
+
+        return LEVEL_CONTAINER.equals(level) ? cname + "-" + key : cname;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public String getLevel() {
+        return level;
+    }
+}
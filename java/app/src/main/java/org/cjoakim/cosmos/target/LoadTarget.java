@@ -0,0 +1,78 @@
+package org.cjoakim.cosmos.target;
+
+import com.azure.cosmos.ThroughputControlGroupConfig;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.SqlQuerySpec;
+import org.cjoakim.cosmos.metrics.OperationResult;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+/**
+ * The container that a load is executed against; either a Cosmos DB container
+ * (CosmosLoadTarget) or the in-process simulator (SimulatedLoadTarget), optionally recorded
+ * to a trace file by a TracingLoadTarget.
+ */
+
+public interface LoadTarget {
+
+    String getName();
+
+    void enableLocalThroughputControlGroup(ThroughputControlGroupConfig groupConfig);
+
+    void enableGlobalThroughputControlGroup(
+            ThroughputControlGroupConfig groupConfig, String controlContainerName, Duration renewInterval, Duration expireInterval);
+
+    /**
+     * Execute the given operations as a bulk execution in the given throughput control group,
+     * emitting one OperationResult per operation.
+     */
+    Flux<OperationResult> executeBulkOperations(Flux<CosmosItemOperation> operations, String groupName);
+
+    /**
+     * Execute the given operation as a single point operation in the given throughput control
+     * group, blocking the calling thread until its response, which is returned as an
+     * OperationResult; failed operations are returned too, not thrown.
+     */
+    OperationResult executePointOperation(CosmosItemOperation operation, String groupName);
+
+    /**
+     * Execute the given query, within the given partition key or, if it is null, across
+     * partitions, in the given throughput control group, blocking the calling thread until all
+     * of its pages have been read.  Return one OperationResult with the total request charge.
+     */
+    OperationResult executeQuery(SqlQuerySpec query, PartitionKey partitionKey, String groupName);
+
+    /**
+     * Return the RU/s target of the given enabled throughput control group; its target
+     * throughput, or its threshold of the provisioned throughput.  Return 0 if not known.
+     */
+    double getTargetThroughput(String groupName);
+
+    /**
+     * Return this client's share of the RU/s target of the given enabled throughput control
+     * group; for a global group it is allocated by the control container.  Return 0 if not
+     * known, as for a Cosmos DB container, where the SDK does not expose it.
+     */
+    default double getAllocatedThroughput(String groupName) {
+        return 0;
+    }
+
+    /**
+     * Open the connections and warm the caches of the target ahead of a load, so that
+     * cold-start latency isn't included in its measurements.
+     */
+    default void openConnections() {
+    }
+
+    default void logReport() {
+    }
+
+    /**
+     * Stop using the target, as a client that leaves a load does; its global throughput control
+     * items expire after their expire interval.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,180 @@
+package org.cjoakim.cosmos.throughput;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class shares a fixed number of in-flight batch slots, the client-side capacity of
+ * one process, among several load targets.  A free slot goes to the waiting target with
+ * the fewest batches in flight, ties in round robin order, so a slow or throttled target,
+ * whose batches hold their slots longer, gets no more than its share while the other
+ * targets have batches waiting; an idle target's share is used by the busy ones.
+ */
+
+public class FairShareScheduler {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(FairShareScheduler.class);
+
+    // Instance variables
+    private int slots;
+    private int inFlight = 0;
+    private Map<String, Share> shares = new LinkedHashMap<>();
+    private List<Share> shareOrder = new ArrayList<>();
+    private int lastGranted = -1;
+
+    public FairShareScheduler(int slots) {
+        super();
+        this.slots = Math.max(slots, 1);
+    }
+
+    /**
+     * Return a Mono that emits the given target name once a batch for it may be sent.
+     * Call release() with that name when the batch completes, and only if the Mono emitted; a
+     * cancelled acquire gives up its place in the queue, or its slot if one was granted but not
+     * delivered.
+     */
+    public Mono<String> acquire(String targetName) {
+
+        Share share = getShare(targetName);
+        return Mono.<String>create(sink -> {
+            Waiter waiter = new Waiter(sink, targetName, System.nanoTime());
+            synchronized (this) {
+                share.waiting.addLast(waiter);
+            }
+            sink.onCancel(() -> withdraw(share, waiter));
+            dispatch();
+        });
+    }
+
+    private void withdraw(Share share, Waiter waiter) {
+
+        boolean granted;
+        synchronized (this) {
+            granted = !share.waiting.remove(waiter);
+        }
+        if (granted) {
+            release(waiter.targetName);
+        }
+    }
+
+    public void release(String targetName) {
+
+        synchronized (this) {
+            Share share = getShare(targetName);
+            share.inFlight--;
+            inFlight--;
+        }
+        dispatch();
+    }
+
+    private void dispatch() {
+
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            while (inFlight < slots) {
+                Share next = nextShare();
+                if (next == null) {
+                    break;
+                }
+                Waiter waiter = next.waiting.pollFirst();
+                next.inFlight++;
+                next.maxInFlight = Math.max(next.maxInFlight, next.inFlight);
+                next.granted++;
+                next.waitNanos += System.nanoTime() - waiter.enqueuedNanos;
+                inFlight++;
+                granted.add(waiter);
+            }
+        }
+        for (Waiter waiter : granted) {
+            waiter.sink.success(waiter.targetName);
+        }
+    }
+
+    /**
+     * Return the waiting share with the fewest batches in flight; the search starts after the
+     * last share granted, so that ties are broken in round robin order.
+     */
+    private Share nextShare() {
+
+        Share best = null;
+        int count = shareOrder.size();
+        for (int i = 1; i <= count; i++) {
+            Share share = shareOrder.get((lastGranted + i) % count);
+            if (!share.waiting.isEmpty() && (best == null || share.inFlight < best.inFlight)) {
+                best = share;
+            }
+        }
+        if (best != null) {
+            lastGranted = shareOrder.indexOf(best);
+        }
+        return best;
+    }
+
+    private synchronized Share getShare(String targetName) {
+
+        return shares.computeIfAbsent(targetName, name -> {
+            Share share = new Share(name);
+            shareOrder.add(share);
+            return share;
+        });
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    public synchronized int getInFlight(String targetName) {
+        return getShare(targetName).inFlight;
+    }
+
+    public synchronized long getGranted(String targetName) {
+        return getShare(targetName).granted;
+    }
+
+    public synchronized void logReport() {
+
+        logger.warn("FairShareScheduler - slots: " + slots);
+        for (Share share : shareOrder) {
+            double meanWaitMs = share.granted == 0 ? 0 : share.waitNanos / 1_000_000.0 / share.granted;
+            logger.warn(String.format("FairShareScheduler - target: %s, batches: %d, max in flight: %d, mean wait ms: %.2f",
+                    share.name, share.granted, share.maxInFlight, meanWaitMs));
+        }
+    }
+
+    private static class Share {
+
+        String name;
+        int    inFlight;
+        int    maxInFlight;
+        long   granted;
+        long   waitNanos;
+        Deque<Waiter> waiting = new ArrayDeque<>();
+
+        Share(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class Waiter {
+
+        MonoSink<String> sink;
+        String targetName;
+        long   enqueuedNanos;
+
+        Waiter(MonoSink<String> sink, String targetName, long enqueuedNanos) {
+            this.sink = sink;
+            this.targetName = targetName;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.cjoakim.cosmos.throughput;
+
+import reactor.core.publisher.MonoSink;
+
+/**
+ * An admission request, and once granted the permit, for a batch of operations in one lane.
+ * The estimated RU is reconciled with the actual charge in RuScheduler.complete.
+ */
+
+public class RuPermit {
+
+    // Instance variables
+    private ThroughputLane lane;
+    private int operations;
+    private double estimatedRu;
+    private MonoSink<RuPermit> sink;
+
+    RuPermit(ThroughputLane lane, int operations, double estimatedRu, MonoSink<RuPermit> sink) {
+        super();
+        this.lane = lane;
+        this.operations = operations;
+        this.estimatedRu = estimatedRu;
+        this.sink = sink;
+    }
+
+    MonoSink<RuPermit> getSink() {
+        return sink;
+    }
+
+    public ThroughputLane getLane() {
+        return lane;
+    }
+
+    public int getOperations() {
+        return operations;
+    }
+
+    public double getEstimatedRu() {
+        return estimatedRu;
+    }
+}
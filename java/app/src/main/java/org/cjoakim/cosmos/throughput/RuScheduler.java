@@ -0,0 +1,251 @@
+package org.cjoakim.cosmos.throughput;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * This class is a client-side, RU-aware admission scheduler for several concurrent lanes.
+ * A token bucket refilled at the aggregate target RU/s bounds the total load.  Waiting
+ * batches are granted high priority lanes first, then by deficit round robin in proportion
+ * to the lane weights; idle lanes' shares are used by busy ones.  Lanes with their own RU
+ * budget are also bounded by a per-lane bucket.  The RU cost of a batch is estimated from
+ * the lane's learned RU per operation and reconciled with the actual charge on completion,
+ * so the aggregate stays under the target without relying on 429s from the service.
+ */
+
+public class RuScheduler {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(RuScheduler.class);
+    private static final long TICK_MS = 10;
+    private static final double BURST_SECONDS = 1.0;
+    private static final double QUANTUM_RU = 50.0;
+
+    // Instance variables
+    private double targetRuPerSecond;
+    private double capacity;
+    private double tokens;
+    private long lastRefillNanos;
+    private LongSupplier nanoClock;
+    private Map<String, ThroughputLane> lanes = new LinkedHashMap<>();
+    private List<ThroughputLane> laneOrder = new ArrayList<>();
+    private int nextStart = 0;
+    private Disposable ticker = null;
+
+    public RuScheduler(double targetRuPerSecond, List<ThroughputLane> laneList) {
+        this(targetRuPerSecond, laneList, System::nanoTime);
+    }
+
+    RuScheduler(double targetRuPerSecond, List<ThroughputLane> laneList, LongSupplier nanoClock) {
+        super();
+        this.targetRuPerSecond = targetRuPerSecond;
+        this.capacity = targetRuPerSecond * BURST_SECONDS;
+        this.tokens = capacity;
+        this.nanoClock = nanoClock;
+        this.lastRefillNanos = nanoClock.getAsLong();
+        for (ThroughputLane lane : laneList) {
+            lanes.put(lane.getName(), lane);
+            laneOrder.add(lane);
+        }
+    }
+
+    /**
+     * Start the periodic dispatch of waiting batches as tokens are refilled.
+     */
+    public synchronized RuScheduler start() {
+
+        if (ticker == null) {
+            ticker = Schedulers.parallel().schedulePeriodically(this::dispatch, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    public synchronized void stop() {
+
+        if (ticker != null) {
+            ticker.dispose();
+            ticker = null;
+        }
+    }
+
+    /**
+     * Return a Mono that emits a permit once the given number of operations may be sent in
+     * the given lane.  Pass the permit to complete() with the actual charge afterwards.
+     * A cancelled request is removed from the lane's queue, so it is never granted.
+     */
+    public Mono<RuPermit> admit(String laneName, int operations) {
+
+        ThroughputLane lane = getLane(laneName);
+        return Mono.<RuPermit>create(sink -> {
+            synchronized (this) {
+                double estimate = operations * lane.ruPerOperation;
+                RuPermit permit = new RuPermit(lane, operations, estimate, sink);
+                lane.pending.addLast(permit);
+                sink.onCancel(() -> withdraw(permit));
+            }
+            dispatch();
+        });
+    }
+
+    private synchronized void withdraw(RuPermit permit) {
+
+        permit.getLane().pending.remove(permit);
+    }
+
+    /**
+     * Reconcile a granted permit with the RU actually charged for its operations.
+     */
+    public synchronized void complete(RuPermit permit, double requestCharge) {
+
+        ThroughputLane lane = permit.getLane();
+        double correction = requestCharge - permit.getEstimatedRu();
+        tokens -= correction;
+        if (lane.getRuBudget() > 0) {
+            lane.budgetTokens -= correction;
+        }
+        lane.chargedRu += requestCharge;
+        lane.learn(permit.getOperations(), requestCharge);
+    }
+
+    /**
+     * Refill the buckets and grant as many waiting batches as the tokens allow.
+     */
+    public void dispatch() {
+
+        List<RuPermit> granted = new ArrayList<>();
+        synchronized (this) {
+            refill();
+            grant(true, granted);
+            grant(false, granted);
+        }
+        for (RuPermit permit : granted) {
+            permit.getSink().success(permit);
+        }
+    }
+
+    private void refill() {
+
+        long now = nanoClock.getAsLong();
+        double seconds = (now - lastRefillNanos) / 1_000_000_000.0;
+        lastRefillNanos = now;
+        if (seconds <= 0) {
+            return;
+        }
+        tokens = Math.min(capacity, tokens + (seconds * targetRuPerSecond));
+        for (ThroughputLane lane : lanes.values()) {
+            if (lane.getRuBudget() > 0) {
+                lane.budgetTokens = Math.min(lane.getRuBudget() * BURST_SECONDS, lane.budgetTokens + (seconds * lane.getRuBudget()));
+            }
+        }
+    }
+
+    /**
+     * Deficit round robin over the lanes of one priority.  The starting lane rotates between
+     * dispatches, and a lane's deficit is capped so that it cannot bank credit while tokens
+     * are short.  A batch larger than the bucket capacity is granted once the bucket is full,
+     * so it cannot wait forever.
+     */
+    private void grant(boolean highPriority, List<RuPermit> granted) {
+
+        int laneCount = laneOrder.size();
+        nextStart = (nextStart + 1) % Math.max(laneCount, 1);
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (int i = 0; i < laneCount; i++) {
+                ThroughputLane lane = laneOrder.get((nextStart + i) % laneCount);
+                if (lane.isHighPriority() != highPriority) {
+                    continue;
+                }
+                if (lane.pending.isEmpty()) {
+                    lane.deficit = 0;
+                    continue;
+                }
+                if (!canAfford(lane, lane.pending.peekFirst().getEstimatedRu())) {
+                    continue;
+                }
+                double quantum = QUANTUM_RU * lane.getWeight();
+                lane.deficit = Math.min(lane.deficit + quantum, quantum + lane.pending.peekFirst().getEstimatedRu());
+                while (!lane.pending.isEmpty()) {
+                    RuPermit next = lane.pending.peekFirst();
+                    double cost = next.getEstimatedRu();
+                    if (cost > lane.deficit || !canAfford(lane, cost)) {
+                        break;
+                    }
+                    lane.pending.pollFirst();
+                    lane.deficit -= cost;
+                    tokens -= cost;
+                    if (lane.getRuBudget() > 0) {
+                        lane.budgetTokens -= cost;
+                    }
+                    lane.grantedOperations += next.getOperations();
+                    lane.grantedRu += cost;
+                    granted.add(next);
+                }
+                // another round is needed if only the deficit held this lane back
+                if (!lane.pending.isEmpty() && canAfford(lane, lane.pending.peekFirst().getEstimatedRu())) {
+                    progress = true;
+                }
+                if (!affordable(tokens, capacity, QUANTUM_RU)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean canAfford(ThroughputLane lane, double cost) {
+
+        if (!affordable(tokens, capacity, cost)) {
+            return false;
+        }
+        return lane.getRuBudget() <= 0 || affordable(lane.budgetTokens, lane.getRuBudget() * BURST_SECONDS, cost);
+    }
+
+    private static boolean affordable(double available, double bucketCapacity, double cost) {
+
+        return available >= Math.min(cost, bucketCapacity);
+    }
+
+    public ThroughputLane getLane(String laneName) {
+
+        ThroughputLane lane = lanes.get(laneName);
+        if (lane == null) {
+            throw new IllegalArgumentException("undefined lane: " + laneName);
+        }
+        return lane;
+    }
+
+    public List<ThroughputLane> getLanes() {
+        return new ArrayList<>(lanes.values());
+    }
+
+    /**
+     * Return the RU per operation the given lane has learned from the charges so far.
+     */
+    public synchronized double getRuPerOperation(String laneName) {
+
+        return getLane(laneName).ruPerOperation;
+    }
+
+    public double getTargetRuPerSecond() {
+        return targetRuPerSecond;
+    }
+
+    public synchronized void logReport() {
+
+        logger.warn("RuScheduler - target RU/s: " + targetRuPerSecond);
+        for (ThroughputLane lane : lanes.values()) {
+            logger.warn("RuScheduler - " + lane.summary());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.cjoakim.cosmos.throughput;
+
+import com.azure.cosmos.ThroughputControlGroupConfig;
+import com.azure.cosmos.ThroughputControlGroupConfigBuilder;
+import com.azure.cosmos.models.PriorityLevel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * One logical workload scheduled by the RuScheduler.  A lane has a weight, which sets its
+ * share of the aggregate RU target relative to the other lanes of the same priority, an
+ * optional RU/s budget of its own, and a priority level.  The lane learns its RU cost per
+ * operation from the charges reported back to the scheduler, whose lock guards that state.
+ */
+
+public class ThroughputLane {
+
+    public static final double INITIAL_RU_PER_OPERATION = 10.0;
+    private static final double EWMA_ALPHA = 0.2;
+
+    // Instance variables
+    private String name;
+    private int weight;
+    private double ruBudget;
+    private PriorityLevel priorityLevel;
+
+    // Scheduler state; guarded by the owning RuScheduler
+    double budgetTokens;
+    double deficit;
+    double ruPerOperation = INITIAL_RU_PER_OPERATION;
+    long   grantedOperations;
+    double grantedRu;
+    double chargedRu;
+    Deque<RuPermit> pending = new ArrayDeque<>();
+
+    public ThroughputLane(String name, int weight, double ruBudget, PriorityLevel priorityLevel) {
+        super();
+        this.name = name;
+        this.weight = Math.max(weight, 1);
+        this.ruBudget = Math.max(ruBudget, 0);
+        this.priorityLevel = priorityLevel;
+        this.budgetTokens = this.ruBudget;
+    }
+
+    /**
+     * Parse a lanes specification such as "interactive:3:0:high,backfill:1:500:low",
+     * where each lane is name:weight:ruBudget:priority and a ruBudget of 0 means no lane cap.
+     */
+    public static List<ThroughputLane> parseLanes(String spec) {
+
+        List<ThroughputLane> lanes = new ArrayList<>();
+        String[] laneSpecs = spec.split("[,]", 0);
+        for (int i = 0; i < laneSpecs.length; i++) {
+            String[] tokens = laneSpecs[i].strip().split("[:]", 0);
+            if (tokens.length != 4) {
+                throw new IllegalArgumentException("invalid lane spec, expected name:weight:ru:priority - " + laneSpecs[i]);
+            }
+            PriorityLevel priority = tokens[3].equalsIgnoreCase("high") ? PriorityLevel.HIGH : PriorityLevel.LOW;
+            lanes.add(new ThroughputLane(
+                    tokens[0], Integer.parseInt(tokens[1]), Double.parseDouble(tokens[2]), priority));
+        }
+        return lanes;
+    }
+
+    /**
+     * The SDK throughput control group for this lane.  It only carries the priority level;
+     * the RU shaping is done client-side by the RuScheduler.
+     */
+    public ThroughputControlGroupConfig buildThroughputControlGroupConfig() {
+
+        return new ThroughputControlGroupConfigBuilder()
+                .groupName(name)
+                .priorityLevel(priorityLevel)
+                .build();
+    }
+
+    void learn(int operations, double requestCharge) {
+
+        if (operations > 0 && requestCharge > 0) {
+            double observed = requestCharge / operations;
+            ruPerOperation = (EWMA_ALPHA * observed) + ((1.0 - EWMA_ALPHA) * ruPerOperation);
+        }
+    }
+
+    public boolean isHighPriority() {
+        return priorityLevel == PriorityLevel.HIGH;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public double getRuBudget() {
+        return ruBudget;
+    }
+
+    public PriorityLevel getPriorityLevel() {
+        return priorityLevel;
+    }
+
+    String summary() {
+
+        return String.format("lane: %s, weight: %d, ruBudget: %.0f, priority: %s, ops: %d, estimatedRu: %.2f, chargedRu: %.2f, RU/op: %.2f",
+                name, weight, ruBudget, priorityLevel, grantedOperations, grantedRu, chargedRu, ruPerOperation);
+    }
+}
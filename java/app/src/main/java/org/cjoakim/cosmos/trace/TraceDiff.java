@@ -0,0 +1,130 @@
+package org.cjoakim.cosmos.trace;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Compares the TraceSummaries of two runs, A and B, metric by metric for each operation type
+ * in either: the change from A to B as a percentage of A, and whether it exceeds the threshold,
+ * such as a p99 or a 429 rate 10% higher than before.
+ */
+
+public class TraceDiff {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(TraceDiff.class);
+
+    // Instance variables
+    private final TraceSummary a;
+    private final TraceSummary b;
+    private final double thresholdPct;
+    private final List<Row> rows = new ArrayList<>();
+
+    public TraceDiff(TraceSummary a, TraceSummary b, double thresholdPct) {
+        super();
+        this.a = a;
+        this.b = b;
+        this.thresholdPct = thresholdPct;
+        TreeSet<String> types = new TreeSet<>(a.getOperationTypes());
+        types.addAll(b.getOperationTypes());
+        for (String type : types) {
+            for (String metric : TraceSummary.METRICS) {
+                rows.add(new Row(type, metric, a.metric(type, metric), b.metric(type, metric)));
+            }
+        }
+    }
+
+    /**
+     * Return the rows whose change exceeds the threshold.
+     */
+    public List<Row> getChanges() {
+
+        List<Row> changes = new ArrayList<>();
+        for (Row row : rows) {
+            if (Math.abs(row.getDeltaPct()) > thresholdPct) {
+                changes.add(row);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Return the row of the given operation type, or ALL, and metric; null if there is none.
+     */
+    public Row getRow(String operationType, String metric) {
+
+        for (Row row : rows) {
+            if (row.getOperationType().equals(operationType) && row.getMetric().equals(metric)) {
+                return row;
+            }
+        }
+        return null;
+    }
+
+    public void logReport() {
+
+        logger.warn("diff - A: " + a.getName() + ", B: " + b.getName() + ", threshold: " + thresholdPct + "%");
+        for (Row row : rows) {
+            logger.warn(String.format("  %-8s %-10s A: %12.2f  B: %12.2f  %+9.1f%%%s",
+                    row.getOperationType(), row.getMetric(), row.getA(), row.getB(), row.getDeltaPct(),
+                    Math.abs(row.getDeltaPct()) > thresholdPct ? "  <<" : ""));
+        }
+        logger.warn("diff - " + getChanges().size() + " changes beyond " + thresholdPct + "%");
+    }
+
+    public List<Row> getRows() {
+        return rows;
+    }
+
+    /**
+     * One metric of one operation type in both runs; a metric that is 0 in A and not in B has
+     * changed by infinity.
+     */
+    public static class Row {
+
+        // Instance variables
+        private final String operationType;
+        private final String metric;
+        private final double a;
+        private final double b;
+
+        Row(String operationType, String metric, double a, double b) {
+            super();
+            this.operationType = operationType;
+            this.metric = metric;
+            this.a = a;
+            this.b = b;
+        }
+
+        public double getDeltaPct() {
+
+            if (a == b) {
+                return 0;
+            }
+            if (a == 0) {
+                return b > 0 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+            }
+            return 100.0 * (b - a) / Math.abs(a);
+        }
+
+        public String getOperationType() {
+            return operationType;
+        }
+
+        public String getMetric() {
+            return metric;
+        }
+
+        public double getA() {
+            return a;
+        }
+
+        public double getB() {
+            return b;
+        }
+    }
+}
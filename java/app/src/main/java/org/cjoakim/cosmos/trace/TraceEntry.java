@@ -0,0 +1,44 @@
+package org.cjoakim.cosmos.trace;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.cjoakim.cosmos.metrics.OperationResult;
+
+/**
+ * One operation of a trace: what was submitted, when, and what was observed.  The submit time
+ * is in microseconds since the trace was started; the partition key is its JSON, such as
+ * ["aaronha01"]; for a query the id is the query text.
+ */
+
+@NoArgsConstructor
+@Data
+public class TraceEntry {
+
+    // Instance variables
+    long   submitMicros;
+    String operationType;
+    String groupName;
+    String id;
+    String partitionKey;
+    int    payloadBytes;
+    double requestCharge;
+    int    statusCode;
+    int    subStatusCode;
+    long   latencyMicros;
+    int    retryCount;
+
+    public boolean isSuccess() {
+
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    public boolean isThrottled() {
+
+        return statusCode == OperationResult.STATUS_TOO_MANY_REQUESTS;
+    }
+
+    public boolean isQuery() {
+
+        return OperationResult.OPERATION_TYPE_QUERY.equals(operationType);
+    }
+}
@@ -0,0 +1,182 @@
+package org.cjoakim.cosmos.trace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads a trace file written by a TraceWriter; see there for the layout.  read() keeps every
+ * entry, to sort them by submit time, and so is limited to MAX_ENTRIES; forEach() streams the
+ * entries of a trace of any size in the order they completed.
+ */
+
+public class TraceReader {
+
+    // Class variables
+    public static final long MAX_ENTRIES = 20_000_000L;
+
+    // Instance variables
+    private long startEpochMillis;
+    private String targetName;
+    private String commandLine;
+    private List<TraceEntry> entries;
+
+    private TraceReader() {
+        super();
+    }
+
+    /**
+     * Read the given trace file; its entries are sorted by submit time.  The trace of a run
+     * that was killed may end in part of an entry, which is ignored.  A trace of more than
+     * MAX_ENTRIES entries is rejected with an IOException; summarize it with forEach().
+     */
+    public static TraceReader read(Path path) throws IOException {
+
+        return read(path, MAX_ENTRIES);
+    }
+
+    static TraceReader read(Path path, long maxEntries) throws IOException {
+
+        List<TraceEntry> entries = new ArrayList<>();
+        TraceReader trace = forEach(path, entries::add, maxEntries);
+        entries.sort(Comparator.comparingLong(TraceEntry::getSubmitMicros));
+        trace.entries = entries;
+        return trace;
+    }
+
+    /**
+     * Pass each entry of the given trace file to the given consumer, in the order they completed,
+     * without keeping them, and return the trace with its header but no entries.
+     */
+    public static TraceReader forEach(Path path, Consumer<TraceEntry> consumer) throws IOException {
+
+        return forEach(path, consumer, Long.MAX_VALUE);
+    }
+
+    private static TraceReader forEach(Path path, Consumer<TraceEntry> consumer, long maxEntries) throws IOException {
+
+        TraceReader trace = new TraceReader();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            int version;
+            try {
+                if (in.readInt() != TraceWriter.MAGIC) {
+                    throw new IOException("not a trace file: " + path);
+                }
+                version = in.readInt();
+                if (version < 1 || version > TraceWriter.VERSION) {
+                    throw new IOException("unsupported trace file version " + version + ": " + path);
+                }
+                trace.startEpochMillis = in.readLong();
+                trace.targetName = in.readUTF();
+                trace.commandLine = in.readUTF();
+            } catch (EOFException e) {
+                throw new IOException("truncated trace file header: " + path, e);
+            }
+            // version 1 traces have an unbounded dictionary, and no inline code
+            long count = readEntries(in, version == 1 ? -1 : TraceWriter.MAX_DICTIONARY, consumer, maxEntries);
+            if (count > maxEntries) {
+                throw new IOException("trace file has more than " + maxEntries
+                        + " entries, too many to sort in memory: " + path);
+            }
+        }
+        trace.entries = new ArrayList<>();
+        return trace;
+    }
+
+    /**
+     * Pass the entries to the consumer, up to the given maximum, and return their count, or
+     * maxEntries + 1 if there are more.
+     */
+    private static long readEntries(DataInputStream in, int inlineCode, Consumer<TraceEntry> consumer, long maxEntries) throws IOException {
+
+        List<String> dictionary = new ArrayList<>();
+        long count = 0;
+        while (true) {
+            int first = in.read();
+            if (first < 0) {
+                return count;
+            }
+            TraceEntry entry = new TraceEntry();
+            try {
+                readEntry(in, first, entry, dictionary, inlineCode);
+            } catch (EOFException e) {
+                return count;
+            }
+            if (count++ == maxEntries) {
+                return count;
+            }
+            consumer.accept(entry);
+        }
+    }
+
+    private static void readEntry(DataInputStream in, int first, TraceEntry entry, List<String> dictionary, int inlineCode) throws IOException {
+
+        entry.setSubmitMicros(readVarLong(in, first));
+        entry.setOperationType(readCode(in, dictionary, inlineCode));
+        entry.setGroupName(readCode(in, dictionary, inlineCode));
+        entry.setId(readString(in));
+        entry.setPartitionKey(readCode(in, dictionary, inlineCode));
+        entry.setPayloadBytes((int) readVarLong(in, in.readUnsignedByte()));
+        entry.setRequestCharge(in.readFloat());
+        entry.setStatusCode((int) readVarLong(in, in.readUnsignedByte()));
+        entry.setSubStatusCode((int) readVarLong(in, in.readUnsignedByte()));
+        entry.setLatencyMicros(readVarLong(in, in.readUnsignedByte()));
+        entry.setRetryCount((int) readVarLong(in, in.readUnsignedByte()));
+    }
+
+    private static String readCode(DataInputStream in, List<String> dictionary, int inlineCode) throws IOException {
+
+        int code = (int) readVarLong(in, in.readUnsignedByte());
+        if (code == inlineCode) {
+            return readString(in);
+        }
+        if (code == dictionary.size()) {
+            dictionary.add(readString(in));
+        } else if (code > dictionary.size()) {
+            throw new IOException("invalid trace dictionary code: " + code);
+        }
+        return dictionary.get(code);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+
+        byte[] bytes = new byte[(int) readVarLong(in, in.readUnsignedByte())];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long readVarLong(DataInputStream in, int first) throws IOException {
+
+        long value = first & 0x7F;
+        int shift = 7;
+        for (int b = first; (b & 0x80) != 0; shift += 7) {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+        }
+        return value;
+    }
+
+    public long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+
+    public String getTargetName() {
+        return targetName;
+    }
+
+    public String getCommandLine() {
+        return commandLine;
+    }
+
+    public List<TraceEntry> getEntries() {
+        return entries;
+    }
+}
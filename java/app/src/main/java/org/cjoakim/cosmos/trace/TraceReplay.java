@@ -0,0 +1,185 @@
+package org.cjoakim.cosmos.trace;
+
+import com.azure.cosmos.models.CosmosBulkOperations;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.CosmosPatchOperations;
+import com.azure.cosmos.models.PartitionKey;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cjoakim.cosmos.pk.PartitionKeyJson;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays the operations of a trace as a Flux, at the pace they were submitted (1x), N times
+ * faster or slower (Nx), or as fast as they are pulled (max).  Each operation is emitted when it
+ * is due relative to the start of the replay; if the executor pulls more slowly than that, the
+ * replay falls behind, and getMaxLagMicros() says by how much.
+ *
+ * A trace does not keep the documents, so each upsert, create or replace writes a synthetic
+ * document with the recorded id and partition key, padded to the recorded payload size; a patch
+ * increments /replays.  Queries are recorded but not replayed, as they are not item operations.
+ * The container should have the partition key paths of the recorded run.
+ */
+
+public class TraceReplay {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(TraceReplay.class);
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+    private static final long MIN_DELAY_MICROS = 1000;
+    private static final Set<String> REPLAYED_TYPES =
+            new HashSet<>(Arrays.asList("CREATE", "UPSERT", "REPLACE", "DELETE", "READ", "PATCH"));
+
+    // Instance variables
+    private final List<TraceEntry> entries = new ArrayList<>();
+    private final double speed;
+    private final List<String> partitionKeyFields = new ArrayList<>();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicLong maxLagMicros = new AtomicLong();
+    private long skipped = 0;
+
+    public TraceReplay(List<TraceEntry> entries, double speed, List<String> partitionKeyPaths) {
+        super();
+        this.speed = speed;
+        for (String path : partitionKeyPaths) {
+            partitionKeyFields.add(path.substring(1));
+        }
+        for (TraceEntry entry : entries) {
+            if (REPLAYED_TYPES.contains(entry.getOperationType())) {
+                this.entries.add(entry);
+            } else {
+                skipped++;
+            }
+        }
+        if (skipped > 0) {
+            logger.warn("filter - " + skipped + " queries and unknown operations are not replayed");
+        }
+    }
+
+    /**
+     * Return the speed of the given --speed value: 1x, 4x, 0.5x or max.
+     */
+    public static double parseSpeed(String value) {
+
+        if ("max".equalsIgnoreCase(value)) {
+            return MAX_SPEED;
+        }
+        String number = value.toLowerCase().endsWith("x") ? value.substring(0, value.length() - 1) : value;
+        try {
+            double speed = Double.parseDouble(number);
+            if (speed > 0) {
+                return speed;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new IllegalArgumentException("invalid replay speed, expected such as 1x, 4x, 0.5x or max: " + value);
+    }
+
+    /**
+     * Return the operations of the trace, each emitted when it is due; the pace starts when the
+     * Flux is subscribed to.
+     */
+    public Flux<CosmosItemOperation> operations() {
+
+        logger.warn("operations - replaying " + entries.size() + " operations at " + (speed == MAX_SPEED ? "max" : speed + "x"));
+        if (entries.isEmpty()) {
+            return Flux.empty();
+        }
+        long firstMicros = entries.get(0).getSubmitMicros();
+        return Flux.defer(() -> {
+            long startNanos = System.nanoTime();
+            return Flux.fromIterable(entries).concatMap(entry -> {
+                CosmosItemOperation op = toOperation(entry);
+                if (speed == MAX_SPEED) {
+                    return Mono.just(op);
+                }
+                long dueMicros = (long) ((entry.getSubmitMicros() - firstMicros) / speed);
+                long waitMicros = dueMicros - (System.nanoTime() - startNanos) / 1000;
+                if (waitMicros >= MIN_DELAY_MICROS) {
+                    return Mono.delay(Duration.ofNanos(waitMicros * 1000)).thenReturn(op);
+                }
+                maxLagMicros.accumulateAndGet(-waitMicros, Math::max);
+                return Mono.just(op);
+            }, 1);
+        });
+    }
+
+    /**
+     * Return the operation of the given entry, or null if its type is not replayed.
+     */
+    CosmosItemOperation toOperation(TraceEntry entry) {
+
+        PartitionKey partitionKey = PartitionKeyJson.parse(entry.getPartitionKey());
+        switch (entry.getOperationType()) {
+            case "CREATE":
+                return CosmosBulkOperations.getCreateItemOperation(document(entry), partitionKey);
+            case "UPSERT":
+                return CosmosBulkOperations.getUpsertItemOperation(document(entry), partitionKey);
+            case "REPLACE":
+                return CosmosBulkOperations.getReplaceItemOperation(entry.getId(), document(entry), partitionKey);
+            case "DELETE":
+                return CosmosBulkOperations.getDeleteItemOperation(entry.getId(), partitionKey);
+            case "READ":
+                return CosmosBulkOperations.getReadItemOperation(entry.getId(), partitionKey);
+            case "PATCH":
+                return CosmosBulkOperations.getPatchItemOperation(
+                        entry.getId(), partitionKey, CosmosPatchOperations.create().increment("/replays", 1));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Return a document with the id and partition key of the given entry, padded to its payload size.
+     */
+    ObjectNode document(TraceEntry entry) {
+
+        ObjectNode doc = mapper.createObjectNode();
+        doc.put("id", entry.getId());
+        JsonNode values = PartitionKeyJson.values(entry.getPartitionKey());
+        for (int i = 0; i < partitionKeyFields.size() && i < values.size(); i++) {
+            if (!"id".equals(partitionKeyFields.get(i))) {
+                doc.set(partitionKeyFields.get(i), values.get(i));
+            }
+        }
+        doc.put("pad", "");
+        try {
+            int padding = entry.getPayloadBytes() - mapper.writeValueAsBytes(doc).length;
+            if (padding > 0) {
+                doc.put("pad", "x".repeat(padding));
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        return doc;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Return the most an operation was emitted after it was due, in microseconds.
+     */
+    public long getMaxLagMicros() {
+        return maxLagMicros.get();
+    }
+}
@@ -0,0 +1,136 @@
+package org.cjoakim.cosmos.trace;
+
+import org.HdrHistogram.Histogram;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The statistics of the entries of a trace, overall and per operation type: counts, 429 rate,
+ * retries, request charge and latency percentiles, and the rates over the span of the trace,
+ * from the first submit to the last completion.
+ */
+
+public class TraceSummary {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(TraceSummary.class);
+    public static final String ALL = "ALL";
+    public static final String[] METRICS = {
+            "ops", "ok %", "429 %", "retries/op", "RU/op", "p50 ms", "p99 ms", "p999 ms", "ops/s", "RU/s" };
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    // Instance variables
+    private final String name;
+    private final Map<String, Stats> stats = new TreeMap<>();
+    private final Stats all = new Stats();
+    private long firstMicros = Long.MAX_VALUE;
+    private long lastMicros = Long.MIN_VALUE;
+
+    /**
+     * Create an empty summary, to add the entries of a trace to as they are read.
+     */
+    public TraceSummary(String name) {
+        super();
+        this.name = name;
+        stats.put(ALL, all);
+    }
+
+    public TraceSummary(String name, List<TraceEntry> entries) {
+        this(name);
+        for (TraceEntry entry : entries) {
+            add(entry);
+        }
+    }
+
+    public void add(TraceEntry entry) {
+
+        all.add(entry);
+        stats.computeIfAbsent(entry.getOperationType(), type -> new Stats()).add(entry);
+        firstMicros = Math.min(firstMicros, entry.getSubmitMicros());
+        lastMicros = Math.max(lastMicros, entry.getSubmitMicros() + entry.getLatencyMicros());
+    }
+
+    /**
+     * Return the value of the given metric of the given operation type, or ALL; see METRICS.
+     */
+    public double metric(String operationType, String metric) {
+
+        Stats s = stats.get(operationType);
+        if (s == null) {
+            return 0;
+        }
+        double seconds = Math.max(getDurationMicros(), 1) / 1000000.0;
+        switch (metric) {
+            case "ops":        return s.count;
+            case "ok %":       return s.count == 0 ? 0 : 100.0 * s.ok / s.count;
+            case "429 %":      return s.count == 0 ? 0 : 100.0 * s.throttled / s.count;
+            case "retries/op": return s.count == 0 ? 0 : (double) s.retries / s.count;
+            case "RU/op":      return s.count == 0 ? 0 : s.requestCharge / s.count;
+            case "p50 ms":     return s.latency.getValueAtPercentile(50.0) / 1000.0;
+            case "p99 ms":     return s.latency.getValueAtPercentile(99.0) / 1000.0;
+            case "p999 ms":    return s.latency.getValueAtPercentile(99.9) / 1000.0;
+            case "ops/s":      return s.count / seconds;
+            case "RU/s":       return s.requestCharge / seconds;
+            default:
+                throw new IllegalArgumentException("unknown trace metric: " + metric);
+        }
+    }
+
+    public void logReport() {
+
+        logger.warn(String.format("trace: %s, operation types: %d, seconds: %.2f",
+                name, stats.size() - 1, getDurationMicros() / 1000000.0));
+        for (String type : stats.keySet()) {
+            StringBuilder sb = new StringBuilder("  ").append(type);
+            for (String metric : METRICS) {
+                sb.append(String.format(", %s: %.2f", metric, metric(type, metric)));
+            }
+            logger.warn(sb.toString());
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the operation types of the trace, and ALL.
+     */
+    public Set<String> getOperationTypes() {
+        return stats.keySet();
+    }
+
+    public long getDurationMicros() {
+        return all.count == 0 ? 0 : lastMicros - firstMicros;
+    }
+
+    private static class Stats {
+
+        long count = 0;
+        long ok = 0;
+        long throttled = 0;
+        long retries = 0;
+        double requestCharge = 0;
+        Histogram latency = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+
+        void add(TraceEntry entry) {
+
+            count++;
+            if (entry.isSuccess()) {
+                ok++;
+            }
+            if (entry.isThrottled()) {
+                throttled++;
+            }
+            retries += entry.getRetryCount();
+            requestCharge += entry.getRequestCharge();
+            latency.recordValue(Math.min(Math.max(entry.getLatencyMicros(), 0), HIGHEST_TRACKABLE_MICROS));
+        }
+    }
+}
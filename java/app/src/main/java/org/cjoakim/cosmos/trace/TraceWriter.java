@@ -0,0 +1,131 @@
+package org.cjoakim.cosmos.trace;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes TraceEntries to a compact binary trace file, in the order they complete.
+ *
+ * File layout: magic, version, start time (epoch ms), and the target name and command line as
+ * UTF strings; then the entries until the end of the file.  Numbers are unsigned LEB128 varints
+ * and the request charge a float; the id is a length-prefixed UTF-8 string, and the operation
+ * type, group name and partition key are codes of a dictionary that is written inline, a new
+ * string following the code it is given, so an entry of a load is about 30 bytes.  The dictionary
+ * holds up to MAX_DICTIONARY strings; once it is full, a new string is written inline after the
+ * code MAX_DICTIONARY each time, so a load over millions of partition keys doesn't hold them all.
+ * An instance is thread-safe; each entry is written whole.
+ */
+
+public class TraceWriter implements Closeable {
+
+    // Class variables
+    private static Logger logger = LogManager.getLogger(TraceWriter.class);
+    static final int MAGIC = 0x4F545243;  // OTRC
+    static final int VERSION = 2;
+    static final int MAX_DICTIONARY = 4096;
+
+    // Instance variables
+    private final Path path;
+    private final DataOutputStream out;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private long entries = 0;
+
+    public TraceWriter(Path path, String targetName, String commandLine) throws IOException {
+        super();
+        this.path = path;
+        if (path.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        out.writeUTF(targetName);
+        out.writeUTF(commandLine);
+        logger.warn("open - recording to " + path);
+    }
+
+    /**
+     * Return the current time in the microseconds since the trace was started of its entries.
+     */
+    public long nowMicros() {
+
+        return (System.nanoTime() - startNanos) / 1000;
+    }
+
+    public synchronized void write(TraceEntry entry) {
+
+        try {
+            writeVarLong(entry.getSubmitMicros());
+            writeCode(entry.getOperationType());
+            writeCode(entry.getGroupName());
+            writeString(entry.getId());
+            writeCode(entry.getPartitionKey());
+            writeVarLong(entry.getPayloadBytes());
+            out.writeFloat((float) entry.getRequestCharge());
+            writeVarLong(entry.getStatusCode());
+            writeVarLong(entry.getSubStatusCode());
+            writeVarLong(entry.getLatencyMicros());
+            writeVarLong(entry.getRetryCount());
+            entries++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeCode(String value) throws IOException {
+
+        String key = value == null ? "" : value;
+        Integer code = dictionary.get(key);
+        if (code != null) {
+            writeVarLong(code);
+            return;
+        }
+        if (dictionary.size() < MAX_DICTIONARY) {
+            writeVarLong(dictionary.size());
+            dictionary.put(key, dictionary.size());
+        } else {
+            writeVarLong(MAX_DICTIONARY);
+        }
+        writeString(key);
+    }
+
+    private void writeString(String value) throws IOException {
+
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public synchronized long getEntries() {
+        return entries;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+
+        out.close();
+        logger.warn("close - wrote " + path + ", entries: " + entries + ", bytes: " + Files.size(path));
+    }
+}
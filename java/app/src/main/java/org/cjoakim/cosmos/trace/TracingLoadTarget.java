@@ -0,0 +1,173 @@
+package org.cjoakim.cosmos.trace;
+
+import com.azure.cosmos.ThroughputControlGroupConfig;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.CosmosItemOperationType;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cjoakim.cosmos.json.JsonPayload;
+import org.cjoakim.cosmos.metrics.OperationResult;
+import org.cjoakim.cosmos.target.LoadTarget;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A LoadTarget that records every operation executed against another one in a TraceWriter:
+ * its type, group, id, partition key and payload size when it is submitted, and its request
+ * charge, status, latency and retries when its result arrives.  It wraps either engine and any
+ * runner, since they all execute their operations through a LoadTarget.  Measuring the payload
+ * of an item that is not pre-serialized costs a serialization per operation.
+ */
+
+public class TracingLoadTarget implements LoadTarget {
+
+    // Instance variables
+    private final LoadTarget target;
+    private final TraceWriter writer;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public TracingLoadTarget(LoadTarget target, TraceWriter writer) {
+        super();
+        this.target = target;
+        this.writer = writer;
+    }
+
+    @Override
+    public Flux<OperationResult> executeBulkOperations(Flux<CosmosItemOperation> operations, String groupName) {
+
+        return Flux.defer(() -> {
+            Map<String, Deque<TraceEntry>> submitted = new HashMap<>();
+            Flux<CosmosItemOperation> recorded = operations.doOnNext(op -> {
+                TraceEntry entry = submitted(op, groupName);
+                synchronized (submitted) {
+                    submitted.computeIfAbsent(entry.getId(), id -> new ArrayDeque<>()).add(entry);
+                }
+            });
+            return target.executeBulkOperations(recorded, groupName).doOnNext(result -> {
+                TraceEntry entry;
+                synchronized (submitted) {
+                    Deque<TraceEntry> entries = submitted.get(String.valueOf(result.getId()));
+                    entry = entries == null ? null : entries.poll();
+                }
+                if (entry != null) {
+                    completed(entry, result);
+                }
+            });
+        });
+    }
+
+    @Override
+    public OperationResult executePointOperation(CosmosItemOperation operation, String groupName) {
+
+        TraceEntry entry = submitted(operation, groupName);
+        OperationResult result = target.executePointOperation(operation, groupName);
+        completed(entry, result);
+        return result;
+    }
+
+    @Override
+    public OperationResult executeQuery(SqlQuerySpec query, PartitionKey partitionKey, String groupName) {
+
+        TraceEntry entry = new TraceEntry();
+        entry.setSubmitMicros(writer.nowMicros());
+        entry.setOperationType(OperationResult.OPERATION_TYPE_QUERY);
+        entry.setGroupName(groupName);
+        entry.setId(query.getQueryText());
+        entry.setPartitionKey(partitionKey == null ? "" : partitionKey.toString());
+        OperationResult result = target.executeQuery(query, partitionKey, groupName);
+        completed(entry, result);
+        return result;
+    }
+
+    private TraceEntry submitted(CosmosItemOperation op, String groupName) {
+
+        TraceEntry entry = new TraceEntry();
+        entry.setSubmitMicros(writer.nowMicros());
+        entry.setOperationType(String.valueOf(op.getOperationType()));
+        entry.setGroupName(groupName);
+        entry.setId(String.valueOf(OperationResult.idOf(op)));
+        entry.setPartitionKey(op.getPartitionKeyValue() == null ? "" : op.getPartitionKeyValue().toString());
+        entry.setPayloadBytes(payloadBytes(op));
+        return entry;
+    }
+
+    private int payloadBytes(CosmosItemOperation op) {
+
+        Object item = op.getItem();
+        if (item == null || op.getOperationType() == CosmosItemOperationType.PATCH) {
+            return 0;
+        }
+        JsonPayload payload = JsonPayload.of(item);
+        if (payload != null) {
+            return payload.size();
+        }
+        try {
+            return mapper.writeValueAsBytes(item).length;
+        } catch (JsonProcessingException e) {
+            return 0;
+        }
+    }
+
+    private void completed(TraceEntry entry, OperationResult result) {
+
+        entry.setRequestCharge(result.getRequestCharge());
+        entry.setStatusCode(result.getStatusCode());
+        entry.setSubStatusCode(result.getSubStatusCode());
+        long latencyMicros = result.getLatencyMicros();
+        entry.setLatencyMicros(latencyMicros > 0 ? latencyMicros : writer.nowMicros() - entry.getSubmitMicros());
+        entry.setRetryCount(result.getRetryCount());
+        writer.write(entry);
+    }
+
+    @Override
+    public String getName() {
+        return target.getName();
+    }
+
+    @Override
+    public void enableLocalThroughputControlGroup(ThroughputControlGroupConfig groupConfig) {
+        target.enableLocalThroughputControlGroup(groupConfig);
+    }
+
+    @Override
+    public void enableGlobalThroughputControlGroup(
+            ThroughputControlGroupConfig groupConfig, String controlContainerName, Duration renewInterval, Duration expireInterval) {
+        target.enableGlobalThroughputControlGroup(groupConfig, controlContainerName, renewInterval, expireInterval);
+    }
+
+    @Override
+    public double getTargetThroughput(String groupName) {
+        return target.getTargetThroughput(groupName);
+    }
+
+    @Override
+    public double getAllocatedThroughput(String groupName) {
+        return target.getAllocatedThroughput(groupName);
+    }
+
+    @Override
+    public void openConnections() {
+        target.openConnections();
+    }
+
+    @Override
+    public void logReport() {
+        target.logReport();
+    }
+
+    @Override
+    public void close() {
+        target.close();
+    }
+
+    public LoadTarget getTarget() {
+        return target;
+    }
+}
@@ -4,14 +4,25 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
 
 /**
  * This class implements common File IO operations.
@@ -22,6 +33,23 @@ public class FileUtil {
 
     // Class variables
     private static Logger logger = LogManager.getLogger(FileUtil.class);
+    public static final int DEFAULT_CHUNK_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * Receives one line, without its line terminator, as the byte range [start, end) of a buffer.
+     */
+    @FunctionalInterface
+    public interface LineHandler {
+        void line(ByteBuffer buf, int start, int end);
+    }
+
+    /**
+     * Maps one line, as the byte range [start, end) of a buffer, to a value, or to null to drop it.
+     */
+    @FunctionalInterface
+    public interface LineMapper<T> {
+        T map(ByteBuffer buf, int start, int end);
+    }
 
     public FileUtil() {
         super();
@@ -66,14 +94,147 @@ public class FileUtil {
     public List<String> readLines(String infile) throws IOException {
 
         List<String> lines = new ArrayList<String>();
-        File file = new File(infile);
-        Scanner sc = new Scanner(file);
-        while (sc.hasNextLine()) {
-            lines.add(sc.nextLine().trim());
+        try (BufferedReader reader = openReader(infile)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line.trim());
+            }
         }
         return lines;
     }
 
+    /**
+     * Open the given file for incremental, line-at-a-time reading.  The caller must close the reader.
+     */
+    public BufferedReader openReader(String infile) throws IOException {
+
+        return Files.newBufferedReader(Paths.get(infile), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Return the offset of the byte following the first line terminator at or after the given
+     * offset, or the file size if there is none.
+     */
+    public long nextLineStart(FileChannel channel, long offset) throws IOException {
+
+        long size = channel.size();
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        long position = offset;
+        while (position < size) {
+            buf.clear();
+            int n = channel.read(buf, position);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += n;
+        }
+        return size;
+    }
+
+    /**
+     * Memory-map the given file from startOffset onwards, split it into newline-aligned chunks
+     * of about chunkSize bytes, and map every line with the mapper, processing the chunks in
+     * parallel on a ForkJoinPool.  Each chunk is mapped separately, so files larger than 2GB
+     * are supported.  The mapper is called concurrently, but each chunk collects its own list
+     * and the lists are joined in chunk order, so the values are returned in file order
+     * whatever the parallelism; lines mapped to null are dropped.
+     */
+    public <T> List<T> mapLinesParallel(String infile, long startOffset, int chunkSize, int parallelism, LineMapper<T> mapper)
+            throws IOException {
+
+        try (FileChannel channel = FileChannel.open(Paths.get(infile), StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<long[]> chunks = new ArrayList<long[]>();
+            long chunkStart = startOffset;
+            while (chunkStart < size) {
+                long chunkEnd = Math.min(size, chunkStart + Math.max(chunkSize, 1));
+                if (chunkEnd < size) {
+                    chunkEnd = nextLineStart(channel, chunkEnd - 1);
+                }
+                chunks.add(new long[] { chunkStart, chunkEnd });
+                chunkStart = chunkEnd;
+            }
+            logger.warn("mapLinesParallel " + infile + " bytes: " + size + ", chunks: " + chunks.size() + ", parallelism: " + parallelism);
+
+            List<Callable<List<T>>> tasks = new ArrayList<Callable<List<T>>>();
+            for (int i = 0; i < chunks.size(); i++) {
+                long[] chunk = chunks.get(i);
+                tasks.add(() -> {
+                    MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+                    List<T> values = new ArrayList<T>();
+                    forEachLine(buf, (b, start, end) -> {
+                        T value = mapper.map(b, start, end);
+                        if (value != null) {
+                            values.add(value);
+                        }
+                    });
+                    return values;
+                });
+            }
+            ForkJoinPool pool = new ForkJoinPool(Math.max(parallelism, 1));
+            try {
+                List<T> values = new ArrayList<T>();
+                for (Future<List<T>> f : pool.invokeAll(tasks)) {
+                    values.addAll(f.get());
+                }
+                return values;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Pass each non-empty line of the given buffer to the handler; '\r' line terminators are removed.
+     * Return the number of lines.
+     */
+    public static long forEachLine(ByteBuffer buf, LineHandler handler) {
+
+        long lines = 0;
+        int limit = buf.limit();
+        int lineStart = 0;
+        for (int i = 0; i <= limit; i++) {
+            if (i == limit || buf.get(i) == '\n') {
+                int lineEnd = i;
+                if (lineEnd > lineStart && buf.get(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+                if (lineEnd > lineStart) {
+                    handler.line(buf, lineStart, lineEnd);
+                    lines++;
+                }
+                lineStart = i + 1;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Return the CRC32C checksum of the contents of the given file, read through memory-mapped chunks.
+     */
+    public long checksum(String infile) throws IOException {
+
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(Paths.get(infile), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += DEFAULT_CHUNK_SIZE) {
+                long length = Math.min(DEFAULT_CHUNK_SIZE, size - position);
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+            }
+        }
+        return crc.getValue();
+    }
+
     public Map<String, Object> readJsonMap(String infile) throws Exception {
 
         ObjectMapper mapper = new ObjectMapper();
@@ -0,0 +1,58 @@
+package org.cjoakim.cosmos.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A fast, non-cryptographic 64-bit hash of bytes, read eight at a time, in the style of
+ * MurmurHash64A.  It identifies keys and detects changed content; at 64 bits the chance that a
+ * changed document keeps its hash is negligible, but it is not a defense against tampering.
+ */
+
+public final class Hash64 {
+
+    // Class variables
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long M = 0xC6A4A7935BD1E995L;
+    private static final int R = 47;
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+
+    private Hash64() {
+        super();
+    }
+
+    public static long hash(byte[] bytes, int offset, int length) {
+
+        long h = SEED ^ (length * M);
+        int end = offset + (length & ~7);
+        for (int i = offset; i < end; i += 8) {
+            long k = (long) LONGS.get(bytes, i);
+            k *= M;
+            k ^= k >>> R;
+            k *= M;
+            h ^= k;
+            h *= M;
+        }
+        int remaining = length & 7;
+        if (remaining > 0) {
+            long k = 0;
+            for (int i = remaining - 1; i >= 0; i--) {
+                k = (k << 8) | (bytes[end + i] & 0xFF);
+            }
+            h ^= k;
+            h *= M;
+        }
+        h ^= h >>> R;
+        h *= M;
+        h ^= h >>> R;
+        return h;
+    }
+
+    public static long hash(String value) {
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return hash(bytes, 0, bytes.length);
+    }
+}
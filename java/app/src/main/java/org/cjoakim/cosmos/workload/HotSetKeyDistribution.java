@@ -0,0 +1,49 @@
+package org.cjoakim.cosmos.workload;
+
+import lombok.Getter;
+
+import java.util.Random;
+
+/**
+ * A hot set of the first fraction of the keys gets the given probability of the operations,
+ * uniformly, and the other keys the rest; such as 1% of the keys getting 90% of the operations.
+ */
+@Getter
+public class HotSetKeyDistribution implements KeyDistribution {
+
+    public static final double DEFAULT_FRACTION = 0.01;
+    public static final double DEFAULT_PROBABILITY = 0.9;
+
+    // Instance variables
+    private final int keyCount;
+    private final int hotCount;
+    private final double fraction;
+    private final double probability;
+
+    public HotSetKeyDistribution(int keyCount, double fraction, double probability) {
+
+        if (keyCount < 1 || fraction <= 0 || fraction > 1 || probability < 0 || probability > 1) {
+            throw new IllegalArgumentException(
+                    "invalid hot set key count " + keyCount + ", fraction " + fraction + " or probability " + probability);
+        }
+        this.keyCount = keyCount;
+        this.hotCount = Math.max(1, (int) Math.round(keyCount * fraction));
+        this.fraction = fraction;
+        this.probability = probability;
+    }
+
+    @Override
+    public String getName() {
+
+        return "hotset:" + fraction + ":" + probability;
+    }
+
+    @Override
+    public int next(Random random) {
+
+        if (hotCount >= keyCount || random.nextDouble() < probability) {
+            return random.nextInt(hotCount);
+        }
+        return hotCount + random.nextInt(keyCount - hotCount);
+    }
+}
@@ -0,0 +1,45 @@
+package org.cjoakim.cosmos.workload;
+
+import java.util.Random;
+
+/**
+ * Chooses which of a workload's keys, the loaded batters, each operation refers to, as an index
+ * into them.  Selected per workload class with its keys spec; see parse.
+ */
+public interface KeyDistribution {
+
+    String getName();
+
+    /**
+     * Return the index of the next key, from 0 to the key count - 1.
+     */
+    int next(Random random);
+
+    /**
+     * Return the distribution for the given keys spec, over the given number of keys:
+     * uniform, zipf[:exponent], or hotset[:fraction[:probability]].
+     */
+    static KeyDistribution parse(String spec, int keyCount) {
+
+        String[] tokens = spec.strip().split("[:]", 0);
+        try {
+            switch (tokens[0].toLowerCase()) {
+                case "uniform":
+                    return new UniformKeyDistribution(keyCount);
+                case "zipf":
+                    double exponent = tokens.length > 1 ? Double.parseDouble(tokens[1]) : ZipfKeyDistribution.DEFAULT_EXPONENT;
+                    return new ZipfKeyDistribution(keyCount, exponent);
+                case "hotset":
+                    double fraction = tokens.length > 1 ? Double.parseDouble(tokens[1]) : HotSetKeyDistribution.DEFAULT_FRACTION;
+                    double probability = tokens.length > 2 ? Double.parseDouble(tokens[2]) : HotSetKeyDistribution.DEFAULT_PROBABILITY;
+                    return new HotSetKeyDistribution(keyCount, fraction, probability);
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException(
+                "invalid keys spec, expected uniform, zipf[:exponent] or hotset[:fraction[:probability]] - " + spec);
+    }
+}
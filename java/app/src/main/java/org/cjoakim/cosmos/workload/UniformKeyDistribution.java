@@ -0,0 +1,35 @@
+package org.cjoakim.cosmos.workload;
+
+import lombok.Getter;
+
+import java.util.Random;
+
+/**
+ * Every key is equally likely.
+ */
+@Getter
+public class UniformKeyDistribution implements KeyDistribution {
+
+    // Instance variables
+    private final int keyCount;
+
+    public UniformKeyDistribution(int keyCount) {
+
+        if (keyCount < 1) {
+            throw new IllegalArgumentException("invalid key count: " + keyCount);
+        }
+        this.keyCount = keyCount;
+    }
+
+    @Override
+    public String getName() {
+
+        return "uniform";
+    }
+
+    @Override
+    public int next(Random random) {
+
+        return random.nextInt(keyCount);
+    }
+}
@@ -0,0 +1,116 @@
+package org.cjoakim.cosmos.workload;
+
+import com.azure.cosmos.models.CosmosBulkOperations;
+import com.azure.cosmos.models.CosmosPatchOperations;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.pk.PartitionKeyStrategy;
+import org.cjoakim.cosmos.workload.WorkloadOperation.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates an endless sequence of operations on the loaded batters, in the proportions of an
+ * operation mix, such as {"read": 70, "query": 10, "patch": 10, "upsert": 10}; point reads by id
+ * and partition key, "batters by team and year" queries within the chosen batter's partition
+ * key (query) or across partitions (cross_query), patches that increment the batter's at bats
+ * and hits, and upserts of the batter.  The batter of each operation is chosen by a
+ * KeyDistribution, over the batters in a seeded random order, so that the hot keys of a skewed
+ * distribution are spread over the file rather than being its first rows.
+ * A generator is not thread-safe; each workload class has its own.
+ */
+
+public class WorkloadGenerator {
+
+    public static final String TEAM_YEAR_QUERY = "SELECT * FROM c WHERE c.teamID = @teamID AND c.year = @year";
+
+    // Instance variables
+    private List<BaseballBatter> batters;
+    private PartitionKeyStrategy strategy;
+    private KeyDistribution keys;
+    private int[] order;
+    private Type[] types;
+    private double[] cumulativeWeights;
+    private Random random;
+
+    public WorkloadGenerator(
+            List<BaseballBatter> batters, PartitionKeyStrategy strategy, Map<String, Double> mix, String keysSpec, long seed) {
+        super();
+        if (batters.isEmpty()) {
+            throw new IllegalArgumentException("workload generator has no batters");
+        }
+        this.batters = batters;
+        this.strategy = strategy;
+        this.keys = KeyDistribution.parse(keysSpec, batters.size());
+        this.random = new Random(seed);
+        this.order = new int[batters.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        List<Type> mixTypes = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        double total = 0;
+        for (Map.Entry<String, Double> entry : mix.entrySet()) {
+            Type type = Type.parse(entry.getKey());
+            if (entry.getValue() != null && entry.getValue() > 0) {
+                mixTypes.add(type);
+                total += entry.getValue();
+                weights.add(total);
+            }
+        }
+        if (mixTypes.isEmpty()) {
+            throw new IllegalArgumentException("workload generator has no operation with a weight > 0 in its mix");
+        }
+        this.types = mixTypes.toArray(new Type[0]);
+        this.cumulativeWeights = new double[weights.size()];
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            cumulativeWeights[i] = weights.get(i) / total;
+        }
+    }
+
+    public WorkloadOperation next() {
+
+        Type type = nextType();
+        BaseballBatter bb = batters.get(order[keys.next(random)]);
+        PartitionKey pk = strategy.partitionKey(bb);
+        switch (type) {
+            case READ:
+                return WorkloadOperation.item(type, CosmosBulkOperations.getReadItemOperation(bb.getId(), pk));
+            case PATCH:
+                CosmosPatchOperations patch = CosmosPatchOperations.create().increment("/atBats", 1).increment("/hits", 1);
+                return WorkloadOperation.item(type, CosmosBulkOperations.getPatchItemOperation(bb.getId(), pk, patch));
+            case UPSERT:
+                return WorkloadOperation.item(type, CosmosBulkOperations.getUpsertItemOperation(bb, pk));
+            default:
+                SqlQuerySpec query = new SqlQuerySpec(TEAM_YEAR_QUERY,
+                        new SqlParameter("@teamID", bb.getTeamID()), new SqlParameter("@year", bb.getYear()));
+                return WorkloadOperation.query(type, query, type == Type.QUERY ? pk : null);
+        }
+    }
+
+    private Type nextType() {
+
+        double r = random.nextDouble();
+        for (int i = 0; i < cumulativeWeights.length - 1; i++) {
+            if (r < cumulativeWeights[i]) {
+                return types[i];
+            }
+        }
+        return types[types.length - 1];
+    }
+
+    public KeyDistribution getKeys() {
+        return keys;
+    }
+}
@@ -0,0 +1,94 @@
+package org.cjoakim.cosmos.workload;
+
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.SqlQuerySpec;
+import org.cjoakim.cosmos.metrics.OperationResult;
+import org.cjoakim.cosmos.target.LoadTarget;
+
+/**
+ * One operation generated by a WorkloadGenerator; either an item operation, a point read,
+ * patch or upsert, which may also be executed in a bulk batch, or a query, which may not.
+ */
+
+public class WorkloadOperation {
+
+    public enum Type {
+        READ, QUERY, CROSS_QUERY, PATCH, UPSERT;
+
+        /**
+         * Return the type of the given operation mix name, such as read or cross_query.
+         */
+        public static Type parse(String name) {
+
+            try {
+                return valueOf(name.strip().toUpperCase().replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                        "invalid operation type, expected read, query, cross_query, patch or upsert - " + name);
+            }
+        }
+
+        public boolean isQuery() {
+
+            return this == QUERY || this == CROSS_QUERY;
+        }
+    }
+
+    // Instance variables
+    private Type type;
+    private CosmosItemOperation itemOperation;
+    private SqlQuerySpec query;
+    private PartitionKey partitionKey;
+
+    private WorkloadOperation(Type type, CosmosItemOperation itemOperation, SqlQuerySpec query, PartitionKey partitionKey) {
+        super();
+        this.type = type;
+        this.itemOperation = itemOperation;
+        this.query = query;
+        this.partitionKey = partitionKey;
+    }
+
+    public static WorkloadOperation item(Type type, CosmosItemOperation itemOperation) {
+
+        return new WorkloadOperation(type, itemOperation, null, itemOperation.getPartitionKeyValue());
+    }
+
+    /**
+     * Return a query operation; within the given partition key, or across partitions if it is null.
+     */
+    public static WorkloadOperation query(Type type, SqlQuerySpec query, PartitionKey partitionKey) {
+
+        return new WorkloadOperation(type, null, query, partitionKey);
+    }
+
+    /**
+     * Execute this operation against the given target in the given throughput control group,
+     * blocking the calling thread until its response.
+     */
+    public OperationResult execute(LoadTarget target, String groupName) {
+
+        if (itemOperation != null) {
+            return target.executePointOperation(itemOperation, groupName);
+        }
+        OperationResult result = target.executeQuery(query, partitionKey, groupName);
+        result.setOperationType(type.name());
+        return result;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public CosmosItemOperation getItemOperation() {
+        return itemOperation;
+    }
+
+    public SqlQuerySpec getQuery() {
+        return query;
+    }
+
+    public PartitionKey getPartitionKey() {
+        return partitionKey;
+    }
+}
@@ -0,0 +1,54 @@
+package org.cjoakim.cosmos.workload;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The key of rank k, from 1, is chosen with probability proportional to 1 / k^exponent, so a
+ * few keys get most of the operations and there is a long tail; an exponent of about 1 is
+ * typical of real access patterns.  The cumulative probabilities are computed once, and each
+ * key is found by a binary search of them.
+ */
+@Getter
+public class ZipfKeyDistribution implements KeyDistribution {
+
+    public static final double DEFAULT_EXPONENT = 1.0;
+
+    // Instance variables
+    private final int keyCount;
+    private final double exponent;
+    private final double[] cumulative;
+
+    public ZipfKeyDistribution(int keyCount, double exponent) {
+
+        if (keyCount < 1 || exponent <= 0) {
+            throw new IllegalArgumentException("invalid zipf key count " + keyCount + " or exponent " + exponent);
+        }
+        this.keyCount = keyCount;
+        this.exponent = exponent;
+        this.cumulative = new double[keyCount];
+        double sum = 0;
+        for (int i = 0; i < keyCount; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < keyCount; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    @Override
+    public String getName() {
+
+        return "zipf:" + exponent;
+    }
+
+    @Override
+    public int next(Random random) {
+
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, keyCount - 1);
+    }
+}
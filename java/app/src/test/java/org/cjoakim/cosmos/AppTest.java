@@ -3,7 +3,16 @@
  */
 package org.cjoakim.cosmos;
 
+import org.cjoakim.cosmos.csv.BatterCsvReader;
+import org.cjoakim.cosmos.model.BaseballBatter;
 import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.cjoakim.cosmos.TestFixtures.BATTING_HEADER;
 import static org.junit.Assert.*;
 
 public class AppTest {
@@ -11,4 +20,52 @@ public class AppTest {
         App classUnderTest = new App();
         assertNotNull("42 is just silly", "42");
     }
+
+    private static final String[] TEAMS = { "NYA", "BOS", "CHN" };
+
+    /**
+     * Write a Batting.csv of the given number of rows, of every team, before and after 1950,
+     * with few and many games, and with a malformed row every 50 rows.
+     */
+    private static String battingCsv(int rows) throws Exception {
+        File file = File.createTempFile("batting", ".csv");
+        file.deleteOnExit();
+        try (FileWriter fw = new FileWriter(file)) {
+            fw.write(BATTING_HEADER + "\n");
+            for (int i = 0; i < rows; i++) {
+                if (i % 50 == 49) {
+                    fw.write("player" + i + ",19x0,1\n");
+                    continue;
+                }
+                fw.write("player" + i + "," + (1940 + (i % 30)) + ",1," + TEAMS[i % TEAMS.length] + ",AL,"
+                        + (i % 20) + ",100,10,30,5,1,2,12,1,0,10,20,,1,0,0,2\n");
+            }
+        }
+        return file.getPath();
+    }
+
+    private static List<String> ids(List<BaseballBatter> batters) {
+        List<String> ids = new ArrayList<>();
+        for (BaseballBatter bb : batters) {
+            ids.add(bb.getId());
+        }
+        return ids;
+    }
+
+    @Test public void streamsTheSameBattersAsTheListPath() throws Exception {
+        String csvFile = battingCsv(1000);
+        List<BaseballBatter> read = new ArrayList<>();
+        new BatterCsvReader().read(csvFile, bb -> {
+            if (bb.isValid()) {
+                read.add(bb);
+            }
+        });
+
+        for (String team : new String[] { "all", "BOS" }) {
+            List<BaseballBatter> streamed = App.streamFilterBatters(csvFile, team).collectList().block();
+            assertFalse(streamed.isEmpty());
+            assertEquals(ids(App.filterBatters(read, team)), ids(streamed));
+        }
+        assertEquals(3, App.streamFilterBatters(csvFile, "all").take(3).collectList().block().size());
+    }
 }
@@ -0,0 +1,102 @@
+package org.cjoakim.cosmos;
+
+import com.azure.cosmos.models.CosmosBulkOperations;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.PartitionKey;
+import org.cjoakim.cosmos.csv.BatterCsvParser;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.pk.PartitionKeyStrategy;
+import org.cjoakim.cosmos.sim.SimulatedLoadTarget;
+import org.cjoakim.cosmos.sim.SimulatorConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The data and simulator setup shared by the tests: the Batting.csv header and a batter parsed
+ * from a sample row, workload batters over ten years and thirty teams, upserts of minimal
+ * batters, player0 to playerN in 2000, whose ids are player0-2000-1 and so on, and a SimulatorConfig with a 0.1 ms median latency so that a load
+ * finishes quickly.
+ */
+
+public final class TestFixtures {
+
+    public static final String HOT_PARTITION = "mlb";
+    public static final String BATTING_HEADER =
+            "playerID,yearID,stint,teamID,lgID,G,AB,R,H,2B,3B,HR,RBI,SB,CS,BB,SO,IBB,HBP,SH,SF,GIDP";
+
+    private TestFixtures() {
+    }
+
+    /**
+     * Return Derek Jeter's 2000 season parsed from a Batting.csv row, with an empty IBB column.
+     */
+    public static BaseballBatter sampleBatter() {
+        return new BatterCsvParser(BatterCsvParser.parseHeader(BATTING_HEADER))
+                .parse("jeterde01,2000,1,NYA,AL,148,593,119,201,31,4,15,73,22,4,68,99,,12,3,3,14");
+    }
+
+    /**
+     * Return the given number of batters, player i playing in year 2000 + i % 10 for team
+     * T(i % 30), with their ids assigned and their partition keys set by the strategy.
+     */
+    public static List<BaseballBatter> batters(int count, PartitionKeyStrategy strategy) {
+        List<BaseballBatter> batters = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BaseballBatter bb = new BaseballBatter();
+            bb.setPlayerID("player" + i);
+            bb.setYear(2000 + i % 10);
+            bb.setStint("1");
+            bb.setTeamID("T" + i % 30);
+            bb.assignDocumentId();
+            strategy.assign(bb);
+            batters.add(bb);
+        }
+        return batters;
+    }
+
+    /**
+     * Return upserts of the given number of batters, each in its playerID's partition.
+     */
+    public static List<CosmosItemOperation> upserts(int count) {
+        return upserts(count, null);
+    }
+
+    /**
+     * Return upserts of the given number of batters, all in the given partition, or each in
+     * its playerID's partition if it is null.
+     */
+    public static List<CosmosItemOperation> upserts(int count, String partitionKey) {
+        List<CosmosItemOperation> operations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BaseballBatter bb = new BaseballBatter();
+            bb.setPlayerID("player" + i);
+            bb.setYear(2000);
+            bb.setStint("1");
+            bb.assignDocumentId();
+            bb.setPk(partitionKey == null ? bb.getPlayerID() : partitionKey);
+            operations.add(CosmosBulkOperations.getUpsertItemOperation(bb, new PartitionKey(bb.getPk())));
+        }
+        return operations;
+    }
+
+    /**
+     * Return the default simulator config, with a 0.1 ms median latency.
+     */
+    public static SimulatorConfig fastConfig() {
+        SimulatorConfig config = new SimulatorConfig();
+        config.setLatencyMedianMs(0.1);
+        return config;
+    }
+
+    public static SimulatorConfig fastConfig(double provisionedRu, int partitionRanges) {
+        SimulatorConfig config = fastConfig();
+        config.setProvisionedRu(provisionedRu);
+        config.setPartitionRanges(partitionRanges);
+        return config;
+    }
+
+    public static SimulatedLoadTarget fastTarget(double provisionedRu) {
+        return new SimulatedLoadTarget("test", fastConfig(provisionedRu, 1));
+    }
+}
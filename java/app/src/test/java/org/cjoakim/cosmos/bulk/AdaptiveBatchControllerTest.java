@@ -0,0 +1,105 @@
+package org.cjoakim.cosmos.bulk;
+
+import org.junit.Test;
+import reactor.core.Disposable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveBatchControllerTest {
+
+    private static final long ONE_SECOND_NANOS = 1_000_000_000L;
+
+    /**
+     * Record one window of batches of the current size, each taking 10ms and 6 RU per operation.
+     */
+    private static void window(AdaptiveBatchController controller, AtomicLong clock, long throttles, long latencyMicros) {
+        int size = controller.getBatchSize();
+        controller.recordBatch(size, 0, latencyMicros, size * 6.0);
+        clock.addAndGet(ONE_SECOND_NANOS);
+        controller.recordBatch(size, throttles, latencyMicros, size * 6.0);
+    }
+
+    @Test public void growsBatchSizeThenConcurrencyWhileHealthy() {
+        AtomicLong clock = new AtomicLong();
+        AdaptiveBatchController controller = new AdaptiveBatchController(50, 1, 80, 3, 0, clock::get);
+        for (int i = 0; i < 3; i++) {
+            window(controller, clock, 0, 10_000);
+        }
+        assertEquals(80, controller.getBatchSize());
+        assertEquals(1, controller.getConcurrency());
+        for (int i = 0; i < 5; i++) {
+            window(controller, clock, 0, 10_000);
+        }
+        assertEquals(80, controller.getBatchSize());
+        assertEquals(3, controller.getConcurrency());
+    }
+
+    @Test public void halvesConcurrencyThenBatchSizeOn429s() {
+        AtomicLong clock = new AtomicLong();
+        AdaptiveBatchController controller = new AdaptiveBatchController(100, 8, 500, 16, 0, clock::get);
+        window(controller, clock, 10, 10_000);
+        assertEquals(4, controller.getConcurrency());
+        window(controller, clock, 10, 10_000);
+        window(controller, clock, 10, 10_000);
+        assertEquals(1, controller.getConcurrency());
+        assertEquals(100, controller.getBatchSize());
+        window(controller, clock, 10, 10_000);
+        assertEquals(50, controller.getBatchSize());
+        for (int i = 0; i < 10; i++) {
+            window(controller, clock, 10, 10_000);
+        }
+        assertEquals(5, controller.getBatchSize());
+    }
+
+    @Test public void decreasesWhenLatencyRisesAboveTheBaseline() {
+        AtomicLong clock = new AtomicLong();
+        AdaptiveBatchController controller = new AdaptiveBatchController(100, 4, 100, 4, 0, clock::get);
+        window(controller, clock, 0, 10_000);
+        assertEquals(4, controller.getConcurrency());
+        window(controller, clock, 0, 100_000);
+        assertEquals(2, controller.getConcurrency());
+    }
+
+    @Test public void holdsAtTheTargetThroughput() {
+        AtomicLong clock = new AtomicLong();
+        // each window consumes 2 batches * 50 ops * 6 RU = 600 RU in one second
+        AdaptiveBatchController controller = new AdaptiveBatchController(50, 1, 500, 16, 600, clock::get);
+        for (int i = 0; i < 5; i++) {
+            window(controller, clock, 0, 10_000);
+        }
+        assertEquals(50, controller.getBatchSize());
+        assertEquals(1, controller.getConcurrency());
+    }
+
+    @Test public void limitsBatchesInFlight() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(50, 2, 500, 16, 0);
+        AtomicInteger granted = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            controller.acquire().subscribe(null, null, granted::incrementAndGet);
+        }
+        assertEquals(2, granted.get());
+        controller.release();
+        assertEquals(3, granted.get());
+        controller.release();
+        controller.release();
+        assertEquals(5, granted.get());
+    }
+
+    @Test public void aCancelledAcquireGivesUpItsPlace() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(50, 1, 500, 1, 0);
+        AtomicInteger granted = new AtomicInteger();
+        controller.acquire().subscribe(null, null, granted::incrementAndGet);
+        Disposable cancelled = controller.acquire().subscribe(null, null, () -> granted.addAndGet(100));
+        controller.acquire().subscribe(null, null, granted::incrementAndGet);
+        cancelled.dispose();
+
+        controller.release();
+        assertEquals(2, granted.get());
+        controller.release();
+        controller.acquire().subscribe(null, null, granted::incrementAndGet);
+        assertEquals(3, granted.get());
+    }
+}
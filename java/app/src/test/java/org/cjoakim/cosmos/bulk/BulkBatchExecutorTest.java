@@ -0,0 +1,104 @@
+package org.cjoakim.cosmos.bulk;
+
+import com.azure.cosmos.models.CosmosItemOperation;
+import org.cjoakim.cosmos.metrics.GroupMetrics;
+import org.cjoakim.cosmos.metrics.OperationResult;
+import org.cjoakim.cosmos.sim.SimulatedLoadTarget;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.cjoakim.cosmos.TestFixtures.fastConfig;
+import static org.cjoakim.cosmos.TestFixtures.upserts;
+import static org.junit.Assert.*;
+
+public class BulkBatchExecutorTest {
+
+    /**
+     * A simulated target that keeps the operations of each bulk execution, in the order they
+     * start, holds each one for 10ms so that they overlap, and counts the most in flight at once.
+     */
+    private static class RecordingTarget extends SimulatedLoadTarget {
+
+        List<List<CosmosItemOperation>> batches = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        RecordingTarget() {
+            super("recording", fastConfig(100000, 4));
+        }
+
+        @Override
+        public Flux<OperationResult> executeBulkOperations(Flux<CosmosItemOperation> operations, String groupName) {
+            return operations.collectList().flatMapMany(batch -> {
+                batches.add(batch);
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                return super.executeBulkOperations(Flux.fromIterable(batch), groupName)
+                        .delaySubscription(Duration.ofMillis(10))
+                        .doOnTerminate(inFlight::decrementAndGet);
+            });
+        }
+    }
+
+    private static String checkpointFile() throws Exception {
+        File file = File.createTempFile("checkpoint", ".json");
+        file.delete();
+        file.deleteOnExit();
+        return file.getPath();
+    }
+
+    @Test public void batchesAreConsecutiveRunsOfTheOperations() {
+        RecordingTarget target = new RecordingTarget();
+        GroupMetrics metrics = new GroupMetrics("default");
+        List<CosmosItemOperation> operations = upserts(25);
+
+        assertEquals(25, new BulkBatchExecutor(target, "default", 10, 1, metrics).execute(operations));
+        assertEquals(3, target.batches.size());
+        assertEquals(5, target.batches.get(2).size());
+        int position = 0;
+        for (List<CosmosItemOperation> batch : target.batches) {
+            for (CosmosItemOperation op : batch) {
+                assertSame(operations.get(position++), op);
+            }
+        }
+        assertEquals(3, metrics.getBatches());
+        assertEquals(25, metrics.getSuccesses());
+    }
+
+    @Test public void keepsUpToConcurrencyBatchesInFlight() {
+        RecordingTarget target = new RecordingTarget();
+        assertEquals(40, new BulkBatchExecutor(target, "default", 5, 4, new GroupMetrics("default")).execute(upserts(40)));
+        assertEquals(8, target.batches.size());
+        assertEquals(4, target.maxInFlight.get());
+
+        RecordingTarget sequential = new RecordingTarget();
+        new BulkBatchExecutor(sequential, "default", 5, 1, new GroupMetrics("default")).execute(upserts(40));
+        assertEquals(1, sequential.maxInFlight.get());
+    }
+
+    @Test public void reportsEachBatchAtItsPositionInTheExecutedOperations() throws Exception {
+        String path = checkpointFile();
+        List<CosmosItemOperation> operations = upserts(100);
+        LoadCheckpoint checkpoint = LoadCheckpoint.open(path, operations, false);
+        List<CosmosItemOperation> executed = checkpoint.remaining(operations);
+        checkpoint.recordBatch(0, executed.subList(0, 30), Collections.emptySet());
+        checkpoint.recordBatch(60, executed.subList(60, 70), Collections.emptySet());
+        checkpoint.save();
+
+        // batches of 7 over the 60 remaining operations complete out of order, four at a time
+        LoadCheckpoint resumed = LoadCheckpoint.open(path, upserts(100), true);
+        List<CosmosItemOperation> remaining = resumed.remaining(upserts(100));
+        assertEquals(60, remaining.size());
+        BulkBatchExecutor executor = new BulkBatchExecutor(new RecordingTarget(), "default", 7, 4, new GroupMetrics("default"));
+        executor.setCheckpoint(resumed);
+        assertEquals(60, executor.execute(Flux.fromIterable(remaining)));
+        assertTrue(resumed.isComplete());
+        assertEquals(100, resumed.getAcknowledged());
+    }
+}
@@ -0,0 +1,77 @@
+package org.cjoakim.cosmos.bulk;
+
+import com.azure.cosmos.models.CosmosItemOperation;
+import org.cjoakim.cosmos.metrics.OperationResult;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.cjoakim.cosmos.TestFixtures.upserts;
+import static org.junit.Assert.*;
+
+public class LoadCheckpointTest {
+
+    private static String checkpointFile() throws Exception {
+        File file = File.createTempFile("checkpoint", ".json");
+        file.delete();
+        file.deleteOnExit();
+        return file.getPath();
+    }
+
+    private static List<String> ids(List<CosmosItemOperation> operations) {
+        List<String> ids = new ArrayList<>();
+        for (CosmosItemOperation op : operations) {
+            ids.add(OperationResult.idOf(op));
+        }
+        return ids;
+    }
+
+    @Test public void resumesWithUnacknowledgedBatchesAndFailures() throws Exception {
+        String path = checkpointFile();
+        List<CosmosItemOperation> operations = upserts(100);
+        LoadCheckpoint checkpoint = LoadCheckpoint.open(path, operations, false);
+        List<CosmosItemOperation> executed = checkpoint.remaining(operations);
+        assertEquals(100, executed.size());
+
+        // batches of 10 complete out of order; the load is interrupted with batches 3 and 5-9 outstanding
+        checkpoint.recordBatch(0, executed.subList(0, 10), Collections.emptySet());
+        checkpoint.recordBatch(20, executed.subList(20, 30), Collections.emptySet());
+        checkpoint.recordBatch(10, executed.subList(10, 20), Set.of("player12-2000-1"));
+        checkpoint.recordBatch(40, executed.subList(40, 50), Collections.emptySet());
+        checkpoint.save();
+
+        LoadCheckpoint resumed = LoadCheckpoint.open(path, upserts(100), true);
+        assertEquals(40, resumed.getAcknowledged());
+        assertEquals(1, resumed.getFailed());
+        List<CosmosItemOperation> remaining = resumed.remaining(upserts(100));
+        assertEquals(61, remaining.size());
+        assertEquals("player12-2000-1", OperationResult.idOf(remaining.get(0)));
+        assertEquals("player30-2000-1", OperationResult.idOf(remaining.get(1)));
+        assertEquals("player50-2000-1", OperationResult.idOf(remaining.get(11)));
+
+        // positions are those of the remaining list; the retried failure now succeeds
+        resumed.recordBatch(0, remaining.subList(0, 31), Collections.emptySet());
+        resumed.recordBatch(31, remaining.subList(31, 61), Collections.emptySet());
+        assertTrue(resumed.isComplete());
+        resumed.stop();
+        assertEquals(0, LoadCheckpoint.open(path, upserts(100), true).remaining(upserts(100)).size());
+    }
+
+    @Test public void startsOverIfTheOperationsDiffer() throws Exception {
+        String path = checkpointFile();
+        List<CosmosItemOperation> operations = upserts(50);
+        LoadCheckpoint checkpoint = LoadCheckpoint.open(path, operations, false);
+        checkpoint.recordBatch(0, checkpoint.remaining(operations).subList(0, 50), Collections.emptySet());
+        checkpoint.save();
+
+        List<CosmosItemOperation> reordered = upserts(50);
+        Collections.reverse(reordered);
+        assertEquals(50, LoadCheckpoint.open(path, reordered, true).remaining(reordered).size());
+        assertEquals(ids(upserts(50)), ids(upserts(50)));
+        assertEquals(0, LoadCheckpoint.open(path, upserts(50), true).remaining(upserts(50)).size());
+    }
+}
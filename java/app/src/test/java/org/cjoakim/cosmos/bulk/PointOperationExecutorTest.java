@@ -0,0 +1,110 @@
+package org.cjoakim.cosmos.bulk;
+
+import com.azure.cosmos.ThroughputControlGroupConfig;
+import com.azure.cosmos.ThroughputControlGroupConfigBuilder;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.SqlQuerySpec;
+import org.cjoakim.cosmos.metrics.GroupMetrics;
+import org.cjoakim.cosmos.metrics.OperationResult;
+import org.cjoakim.cosmos.sim.SimulatedLoadTarget;
+import org.cjoakim.cosmos.target.LoadTarget;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.cjoakim.cosmos.TestFixtures.fastConfig;
+import static org.cjoakim.cosmos.TestFixtures.upserts;
+import static org.junit.Assert.*;
+
+public class PointOperationExecutorTest {
+
+    /**
+     * A target whose point operations take 5ms, and which counts the most in flight at once.
+     */
+    private static class SlowTarget implements LoadTarget {
+
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        List<String> groupNames = new ArrayList<>();
+
+        public String getName() { return "slow"; }
+        public void enableLocalThroughputControlGroup(ThroughputControlGroupConfig groupConfig) { }
+        public void enableGlobalThroughputControlGroup(
+                ThroughputControlGroupConfig groupConfig, String controlContainerName, Duration renewInterval, Duration expireInterval) { }
+        public Flux<OperationResult> executeBulkOperations(Flux<CosmosItemOperation> operations, String groupName) {
+            throw new UnsupportedOperationException();
+        }
+        public double getTargetThroughput(String groupName) { return 0; }
+        public OperationResult executeQuery(SqlQuerySpec query, PartitionKey partitionKey, String groupName) {
+            throw new UnsupportedOperationException();
+        }
+
+        public OperationResult executePointOperation(CosmosItemOperation op, String groupName) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            synchronized (groupNames) {
+                groupNames.add(groupName);
+            }
+            inFlight.decrementAndGet();
+            OperationResult result = new OperationResult();
+            result.setId(OperationResult.idOf(op));
+            result.setStatusCode(200);
+            result.setRequestCharge(10.0);
+            return result;
+        }
+    }
+
+    @Test public void boundsTheOperationsInFlight() {
+        SlowTarget target = new SlowTarget();
+        GroupMetrics metrics = new GroupMetrics("rus");
+        long count = new PointOperationExecutor(target, "rus", 4, metrics).execute(upserts(100));
+
+        assertEquals(100, count);
+        assertTrue("max in flight " + target.maxInFlight.get(), target.maxInFlight.get() <= 4);
+        assertTrue("max in flight " + target.maxInFlight.get(), target.maxInFlight.get() > 1);
+        assertEquals(100, target.groupNames.stream().filter("rus"::equals).count());
+        assertEquals(100, metrics.getOperations());
+        assertEquals(100, metrics.getBatches());
+        assertEquals(1000.0, metrics.getRequestCharge(), 0.001);
+        assertEquals(0, metrics.getInFlightBatches());
+        assertEquals(0, metrics.getQueuedBatches());
+        assertTrue(metrics.getOperationLatency().getValueAtPercentile(50.0) >= 5000);
+    }
+
+    @Test public void executesAStreamOfOperations() {
+        SlowTarget target = new SlowTarget();
+        GroupMetrics metrics = new GroupMetrics("default");
+        long count = new PointOperationExecutor(target, "default", 8, metrics).execute(Flux.fromIterable(upserts(50)));
+
+        assertEquals(50, count);
+        assertEquals(50, metrics.getSuccesses());
+        assertTrue(target.maxInFlight.get() <= 8);
+    }
+
+    @Test public void throughputControlGroupShapesPointOperations() {
+        SimulatedLoadTarget target = new SimulatedLoadTarget("test", fastConfig(100000, 1));
+        target.enableLocalThroughputControlGroup(new ThroughputControlGroupConfigBuilder()
+                .groupName("rus")
+                .targetThroughput(500)
+                .build());
+        GroupMetrics metrics = new GroupMetrics("rus");
+        long start = System.currentTimeMillis();
+        long count = new PointOperationExecutor(target, "rus", 16, metrics).executeAsync(upserts(200)).block();
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(200, count);
+        assertEquals(200, metrics.getSuccesses());
+        assertEquals(200, target.getDocumentCount());
+        // about 1200 RU at 500 RU/s, less the initial 500 RU burst
+        assertTrue("elapsed " + elapsed, elapsed > 1000);
+    }
+}
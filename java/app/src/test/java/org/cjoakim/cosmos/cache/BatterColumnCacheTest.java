@@ -0,0 +1,92 @@
+package org.cjoakim.cosmos.cache;
+
+import org.cjoakim.cosmos.csv.BatterCsvReader;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.cjoakim.cosmos.TestFixtures.BATTING_HEADER;
+import static org.junit.Assert.*;
+
+public class BatterColumnCacheTest {
+
+    private static File writeCsv(int rows) throws IOException {
+        File file = File.createTempFile("batting", ".csv");
+        file.deleteOnExit();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(BATTING_HEADER + "\n");
+            for (int i = 0; i < rows; i++) {
+                String team = (i % 3 == 0) ? "NYA" : "BOS";
+                writer.write("p" + (i % 50) + "," + (1940 + (i % 40)) + ",1," + team + ",AL," + (i % 30) + ","
+                        + i + ",1,2,3,4,5,6,7,,8,9,,10,0,0,0\n");
+            }
+        }
+        return file;
+    }
+
+    private static List<BaseballBatter> parse(File csv, AtomicInteger parses) {
+        parses.incrementAndGet();
+        List<BaseballBatter> batters = new ArrayList<>();
+        try {
+            new BatterCsvReader().read(csv.getPath(), bb -> {
+                if (bb.isValid()) {
+                    batters.add(bb);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return batters;
+    }
+
+    @Test public void selectsAndMaterializesLikeTheParsedBatters() throws Exception {
+        File csv = writeCsv(1000);
+        File dir = Files.createTempDirectory("cache").toFile();
+        AtomicInteger parses = new AtomicInteger();
+        BatterColumns columns = new BatterColumnCache(dir.getPath()).readOrBuild(csv.getPath(), () -> parse(csv, parses));
+        List<BaseballBatter> parsed = parse(csv, new AtomicInteger());
+        assertEquals(parsed.size(), columns.size());
+
+        int[] rows = columns.select("nya", 1950, 10);
+        List<BaseballBatter> expected = new ArrayList<>();
+        for (BaseballBatter bb : parsed) {
+            if (bb.getTeamID().equals("NYA") && bb.getYear() >= 1950 && bb.getGames() > 10) {
+                expected.add(bb);
+            }
+        }
+        assertEquals(expected.size(), rows.length);
+        for (int i = 0; i < rows.length; i++) {
+            BaseballBatter actual = columns.toBatter(rows[i]);
+            BaseballBatter bb = expected.get(i);
+            assertEquals(bb, actual);
+        }
+        assertEquals(0, columns.select("XXX", 1950, 10).length);
+        assertTrue(columns.select("all", 1950, 10).length > rows.length);
+    }
+
+    @Test public void isMappedUntilTheSourceChanges() throws Exception {
+        File csv = writeCsv(200);
+        File dir = Files.createTempDirectory("cache").toFile();
+        BatterColumnCache cache = new BatterColumnCache(dir.getPath());
+        AtomicInteger parses = new AtomicInteger();
+
+        cache.readOrBuild(csv.getPath(), () -> parse(csv, parses));
+        cache.readOrBuild(csv.getPath(), () -> parse(csv, parses));
+        assertEquals(1, parses.get());
+
+        try (FileWriter writer = new FileWriter(csv, true)) {
+            writer.write("late01,2001,1,NYA,AL,50,1,1,1,1,1,1,1,1,1,1,1,1,1,0,0,0\n");
+        }
+        BatterColumns columns = cache.readOrBuild(csv.getPath(), () -> parse(csv, parses));
+        assertEquals(2, parses.get());
+        assertEquals(1, columns.select("all", 2001, 49).length);
+    }
+}
@@ -0,0 +1,143 @@
+package org.cjoakim.cosmos.csv;
+
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.cjoakim.cosmos.TestFixtures.BATTING_HEADER;
+import static org.junit.Assert.*;
+
+public class BatterCsvParserTest {
+
+    @Test public void parsesAllColumns() {
+        BatterCsvParser parser = new BatterCsvParser(BatterCsvParser.parseHeader(BATTING_HEADER));
+        BaseballBatter bb = parser.parse("jeterde01,2000,1,NYA,AL,148,593,119,201,31,4,15,73,22,4,68,99,4,12,3,3,14");
+        assertEquals("jeterde01", bb.getPlayerID());
+        assertEquals("jeterde01", bb.getPk());
+        assertEquals("jeterde01-2000-1", bb.getId());
+        assertEquals(2000, bb.getYear());
+        assertEquals("1", bb.getStint());
+        assertEquals("NYA", bb.getTeamID());
+        assertEquals("AL", bb.getLeagueID());
+        assertEquals(148, bb.getGames());
+        assertEquals(201, bb.getHits());
+        assertEquals(15, bb.getHomeRuns());
+        assertEquals(99, bb.getStrikeouts());
+        assertEquals(12, bb.getHitByPitch());
+        assertFalse(bb.isException());
+    }
+
+    @Test public void emptyFieldsTakeDefaultsWithoutException() {
+        BatterCsvParser parser = new BatterCsvParser(BatterCsvParser.parseHeader(BATTING_HEADER));
+        BaseballBatter bb = parser.parse("abercda01,1871,1,TRO,NA,1,4,0,0,0,0,0,0,0,0,0,,,,,,");
+        assertEquals(1, bb.getGames());
+        assertEquals(0, bb.getCaughtStealing());
+        assertEquals(0, bb.getStrikeouts());
+        assertEquals(0, bb.getIntentionalBB());
+        assertEquals(0, bb.getHitByPitch());
+        assertFalse(bb.isException());
+
+        BaseballBatter missingGames = parser.parse("abercda01,1871,1,TRO,NA,,4,0,0,0,0,0,0,0,0,0,,,,,,");
+        assertEquals(-1, missingGames.getGames());
+        assertFalse(missingGames.isValid());
+    }
+
+    @Test public void malformedValuesSetTheExceptionFlag() {
+        BatterCsvParser parser = new BatterCsvParser(BatterCsvParser.parseHeader(BATTING_HEADER));
+        BaseballBatter bb = parser.parse("x01,20x0,1,NYA,AL,5,1,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0");
+        assertTrue(bb.isException());
+        assertEquals(5, bb.getGames());
+    }
+
+    @Test public void rejectsRowsWithTheWrongColumnCount() {
+        BatterCsvParser parser = new BatterCsvParser(BatterCsvParser.parseHeader(BATTING_HEADER));
+        assertFalse(parser.parse("jeterde01,2000,1,NYA", new BaseballBatter()));
+    }
+
+    @Test public void mapsColumnsByHeaderNameAndHandlesQuotes() {
+        BatterCsvParser parser = new BatterCsvParser(BatterCsvParser.parseHeader("teamID,G,playerID,yearID"));
+        BaseballBatter bb = new BaseballBatter();
+        assertTrue(parser.parse("\"NY, A\",\"12\",ruthba01,1927", bb));
+        assertEquals("NY, A", bb.getTeamID());
+        assertEquals(12, bb.getGames());
+        assertEquals("ruthba01", bb.getPlayerID());
+        assertEquals(1927, bb.getYear());
+    }
+
+    @Test public void keepsNonAsciiBytesAtTheEdgesOfAField() {
+        BatterCsvParser parser = new BatterCsvParser(BatterCsvParser.parseHeader("playerID,teamID,G,yearID"));
+        byte[] line = "ren\u00e9,\u00e9t\u00e9 ,12,1927".getBytes(StandardCharsets.UTF_8);
+        BaseballBatter bb = new BaseballBatter();
+        assertTrue(parser.parse(ByteBuffer.wrap(line), 0, line.length, bb));
+        assertEquals("ren\u00e9", bb.getPlayerID());
+        assertEquals("\u00e9t\u00e9", bb.getTeamID());
+        assertEquals(12, bb.getGames());
+    }
+
+    @Test public void readerParsesAFile() throws Exception {
+        File f = File.createTempFile("batting", ".csv");
+        f.deleteOnExit();
+        try (FileWriter fw = new FileWriter(f)) {
+            fw.write(BATTING_HEADER + "\r\n");
+            fw.write("jeterde01,2000,1,NYA,AL,148,593,119,201,31,4,15,73,22,4,68,99,4,12,3,3,14\r\n");
+            fw.write("short,row\n");
+            fw.write("abercda01,1871,1,TRO,NA,1,4,0,0,0,0,0,0,0,0,0,,,,,,");
+        }
+        List<BaseballBatter> batters = new ArrayList<>();
+        BatterCsvReader reader = new BatterCsvReader();
+        assertEquals(2, reader.read(f.getPath(), batters::add));
+        assertEquals(3, reader.getLineCount() - 1);
+        assertEquals(1, reader.getRejectedCount());
+        assertEquals("abercda01", batters.get(1).getPlayerID());
+        assertEquals("GIDP", reader.getHeaderFields()[21]);
+    }
+
+    @Test public void parallelReaderSplitsChunksOnLineBoundaries() throws Exception {
+        File f = File.createTempFile("batting", ".csv");
+        f.deleteOnExit();
+        try (FileWriter fw = new FileWriter(f)) {
+            fw.write(BATTING_HEADER + "\n");
+            for (int i = 0; i < 500; i++) {
+                fw.write("player" + i + ",2000,1,NYA,AL," + (i + 1) + ",593,119,201,31,4,15,73,22,4,68,99,4,12,3,3,14\n");
+            }
+        }
+        BatterCsvReader reader = new BatterCsvReader();
+        List<BaseballBatter> batters = reader.readParallel(f.getPath(), 1000, 4);
+        assertEquals(500, batters.size());
+        assertEquals(0, reader.getRejectedCount());
+        Set<Integer> games = new TreeSet<>();
+        for (BaseballBatter bb : batters) {
+            games.add(bb.getGames());
+            assertEquals("player" + (bb.getGames() - 1), bb.getPlayerID());
+        }
+        assertEquals(500, games.size());
+    }
+
+    @Test public void parallelAndSequentialReadsGiveTheSameIdSequence() throws Exception {
+        File f = File.createTempFile("batting", ".csv");
+        f.deleteOnExit();
+        try (FileWriter fw = new FileWriter(f)) {
+            fw.write(BATTING_HEADER + "\n");
+            for (int i = 0; i < 2000; i++) {
+                fw.write("player" + (i % 97) + "," + (1950 + i / 97) + ",1,NYA,AL," + (i + 1) + ",593,119,201,31,4,15,73,22,4,68,99,4,12,3,3,14\n");
+            }
+        }
+        List<String> sequential = new ArrayList<>();
+        new BatterCsvReader().read(f.getPath(), bb -> sequential.add(bb.getId()));
+        for (int run = 0; run < 3; run++) {
+            List<String> parallel = new ArrayList<>();
+            for (BaseballBatter bb : new BatterCsvReader().readParallel(f.getPath(), 1000, 8)) {
+                parallel.add(bb.getId());
+            }
+            assertEquals(sequential, parallel);
+        }
+    }
+}
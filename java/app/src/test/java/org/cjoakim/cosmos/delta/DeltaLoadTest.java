@@ -0,0 +1,158 @@
+package org.cjoakim.cosmos.delta;
+
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.CosmosItemOperationType;
+import com.azure.cosmos.models.PartitionKey;
+import org.cjoakim.cosmos.metrics.OperationResult;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.shape.DocumentShape;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DeltaLoadTest {
+
+    private static List<BaseballBatter> batters(int count) {
+        List<BaseballBatter> batters = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BaseballBatter bb = new BaseballBatter();
+            bb.setPlayerID("player" + i);
+            bb.setYear(2000);
+            bb.setStint("1");
+            bb.setGames(100);
+            bb.setHits(i);
+            bb.assignDocumentId();
+            bb.setPk(bb.getPlayerID());
+            batters.add(bb);
+        }
+        return batters;
+    }
+
+    private static String indexFile() throws Exception {
+        File file = File.createTempFile("delta", ".digest");
+        file.delete();
+        file.deleteOnExit();
+        return file.getPath();
+    }
+
+    private static List<BaseballBatter> accepted(DeltaLoad delta, List<BaseballBatter> batters) {
+        List<BaseballBatter> accepted = new ArrayList<>();
+        for (BaseballBatter bb : batters) {
+            if (delta.accept(bb, new PartitionKey(bb.getPk()))) {
+                accepted.add(bb);
+            }
+        }
+        return accepted;
+    }
+
+    private static OperationResult failure(String id, String type, int statusCode) {
+        OperationResult result = new OperationResult();
+        result.setId(id);
+        result.setOperationType(type);
+        result.setStatusCode(statusCode);
+        return result;
+    }
+
+    @Test public void upsertsOnlyNewAndChangedDocuments() throws Exception {
+        String path = indexFile();
+        DeltaLoad first = DeltaLoad.open(path, false);
+        assertEquals(1000, accepted(first, batters(1000)).size());
+        first.commit();
+
+        List<BaseballBatter> batters = batters(1200);
+        batters.get(7).setHits(700);
+        batters.get(9).setPk("moved");
+        DeltaLoad second = DeltaLoad.open(path, false);
+        List<BaseballBatter> accepted = accepted(second, batters);
+
+        assertEquals(202, accepted.size());
+        assertEquals(200 + 1, second.getAdded());  // the new batters, and the one with a new partition key
+        assertEquals(1, second.getChanged());
+        assertEquals(998, second.getUnchanged());
+        assertTrue(accepted.contains(batters.get(7)));
+        assertTrue(second.deleteOperations().isEmpty());
+    }
+
+    @Test public void deletesTheDocumentsNoLongerInTheSource() throws Exception {
+        String path = indexFile();
+        DeltaLoad first = DeltaLoad.open(path, true);
+        accepted(first, batters(100));
+        first.commit();
+
+        List<BaseballBatter> batters = batters(100).subList(0, 90);
+        DeltaLoad second = DeltaLoad.open(path, true);
+        assertTrue(accepted(second, batters).isEmpty());
+        List<CosmosItemOperation> deletes = second.deleteOperations();
+
+        assertEquals(10, deletes.size());
+        for (CosmosItemOperation op : deletes) {
+            assertEquals(CosmosItemOperationType.DELETE, op.getOperationType());
+            String playerID = op.getId().substring(0, op.getId().indexOf('-'));
+            assertEquals(new PartitionKey(playerID), op.getPartitionKeyValue());
+            assertTrue(Integer.parseInt(playerID.substring(6)) >= 90);
+        }
+        second.recordResult(failure(deletes.get(0).getId(), "DELETE", 404));  // already gone
+        second.commit();
+        assertEquals(90, DigestIndex.map(new File(path).toPath()).size());
+    }
+
+    @Test public void failedOperationsAreSentAgainNextTime() throws Exception {
+        String path = indexFile();
+        DeltaLoad first = DeltaLoad.open(path, true);
+        accepted(first, batters(10));
+        first.recordResult(failure("player3-2000-1", "UPSERT", 429));
+        first.commit();
+
+        List<BaseballBatter> batters = batters(10).subList(0, 8);
+        batters.get(5).setHits(500);
+        DeltaLoad second = DeltaLoad.open(path, true);
+        List<BaseballBatter> accepted = accepted(second, batters);
+        assertEquals(2, accepted.size());  // player3, never written, and the changed player5
+        assertEquals(2, second.deleteOperations().size());
+        second.recordResult(failure("player5-2000-1", "UPSERT", 503));
+        second.recordResult(failure("player9-2000-1", "DELETE", 503));
+        second.commit();
+
+        DeltaLoad third = DeltaLoad.open(path, true);
+        accepted = accepted(third, batters);
+        assertEquals(1, accepted.size());
+        assertEquals("player5-2000-1", accepted.get(0).getId());
+        List<CosmosItemOperation> deletes = third.deleteOperations();
+        assertEquals(1, deletes.size());
+        assertEquals("player9-2000-1", deletes.get(0).getId());
+    }
+
+    @Test public void anUnreadableIndexMeansAFullLoad() throws Exception {
+        File file = File.createTempFile("delta", ".digest");
+        file.deleteOnExit();
+        Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+        DeltaLoad delta = DeltaLoad.open(file.getPath(), true);
+
+        assertEquals(5, accepted(delta, batters(5)).size());
+        assertTrue(delta.deleteOperations().isEmpty());
+    }
+
+    @Test public void aShapeChangeRewritesEveryDocument() throws Exception {
+        String path = indexFile();
+        DocumentShape compact = DocumentShape.parse("compact", DocumentShape.DEFAULT_QUERIES, Collections.singletonList("/pk"));
+        DeltaLoad first = DeltaLoad.open(path, true);
+        accepted(first, batters(20));
+        first.commit();
+        assertEquals("full", DigestIndex.map(new File(path).toPath()).getProfile());
+
+        DeltaLoad second = DeltaLoad.open(path, true, compact);
+        assertEquals(20, accepted(second, batters(20)).size());
+        assertEquals(20, second.getChanged());
+        second.commit();
+        assertEquals("compact", DigestIndex.map(new File(path).toPath()).getProfile());
+
+        assertTrue(accepted(DeltaLoad.open(path, true, compact), batters(20)).isEmpty());
+        assertEquals(20, accepted(DeltaLoad.open(path, true), batters(20)).size());
+    }
+}
@@ -0,0 +1,97 @@
+package org.cjoakim.cosmos.json;
+
+import com.azure.cosmos.models.CosmosBulkOperations;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.PartitionKey;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.model.Player;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.cjoakim.cosmos.TestFixtures.sampleBatter;
+import static org.junit.Assert.*;
+
+public class BatterJsonWriterTest {
+
+    private ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Return the document as Jackson serializes the POJO, without the 'exception' and 'valid' properties.
+     */
+    private JsonNode jacksonDocument(BaseballBatter bb) {
+        ObjectNode node = mapper.valueToTree(bb);
+        node.remove("exception");
+        node.remove("valid");
+        return node;
+    }
+
+    @Test public void writesTheSameDocumentAsJackson() throws Exception {
+        BaseballBatter bb = sampleBatter();
+        JsonPayload payload = new BatterJsonWriter().write(bb);
+
+        assertEquals(jacksonDocument(bb), mapper.readTree(payload.toByteArray()));
+        assertEquals(bb.getId(), payload.getId());
+        assertEquals(payload.getValue().getBytes(StandardCharsets.UTF_8).length, payload.size());
+        assertFalse(payload.getValue().contains("exception"));
+    }
+
+    @Test public void escapesStrings() throws Exception {
+        BaseballBatter bb = sampleBatter();
+        bb.setPlayerID("quote\" back\\slash \t tab \u00e9 \u65e5 \ud83d\ude00");
+        bb.setTeamID(null);
+        bb.setHits(-1);
+        bb.setRuns(Integer.MIN_VALUE);
+        BatterJsonWriter writer = new BatterJsonWriter();
+        JsonPayload payload = writer.write(bb);
+        assertEquals(jacksonDocument(bb), mapper.readTree(payload.toByteArray()));
+    }
+
+    @Test public void writesTheEmbeddedPlayerAsJackson() throws Exception {
+        BaseballBatter bb = sampleBatter();
+        Player player = new Player();
+        player.setBirthYear(1974);
+        player.setThrowsHand("R");
+        player.setNameLast("Jeter");
+        bb.setPlayer(player);
+        JsonPayload payload = new BatterJsonWriter().write(bb);
+
+        JsonNode document = mapper.readTree(payload.toByteArray());
+        assertEquals(jacksonDocument(bb), document);
+        assertEquals(3, document.get("player").size());
+        assertEquals("R", document.get("player").get("throws").asText());
+        assertFalse(new BatterJsonWriter().write(sampleBatter()).getValue().contains("\"player\":"));
+    }
+
+    @Test public void payloadsShareChunksAndStayIntact() throws Exception {
+        BatterJsonWriter writer = new BatterJsonWriter();
+        JsonPayload[] payloads = new JsonPayload[10000];
+        for (int i = 0; i < payloads.length; i++) {
+            BaseballBatter bb = sampleBatter();
+            bb.setYear(i);
+            payloads[i] = writer.write(bb);
+        }
+        for (int i = 0; i < payloads.length; i++) {
+            assertEquals(i, mapper.readTree(payloads[i].getValue()).get("year").asInt());
+        }
+        assertEquals(10000, writer.getDocuments());
+        assertTrue(writer.getBytes() > 10000 * 300);
+    }
+
+    @Test public void isEmbeddedVerbatimInTheBulkRequest() throws Exception {
+        BaseballBatter bb = sampleBatter();
+        JsonPayload payload = new BatterJsonWriter().write(bb);
+        CosmosItemOperation op = CosmosBulkOperations.getUpsertItemOperation(payload.asItem(), new PartitionKey(bb.getPk()));
+
+        assertSame(payload, JsonPayload.of(op.getItem()));
+        assertNull(JsonPayload.of(bb));
+        ObjectNode body = mapper.createObjectNode();
+        body.putPOJO("resourceBody", op.getItem());
+        String serialized = mapper.writeValueAsString(body);
+        assertTrue(serialized.contains(payload.getValue()));
+        assertEquals(jacksonDocument(bb), mapper.readTree(serialized).get("resourceBody"));
+    }
+}
@@ -0,0 +1,42 @@
+package org.cjoakim.cosmos.metrics;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class GroupMetricsTest {
+
+    private static OperationResult result(int statusCode, double ru, long retryAfterMs, long latencyMicros) {
+        OperationResult r = new OperationResult();
+        r.setStatusCode(statusCode);
+        r.setRequestCharge(ru);
+        r.setRetryAfterMs(retryAfterMs);
+        r.setLatencyMicros(latencyMicros);
+        return r;
+    }
+
+    @Test public void aggregatesChargeStatusAndThrottles() {
+        GroupMetrics gm = new GroupMetrics("rus");
+        gm.recordOperation(result(200, 10.5, 0, 2000));
+        gm.recordOperation(result(201, 9.5, 0, 4000));
+        gm.recordOperation(result(429, 0.0, 250, 1000));
+        gm.recordBatch(12000);
+
+        assertEquals(3, gm.getOperations());
+        assertEquals(2, gm.getSuccesses());
+        assertEquals(1, gm.getFailures());
+        assertEquals(1, gm.getThrottles());
+        assertEquals(250, gm.getRetryAfterMs());
+        assertEquals(20.0, gm.getRequestCharge(), 0.0001);
+        assertEquals(Long.valueOf(1), gm.getStatusCounts().get("429/0"));
+        assertEquals(1, gm.getBatches());
+        assertEquals(3, gm.getOperationLatency().getTotalCount());
+        assertTrue(gm.summary(1000).contains("429s: 1"));
+    }
+
+    @Test public void registryReturnsOneInstancePerGroup() {
+        MetricsRegistry registry = new MetricsRegistry();
+        assertSame(registry.getGroup("low"), registry.getGroup("low"));
+        assertNotSame(registry.getGroup("low"), registry.getGroup("high"));
+        assertEquals(2, registry.getGroups().size());
+    }
+}
@@ -0,0 +1,73 @@
+package org.cjoakim.cosmos.metrics;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class LiveMetricsTest {
+
+    private static MetricsRegistry registry() {
+        MetricsRegistry registry = new MetricsRegistry();
+        GroupMetrics gm = registry.getGroup("low");
+        OperationResult ok = new OperationResult();
+        ok.setStatusCode(201);
+        ok.setRequestCharge(10.0);
+        ok.setLatencyMicros(2000);
+        OperationResult throttled = new OperationResult();
+        throttled.setStatusCode(429);
+        throttled.setLatencyMicros(1000);
+        gm.recordOperation(ok);
+        gm.recordOperation(ok);
+        gm.recordOperation(throttled);
+        gm.batchQueued();
+        gm.batchQueued();
+        gm.batchStarted();
+        return registry;
+    }
+
+    @Test public void tracksBatchesQueuedAndInFlight() {
+        GroupMetrics gm = registry().getGroup("low");
+        assertEquals(1, gm.getQueuedBatches());
+        assertEquals(1, gm.getInFlightBatches());
+        gm.batchFinished();
+        assertEquals(0, gm.getInFlightBatches());
+    }
+
+    @Test public void reportsRatesPerGroup() {
+        LiveMetricsReporter reporter = new LiveMetricsReporter(registry(), 1000);
+        String line = reporter.line();
+        assertTrue(line, line.contains("| low ops/s: "));
+        assertTrue(line, line.contains("in flight: 1, queued: 1"));
+        assertTrue(line, line.contains("heap MB: "));
+    }
+
+    @Test public void servesPrometheusText() throws Exception {
+        PrometheusEndpoint endpoint = new PrometheusEndpoint(registry());
+        String text = endpoint.scrape();
+        assertTrue(text, text.contains("# TYPE cosmos_operations_total counter\ncosmos_operations_total{group=\"low\"} 3\n"));
+        assertTrue(text, text.contains("cosmos_throttles_total{group=\"low\"} 1\n"));
+        assertTrue(text, text.contains("cosmos_request_units_total{group=\"low\"} 20\n"));
+        assertTrue(text, text.contains("cosmos_batches_in_flight{group=\"low\"} 1\n"));
+        assertTrue(text, text.contains("cosmos_operation_latency_seconds_sum{group=\"low\"} 0.005\n"));
+        assertTrue(text, text.contains("cosmos_operation_latency_seconds_count{group=\"low\"} 3\n"));
+
+        endpoint.start(0);
+        try {
+            URL url = new URL("http://localhost:" + endpoint.getPort() + "/metrics");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            assertEquals(200, connection.getResponseCode());
+            try (InputStream in = connection.getInputStream()) {
+                String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                assertTrue(body, body.contains("cosmos_batches_queued{group=\"low\"} 1\n"));
+            }
+        } finally {
+            endpoint.stop();
+        }
+        assertEquals(-1, endpoint.getPort());
+    }
+}
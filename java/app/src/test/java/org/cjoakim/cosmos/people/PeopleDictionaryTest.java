@@ -0,0 +1,108 @@
+package org.cjoakim.cosmos.people;
+
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.model.Player;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PeopleDictionaryTest {
+
+    private static final String PEOPLE_CSV = String.join("\n",
+            "playerID,birthYear,birthMonth,birthDay,birthCountry,nameFirst,nameLast,bats,throws,debut",
+            "aaronha01,1934,2,5,USA,Hank,Aaron,R,R,1954-04-13",
+            "jeterde01,1974,6,26,USA,Derek,Jeter,R,R,1995-05-29",
+            "ohtansh01,1994,7,5,Japan,Shohei,Ohtani,L,R,2018-03-29",
+            "smithoz01,1954,12,26,USA,\"Osborne Earl, \"\"Ozzie\"\"\",Smith,B,R,1978-04-07",
+            "unquote01,1900,1,1,USA,\"Open,Quote,R,R,",
+            "nobirth01,,,,,Unknown,Player,,,",
+            "Bad-Id,1900,1,1,USA,Not,Keyed,R,R,");
+
+    private static String peopleFile() throws Exception {
+        File file = File.createTempFile("people", ".csv");
+        file.deleteOnExit();
+        Files.write(file.toPath(), PEOPLE_CSV.getBytes(StandardCharsets.UTF_8));
+        return file.getPath();
+    }
+
+    @Test public void playerKeysAreDistinctAndDecode() {
+        Set<Long> keys = new HashSet<>();
+        for (String playerID : Arrays.asList("a", "aa", "a0", "aaronha01", "aaronha02", "zzzzzzzz9999", "9")) {
+            long key = PlayerKey.encode(playerID);
+            assertTrue(key > 0);
+            assertEquals(playerID, PlayerKey.decode(key));
+            keys.add(key);
+        }
+        assertEquals(7, keys.size());
+        assertEquals(PlayerKey.NONE, PlayerKey.encode("abcdefghijklm"));
+        assertEquals(PlayerKey.NONE, PlayerKey.encode("Aaronha01"));
+        assertEquals(PlayerKey.NONE, PlayerKey.encode(""));
+        assertEquals(PlayerKey.NONE, PlayerKey.encode(null));
+    }
+
+    @Test public void keepsTheSelectedFieldsOfEachPlayer() throws Exception {
+        PeopleDictionary people = PeopleDictionary.read(peopleFile(), "nameLast,throws,birthYear");
+        assertEquals(5, people.size());  // Bad-Id is not a player key, and unquote01 doesn't parse
+
+        Player aaron = people.get("aaronha01");
+        assertEquals("Aaron", aaron.getNameLast());
+        assertEquals("R", aaron.getThrowsHand());
+        assertEquals(Integer.valueOf(1934), aaron.getBirthYear());
+        assertNull(aaron.getNameFirst());
+        assertNull(aaron.getDebut());
+        assertSame(aaron.getThrowsHand(), people.get("ohtansh01").getThrowsHand());  // interned
+        assertNull(people.get("nobirth01").getBirthYear());
+        assertNull(people.get("ruthba01"));
+    }
+
+    @Test public void keepsAQuotedFieldWithACommaWhole() throws Exception {
+        PeopleDictionary people = PeopleDictionary.read(peopleFile(), "nameFirst,nameLast,bats,birthYear");
+        Player smith = people.get("smithoz01");
+        assertEquals("Osborne Earl, \"Ozzie\"", smith.getNameFirst());
+        assertEquals("Smith", smith.getNameLast());
+        assertEquals("B", smith.getBats());
+        assertEquals(Integer.valueOf(1954), smith.getBirthYear());
+        assertNull(people.get("unquote01"));
+    }
+
+    @Test public void growsPastTheSizeEstimatedFromTheFile() throws Exception {
+        File file = File.createTempFile("people", ".csv");
+        file.deleteOnExit();
+        StringBuilder sb = new StringBuilder("playerID,nameLast");
+        for (int i = 0; i < 1000; i++) {
+            sb.append("\np").append(i).append(",L").append(i);
+        }
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        PeopleDictionary people = PeopleDictionary.read(file.getPath(), "nameLast");
+        assertEquals(1000, people.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("L" + i, people.get("p" + i).getNameLast());
+        }
+    }
+
+    @Test public void enrichesTheBattersOfKnownPlayers() throws Exception {
+        PeopleDictionary people = PeopleDictionary.read(peopleFile(), PeopleDictionary.DEFAULT_FIELDS);
+        BaseballBatter jeter = new BaseballBatter();
+        jeter.setPlayerID("jeterde01");
+        BaseballBatter synthetic = new BaseballBatter();
+        synthetic.setPlayerID("smithj123456");
+
+        assertEquals("Derek", people.enrich(jeter).getPlayer().getNameFirst());
+        assertNull(people.enrich(synthetic).getPlayer());
+        assertEquals(1, people.getEnriched());
+        assertEquals(1, people.getMissing());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnUnknownField() throws Exception {
+        PeopleDictionary.read(peopleFile(), "nameLast,weight");
+    }
+}
@@ -0,0 +1,131 @@
+package org.cjoakim.cosmos.pk;
+
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.PartitionKeyBuilder;
+import com.azure.cosmos.models.PartitionKind;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.sim.SimulatorConfig;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PartitionKeyStrategyTest {
+
+    private static BaseballBatter batter(String playerID, String teamID, int year) {
+        BaseballBatter bb = new BaseballBatter();
+        bb.setId(playerID + "-" + year);
+        bb.setPlayerID(playerID);
+        bb.setTeamID(teamID);
+        bb.setLeagueID(teamID.startsWith("A") ? "AL" : "NL");
+        bb.setYear(year);
+        bb.setStint("1");
+        return bb;
+    }
+
+    private static List<BaseballBatter> batters(int count) {
+        List<BaseballBatter> batters = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            batters.add(batter("player" + i, "T" + (i % 30), 1950 + (i % 70)));
+        }
+        return batters;
+    }
+
+    @Test public void parsesEachStrategy() {
+        BaseballBatter bb = batter("aaronha01", "ML1", 1957);
+
+        assertEquals("mlb", PartitionKeyStrategy.parse("hot").keyOf(bb));
+        assertEquals("x", PartitionKeyStrategy.parse("hot:x").keyOf(bb));
+        assertEquals("aaronha01", PartitionKeyStrategy.parse("player").keyOf(bb));
+        assertEquals("ML1-1957", PartitionKeyStrategy.parse("team-year").keyOf(bb));
+        assertTrue(PartitionKeyStrategy.parse("hash:16").keyOf(bb).matches("b[0-9]{2}"));
+        assertEquals("NL/ML1/aaronha01", PartitionKeyStrategy.parse("hierarchical").keyOf(bb));
+        assertEquals("ML1/aaronha01", PartitionKeyStrategy.parse("hierarchical:teamID/playerID").keyOf(bb));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnUnknownStrategy() {
+        PartitionKeyStrategy.parse("random");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMoreThanThreeLevels() {
+        PartitionKeyStrategy.parse("hierarchical:leagueID/teamID/playerID/stint");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsANumericLevel() {
+        PartitionKeyStrategy.parse("hierarchical:teamID/year");
+    }
+
+    @Test public void hashBucketsAreStableAndBounded() {
+        PartitionKeyStrategy strategy = PartitionKeyStrategy.parse("hash:8");
+        Set<String> keys = new HashSet<>();
+        for (BaseballBatter bb : batters(1000)) {
+            String key = strategy.keyOf(bb);
+            assertEquals(key, strategy.keyOf(bb));
+            keys.add(key);
+        }
+        assertEquals(8, keys.size());
+    }
+
+    @Test public void hierarchicalKeysUseMultiHash() {
+        PartitionKeyStrategy strategy = PartitionKeyStrategy.parse("hierarchical:teamID/playerID");
+        BaseballBatter bb = batter("aaronha01", "ML1", 1957);
+        strategy.assign(bb);
+
+        assertEquals(Arrays.asList("/teamID", "/playerID"), strategy.getPaths());
+        assertEquals(PartitionKind.MULTI_HASH, strategy.buildPartitionKeyDefinition().getKind());
+        assertEquals(new PartitionKeyBuilder().add("ML1").add("aaronha01").build(), strategy.partitionKey(bb));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAMissingHierarchicalLevel() {
+        BaseballBatter bb = batter("aaronha01", "ML1", 1957);
+        bb.setTeamID(null);
+        PartitionKeyStrategy.parse("hierarchical:teamID/playerID").partitionKey(bb);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void partitionKeyJsonRejectsANullLevel() {
+        PartitionKeyJson.parse("[\"NYA\",null]");
+    }
+
+    @Test public void partitionKeyJsonRoundTrips() {
+        PartitionKey single = new PartitionKey("aaronha01");
+        PartitionKey hierarchical = new PartitionKeyBuilder().add("AL").add("NYA").add("jeterde01").build();
+
+        assertEquals(single, PartitionKeyJson.parse(single.toString()));
+        assertEquals(hierarchical, PartitionKeyJson.parse(hierarchical.toString()));
+        assertEquals(3, PartitionKeyJson.values(hierarchical.toString()).size());
+    }
+
+    @Test public void reportShowsTheHotPartition() {
+        List<BaseballBatter> batters = batters(1000);
+        PartitionKeyReport hot = report(PartitionKeyStrategy.parse("hot"), batters);
+        assertEquals(1, hot.getKeyCount());
+        assertEquals(1.0, hot.getMaxKeyShare(), 0.0001);
+        assertEquals(1.0, hot.getMaxRangeShare(), 0.0001);
+
+        PartitionKeyReport player = report(PartitionKeyStrategy.parse("player"), batters);
+        assertEquals(1000, player.getKeyCount());
+        assertEquals(0.001, player.getMaxKeyShare(), 0.0002);
+        assertTrue(player.getMaxRangeShare() < 0.3);
+        assertEquals(hot.getRequestCharge(), player.getRequestCharge(), 50.0);
+    }
+
+    private static PartitionKeyReport report(PartitionKeyStrategy strategy, List<BaseballBatter> batters) {
+        PartitionKeyReport report = new PartitionKeyReport(strategy, new SimulatorConfig(), 4);
+        for (BaseballBatter bb : batters) {
+            strategy.assign(bb);
+            report.add(bb);
+        }
+        report.logReport();
+        return report;
+    }
+}
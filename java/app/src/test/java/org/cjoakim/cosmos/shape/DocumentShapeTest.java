@@ -0,0 +1,132 @@
+package org.cjoakim.cosmos.shape;
+
+import com.azure.cosmos.models.CosmosBulkOperations;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.PartitionKey;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cjoakim.cosmos.json.BatterJsonWriter;
+import org.cjoakim.cosmos.metrics.GroupMetrics;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.sim.SimulatedLoadTarget;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.cjoakim.cosmos.TestFixtures.fastConfig;
+import static org.cjoakim.cosmos.TestFixtures.sampleBatter;
+import static org.junit.Assert.*;
+
+public class DocumentShapeTest {
+
+    private static final List<String> PK = Collections.singletonList("/pk");
+
+    private ObjectMapper mapper = new ObjectMapper();
+
+    private static BaseballBatter batter() {
+        BaseballBatter bb = sampleBatter();
+        bb.setIntentionalBB(-1);  // missing, as in the early seasons
+        return bb;
+    }
+
+    private JsonNode document(DocumentShape shape, BaseballBatter bb) throws Exception {
+        return mapper.readTree(new BatterJsonWriter(shape).write(bb).toByteArray());
+    }
+
+    private static DocumentShape shape(String profile) {
+        return DocumentShape.parse(profile, DocumentShape.DEFAULT_QUERIES, PK);
+    }
+
+    @Test public void eachProfileWritesFewerBytes() {
+        BaseballBatter bb = batter();
+        int previous = Integer.MAX_VALUE;
+        for (String profile : DocumentShape.PROFILES) {
+            int size = new BatterJsonWriter(shape(profile)).write(bb).size();
+            assertTrue(profile + ": " + size, size < previous);
+            previous = size;
+        }
+    }
+
+    @Test public void shortAndPackedDocumentsUseTheAliases() throws Exception {
+        BaseballBatter bb = batter();
+        JsonNode compact = document(shape("compact"), bb);
+        assertFalse(compact.has("playerID"));  // the pk stands for it
+        assertFalse(compact.has("intentionalBB"));  // missing
+        assertEquals("jeterde01", compact.get("pk").asText());
+
+        JsonNode shortDocument = document(shape("short"), bb);
+        assertEquals("NYA", shortDocument.get("t").asText());
+        assertEquals(201, shortDocument.get("h").asInt());
+        assertEquals(bb.getId(), shortDocument.get("id").asText());
+
+        JsonNode packed = document(shape("packed"), bb);
+        assertEquals(2000, packed.get("y").asInt());
+        assertFalse(packed.has("h"));
+        JsonNode stats = packed.get(DocumentShape.PACKED_STATS);
+        assertEquals(DocumentShape.STATS.size(), stats.size());
+        assertEquals(201, stats.get(DocumentShape.STATS.indexOf("hits")).asInt());
+        assertEquals(-1, stats.get(DocumentShape.STATS.indexOf("intentionalBB")).asInt());
+    }
+
+    @Test public void keepsThePartitionKeyPaths() throws Exception {
+        DocumentShape shape = DocumentShape.parse("packed", "year", Arrays.asList("/teamID", "/playerID"));
+        JsonNode document = document(shape, batter());
+
+        assertEquals("NYA", document.get("teamID").asText());
+        assertEquals("jeterde01", document.get("playerID").asText());
+        assertFalse(document.has("pk"));
+        assertEquals(2000, document.get("y").asInt());
+        assertEquals(Collections.singletonList("/y/?"), shape.queriedIndexingPolicy().getIncludedPaths());
+    }
+
+    @Test public void indexesOnlyTheQueriedPaths() throws Exception {
+        DocumentShape shape = shape("short");
+        PathIndexingPolicy policy = shape.queriedIndexingPolicy();
+        assertEquals(Arrays.asList("/p/?", "/pk/?", "/y/?", "/t/?"), policy.getIncludedPaths());
+        assertEquals(Collections.singletonList("/*"), policy.getExcludedPaths());
+
+        JsonNode document = document(shape, batter());
+        int[] terms = policy.countTerms(document);
+        assertEquals(document.size() - 1, terms[0]);  // every property but the id
+        assertEquals(3, terms[1]);  // pk, y and t
+        int[] all = PathIndexingPolicy.indexAll().countTerms(document);
+        assertEquals(terms[0], all[1]);
+
+        assertTrue(new PathIndexingPolicy(Arrays.asList("/*", "/s/?"), Arrays.asList("/s/*")).isIndexed("/s"));
+        assertFalse(new PathIndexingPolicy(Arrays.asList("/*", "/s/?"), Arrays.asList("/s/*")).isIndexed("/s/[]"));
+    }
+
+    @Test public void theSimulatorChargesLessForFewerIndexedTerms() {
+        DocumentShape shape = shape("short");
+        BatterJsonWriter writer = new BatterJsonWriter(shape);
+        List<CosmosItemOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            BaseballBatter bb = batter();
+            bb.setId("id" + i);
+            operations.add(CosmosBulkOperations.getUpsertItemOperation(writer.write(bb).asItem(), new PartitionKey(bb.getPk())));
+        }
+        double indexAll = requestCharge(PathIndexingPolicy.indexAll(), operations);
+        double queried = requestCharge(shape.queriedIndexingPolicy(), operations);
+        assertTrue(queried + " < " + indexAll, queried < indexAll);
+    }
+
+    private static double requestCharge(PathIndexingPolicy policy, List<CosmosItemOperation> operations) {
+        SimulatedLoadTarget target = new SimulatedLoadTarget("test", fastConfig());
+        target.setIndexingPolicy(policy);
+        GroupMetrics metrics = new GroupMetrics("default");
+        target.executeBulkOperations(Flux.fromIterable(operations), "default")
+                .doOnNext(metrics::recordOperation)
+                .blockLast();
+        assertEquals(operations.size(), metrics.getSuccesses());
+        return metrics.getRequestCharge();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnUnknownProfile() {
+        shape("tiny");
+    }
+}
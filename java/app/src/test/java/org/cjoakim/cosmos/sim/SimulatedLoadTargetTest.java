@@ -0,0 +1,108 @@
+package org.cjoakim.cosmos.sim;
+
+import com.azure.cosmos.ThroughputControlGroupConfig;
+import com.azure.cosmos.ThroughputControlGroupConfigBuilder;
+import com.azure.cosmos.models.CosmosItemOperation;
+import org.cjoakim.cosmos.metrics.GroupMetrics;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.cjoakim.cosmos.TestFixtures.fastConfig;
+import static org.cjoakim.cosmos.TestFixtures.upserts;
+import static org.cjoakim.cosmos.TestFixtures.HOT_PARTITION;
+import static org.junit.Assert.*;
+
+public class SimulatedLoadTargetTest {
+
+    private static GroupMetrics execute(SimulatedLoadTarget target, List<CosmosItemOperation> operations, String groupName) {
+        GroupMetrics metrics = new GroupMetrics(groupName);
+        target.executeBulkOperations(Flux.fromIterable(operations), groupName)
+                .doOnNext(metrics::recordOperation)
+                .blockLast();
+        return metrics;
+    }
+
+    @Test public void retriesThrottledRequestsUntilTheyFit() {
+        SimulatedLoadTarget target = new SimulatedLoadTarget("test", fastConfig(1000, 1));
+        GroupMetrics metrics = execute(target, upserts(300, HOT_PARTITION), "default");
+
+        assertEquals(300, metrics.getOperations());
+        assertEquals(300, metrics.getSuccesses());
+        assertTrue(metrics.getRetries() > 0);
+        assertEquals(300, target.getDocumentCount());
+        assertEquals(Long.valueOf(300), metrics.getStatusCounts().get("201/0"));
+        assertTrue(metrics.getRequestCharge() / 300 > 5.5);
+    }
+
+    @Test public void upsertsOfExistingDocumentsReturn200() {
+        SimulatedLoadTarget target = new SimulatedLoadTarget("test", fastConfig(100000, 1));
+        execute(target, upserts(10), "default");
+        GroupMetrics metrics = execute(target, upserts(10), "default");
+        assertEquals(Long.valueOf(10), metrics.getStatusCounts().get("200/0"));
+        assertEquals(10, target.getDocumentCount());
+    }
+
+    @Test public void throughputControlGroupShapesTheRate() {
+        SimulatedLoadTarget target = new SimulatedLoadTarget("test", fastConfig(100000, 1));
+        target.enableLocalThroughputControlGroup(new ThroughputControlGroupConfigBuilder()
+                .groupName("rus")
+                .targetThroughput(500)
+                .build());
+        long start = System.currentTimeMillis();
+        GroupMetrics metrics = execute(target, upserts(200), "rus");
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(200, metrics.getSuccesses());
+        assertEquals(0, metrics.getRetries());
+        // about 1200 RU at 500 RU/s, less the initial 500 RU burst
+        assertTrue("elapsed " + elapsed, elapsed > 1000);
+    }
+
+    @Test public void hotPartitionKeyUsesASingleRange() {
+        SimulatedLoadTarget target = new SimulatedLoadTarget("test", fastConfig(4000, 4));
+        int range = target.rangeFor("mlb");
+        for (int i = 0; i < 10; i++) {
+            assertEquals(range, target.rangeFor("mlb"));
+        }
+        int[] counts = new int[4];
+        for (int i = 0; i < 4000; i++) {
+            counts[target.rangeFor("player" + i)]++;
+        }
+        for (int i = 0; i < 4; i++) {
+            assertTrue(counts[i] > 800);
+        }
+    }
+
+    @Test public void globalGroupIsSplitAmongTheClientsOfTheContainer() {
+        SimulatedLoadTarget container = new SimulatedLoadTarget("test", fastConfig(100000, 1));
+        SimulatedLoadTarget first = container.newClient("first");
+        SimulatedLoadTarget second = container.newClient("second");
+        ThroughputControlGroupConfig groupConfig = new ThroughputControlGroupConfigBuilder()
+                .groupName("shared")
+                .targetThroughput(900)
+                .build();
+        first.enableGlobalThroughputControlGroup(groupConfig, "control", Duration.ofSeconds(60), Duration.ofSeconds(120));
+        second.enableGlobalThroughputControlGroup(groupConfig, "control", Duration.ofSeconds(60), Duration.ofSeconds(120));
+
+        // the first client keeps the whole group until it renews, so the allocations overshoot
+        assertEquals(900, first.getAllocatedThroughput("shared"), 0.001);
+        assertEquals(450, second.getAllocatedThroughput("shared"), 0.001);
+        assertEquals(900, second.getTargetThroughput("shared"), 0.001);
+        execute(first, upserts(10), "shared");
+        assertEquals(10, second.getDocumentCount());
+        first.close();
+        second.close();
+    }
+
+    @Test public void globalLeasesExpireUnlessRenewed() {
+        SimulatedGlobalController controller = new SimulatedGlobalController();
+        assertEquals(1000, controller.renew("g", "a", 1000, 1.0, 100, 0), 0.001);
+        assertEquals(500, controller.renew("g", "b", 1000, 1.0, 100, 50), 0.001);
+        // a renews with a load factor of a half, so gets a third; by its next renewal b's lease has expired
+        assertEquals(1000.0 / 3, controller.renew("g", "a", 1000, 0.5, 100, 90), 0.001);
+        assertEquals(1000, controller.renew("g", "a", 1000, 0.5, 100, 160), 0.001);
+    }
+}
@@ -0,0 +1,121 @@
+package org.cjoakim.cosmos.suite;
+
+import org.cjoakim.cosmos.metrics.MetricsRegistry;
+import org.cjoakim.cosmos.sim.SimulatedLoadTarget;
+import org.cjoakim.cosmos.sim.SimulatorConfig;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import static org.cjoakim.cosmos.TestFixtures.fastConfig;
+import static org.cjoakim.cosmos.TestFixtures.upserts;
+import static org.junit.Assert.*;
+
+public class ContentionExperimentTest {
+
+    private static ScenarioConfig workload(String name, String priority) {
+        ScenarioConfig workload = new ScenarioConfig();
+        workload.setName(name);
+        workload.setPriority(priority);
+        workload.setBatchSize(10);
+        return workload;
+    }
+
+    private static ContentionStep step(int seconds, int load, Map<String, Double> ratios) {
+        ContentionStep step = new ContentionStep();
+        step.setSeconds(seconds);
+        step.setLoad(load);
+        step.setRatios(ratios);
+        return step;
+    }
+
+    private static double throttlePct(ContentionExperiment experiment, int step, String className) {
+        long operations = 0;
+        long throttles = 0;
+        for (ContentionSample sample : experiment.getSamples()) {
+            if (sample.getStep() == step && sample.getClassName().equals(className)) {
+                operations += sample.getOperations() + sample.getRetries();
+                throttles += sample.getThrottles() + sample.getRetries();
+            }
+        }
+        return throttles * 100.0 / Math.max(operations, 1);
+    }
+
+    @Test public void sharesEachStepsLoadPerTheRatios() {
+        ContentionConfig config = new ContentionConfig();
+        config.getClasses().add(workload("high", "high"));
+        config.getClasses().add(workload("low", "low"));
+        config.getRatios().put("low", 3.0);
+        config.getSteps().add(step(10, 8, null));
+        config.getSteps().add(step(10, 2, Map.of("high", 0.0)));
+        config.getSteps().add(step(10, 0, null));
+
+        assertEquals(2, config.concurrencyOf(0, "high"));
+        assertEquals(6, config.concurrencyOf(0, "low"));
+        assertEquals(0, config.concurrencyOf(1, "high"));
+        assertEquals(2, config.concurrencyOf(1, "low"));
+        assertEquals(0, config.concurrencyOf(2, "low"));
+        assertEquals(30, config.getDurationSeconds());
+    }
+
+    @Test public void runsTheClassesConcurrentlyAndWritesATimeSeries() throws Exception {
+        File csv = File.createTempFile("contention", ".csv");
+        csv.deleteOnExit();
+        ContentionConfig config = new ContentionConfig();
+        config.setCsvFile(csv.getPath());
+        config.getClasses().add(workload("high", "high"));
+        config.getClasses().add(workload("low", "low"));
+        config.getSteps().add(step(2, 2, Map.of("high", 0.0)));
+        config.getSteps().add(step(2, 4, null));
+        SimulatorConfig simulatorConfig = fastConfig(2000, 1);
+        simulatorConfig.setLatencyMedianMs(1);
+        MetricsRegistry registry = new MetricsRegistry();
+        ContentionExperiment experiment = new ContentionExperiment(
+                new SimulatedLoadTarget("test", simulatorConfig), config, "control", () -> upserts(50), registry);
+
+        List<ScenarioRun> runs = experiment.run();
+
+        assertEquals(2, runs.size());
+        assertTrue(registry.getGroup("high").getOperations() > 0);
+        // with both classes at the same concurrency, the low priority one is throttled more
+        assertTrue(throttlePct(experiment, 2, "low") > throttlePct(experiment, 2, "high"));
+        assertTrue(runs.get(0).getElapsedMs() >= 3900);
+        List<ContentionSample> samples = experiment.getSamples();
+        assertTrue(samples.size() >= 8);
+        assertEquals(0, samples.get(0).getConcurrency());  // high is idle in the first step
+        assertEquals(0, samples.get(0).getOperations());
+        assertEquals(2, samples.get(samples.size() - 1).getStep());
+
+        List<String> lines = Files.readAllLines(csv.toPath());
+        assertEquals(ContentionSample.CSV_HEADER, lines.get(0));
+        assertEquals(samples.size() + 1, lines.size());
+        assertTrue(lines.get(1), lines.get(1).contains(",1,2,high,high,0,0,"));
+    }
+
+    @Test public void readsAndValidatesTheJsonConfig() throws Exception {
+        File file = File.createTempFile("contention", ".json");
+        file.deleteOnExit();
+        Files.writeString(file.toPath(), "{ \"intervalSeconds\": 5, \"ratios\": { \"high\": 1, \"low\": 3 },"
+                + " \"classes\": [ { \"name\": \"high\", \"priority\": \"high\" }, { \"name\": \"low\", \"priority\": \"low\" } ],"
+                + " \"steps\": [ { \"seconds\": 30, \"load\": 4 }, { \"seconds\": 60, \"load\": 8, \"ratios\": { \"low\": 1 } } ] }");
+
+        ContentionConfig config = ContentionConfig.read(file.getPath());
+        assertEquals(5, config.getIntervalSeconds());
+        assertEquals("tmp/contention.csv", config.getCsvFile());
+        assertEquals(90, config.getDurationSeconds());
+        assertEquals(1, config.concurrencyOf(0, "high"));
+        assertEquals(4, config.concurrencyOf(1, "high"));
+        assertFalse(config.hasGlobalClass());
+
+        config.getSteps().add(step(0, 4, null));
+        try {
+            config.validate();
+            fail("step of 0 seconds");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("0 seconds"));
+        }
+    }
+}
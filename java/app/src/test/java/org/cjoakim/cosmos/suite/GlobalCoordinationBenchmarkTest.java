@@ -0,0 +1,97 @@
+package org.cjoakim.cosmos.suite;
+
+import org.cjoakim.cosmos.metrics.MetricsRegistry;
+import org.cjoakim.cosmos.sim.SimulatedLoadTarget;
+import org.cjoakim.cosmos.sim.SimulatorConfig;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.cjoakim.cosmos.TestFixtures.fastConfig;
+import static org.cjoakim.cosmos.TestFixtures.upserts;
+import static org.junit.Assert.*;
+
+public class GlobalCoordinationBenchmarkTest {
+
+    private static ClientWave wave(String name, int count, int joinSeconds, int leaveSeconds) {
+        ClientWave wave = new ClientWave();
+        wave.setName(name);
+        wave.setCount(count);
+        wave.setJoinSeconds(joinSeconds);
+        wave.setLeaveSeconds(leaveSeconds);
+        return wave;
+    }
+
+    private static GlobalCoordinationConfig config(String csvFile) {
+        ScenarioConfig group = new ScenarioConfig();
+        group.setName("shared");
+        group.setRu(1000);
+        group.setBatchSize(10);
+        group.setConcurrency(2);
+        GlobalCoordinationConfig config = new GlobalCoordinationConfig();
+        config.setGroup(group);
+        config.setRenewSeconds(1);
+        config.setExpireSeconds(2);
+        config.setDurationSeconds(4);
+        config.setCsvFile(csvFile);
+        return config;
+    }
+
+    @Test public void clientsJoiningShareTheGroupsBudget() throws Exception {
+        File csv = File.createTempFile("coordination", ".csv");
+        csv.deleteOnExit();
+        GlobalCoordinationConfig config = config(csv.getPath());
+        config.getWaves().add(wave("base", 1, 0, 0));
+        config.getWaves().add(wave("scaleout", 2, 2, 0));
+        config.validate();
+        SimulatorConfig simulatorConfig = fastConfig(100000, 1);
+        simulatorConfig.setLatencyMedianMs(0.5);
+        SimulatedLoadTarget container = new SimulatedLoadTarget("test", simulatorConfig);
+        MetricsRegistry registry = new MetricsRegistry();
+        GlobalCoordinationBenchmark benchmark = new GlobalCoordinationBenchmark(
+                config, container::newClient, "control", () -> upserts(100), registry);
+
+        List<CoordinationEvent> events = benchmark.run();
+
+        assertEquals(1000, benchmark.getTargetRu(), 0.001);
+        assertEquals(2, events.size());
+        assertEquals("join base (1)", events.get(0).getDescription());
+        assertEquals(1, events.get(0).getActiveClients());
+        assertEquals(3, events.get(1).getActiveClients());
+        // the base client keeps its whole allocation until it renews, so the allocations overshoot
+        assertTrue(events.get(1).getPeakAllocatedRuPerSecond() > 1000);
+        assertTrue(registry.getGroup("base").getOperations() > registry.getGroup("scaleout-1").getOperations());
+        assertTrue(registry.getGroup("scaleout-2").getOperations() > 0);
+
+        List<String> lines = Files.readAllLines(csv.toPath());
+        assertEquals(GlobalCoordinationBenchmark.CSV_HEADER, lines.get(0));
+        assertTrue(lines.get(1), lines.get(1).contains(",base,1,1000.0,"));
+        assertTrue(lines.get(lines.size() - 1), lines.get(lines.size() - 1).contains(",total,0,"));
+    }
+
+    @Test public void validatesTheIntervalsAndWaves() {
+        GlobalCoordinationConfig config = config("tmp/coordination.csv");
+        config.getWaves().add(wave("base", 2, 0, 0));
+        config.validate();
+        assertEquals(2, config.getClientCount());
+        assertEquals("base-2", config.getWaves().get(0).clientName(1));
+
+        config.setExpireSeconds(1);
+        try {
+            config.validate();
+            fail("expire interval not above the renew interval");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("expire interval"));
+        }
+        config.setExpireSeconds(20);
+        config.getWaves().add(wave("late", 1, 3, 2));
+        try {
+            config.validate();
+            fail("leaves before it joins");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("late"));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.cjoakim.cosmos.suite;
+
+import org.cjoakim.cosmos.metrics.MetricsRegistry;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.cjoakim.cosmos.TestFixtures.fastTarget;
+import static org.cjoakim.cosmos.TestFixtures.upserts;
+import static org.junit.Assert.*;
+
+public class SuiteRunnerTest {
+
+    private static ScenarioConfig scenario(String name, int ru, int warmupOperations) {
+        ScenarioConfig scenario = new ScenarioConfig();
+        scenario.setName(name);
+        scenario.setRu(ru);
+        scenario.setBatchSize(20);
+        scenario.setWarmupOperations(warmupOperations);
+        return scenario;
+    }
+
+    @Test public void warmupOperationsAreExcludedFromTheMeasuredMetrics() {
+        SuiteConfig config = new SuiteConfig();
+        config.getScenarios().add(scenario("first", 50000, 30));
+        config.getScenarios().add(scenario("second", 50000, 0));
+        MetricsRegistry registry = new MetricsRegistry();
+        AtomicInteger built = new AtomicInteger();
+        SuiteRunner runner = new SuiteRunner(fastTarget(100000), config, "control", () -> {
+            built.incrementAndGet();
+            return upserts(100);
+        }, registry);
+
+        List<ScenarioRun> runs = runner.run();
+
+        assertEquals(2, runs.size());
+        assertEquals("first", runs.get(0).getName());
+        assertEquals(100, runs.get(0).getOperationCount());
+        assertEquals(100, registry.getGroup("first").getOperations());
+        assertEquals(100, registry.getGroup("second").getOperations());
+        assertEquals(2, registry.getGroups().size());
+        assertEquals(3, built.get());  // the warm-up operations are built separately
+        assertTrue(runs.get(1).getStartDate().getTime() >= runs.get(0).getFinishDate().getTime());
+    }
+
+    @Test public void concurrentScenariosShareTheTargetAndKeepTheirOwnGroups() {
+        SuiteConfig config = new SuiteConfig();
+        config.setConcurrent(true);
+        config.getScenarios().add(scenario("fast", 0, 10));
+        config.getScenarios().add(scenario("slow", 300, 10));
+        MetricsRegistry registry = new MetricsRegistry();
+        SuiteRunner runner = new SuiteRunner(fastTarget(100000), config, "control", () -> upserts(100), registry);
+
+        List<ScenarioRun> runs = runner.run();
+
+        assertEquals("fast", runs.get(0).getName());
+        assertEquals("slow", runs.get(1).getName());
+        assertEquals(100, registry.getGroup("fast").getSuccesses());
+        assertEquals(100, registry.getGroup("slow").getSuccesses());
+        // both measured loads start after both warm-ups, and the 300 RU/s group is the slower
+        assertTrue(runs.get(1).getElapsedMs() > runs.get(0).getElapsedMs());
+        assertTrue(Math.abs(runs.get(1).getStartDate().getTime() - runs.get(0).getStartDate().getTime()) < 1000);
+    }
+
+    @Test public void readsAndValidatesTheJsonConfig() throws Exception {
+        File file = File.createTempFile("suite", ".json");
+        file.deleteOnExit();
+        Files.writeString(file.toPath(), "{ \"team\": \"NYA\", \"pauseSeconds\": 5, \"scenarios\": ["
+                + "{ \"name\": \"low\", \"priority\": \"low\" },"
+                + "{ \"name\": \"rus\", \"control\": \"global\", \"ru\": 400, \"concurrency\": 4, \"warmupOperations\": 100 } ] }");
+
+        SuiteConfig config = SuiteConfig.read(file.getPath());
+        assertEquals("dev", config.getDatabase());
+        assertEquals("NYA", config.getTeam());
+        assertEquals(5, config.getPauseSeconds());
+        assertFalse(config.isConcurrent());
+        assertTrue(config.hasGlobalScenario());
+        ScenarioConfig rus = config.getScenarios().get(1);
+        assertEquals(400, rus.buildThroughputControlGroupConfig().getTargetThroughput().intValue());
+        assertEquals(50, rus.getBatchSize());
+        assertEquals("low", config.getScenarios().get(0).buildThroughputControlGroupConfig().getPriorityLevel().toString().toLowerCase());
+
+        config.getScenarios().add(scenario("low", 0, 0));
+        try {
+            config.validate();
+            fail("duplicate scenario names");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("low"));
+        }
+    }
+}
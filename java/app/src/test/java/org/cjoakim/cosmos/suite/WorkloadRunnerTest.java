@@ -0,0 +1,109 @@
+package org.cjoakim.cosmos.suite;
+
+import com.azure.cosmos.models.CosmosBulkOperations;
+import com.azure.cosmos.models.CosmosItemOperation;
+import org.cjoakim.cosmos.metrics.GroupMetrics;
+import org.cjoakim.cosmos.metrics.MetricsRegistry;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.pk.PartitionKeyStrategy;
+import org.cjoakim.cosmos.sim.SimulatedLoadTarget;
+import org.cjoakim.cosmos.sim.SimulatorConfig;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.cjoakim.cosmos.TestFixtures.batters;
+import static org.cjoakim.cosmos.TestFixtures.fastConfig;
+import static org.junit.Assert.*;
+
+public class WorkloadRunnerTest {
+
+    private static final PartitionKeyStrategy STRATEGY = PartitionKeyStrategy.parse("player");
+
+    private static List<CosmosItemOperation> upserts(List<BaseballBatter> batters) {
+        List<CosmosItemOperation> operations = new ArrayList<>();
+        for (BaseballBatter bb : batters) {
+            operations.add(CosmosBulkOperations.getUpsertItemOperation(bb, STRATEGY.partitionKey(bb)));
+        }
+        return operations;
+    }
+
+    private static WorkloadClass workloadClass(String name, String priority, String engine, int concurrency, Map<String, Double> mix) {
+        ScenarioConfig group = new ScenarioConfig();
+        group.setName(name);
+        group.setPriority(priority);
+        group.setEngine(engine);
+        group.setConcurrency(concurrency);
+        group.setBatchSize(20);
+        WorkloadClass workload = new WorkloadClass();
+        workload.setGroup(group);
+        workload.setMix(mix);
+        workload.setKeys("zipf");
+        return workload;
+    }
+
+    @Test public void rejectsQueriesOnTheBulkEngine() {
+        Map<String, Double> mix = new LinkedHashMap<>();
+        mix.put("read", 1.0);
+        mix.put("cross_query", 1.0);
+        WorkloadConfig config = new WorkloadConfig();
+        config.getClasses().add(workloadClass("readers", "high", ScenarioConfig.ENGINE_BULK, 1, mix));
+        try {
+            config.validate();
+            fail("accepted queries on the bulk engine");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("point"));
+        }
+        config.getClasses().get(0).getGroup().setEngine(ScenarioConfig.ENGINE_POINT);
+        config.validate();
+    }
+
+    @Test public void runsReadsAndQueriesAgainstBulkWrites() {
+        SimulatorConfig simulatorConfig = fastConfig(4000, 4);
+        simulatorConfig.setLatencyMedianMs(1.0);
+        SimulatedLoadTarget target = new SimulatedLoadTarget("test", simulatorConfig);
+
+        Map<String, Double> readMix = new LinkedHashMap<>();
+        readMix.put("read", 80.0);
+        readMix.put("query", 10.0);
+        readMix.put("cross_query", 10.0);
+        Map<String, Double> writeMix = new LinkedHashMap<>();
+        writeMix.put("upsert", 1.0);
+        writeMix.put("patch", 1.0);
+        WorkloadConfig config = new WorkloadConfig();
+        config.setDurationSeconds(2);
+        config.getClasses().add(workloadClass("readers", "high", ScenarioConfig.ENGINE_POINT, 8, readMix));
+        config.getClasses().add(workloadClass("writers", "low", ScenarioConfig.ENGINE_BULK, 4, writeMix));
+        config.validate();
+
+        List<BaseballBatter> batters = batters(500, STRATEGY);
+        MetricsRegistry registry = new MetricsRegistry();
+        WorkloadRunner runner = new WorkloadRunner(target, config, "throughput", batters, STRATEGY, () -> upserts(batters), registry);
+        List<ScenarioRun> runs = runner.run();
+
+        assertEquals(2, runs.size());
+        assertEquals(500, target.getDocumentCount());
+        for (ScenarioRun run : runs) {
+            assertTrue(run.getName() + " ops " + run.getOperationCount(), run.getOperationCount() > 100);
+            assertTrue(run.getElapsedMs() >= 1900 && run.getElapsedMs() < 10000);
+        }
+        GroupMetrics reads = runner.getTypeMetrics("readers", "read");
+        GroupMetrics queries = runner.getTypeMetrics("readers", "query");
+        GroupMetrics crossQueries = runner.getTypeMetrics("readers", "cross_query");
+        // the batters were preloaded, so the reads find them
+        assertEquals(reads.getOperations(), (long) reads.getStatusCounts().getOrDefault("200/0", 0L));
+        assertTrue(queries.getOperations() > 0 && crossQueries.getOperations() > 0);
+        // a cross-partition query is charged for each of the 4 ranges
+        double queryRu = queries.getRequestCharge() / queries.getOperations();
+        double crossQueryRu = crossQueries.getRequestCharge() / crossQueries.getOperations();
+        assertTrue(queryRu + " / " + crossQueryRu, crossQueryRu > queryRu * 2);
+        assertEquals(runs.get(1).getMetrics().getOperations(),
+                runner.getTypeMetrics("writers", "upsert").getOperations() + runner.getTypeMetrics("writers", "patch").getOperations());
+        // the patches find the preloaded batters; some low priority writes may run out of 429 retries
+        assertFalse(runner.getTypeMetrics("writers", "patch").getStatusCounts().containsKey("404/0"));
+        assertTrue(runs.get(0).getMetrics().getFailures() <= runs.get(1).getMetrics().getFailures());
+    }
+}
@@ -0,0 +1,109 @@
+package org.cjoakim.cosmos.synth;
+
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SyntheticBatterGeneratorTest {
+
+    /**
+     * Real-looking batters: regulars hitting about .280 with power, and bench players about .220;
+     * caughtStealing is missing from the early seasons.
+     */
+    private static List<BaseballBatter> realBatters() {
+        Random random = new Random(7);
+        List<BaseballBatter> batters = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            boolean regular = i % 2 == 0;
+            BaseballBatter bb = new BaseballBatter();
+            bb.setPlayerID("real" + i);
+            bb.setYear(1950 + i % 70);
+            bb.setStint("1");
+            bb.setTeamID(i % 3 == 0 ? "NYA" : "BOS");
+            bb.setLeagueID("AL");
+            bb.setGames(regular ? 140 + random.nextInt(20) : 20 + random.nextInt(40));
+            bb.setAtBats(regular ? 500 + random.nextInt(100) : 50 + random.nextInt(100));
+            bb.setHits((int) (bb.getAtBats() * (regular ? 0.28 : 0.22)));
+            bb.setDoubles(bb.getHits() / 5);
+            bb.setTriples(bb.getHits() / 40);
+            bb.setHomeRuns(regular ? bb.getHits() / 6 : 0);
+            bb.setRuns(bb.getHits() / 2);
+            bb.setRbi(bb.getHits() / 2);
+            bb.setStolenBases(3);
+            bb.setCaughtStealing(bb.getYear() < 1960 ? -1 : 1);
+            bb.setBaseOnBalls(bb.getAtBats() / 10);
+            bb.setStrikeouts(bb.getAtBats() / (regular ? 5 : 4));
+            bb.setIntentionalBB(1);
+            bb.setHitByPitch(2);
+            batters.add(bb);
+        }
+        return batters;
+    }
+
+    private static SyntheticBatterGenerator generator(long count, int players, long seed, int parallelism) {
+        return new SyntheticBatterGenerator(BatterStatsModel.fit(realBatters()), count, players, seed, parallelism);
+    }
+
+    @Test public void sameSeedGeneratesTheSameBattersWhateverTheParallelism() {
+        SyntheticBatterGenerator generator = generator(25000, 1000, 42, 1);
+        List<BaseballBatter> sequential = generator.generate(0, 25000);
+        List<BaseballBatter> parallel = generator(25000, 1000, 42, 4).stream().collectList().block();
+
+        assertEquals(25000, parallel.size());
+        assertEquals(sequential, parallel);
+        assertEquals(sequential.get(12345), generator.generate(12345));
+        assertNotEquals(sequential.get(0), generator(25000, 1000, 43, 1).generate(0));
+    }
+
+    @Test public void spreadsTheBattersOverTheGivenPlayersWithUniqueIds() {
+        List<BaseballBatter> batters = generator(20000, 500, 1, 2).stream().collectList().block();
+
+        Set<String> players = new HashSet<>();
+        Set<String> ids = new HashSet<>();
+        for (BaseballBatter bb : batters) {
+            players.add(bb.getPlayerID());
+            ids.add(bb.getId());
+            assertTrue(bb.getPlayerID(), bb.getPlayerID().length() <= 12);
+            assertTrue(bb.getPlayerID(), bb.getPlayerID().matches("[a-z]+[0-9]{2,}"));
+            assertTrue(bb.getYear() >= 1950 && bb.getYear() <= 2019);
+        }
+        assertEquals(500, players.size());
+        assertEquals(20000, ids.size());
+        assertTrue(generator(1, 2000000000, 1, 1).playerID(1999999999).length() <= 12);
+    }
+
+    @Test public void statsFollowTheFittedDistributions() {
+        List<BaseballBatter> batters = generator(20000, 2000, 5, 2).generate(0, 20000);
+
+        long hits = 0;
+        long atBats = 0;
+        int missingCaughtStealing = 0;
+        int regulars = 0;
+        for (BaseballBatter bb : batters) {
+            assertTrue(bb.isValid());
+            assertTrue(bb.getHits() <= bb.getAtBats());
+            assertTrue(bb.getDoubles() + bb.getTriples() + bb.getHomeRuns() <= bb.getHits());
+            assertTrue(bb.getIntentionalBB() <= bb.getBaseOnBalls());
+            assertTrue("NYA".equals(bb.getTeamID()) || "BOS".equals(bb.getTeamID()));
+            hits += bb.getHits();
+            atBats += bb.getAtBats();
+            if (bb.getCaughtStealing() < 0) {
+                missingCaughtStealing++;
+            }
+            if (bb.getAtBats() >= 500) {
+                regulars++;
+            }
+        }
+        // about .272 overall, weighted to the regulars' at bats; 10 of 70 years lack caughtStealing
+        assertEquals(0.272, (double) hits / atBats, 0.01);
+        assertEquals(20000 / 7.0, missingCaughtStealing, 300);
+        assertEquals(10000, regulars, 500);
+    }
+}
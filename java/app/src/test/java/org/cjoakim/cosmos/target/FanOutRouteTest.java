@@ -0,0 +1,46 @@
+package org.cjoakim.cosmos.target;
+
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FanOutRouteTest {
+
+    private static BaseballBatter batter(String leagueID, int year) {
+        BaseballBatter bb = new BaseballBatter();
+        bb.setLeagueID(leagueID);
+        bb.setTeamID("NYA");
+        bb.setYear(year);
+        return bb;
+    }
+
+    @Test public void routesByLeagueToContainers() {
+        FanOutRoute route = FanOutRoute.parse("league");
+        Map<String, List<BaseballBatter>> routed = route.split(Arrays.asList(
+                batter("AL", 1998), batter("NL", 1998), batter("AL", 2001), batter("", 1871)));
+
+        assertEquals(Arrays.asList("AL", "NL", "none"), List.copyOf(routed.keySet()));
+        assertEquals(2, routed.get("AL").size());
+        assertEquals("test-AL", route.containerName("test", "AL"));
+        assertEquals("dev", route.databaseName("dev", "AL"));
+    }
+
+    @Test public void routesByDecadeToDatabases() {
+        FanOutRoute route = FanOutRoute.parse("decade:database");
+        assertEquals("1990s", route.keyOf(batter("AL", 1998)));
+        assertEquals("2000s", route.keyOf(batter("AL", 2000)));
+        assertEquals("dev-1990s", route.databaseName("dev", "1990s"));
+        assertEquals("test", route.containerName("test", "1990s"));
+        try {
+            FanOutRoute.parse("division");
+            fail("invalid field");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("division"));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.cjoakim.cosmos.throughput;
+
+import org.junit.Test;
+import reactor.core.Disposable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FairShareSchedulerTest {
+
+    private static List<String> enqueue(FairShareScheduler scheduler, String target, int batches, List<String> grants) {
+        List<String> held = new ArrayList<>();
+        for (int i = 0; i < batches; i++) {
+            scheduler.acquire(target).subscribe(name -> {
+                grants.add(name);
+                held.add(name);
+            });
+        }
+        return held;
+    }
+
+    @Test public void idleTargetsShareIsUsedByTheBusyOne() {
+        FairShareScheduler scheduler = new FairShareScheduler(4);
+        List<String> grants = new ArrayList<>();
+        enqueue(scheduler, "slow", 10, grants);
+
+        assertEquals(4, grants.size());
+        assertEquals(4, scheduler.getInFlight("slow"));
+    }
+
+    @Test public void freedSlotsGoToTheTargetWithTheFewestInFlight() {
+        FairShareScheduler scheduler = new FairShareScheduler(4);
+        List<String> grants = new ArrayList<>();
+        enqueue(scheduler, "slow", 10, grants);
+        enqueue(scheduler, "fast", 10, grants);
+        assertEquals(0, scheduler.getInFlight("fast"));
+
+        // the slow target's batches complete; the fast target gets slots until it has its half
+        scheduler.release("slow");
+        scheduler.release("slow");
+        assertEquals(2, scheduler.getInFlight("fast"));
+        assertEquals(2, scheduler.getInFlight("slow"));
+
+        // the fast target's batches complete quickly, and it keeps getting its freed slots
+        for (int i = 0; i < 6; i++) {
+            scheduler.release("fast");
+        }
+        assertEquals(8, scheduler.getGranted("fast"));
+        assertEquals(4, scheduler.getGranted("slow"));
+        assertEquals(2, scheduler.getInFlight("slow"));
+    }
+
+    @Test public void tiesAreBrokenInRoundRobinOrder() {
+        FairShareScheduler scheduler = new FairShareScheduler(1);
+        List<String> grants = new ArrayList<>();
+        enqueue(scheduler, "a", 3, grants);
+        enqueue(scheduler, "b", 3, grants);
+        enqueue(scheduler, "c", 3, grants);
+        for (int i = 0; i < 5; i++) {
+            scheduler.release(grants.get(grants.size() - 1));
+        }
+        assertEquals(List.of("a", "b", "c", "a", "b", "c"), grants);
+    }
+
+    @Test public void aCancelledAcquireGivesUpItsPlace() {
+        FairShareScheduler scheduler = new FairShareScheduler(1);
+        List<String> grants = new ArrayList<>();
+        enqueue(scheduler, "a", 1, grants);
+        Disposable cancelled = scheduler.acquire("b").subscribe(grants::add);
+        enqueue(scheduler, "c", 1, grants);
+        cancelled.dispose();
+
+        scheduler.release("a");
+        assertEquals(List.of("a", "c"), grants);
+        assertEquals(0, scheduler.getInFlight("b"));
+        scheduler.release("c");
+        enqueue(scheduler, "a", 1, grants);
+        assertEquals(List.of("a", "c", "a"), grants);
+    }
+}
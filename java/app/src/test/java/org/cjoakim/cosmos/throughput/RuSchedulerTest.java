@@ -0,0 +1,99 @@
+package org.cjoakim.cosmos.throughput;
+
+import com.azure.cosmos.models.PriorityLevel;
+import org.junit.Test;
+import reactor.core.Disposable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class RuSchedulerTest {
+
+    private static final long ONE_SECOND_NANOS = 1_000_000_000L;
+
+    private static AtomicInteger enqueue(RuScheduler scheduler, String lane, int batches) {
+        AtomicInteger granted = new AtomicInteger();
+        for (int i = 0; i < batches; i++) {
+            scheduler.admit(lane, 1).subscribe(permit -> {
+                granted.incrementAndGet();
+                scheduler.complete(permit, permit.getEstimatedRu());
+            });
+        }
+        return granted;
+    }
+
+    @Test public void parsesLaneSpecs() {
+        List<ThroughputLane> lanes = ThroughputLane.parseLanes("interactive:3:0:high, backfill:1:500:low");
+        assertEquals(2, lanes.size());
+        assertEquals("interactive", lanes.get(0).getName());
+        assertEquals(3, lanes.get(0).getWeight());
+        assertEquals(PriorityLevel.HIGH, lanes.get(0).getPriorityLevel());
+        assertEquals(500.0, lanes.get(1).getRuBudget(), 0.0);
+        assertFalse(lanes.get(1).isHighPriority());
+    }
+
+    @Test public void sharesTargetByWeightAndStaysUnderIt() {
+        AtomicLong clock = new AtomicLong();
+        RuScheduler scheduler = new RuScheduler(1000, Arrays.asList(
+                new ThroughputLane("a", 3, 0, PriorityLevel.LOW),
+                new ThroughputLane("b", 1, 0, PriorityLevel.LOW)), clock::get);
+        AtomicInteger a = enqueue(scheduler, "a", 2000);
+        AtomicInteger b = enqueue(scheduler, "b", 2000);
+        for (int second = 1; second <= 10; second++) {
+            clock.addAndGet(ONE_SECOND_NANOS);
+            scheduler.dispatch();
+        }
+        int total = a.get() + b.get();
+        // 10 RU per operation: 1000 RU burst plus 10 seconds at 1000 RU/s
+        assertTrue(total <= 1100);
+        assertTrue(total >= 1000);
+        double ratio = (double) a.get() / b.get();
+        assertTrue("ratio " + ratio, ratio > 2.5 && ratio < 3.5);
+    }
+
+    @Test public void highPriorityLanesAreServedFirstAndBudgetsApply() {
+        AtomicLong clock = new AtomicLong();
+        RuScheduler scheduler = new RuScheduler(1000, Arrays.asList(
+                new ThroughputLane("low", 10, 0, PriorityLevel.LOW),
+                new ThroughputLane("high", 1, 200, PriorityLevel.HIGH)), clock::get);
+        AtomicInteger low = enqueue(scheduler, "low", 2000);
+        AtomicInteger high = enqueue(scheduler, "high", 2000);
+        for (int second = 1; second <= 5; second++) {
+            clock.addAndGet(ONE_SECOND_NANOS);
+            scheduler.dispatch();
+        }
+        // the low lane was enqueued first and took the initial 1000 RU burst; after that the
+        // high lane is served first each second, capped by its budget at 200 RU/s = 20 ops/s
+        assertEquals(100, high.get());
+        assertEquals(500, low.get());
+    }
+
+    @Test public void learnsRuPerOperationFromCharges() {
+        RuScheduler scheduler = new RuScheduler(1000, Arrays.asList(new ThroughputLane("a", 1, 0, PriorityLevel.LOW)));
+        RuPermit permit = scheduler.admit("a", 10).block();
+        assertEquals(100.0, permit.getEstimatedRu(), 0.001);
+        for (int i = 0; i < 50; i++) {
+            scheduler.complete(permit, 60.0);
+        }
+        assertEquals(6.0, scheduler.getRuPerOperation("a"), 0.01);
+    }
+
+    @Test public void aCancelledRequestIsNeverGranted() {
+        AtomicLong clock = new AtomicLong(0);
+        RuScheduler scheduler = new RuScheduler(100, Arrays.asList(new ThroughputLane("a", 1, 0, PriorityLevel.LOW)), clock::get);
+        scheduler.admit("a", 10).block();  // the 100 RU burst
+        AtomicInteger granted = new AtomicInteger();
+        Disposable cancelled = scheduler.admit("a", 10).subscribe(permit -> granted.incrementAndGet());
+        scheduler.admit("a", 10).subscribe(permit -> granted.addAndGet(10));
+        cancelled.dispose();
+
+        clock.addAndGet(ONE_SECOND_NANOS);
+        scheduler.dispatch();
+        // the refilled 100 RU go to the waiter behind the cancelled one
+        assertEquals(10, granted.get());
+    }
+}
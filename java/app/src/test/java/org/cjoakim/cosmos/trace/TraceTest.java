@@ -0,0 +1,211 @@
+package org.cjoakim.cosmos.trace;
+
+import com.azure.cosmos.models.CosmosBulkOperations;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.CosmosItemOperationType;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.PartitionKeyBuilder;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.cjoakim.cosmos.metrics.OperationResult;
+import org.cjoakim.cosmos.sim.SimulatedLoadTarget;
+import org.cjoakim.cosmos.sim.SimulatorConfig;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.cjoakim.cosmos.TestFixtures.fastConfig;
+import static org.cjoakim.cosmos.TestFixtures.upserts;
+import static org.cjoakim.cosmos.TestFixtures.HOT_PARTITION;
+import static org.junit.Assert.*;
+
+public class TraceTest {
+
+    private static Path traceFile() throws Exception {
+        File file = File.createTempFile("load", ".trace");
+        file.deleteOnExit();
+        return file.toPath();
+    }
+
+    private static TraceEntry entry(long submitMicros, String type, String id, int statusCode, long latencyMicros) {
+        TraceEntry entry = new TraceEntry();
+        entry.setSubmitMicros(submitMicros);
+        entry.setOperationType(type);
+        entry.setGroupName("default");
+        entry.setId(id);
+        entry.setPartitionKey(new PartitionKey("mlb").toString());
+        entry.setPayloadBytes(400);
+        entry.setRequestCharge(statusCode == 429 ? 0 : 6.5);
+        entry.setStatusCode(statusCode);
+        entry.setLatencyMicros(latencyMicros);
+        return entry;
+    }
+
+    @Test public void entriesRoundTripAndATruncatedEntryIsIgnored() throws Exception {
+        Path path = traceFile();
+        try (TraceWriter writer = new TraceWriter(path, "db/c", "throughput_test --local")) {
+            writer.write(entry(2000, "UPSERT", "b", 201, 3000));
+            writer.write(entry(1000, "UPSERT", "a", 429, 150));
+            TraceEntry hierarchical = entry(3000, "READ", "c", 200, 900);
+            hierarchical.setPartitionKey(new PartitionKeyBuilder().add("AL").add("NYA").build().toString());
+            hierarchical.setRetryCount(2);
+            writer.write(hierarchical);
+        }
+        TraceReader trace = TraceReader.read(path);
+        assertEquals("db/c", trace.getTargetName());
+        assertEquals("throughput_test --local", trace.getCommandLine());
+        assertEquals(3, trace.getEntries().size());
+        assertEquals("a", trace.getEntries().get(0).getId());  // sorted by submit time
+        assertEquals(entry(2000, "UPSERT", "b", 201, 3000), trace.getEntries().get(1));
+        assertEquals(2, trace.getEntries().get(2).getRetryCount());
+        assertEquals("[\"AL\",\"NYA\"]", trace.getEntries().get(2).getPartitionKey());
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(file.length() - 2);
+        }
+        assertEquals(2, TraceReader.read(path).getEntries().size());
+    }
+
+    @Test public void keysBeyondTheDictionaryAreWrittenInline() throws Exception {
+        Path path = traceFile();
+        int keys = TraceWriter.MAX_DICTIONARY + 100;
+        try (TraceWriter writer = new TraceWriter(path, "db/c", "")) {
+            for (int i = 0; i <= keys; i++) {
+                TraceEntry entry = entry(i, "UPSERT", "id" + i, 201, 1000);
+                entry.setPartitionKey(new PartitionKey("key" + (i % keys)).toString());
+                writer.write(entry);
+            }
+        }
+        List<TraceEntry> entries = TraceReader.read(path).getEntries();
+        assertEquals(keys + 1, entries.size());
+        assertEquals("UPSERT", entries.get(keys).getOperationType());
+        assertEquals(new PartitionKey("key" + (keys - 1)).toString(), entries.get(keys - 1).getPartitionKey());
+        assertEquals(new PartitionKey("key0").toString(), entries.get(keys).getPartitionKey());
+    }
+
+    @Test public void streamsTheEntriesOfATraceTooLargeToSort() throws Exception {
+        Path path = traceFile();
+        try (TraceWriter writer = new TraceWriter(path, "db/c", "")) {
+            writer.write(entry(2000, "UPSERT", "b", 201, 3000));
+            writer.write(entry(1000, "UPSERT", "a", 201, 150));
+            writer.write(entry(3000, "READ", "c", 200, 900));
+        }
+        try {
+            TraceReader.read(path, 2);
+            fail("read more than the maximum entries");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("more than 2 entries"));
+        }
+        assertEquals(3, TraceReader.read(path, 3).getEntries().size());
+
+        List<String> ids = new ArrayList<>();
+        TraceSummary summary = new TraceSummary("streamed");
+        TraceReader trace = TraceReader.forEach(path, entry -> {
+            ids.add(entry.getId());
+            summary.add(entry);
+        });
+        assertEquals("db/c", trace.getTargetName());
+        assertEquals(Arrays.asList("b", "a", "c"), ids);  // in the order they completed
+        assertEquals(3.0, summary.metric(TraceSummary.ALL, "ops"), 0.0);
+        assertEquals(4000, summary.getDurationMicros());
+    }
+
+    @Test public void recordsEachOperationOfASimulatedLoad() throws Exception {
+        Path path = traceFile();
+        SimulatorConfig config = fastConfig();
+        TraceWriter writer = new TraceWriter(path, "test", "");
+        TracingLoadTarget target = new TracingLoadTarget(new SimulatedLoadTarget("test", config), writer);
+        target.executeBulkOperations(Flux.fromIterable(upserts(50, HOT_PARTITION)), "default").blockLast();
+        target.executePointOperation(CosmosBulkOperations.getReadItemOperation("player7-2000-1", new PartitionKey(HOT_PARTITION)), "default");
+        target.executeQuery(new SqlQuerySpec("SELECT * FROM c"), null, "default");
+        writer.close();
+
+        List<TraceEntry> entries = TraceReader.read(path).getEntries();
+        assertEquals(52, entries.size());
+        TraceEntry upsert = entries.get(0);
+        assertEquals("UPSERT", upsert.getOperationType());
+        assertTrue(upsert.isSuccess());
+        assertTrue(upsert.getPayloadBytes() > 100);
+        assertTrue(upsert.getRequestCharge() > 5);
+        assertEquals("[\"mlb\"]", upsert.getPartitionKey());
+        assertEquals("READ", entries.get(50).getOperationType());
+        assertEquals(200, entries.get(50).getStatusCode());
+        assertTrue(entries.get(51).isQuery());
+        assertEquals("SELECT * FROM c", entries.get(51).getId());
+    }
+
+    @Test public void replaysAtTheRecordedPaceOrFaster() {
+        List<TraceEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            entries.add(entry(i * 50000L, "UPSERT", "id" + i, 201, 1000));
+        }
+        entries.add(entry(100000, OperationResult.OPERATION_TYPE_QUERY, "SELECT * FROM c", 200, 1000));
+
+        TraceReplay replay = new TraceReplay(entries, TraceReplay.parseSpeed("1x"), Arrays.asList("/pk"));
+        assertEquals(5, replay.size());
+        assertEquals(1, replay.getSkipped());
+        long start = System.currentTimeMillis();
+        List<CosmosItemOperation> operations = replay.operations().collectList().block();
+        long elapsed = System.currentTimeMillis() - start;
+        assertEquals(5, operations.size());
+        assertTrue("elapsed: " + elapsed, elapsed >= 190);
+
+        start = System.currentTimeMillis();
+        new TraceReplay(entries, TraceReplay.parseSpeed("max"), Arrays.asList("/pk")).operations().blockLast();
+        assertTrue(System.currentTimeMillis() - start < 150);
+        assertEquals(4.0, TraceReplay.parseSpeed("4x"), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnInvalidSpeed() {
+        TraceReplay.parseSpeed("fast");
+    }
+
+    @Test public void replayedDocumentsHaveTheRecordedKeyAndSize() throws Exception {
+        TraceEntry upsert = entry(0, "UPSERT", "aaronha01-1957-1", 201, 1000);
+        upsert.setPartitionKey(new PartitionKeyBuilder().add("NL").add("ML1").build().toString());
+        TraceReplay replay = new TraceReplay(
+                Arrays.asList(upsert, entry(10, "DELETE", "x", 204, 1000)), 1.0, Arrays.asList("/leagueID", "/teamID"));
+
+        CosmosItemOperation op = replay.toOperation(upsert);
+        assertEquals(CosmosItemOperationType.UPSERT, op.getOperationType());
+        assertEquals(new PartitionKeyBuilder().add("NL").add("ML1").build(), op.getPartitionKeyValue());
+        ObjectNode doc = (ObjectNode) op.getItem();
+        assertEquals("aaronha01-1957-1", doc.get("id").asText());
+        assertEquals("ML1", doc.get("teamID").asText());
+        assertEquals(400, new ObjectMapper().writeValueAsBytes(doc).length);
+        assertEquals(CosmosItemOperationType.DELETE, replay.toOperation(entry(10, "DELETE", "x", 204, 1000)).getOperationType());
+    }
+
+    @Test public void diffMarksTheChangesBeyondTheThreshold() {
+        List<TraceEntry> a = new ArrayList<>();
+        List<TraceEntry> b = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            a.add(entry(i * 1000L, "UPSERT", "id" + i, 201, 5000));
+            b.add(entry(i * 1000L, "UPSERT", "id" + i, i % 10 == 0 ? 429 : 201, i % 50 == 0 ? 20000 : 5000));
+        }
+        TraceDiff diff = new TraceDiff(new TraceSummary("a", a), new TraceSummary("b", b), 10.0);
+        diff.logReport();
+
+        assertEquals(0.0, diff.getRow("ALL", "ops").getDeltaPct(), 0.0);
+        assertEquals(0.0, diff.getRow("UPSERT", "429 %").getA(), 0.0);
+        assertEquals(10.0, diff.getRow("UPSERT", "429 %").getB(), 0.0);
+        assertEquals(300.0, diff.getRow("ALL", "p99 ms").getDeltaPct(), 1.0);
+        assertEquals(0.0, diff.getRow("ALL", "p50 ms").getDeltaPct(), 0.0);
+        List<String> changed = new ArrayList<>();
+        for (TraceDiff.Row row : diff.getChanges()) {
+            changed.add(row.getOperationType() + " " + row.getMetric());
+        }
+        assertTrue(changed.contains("ALL p99 ms"));
+        assertTrue(changed.contains("ALL 429 %"));
+        assertFalse(changed.contains("ALL p50 ms"));
+    }
+}
@@ -0,0 +1,130 @@
+package org.cjoakim.cosmos.workload;
+
+import com.azure.cosmos.models.CosmosItemOperationType;
+import com.azure.cosmos.models.PartitionKey;
+import org.cjoakim.cosmos.model.BaseballBatter;
+import org.cjoakim.cosmos.pk.PartitionKeyStrategy;
+import org.cjoakim.cosmos.workload.WorkloadOperation.Type;
+import org.junit.Test;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.cjoakim.cosmos.TestFixtures.batters;
+import static org.junit.Assert.*;
+
+public class WorkloadGeneratorTest {
+
+    private static final PartitionKeyStrategy STRATEGY = PartitionKeyStrategy.parse("player");
+
+    private static double topShare(KeyDistribution keys, int keyCount, int top) {
+        Random random = new Random(7);
+        int hits = 0;
+        for (int i = 0; i < 100000; i++) {
+            int index = keys.next(random);
+            assertTrue(index >= 0 && index < keyCount);
+            if (index < top) {
+                hits++;
+            }
+        }
+        return hits / 100000.0;
+    }
+
+    @Test public void keyDistributionsAreSkewedAsSpecified() {
+        assertEquals(0.01, topShare(KeyDistribution.parse("uniform", 1000), 1000, 10), 0.005);
+        assertEquals(0.9, topShare(KeyDistribution.parse("hotset:0.01:0.9", 1000), 1000, 10), 0.01);
+        // the top 1% of 1000 zipf:1 keys get H(10) / H(1000) of the operations, about 39%
+        assertEquals(0.39, topShare(KeyDistribution.parse("zipf", 1000), 1000, 10), 0.01);
+        assertEquals("zipf:1.2", KeyDistribution.parse("zipf:1.2", 10).getName());
+    }
+
+    @Test public void rejectsInvalidSpecs() {
+        for (String spec : new String[] {"pareto", "zipf:x", "hotset:2", "zipf:0"}) {
+            try {
+                KeyDistribution.parse(spec, 100);
+                fail("accepted " + spec);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        try {
+            Type.parse("scan");
+            fail("accepted scan");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(Type.CROSS_QUERY, Type.parse("cross-query"));
+    }
+
+    @Test public void generatesTheOperationMix() {
+        Map<String, Double> mix = new LinkedHashMap<>();
+        mix.put("read", 60.0);
+        mix.put("query", 10.0);
+        mix.put("cross_query", 10.0);
+        mix.put("patch", 10.0);
+        mix.put("upsert", 10.0);
+        mix.put("delete", 0.0);
+        WorkloadGenerator generator;
+        try {
+            generator = new WorkloadGenerator(batters(100, STRATEGY), STRATEGY, mix, "uniform", 42);
+            fail("accepted delete");
+        } catch (IllegalArgumentException e) {
+            mix.remove("delete");
+        }
+        generator = new WorkloadGenerator(batters(100, STRATEGY), STRATEGY, mix, "uniform", 42);
+        Map<Type, Integer> counts = new EnumMap<>(Type.class);
+        for (int i = 0; i < 10000; i++) {
+            WorkloadOperation op = generator.next();
+            counts.merge(op.getType(), 1, Integer::sum);
+            switch (op.getType()) {
+                case READ:
+                    assertEquals(CosmosItemOperationType.READ, op.getItemOperation().getOperationType());
+                    assertTrue(op.getItemOperation().getId().startsWith("player"));
+                    break;
+                case PATCH:
+                    assertEquals(CosmosItemOperationType.PATCH, op.getItemOperation().getOperationType());
+                    break;
+                case UPSERT:
+                    assertEquals(CosmosItemOperationType.UPSERT, op.getItemOperation().getOperationType());
+                    break;
+                case QUERY:
+                    assertNotNull(op.getPartitionKey());
+                    assertEquals(WorkloadGenerator.TEAM_YEAR_QUERY, op.getQuery().getQueryText());
+                    assertEquals(2, op.getQuery().getParameters().size());
+                    break;
+                case CROSS_QUERY:
+                    assertNull(op.getPartitionKey());
+                    assertNull(op.getItemOperation());
+                    break;
+                default:
+                    fail();
+            }
+        }
+        assertEquals(6000, counts.get(Type.READ), 200);
+        assertEquals(1000, counts.get(Type.QUERY), 100);
+        assertEquals(1000, counts.get(Type.CROSS_QUERY), 100);
+        assertEquals(1000, counts.get(Type.PATCH), 100);
+        assertEquals(1000, counts.get(Type.UPSERT), 100);
+    }
+
+    @Test public void seededGeneratorsRepeatAndSpreadHotKeys() {
+        Map<String, Double> mix = new HashMap<>();
+        mix.put("read", 1.0);
+        List<BaseballBatter> batters = batters(1000, STRATEGY);
+        WorkloadGenerator a = new WorkloadGenerator(batters, STRATEGY, mix, "hotset:0.01:1", 5);
+        WorkloadGenerator b = new WorkloadGenerator(batters, STRATEGY, mix, "hotset:0.01:1", 5);
+        Map<String, Integer> hot = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            PartitionKey pk = a.next().getPartitionKey();
+            assertEquals(pk, b.next().getPartitionKey());
+            hot.merge(pk.toString(), 1, Integer::sum);
+        }
+        assertEquals(10, hot.size());
+        // the hot keys are not simply the first ten batters
+        assertFalse(hot.containsKey(new PartitionKey("player0").toString()) && hot.containsKey(new PartitionKey("player9").toString()));
+    }
+}